@@ -0,0 +1,325 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.icafe4j.image.util.IMGUtils;
+import com.icafe4j.io.MemoryCacheRandomAccessInputStream;
+import com.icafe4j.io.PeekHeadInputStream;
+import com.icafe4j.io.RandomAccessInputStream;
+
+/**
+ * Asynchronous front end of {@link ImageIO}: reads, writes, probes and transcodes
+ * images on an Executor and hands back CompletableFutures.
+ * <p>
+ * The executor is pluggable. {@link #newVirtualThreadExecutor()} starts a virtual thread
+ * per task where the JVM has them, which suits the blocking stream I/O of the codecs.
+ * The waits which may take long, in DecodeAdmission, ImageCache, TiledImage, EmbeddedPreview
+ * and BatchMetadataProcessor, are on ReentrantLocks, which never pin the carrier thread of a
+ * virtual thread. Some monitors are still taken on the way. The ICC profile and LUT transform caches
+ * and the BatchMetadataProcessor statistics hold them only around in-memory work. The
+ * synchronized mark() and reset() of SeekableStream and ForwardSeekableStream may do
+ * stream I/O while holding one, which pins the carrier thread of a virtual thread on JVMs
+ * before Java 24.
+ * <p>
+ * How many reads or writes of one format run at the same time can be limited with
+ * {@link #setConcurrencyLimit(ImageType, int)}, so a burst of large TIFFs doesn't crowd
+ * out everything else whatever the executor. A task waits for a permit of its format on
+ * the executor thread, cheap for a virtual thread.
+ * <p>
+ * Every task runs under its own {@link CodecControl}: cancelling the returned future stops
+ * the codec at its next checkpoint, and {@link #setTimeout(long, TimeUnit)} gives each
+ * task a deadline counted from its submission.
+ * <pre>
+ * AsyncImageIO io = new AsyncImageIO(AsyncImageIO.newVirtualThreadExecutor());
+ * io.setConcurrencyLimit(ImageType.TIFF, 4);
+ * io.transcodeAsync(is, os, ImageType.PNG, ImageParam.DEFAULT_IMAGE_PARAM).get();
+ * </pre>
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public class AsyncImageIO {
+	// How often a task waiting for a permit checks whether it has been cancelled
+	private static final long PERMIT_POLL_MILLIS = 50;
+
+	private final Executor executor;
+	private final ConcurrentMap<ImageType, Semaphore> limits = new ConcurrentHashMap<ImageType, Semaphore>();
+	// Nanoseconds, 0 for no deadline
+	private volatile long timeoutNanos;
+
+	// Created on first use
+	private static final class DefaultHolder {
+		private static final AsyncImageIO INSTANCE = new AsyncImageIO(newVirtualThreadExecutor());
+	}
+
+	// Cancelling the future cancels the codec as well
+	private static final class ControlledFuture<T> extends CompletableFuture<T> {
+		private final CodecControl control = new CodecControl();
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			control.cancel();
+			return super.cancel(mayInterruptIfRunning);
+		}
+	}
+
+	/**
+	 * @param executor runs the tasks, owned by the caller
+	 */
+	public AsyncImageIO(Executor executor) {
+		if(executor == null)
+			throw new IllegalArgumentException("Executor is null");
+		this.executor = executor;
+	}
+
+	/**
+	 * Shared instance on {@link #newVirtualThreadExecutor()} with no concurrency limits
+	 */
+	public static AsyncImageIO getDefault() {
+		return DefaultHolder.INSTANCE;
+	}
+
+	/**
+	 * An executor which starts a new virtual thread for each task. On a JVM without
+	 * virtual threads, it falls back to a cached pool of daemon threads.
+	 */
+	public static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (Exception e) {
+			return Executors.newCachedThreadPool(new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "AsyncImageIO-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Probe the image file: its type, size, number of frames and the resources a decode takes.
+	 * The future completes with null if the image type is not supported.
+	 */
+	public CompletableFuture<DecodeEstimate> probeAsync(final File file) {
+		return submit(new Callable<DecodeEstimate>() {
+			public DecodeEstimate call() throws Exception {
+				return DecodeEstimator.estimate(file);
+			}
+		});
+	}
+
+	/**
+	 * Probe the image from the InputStream. The stream is read as far as the header
+	 * structure goes and is not closed.
+	 *
+	 * @see #probeAsync(File)
+	 */
+	public CompletableFuture<DecodeEstimate> probeAsync(final InputStream is) {
+		return submit(new Callable<DecodeEstimate>() {
+			public DecodeEstimate call() throws Exception {
+				if(is instanceof RandomAccessInputStream)
+					return DecodeEstimator.estimate((RandomAccessInputStream)is);
+				RandomAccessInputStream rin = new MemoryCacheRandomAccessInputStream(is);
+				try {
+					return DecodeEstimator.estimate(rin);
+				} finally {
+					rin.shallowClose();
+				}
+			}
+		});
+	}
+
+	public CompletableFuture<BufferedImage> readAsync(final File file) {
+		return submit(new Callable<BufferedImage>() {
+			public BufferedImage call() throws Exception {
+				InputStream is = new FileInputStream(file);
+				try {
+					return read(is, false);
+				} finally {
+					is.close();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Read the image or the first frame of the image, the same as {@link ImageIO#read(InputStream)}.
+	 * The stream is not closed.
+	 */
+	public CompletableFuture<BufferedImage> readAsync(final InputStream is) {
+		return submit(new Callable<BufferedImage>() {
+			public BufferedImage call() throws Exception {
+				return read(is, false);
+			}
+		});
+	}
+
+	/**
+	 * Limit the number of reads and writes of the image type running at the same time.
+	 * Tasks already waiting keep waiting on the previous limit.
+	 *
+	 * @param imageType the image type
+	 * @param maxConcurrent maximum number of concurrent tasks, 0 for no limit
+	 */
+	public void setConcurrencyLimit(ImageType imageType, int maxConcurrent) {
+		if(maxConcurrent < 0)
+			throw new IllegalArgumentException("Invalid concurrency limit: " + maxConcurrent);
+		if(maxConcurrent == 0)
+			limits.remove(imageType);
+		else
+			limits.put(imageType, new Semaphore(maxConcurrent, true));
+	}
+
+	/**
+	 * Give every task submitted from now on a deadline, counted from its submission.
+	 * A task which misses it fails with a {@link CodecCancelledException}.
+	 *
+	 * @param timeout the timeout, 0 for no deadline
+	 */
+	public void setTimeout(long timeout, TimeUnit unit) {
+		if(timeout < 0)
+			throw new IllegalArgumentException("Invalid timeout: " + timeout);
+		this.timeoutNanos = unit.toNanos(timeout);
+	}
+
+	/**
+	 * Convert the image from the InputStream to imageType on the OutputStream, the same as
+	 * {@link ImageIO#transcode(InputStream, OutputStream, ImageType, ImageParam)}: indexed
+	 * images go across as palette indices. A concurrency limit of the source format applies
+	 * to the read, the one of the target format to the write. Neither stream is closed.
+	 */
+	public CompletableFuture<Void> transcodeAsync(final InputStream is, final OutputStream os, final ImageType imageType, final ImageParam imageParam) {
+		return submit(new Callable<Void>() {
+			public Void call() throws Exception {
+				write(read(is, true), os, imageType, imageParam, true);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Write the image, the same as {@link ImageIO#write(BufferedImage, OutputStream, ImageType, ImageParam)}.
+	 * The stream is not closed by us, though some writers close it themselves.
+	 */
+	public CompletableFuture<Void> writeAsync(final BufferedImage image, final OutputStream os, final ImageType imageType, final ImageParam imageParam) {
+		return submit(new Callable<Void>() {
+			public Void call() throws Exception {
+				write(image, os, imageType, imageParam, false);
+				return null;
+			}
+		});
+	}
+
+	// Wait for a permit, giving up if the task is cancelled or runs out of time meanwhile
+	private void acquire(Semaphore permits) throws CodecCancelledException {
+		CodecControl control = CodecControl.current();
+		try {
+			while(!permits.tryAcquire(PERMIT_POLL_MILLIS, TimeUnit.MILLISECONDS))
+				control.check();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CodecCancelledException("Interrupted", false);
+		}
+	}
+
+	// Read the first half of a transcode if transcoding is true
+	private BufferedImage read(InputStream is, boolean transcoding) throws Exception {
+		// Find out the image type without eating into the stream
+		PeekHeadInputStream peekHeadInputStream = new PeekHeadInputStream(is, ImageIO.IMAGE_MAGIC_NUMBER_LEN);
+		try {
+			Semaphore permits = limits.get(IMGUtils.guessImageType(peekHeadInputStream));
+			if(permits == null)
+				return readImage(peekHeadInputStream, transcoding);
+			acquire(permits);
+			try {
+				return readImage(peekHeadInputStream, transcoding);
+			} finally {
+				permits.release();
+			}
+		} finally {
+			peekHeadInputStream.shallowClose();
+		}
+	}
+
+	private static BufferedImage readImage(InputStream is, boolean transcoding) throws Exception {
+		return transcoding? ImageIO.transcodeRead(is) : ImageIO.read(is);
+	}
+
+	private <T> CompletableFuture<T> submit(final Callable<T> task) {
+		final ControlledFuture<T> future = new ControlledFuture<T>();
+		long timeout = timeoutNanos;
+		if(timeout > 0)
+			future.control.setTimeout(timeout, TimeUnit.NANOSECONDS);
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					// Cancelled while waiting in the queue
+					if(future.isDone()) return;
+					try {
+						future.complete(future.control.call(task));
+					} catch(Throwable e) {
+						future.completeExceptionally(e);
+					}
+				}
+			});
+		} catch(RejectedExecutionException e) {
+			future.completeExceptionally(e);
+		}
+
+		return future;
+	}
+
+	// Write the second half of a transcode if transcoding is true
+	private void write(BufferedImage image, OutputStream os, ImageType imageType, ImageParam imageParam, boolean transcoding) throws Exception {
+		Semaphore permits = limits.get(imageType);
+		if(permits == null) {
+			writeImage(image, os, imageType, imageParam, transcoding);
+			return;
+		}
+		acquire(permits);
+		try {
+			writeImage(image, os, imageType, imageParam, transcoding);
+		} finally {
+			permits.release();
+		}
+	}
+
+	private static void writeImage(BufferedImage image, OutputStream os, ImageType imageType, ImageParam imageParam, boolean transcoding) throws Exception {
+		if(transcoding)
+			ImageIO.transcodeWrite(image, os, imageType, imageParam);
+		else
+			ImageIO.write(image, os, imageType, imageParam);
+	}
+}
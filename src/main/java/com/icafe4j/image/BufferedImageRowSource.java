@@ -0,0 +1,46 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image;
+
+import java.awt.image.BufferedImage;
+
+import com.icafe4j.image.util.IMGUtils;
+
+/**
+ * RowSource adapter for BufferedImage which reads rows straight
+ * from the image raster for all the standard BufferedImage types.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public class BufferedImageRowSource implements RowSource {
+	private BufferedImage image;
+	
+	public BufferedImageRowSource(BufferedImage image) {
+		this.image = image;
+	}
+	
+	public BufferedImage getImage() {
+		return image;
+	}
+	
+	public int getWidth() {
+		return image.getWidth();
+	}
+	
+	public int getHeight() {
+		return image.getHeight();
+	}
+	
+	public void getRGB(int startRow, int numOfRows, int[] rgbs, int offset) {
+		IMGUtils.getRGB(image, startRow, numOfRows, rgbs, offset);
+	}
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image;
+
+import java.io.IOException;
+
+/**
+ * Thrown when an image read or write is stopped by its {@link CodecControl}
+ * because it was cancelled, its thread was interrupted or the deadline passed.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public class CodecCancelledException extends IOException {
+	private static final long serialVersionUID = -3287496731452781843L;
+
+	private final boolean deadlineExceeded;
+
+	public CodecCancelledException(String message, boolean deadlineExceeded) {
+		super(message);
+		this.deadlineExceeded = deadlineExceeded;
+	}
+
+	/**
+	 * @return true if the operation ran out of time rather than being cancelled
+	 */
+	public boolean isDeadlineExceeded() {
+		return deadlineExceeded;
+	}
+}
@@ -0,0 +1,215 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image;
+
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.icafe4j.image.util.IMGUtils;
+
+/**
+ * Scratch state of image readers and writers kept from one read or write to the next:
+ * zlib Deflaters and Inflater, a scratch buffer and gamma correction tables.
+ * <p>
+ * Readers and writers are created anew for each image, so whatever they allocate for
+ * their own use is allocated again for the next image. Allocating a Deflater or an
+ * Inflater also takes native memory which is only given back by end(), or much later
+ * by the garbage collector. A context keeps these objects for reuse instead.
+ * <p>
+ * {@link #acquire()} borrows a context from a shared pool and {@link #close()} gives it
+ * back, resetting it. A context created with the constructor belongs to the caller,
+ * who can hand it to any number of readers and writers with {@link com.icafe4j.image.reader.ImageReader#setContext(CodecContext)}
+ * and {@link com.icafe4j.image.writer.ImageWriter#setContext(CodecContext)} and must
+ * close it when done. Readers and writers without a context borrow one from the pool
+ * for each image.
+ * <p>
+ * A context is not thread safe, it serves one read or write at a time.
+ * <pre>
+ * CodecContext context = new CodecContext();
+ * try {
+ *     for(File file : files) {
+ *         PNGReader reader = new PNGReader();
+ *         reader.setContext(context);
+ *         images.add(reader.read(new FileInputStream(file)));
+ *     }
+ * } finally {
+ *     context.close();
+ * }
+ * </pre>
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public final class CodecContext implements Closeable {
+	// Contexts kept in the pool at most, others are thrown away when given back
+	private static final int MAX_POOLED = Math.max(4, Runtime.getRuntime().availableProcessors()*2);
+	// Larger scratch buffers are dropped on reset so one huge image doesn't hold on to them
+	private static final int MAX_RETAINED_BUFFER_LEN = 0x100000;
+
+	private static final Queue<CodecContext> pool = new ConcurrentLinkedQueue<CodecContext>();
+	private static final AtomicInteger pooledCount = new AtomicInteger();
+
+	private final boolean pooled;
+	private boolean closed;
+	// One Deflater for each compression level, Deflater.DEFAULT_COMPRESSION through BEST_COMPRESSION
+	private final Deflater[] deflaters = new Deflater[11];
+	private Inflater inflater;
+	private byte[] buffer;
+	// Last gamma tables with the exponents they were created for
+	private byte[] gammaTable;
+	private double gammaExponent;
+	private short[] gammaUShortTable;
+	private double gammaUShortExponent;
+
+	/**
+	 * Create a context owned by the caller, to be closed by the caller
+	 */
+	public CodecContext() {
+		this(false);
+	}
+
+	private CodecContext(boolean pooled) {
+		this.pooled = pooled;
+	}
+
+	/**
+	 * Borrow a context from the pool. Give it back with {@link #close()}.
+	 */
+	public static CodecContext acquire() {
+		CodecContext context = pool.poll();
+		if(context == null)
+			return new CodecContext(true);
+		pooledCount.decrementAndGet();
+		context.closed = false;
+
+		return context;
+	}
+
+	/**
+	 * Give a pooled context back to the pool or release the zlib objects of a context
+	 * owned by the caller. The context must not be used afterwards.
+	 */
+	public void close() {
+		if(closed) return;
+		closed = true;
+		if(pooled && pooledCount.incrementAndGet() <= MAX_POOLED) {
+			reset();
+			pool.offer(this);
+			return;
+		}
+		if(pooled) pooledCount.decrementAndGet();
+		for(int i = 0; i < deflaters.length; i++) {
+			if(deflaters[i] != null) {
+				deflaters[i].end();
+				deflaters[i] = null;
+			}
+		}
+		if(inflater != null) {
+			inflater.end();
+			inflater = null;
+		}
+		buffer = null;
+		gammaTable = null;
+		gammaUShortTable = null;
+	}
+
+	/**
+	 * Scratch buffer of at least minLength bytes. The content is undefined and the buffer
+	 * is shared by all the callers of this method on this context.
+	 */
+	public byte[] getBuffer(int minLength) {
+		if(buffer == null || buffer.length < minLength)
+			buffer = new byte[minLength];
+
+		return buffer;
+	}
+
+	/**
+	 * A Deflater for the compression level, reset and ready for new input.
+	 * The Deflater is owned by the context and must not be ended.
+	 *
+	 * @param level compression level, Deflater.DEFAULT_COMPRESSION or 0 through 9
+	 */
+	public Deflater getDeflater(int level) {
+		if(level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION)
+			throw new IllegalArgumentException("Invalid compression level: " + level);
+		Deflater deflater = deflaters[level + 1];
+		if(deflater == null)
+			deflater = deflaters[level + 1] = new Deflater(level);
+		else
+			deflater.reset();
+
+		return deflater;
+	}
+
+	/**
+	 * Gamma correction table for 8 bit samples, see {@link IMGUtils#createGammaTable(float, float)}.
+	 * The table is shared and must not be modified.
+	 */
+	public byte[] getGammaTable(float gamma, float displayExponent) {
+		double exponent = (double)gamma * (double)displayExponent;
+		if(gammaTable == null || gammaExponent != exponent) {
+			gammaTable = IMGUtils.createGammaTable(gamma, displayExponent);
+			gammaExponent = exponent;
+		}
+
+		return gammaTable;
+	}
+
+	/**
+	 * Gamma correction table for 16 bit samples, see {@link IMGUtils#createUShortGammaTable(float, float)}.
+	 * The table is shared and must not be modified.
+	 */
+	public short[] getGammaUShortTable(float gamma, float displayExponent) {
+		double exponent = (double)gamma * (double)displayExponent;
+		if(gammaUShortTable == null || gammaUShortExponent != exponent) {
+			gammaUShortTable = IMGUtils.createUShortGammaTable(gamma, displayExponent);
+			gammaUShortExponent = exponent;
+		}
+
+		return gammaUShortTable;
+	}
+
+	/**
+	 * An Inflater reset and ready for new input.
+	 * The Inflater is owned by the context and must not be ended.
+	 */
+	public Inflater getInflater() {
+		if(inflater == null)
+			inflater = new Inflater();
+		else
+			inflater.reset();
+
+		return inflater;
+	}
+
+	/**
+	 * Number of contexts waiting in the pool
+	 */
+	public static int getPoolSize() {
+		return pooledCount.get();
+	}
+
+	/**
+	 * Get the context ready for the next image. Done by {@link #close()} for pooled contexts.
+	 */
+	public void reset() {
+		for(Deflater deflater : deflaters)
+			if(deflater != null) deflater.reset();
+		if(inflater != null) inflater.reset();
+		if(buffer != null && buffer.length > MAX_RETAINED_BUFFER_LEN)
+			buffer = null;
+	}
+}
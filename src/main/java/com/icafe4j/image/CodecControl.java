@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress reporting, cancellation and deadline for a long running image read or write.
+ * <p>
+ * The control is installed on the current thread for the duration of a call by
+ * {@link ImageIO#read(java.io.InputStream, CodecControl)}, {@link ImageIO#write(java.awt.image.BufferedImage,
+ * java.io.OutputStream, ImageType, ImageParam, CodecControl)} or {@link #call(Callable)} for readers, writers
+ * and tweakers used directly. The codecs report their progress by rows, strips, tiles or frames through
+ * {@link #checkpoint(Unit, int, int)}, which throws a {@link CodecCancelledException} as soon as the
+ * control is cancelled, the deadline passes or the thread is interrupted. Buffers are dropped and
+ * cache files deleted on the way out.
+ * <p>
+ * {@link #cancel()} may be called from any thread. The listener is called on the thread doing the work.
+ * <pre>
+ * CodecControl control = new CodecControl();
+ * control.setTimeout(5, TimeUnit.SECONDS);
+ * BufferedImage image = ImageIO.read(is, control);
+ * </pre>
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public class CodecControl {
+	public enum Unit {
+		ROWS,
+		STRIPS,
+		TILES,
+		FRAMES
+	}
+
+	/**
+	 * Receives the progress of the operation. done counts the units finished so
+	 * far out of total, total is 0 if it isn't known in advance as for GIF frames.
+	 */
+	public interface ProgressListener {
+		public void progress(Unit unit, int done, int total);
+	}
+
+	// Number of controls installed on all the threads
+	private static final AtomicInteger active = new AtomicInteger();
+	private static final ThreadLocal<CodecControl> current = new ThreadLocal<CodecControl>();
+
+	private volatile boolean cancelled;
+	// System.nanoTime() based, only meaningful if hasDeadline is set
+	private volatile long deadline;
+	private volatile boolean hasDeadline;
+	private volatile ProgressListener listener;
+
+	/**
+	 * Check on the control installed on the current thread, if any, and report the progress.
+	 *
+	 * @param unit what is being counted
+	 * @param done number of units finished
+	 * @param total total number of units or 0 if unknown
+	 * @throws CodecCancelledException if the operation should stop
+	 */
+	public static void checkpoint(Unit unit, int done, int total) throws CodecCancelledException {
+		if(active.get() == 0) return;
+		CodecControl control = current.get();
+		if(control != null) control.check(unit, done, total);
+	}
+
+	// The control installed on the current thread or null
+	static CodecControl current() {
+		return current.get();
+	}
+
+	/**
+	 * Run the task with this control installed on the current thread
+	 */
+	public <T> T call(Callable<T> task) throws Exception {
+		CodecControl previous = current.get();
+		current.set(this);
+		active.incrementAndGet();
+		try {
+			// Don't start at all if we are already too late
+			check();
+			return task.call();
+		} finally {
+			active.decrementAndGet();
+			if(previous == null)
+				current.remove();
+			else
+				current.set(previous);
+		}
+	}
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Throw a CodecCancelledException if the operation should stop
+	 */
+	public void check() throws CodecCancelledException {
+		if(cancelled)
+			throw new CodecCancelledException("Cancelled", false);
+		if(Thread.currentThread().isInterrupted())
+			throw new CodecCancelledException("Interrupted", false);
+		if(hasDeadline && System.nanoTime() - deadline > 0)
+			throw new CodecCancelledException("Deadline exceeded", true);
+	}
+
+	private void check(Unit unit, int done, int total) throws CodecCancelledException {
+		check();
+		ProgressListener listener = this.listener;
+		if(listener != null) listener.progress(unit, done, total);
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	public void setProgressListener(ProgressListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Set the deadline relative to now
+	 */
+	public void setTimeout(long timeout, TimeUnit unit) {
+		this.deadline = System.nanoTime() + unit.toNanos(timeout);
+		this.hasDeadline = true;
+	}
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control for image decodes against a budget of memory shared by all the
+ * decodes running at the same time.
+ * <p>
+ * Each decode asks for its estimated peak heap, see {@link DecodeEstimator}, before
+ * it starts and gives it back when it is done. A decode which doesn't fit in what is
+ * left of the budget either waits for other decodes to finish or is turned away with
+ * a {@link DecodeRejectedException}, depending on the policy. A decode larger than the
+ * whole budget, typically a decompression bomb, is always turned away.
+ * <p>
+ * Once installed with {@link #setGlobal(DecodeAdmission)}, every {@link ImageIO#read(java.io.InputStream)}
+ * goes through the global controller. Readers used directly can call {@link #acquire(long)}
+ * and {@link #release(long)} themselves. This class is thread safe.
+ * <pre>
+ * DecodeAdmission.setGlobal(new DecodeAdmission(512L*1024*1024, 10, TimeUnit.SECONDS));
+ * </pre>
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public class DecodeAdmission {
+	public enum Policy {
+		BLOCK, // Wait for room in the budget, up to the maximum wait if any
+		REJECT // Turn the decode away at once
+	}
+
+	private static volatile DecodeAdmission global;
+
+	private final long budgetBytes;
+	private final Policy policy;
+	// Only for the BLOCK policy, negative to wait as long as it takes
+	private final long maxWaitNanos;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition released = lock.newCondition();
+	// Guarded by lock
+	private long bytesInUse;
+
+	private final AtomicLong admittedCount = new AtomicLong();
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	/**
+	 * @param budgetBytes total estimated peak heap of the decodes running at the same time
+	 * @param policy BLOCK to wait as long as it takes, REJECT to turn the decode away at once
+	 */
+	public DecodeAdmission(long budgetBytes, Policy policy) {
+		this(budgetBytes, policy, -1);
+	}
+
+	/**
+	 * Wait for room in the budget up to maxWait, then turn the decode away
+	 *
+	 * @param budgetBytes total estimated peak heap of the decodes running at the same time
+	 */
+	public DecodeAdmission(long budgetBytes, long maxWait, TimeUnit unit) {
+		this(budgetBytes, Policy.BLOCK, unit.toNanos(maxWait));
+	}
+
+	private DecodeAdmission(long budgetBytes, Policy policy, long maxWaitNanos) {
+		if(budgetBytes <= 0)
+			throw new IllegalArgumentException("Invalid budget: " + budgetBytes);
+		this.budgetBytes = budgetBytes;
+		this.policy = policy;
+		this.maxWaitNanos = maxWaitNanos;
+	}
+
+	/**
+	 * @return the controller ImageIO.read() goes through or null if there is none
+	 */
+	public static DecodeAdmission getGlobal() {
+		return global;
+	}
+
+	/**
+	 * Install the controller for ImageIO.read(), null to remove it
+	 */
+	public static void setGlobal(DecodeAdmission admission) {
+		global = admission;
+	}
+
+	/**
+	 * Take bytes out of the budget, waiting for them if the policy says so.
+	 * Each successful acquire must be followed by a {@link #release(long)} of the same bytes.
+	 *
+	 * @param bytes estimated peak heap of the decode
+	 * @throws DecodeRejectedException if the decode doesn't fit in the budget
+	 * @throws CodecCancelledException if the thread is interrupted while waiting
+	 */
+	public void acquire(long bytes) throws DecodeRejectedException, CodecCancelledException {
+		if(bytes > budgetBytes) {
+			rejectedCount.incrementAndGet();
+			throw new DecodeRejectedException("Decode needs " + bytes + " bytes, more than the budget of " + budgetBytes, bytes);
+		}
+		lock.lock();
+		try {
+			long nanos = maxWaitNanos;
+			while(bytesInUse + bytes > budgetBytes) {
+				if(policy == Policy.REJECT || (maxWaitNanos >= 0 && nanos <= 0)) {
+					rejectedCount.incrementAndGet();
+					throw new DecodeRejectedException("Decode needs " + bytes + " bytes, " + (budgetBytes - bytesInUse)
+							+ " bytes left of the budget", bytes);
+				}
+				try {
+					if(maxWaitNanos < 0)
+						released.await();
+					else
+						nanos = released.awaitNanos(nanos);
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new CodecCancelledException("Interrupted", false);
+				}
+			}
+			bytesInUse += bytes;
+		} finally {
+			lock.unlock();
+		}
+		admittedCount.incrementAndGet();
+	}
+
+	/**
+	 * Take the estimated peak heap of the decode out of the budget
+	 *
+	 * @see #acquire(long)
+	 */
+	public void acquire(DecodeEstimate estimate) throws DecodeRejectedException, CodecCancelledException {
+		acquire(estimate.getPeakHeapBytes());
+	}
+
+	public long getAdmittedCount() {
+		return admittedCount.get();
+	}
+
+	public long getBudgetBytes() {
+		return budgetBytes;
+	}
+
+	/**
+	 * Bytes of the budget taken by the decodes running now
+	 */
+	public long getBytesInUse() {
+		lock.lock();
+		try {
+			return bytesInUse;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public Policy getPolicy() {
+		return policy;
+	}
+
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	/**
+	 * Give back bytes taken by {@link #acquire(long)}
+	 */
+	public void release(long bytes) {
+		lock.lock();
+		try {
+			bytesInUse -= bytes;
+			released.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "DecodeAdmission[" + policy + ", bytes=" + getBytesInUse() + "/" + budgetBytes + ", admitted="
+				+ getAdmittedCount() + ", rejected=" + getRejectedCount() + "]";
+	}
+}
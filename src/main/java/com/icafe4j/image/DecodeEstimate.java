@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image;
+
+/**
+ * Resources a decode is expected to take at its peak, worked out by {@link DecodeEstimator}
+ * from the image header without decoding the image.
+ * <p>
+ * The numbers are upper bounds rather than exact figures: they count every buffer the
+ * reader holds at the same time, compressed data, decompressed bytes, the raster and
+ * any conversion of it, plus the decoded images kept until the read returns.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public final class DecodeEstimate {
+	private final ImageType imageType;
+	private final int width;
+	private final int height;
+	private final int numOfFrames;
+	private final long peakHeapBytes;
+	private final long tempDiskBytes;
+
+	public DecodeEstimate(ImageType imageType, int width, int height, int numOfFrames, long peakHeapBytes, long tempDiskBytes) {
+		this.imageType = imageType;
+		this.width = width;
+		this.height = height;
+		this.numOfFrames = numOfFrames;
+		this.peakHeapBytes = peakHeapBytes;
+		this.tempDiskBytes = tempDiskBytes;
+	}
+
+	/**
+	 * Height of the image or the first page or the logical screen height for GIF
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	public ImageType getImageType() {
+		return imageType;
+	}
+
+	/**
+	 * Number of frames or pages the reader decodes
+	 */
+	public int getNumOfFrames() {
+		return numOfFrames;
+	}
+
+	/**
+	 * Java heap taken by the decode at its peak, including the decoded images
+	 */
+	public long getPeakHeapBytes() {
+		return peakHeapBytes;
+	}
+
+	/**
+	 * Temporary disk space taken by cache and scratch files during the decode
+	 */
+	public long getTempDiskBytes() {
+		return tempDiskBytes;
+	}
+
+	/**
+	 * Width of the image or the first page or the logical screen width for GIF
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public String toString() {
+		return "DecodeEstimate[" + imageType + " " + width + "x" + height + ", frames=" + numOfFrames
+				+ ", heap=" + peakHeapBytes + ", disk=" + tempDiskBytes + "]";
+	}
+}
@@ -0,0 +1,405 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.icafe4j.image.png.ChunkType;
+import com.icafe4j.image.tiff.IFD;
+import com.icafe4j.image.tiff.TIFFTweaker;
+import com.icafe4j.image.tiff.TiffField;
+import com.icafe4j.image.tiff.TiffFieldEnum;
+import com.icafe4j.image.tiff.TiffTag;
+import com.icafe4j.image.util.IMGUtils;
+import com.icafe4j.io.ByteArrayRandomAccessInputStream;
+import com.icafe4j.io.IOUtils;
+import com.icafe4j.io.MemoryCacheRandomAccessInputStream;
+import com.icafe4j.io.RandomAccessInputStream;
+import com.icafe4j.io.ReadStrategyII;
+import com.icafe4j.io.ReadStrategyMM;
+
+/**
+ * Estimates the heap and temporary disk space an image decode takes at its peak from
+ * the image header alone, so a decompression bomb or a burst of big images can be turned
+ * away before any memory is allocated for them.
+ * <p>
+ * Only the headers and the chunk, IFD or block structure are read, nothing is decompressed.
+ * PNG chunks and GIF blocks are skipped over to find the size of the compressed data and
+ * the number of frames. The estimates follow what the readers in this package hold at
+ * the same time:
+ * <ul>
+ * <li>PNGReader collects the compressed data, inflates it as a whole and builds the raster
+ * <li>TIFFReader caches the input stream on disk and decodes all the pages
+ * <li>GIFReader keeps every frame as an ARGB image of the logical screen size
+ * </ul>
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public final class DecodeEstimator {
+	// Bytes per pixel of the images GIFReader returns and TiledImage stores
+	private static final int ARGB_BYTES = 4;
+
+	/**
+	 * @param file the image file
+	 * @return the estimate or null if the image type is not supported
+	 * @throws IOException if the header is broken
+	 */
+	public static DecodeEstimate estimate(File file) throws IOException {
+		RandomAccessInputStream is = null;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long length = channel.size();
+			// Map the file rather than copy it, only the pages holding the header structure are read
+			if(length <= Integer.MAX_VALUE)
+				is = new ByteArrayRandomAccessInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, length));
+			else
+				is = new MemoryCacheRandomAccessInputStream(new FileInputStream(file));
+		} finally {
+			// The mapping stays valid after the file is closed
+			raf.close();
+		}
+		try {
+			return estimate(is);
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * Estimate the resources {@link ImageIO#read(java.io.InputStream)} takes for the image.
+	 * The stream is expected at the start of the image and is put back there.
+	 *
+	 * @param is RandomAccessInputStream for the image
+	 * @return the estimate or null if the image type is not supported
+	 * @throws IOException if the header is broken
+	 */
+	public static DecodeEstimate estimate(RandomAccessInputStream is) throws IOException {
+		return estimate(is, false, 0, 0, 0);
+	}
+
+	/**
+	 * Estimate the resources PNGReader or TIFFReader readTiled() takes for the image with the given
+	 * options. The stream is expected at the start of the image and is put back there.
+	 *
+	 * @param is RandomAccessInputStream for the image
+	 * @param pageIndex zero based index of the TIFF page, ignored for PNG
+	 * @param tileSize tile size of the TiledImage
+	 * @param maxCacheBytes memory for the tiles of the TiledImage kept in memory
+	 * @return the estimate or null if the image type is not supported
+	 * @throws IOException if the header is broken
+	 * @throws IllegalArgumentException if the image is neither PNG nor TIFF
+	 */
+	public static DecodeEstimate estimateTiled(RandomAccessInputStream is, int pageIndex, int tileSize, long maxCacheBytes) throws IOException {
+		return estimate(is, true, pageIndex, tileSize, maxCacheBytes);
+	}
+
+	private static DecodeEstimate estimate(RandomAccessInputStream is, boolean tiled, int pageIndex, int tileSize, long maxCacheBytes) throws IOException {
+		ImageType imageType = IMGUtils.guessImageType(is);
+		if(tiled && imageType != ImageType.PNG && imageType != ImageType.TIFF)
+			throw new IllegalArgumentException("Tiled decoding is not supported for " + imageType);
+		long streamPointer = is.getStreamPointer();
+		short endian = is.getEndian();
+		try {
+			switch(imageType) {
+				case PNG:
+					return estimatePNG(is, tiled, tileSize, maxCacheBytes);
+				case TIFF:
+					return estimateTIFF(is, tiled, pageIndex, tileSize, maxCacheBytes);
+				case GIF:
+					return estimateGIF(is);
+				case JPG:
+					return estimateJPG(is);
+				case BMP:
+					return estimateBMP(is);
+				case TGA:
+					return estimateTGA(is);
+				case PCX:
+					return estimatePCX(is);
+				default:
+					return null;
+			}
+		} finally {
+			is.seek(streamPointer);
+			if(endian == IOUtils.BIG_ENDIAN)
+				is.setReadStrategy(ReadStrategyMM.getInstance());
+			else
+				is.setReadStrategy(ReadStrategyII.getInstance());
+		}
+	}
+
+	private static DecodeEstimate estimateBMP(RandomAccessInputStream is) throws IOException {
+		is.skipBytes(18); // Signature, file size, reserved bytes, data offset and info header size
+		int width = IOUtils.readInt(is);
+		int height = Math.abs(IOUtils.readInt(is));
+		is.skipBytes(2); // Planes
+		int bitsPerPixel = IOUtils.readUnsignedShort(is);
+		checkDimension(width, height);
+		// Scan lines are padded to 4 bytes
+		long rawBytes = (((long)width*bitsPerPixel + 31)/32*4)*height;
+		int rasterBytesPerPixel = (bitsPerPixel <= 8)? 1 : (bitsPerPixel == 24)? 3 : 4;
+
+		return new DecodeEstimate(ImageType.BMP, width, height, 1, rawBytes + (long)width*height*rasterBytesPerPixel, 0);
+	}
+
+	private static DecodeEstimate estimateGIF(RandomAccessInputStream is) throws IOException {
+		is.skipBytes(6); // Signature and version
+		int screenWidth = IOUtils.readUnsignedShort(is);
+		int screenHeight = IOUtils.readUnsignedShort(is);
+		int flags = is.readUnsignedByte();
+		is.skipBytes(2); // Background color index and aspect ratio
+		if((flags&0x80) != 0)
+			is.skipBytes(3*(1<<((flags&0x07) + 1)));
+		int frames = 0;
+		long maxFrameBytes = 0;
+		int maxWidth = screenWidth;
+		int maxHeight = screenHeight;
+		loop:
+		while(true) {
+			switch(is.read()) {
+				case 0x2c: // Image descriptor
+					is.skipBytes(4); // Left and top position
+					int frameWidth = IOUtils.readUnsignedShort(is);
+					int frameHeight = IOUtils.readUnsignedShort(is);
+					flags = is.readUnsignedByte();
+					if((flags&0x80) != 0)
+						is.skipBytes(3*(1<<((flags&0x07) + 1)));
+					is.skipBytes(1); // LZW minimum code size
+					skipSubBlocks(is);
+					frames++;
+					maxFrameBytes = Math.max(maxFrameBytes, (long)frameWidth*frameHeight);
+					maxWidth = Math.max(maxWidth, frameWidth);
+					maxHeight = Math.max(maxHeight, frameHeight);
+					break;
+				case 0x21: // Extension
+					is.skipBytes(1); // Label
+					skipSubBlocks(is);
+					break;
+				default: // Trailer or end of a truncated stream
+					break loop;
+			}
+		}
+		checkDimension(maxWidth, maxHeight);
+		// Every frame is kept as a logical screen sized ARGB image, plus the base image, the backup
+		// for restoring the previous frame and the frame being drawn, plus its color indices
+		long screenBytes = (long)maxWidth*maxHeight*ARGB_BYTES;
+
+		return new DecodeEstimate(ImageType.GIF, screenWidth, screenHeight, frames, (frames + 3)*screenBytes + maxFrameBytes, 0);
+	}
+
+	private static DecodeEstimate estimateJPG(RandomAccessInputStream is) throws IOException {
+		is.skipBytes(2); // SOI
+		while(true) {
+			int marker = is.read();
+			if(marker == -1)
+				throw new IOException("No start of frame found");
+			if(marker != 0xff) continue;
+			marker = is.read();
+			// Fill bytes, stand alone markers
+			if(marker == 0xff || marker == 0x01 || marker == 0x00 || (marker >= 0xd0 && marker <= 0xd7)) continue;
+			int length = IOUtils.readUnsignedShortMM(is);
+			// SOF0 to SOF15 except DHT, JPG and DAC
+			if(marker >= 0xc0 && marker <= 0xcf && marker != 0xc4 && marker != 0xc8 && marker != 0xcc) {
+				is.skipBytes(1); // Sample precision
+				int height = IOUtils.readUnsignedShortMM(is);
+				int width = IOUtils.readUnsignedShortMM(is);
+				int numOfComponents = is.readUnsignedByte();
+				checkDimension(width, height);
+				long rasterBytes = (long)width*height*numOfComponents;
+				// The reader may convert the decoded raster into another one of the same size. Progressive
+				// images keep all the DCT coefficients, 2 bytes a sample, until the last scan on top of that
+				boolean progressive = (marker == 0xc2 || marker == 0xc6 || marker == 0xca || marker == 0xce);
+
+				return new DecodeEstimate(ImageType.JPG, width, height, 1, progressive? 4*rasterBytes : 2*rasterBytes, 0);
+			}
+			if(marker == 0xda || marker == 0xd9)
+				throw new IOException("No start of frame found");
+			is.seek(is.getStreamPointer() + length - 2);
+		}
+	}
+
+	private static DecodeEstimate estimatePCX(RandomAccessInputStream is) throws IOException {
+		is.skipBytes(3); // Manufacturer, version and encoding
+		int bitsPerPixel = is.readUnsignedByte();
+		int xMin = IOUtils.readUnsignedShort(is);
+		int yMin = IOUtils.readUnsignedShort(is);
+		int xMax = IOUtils.readUnsignedShort(is);
+		int yMax = IOUtils.readUnsignedShort(is);
+		is.skipBytes(53); // Resolution, EGA palette and reserved byte
+		int numOfPlanes = is.readUnsignedByte();
+		int bytesPerLine = IOUtils.readUnsignedShort(is);
+		int width = xMax - xMin + 1;
+		int height = yMax - yMin + 1;
+		checkDimension(width, height);
+		long rawBytes = (long)numOfPlanes*bytesPerLine*height;
+		int rasterBytesPerPixel = (numOfPlanes*bitsPerPixel <= 8)? 1 : numOfPlanes;
+
+		return new DecodeEstimate(ImageType.PCX, width, height, 1, rawBytes + (long)width*height*rasterBytesPerPixel, 0);
+	}
+
+	private static DecodeEstimate estimatePNG(RandomAccessInputStream is, boolean tiled, int tileSize, long maxCacheBytes) throws IOException {
+		is.skipBytes(8); // Signature
+		int width = 0, height = 0, bitDepth = 0, colorType = 0, interlace = 0;
+		boolean hasTRNS = false;
+		long comprBytes = 0;
+		while(true) {
+			int length = IOUtils.readIntMM(is);
+			int type = IOUtils.readIntMM(is);
+			if(length < 0)
+				throw new IOException("Invalid PNG chunk length: " + length);
+			long next = is.getStreamPointer() + length + 4; // Skip CRC as well
+			if(type == ChunkType.IHDR.getValue()) {
+				width = IOUtils.readIntMM(is);
+				height = IOUtils.readIntMM(is);
+				bitDepth = is.readUnsignedByte();
+				colorType = is.readUnsignedByte();
+				is.skipBytes(2); // Compression and filter method
+				interlace = is.readUnsignedByte();
+			} else if(type == ChunkType.IDAT.getValue()) {
+				comprBytes += length;
+			} else if(type == ChunkType.TRNS.getValue()) {
+				hasTRNS = true;
+			} else if(type == ChunkType.IEND.getValue()) {
+				break;
+			}
+			is.seek(next);
+		}
+		checkDimension(width, height);
+		int samples = 1; // Gray scale or palette
+		if(colorType == 2) samples = 3;
+		else if(colorType == 4) samples = 2;
+		else if(colorType == 6) samples = 4;
+		long bytesPerScanLine = ((long)width*samples*bitDepth + 7)/8;
+		// One filter type byte in front of every scan line
+		long inflatedBytes = (bytesPerScanLine + 1)*height;
+		// Transparent color turns RGB and gray scale images into images with alpha
+		int rasterSamples = samples;
+		if(hasTRNS && (colorType == 0 || colorType == 2)) rasterSamples++;
+		long rasterBytes = (bitDepth < 8)? inflatedBytes : (long)width*height*rasterSamples*(bitDepth/8);
+		if(tiled && interlace == 0) {
+			// One row of tiles is inflated and decoded at a time, the tiles go to the scratch file
+			long bandRows = Math.min(height, tileSize);
+			long bandBytes = bandRows*((bytesPerScanLine + 1) + (long)width*(rasterSamples*Math.max(1, bitDepth/8) + ARGB_BYTES));
+			return new DecodeEstimate(ImageType.PNG, width, height, 1, bandBytes + maxCacheBytes, (long)width*height*ARGB_BYTES);
+		}
+		// The compressed data is copied out of the buffer it is collected in
+		long peakHeapBytes = 2*comprBytes + inflatedBytes + rasterBytes;
+		if(tiled) // Interlaced images are decoded at once and copied over
+			return new DecodeEstimate(ImageType.PNG, width, height, 1, peakHeapBytes + maxCacheBytes, (long)width*height*ARGB_BYTES);
+
+		return new DecodeEstimate(ImageType.PNG, width, height, 1, peakHeapBytes, 0);
+	}
+
+	private static DecodeEstimate estimateTGA(RandomAccessInputStream is) throws IOException {
+		is.skipBytes(12); // Id length, color map type, image type, color map spec and origin
+		int width = IOUtils.readUnsignedShort(is);
+		int height = IOUtils.readUnsignedShort(is);
+		int bitsPerPixel = is.readUnsignedByte();
+		checkDimension(width, height);
+		// 15 and 16 bit pixels are expanded to 24 bit
+		int rasterBytesPerPixel = (bitsPerPixel <= 8)? 1 : (bitsPerPixel == 32)? 4 : 3;
+
+		return new DecodeEstimate(ImageType.TGA, width, height, 1, (long)width*height*rasterBytesPerPixel, 0);
+	}
+
+	private static DecodeEstimate estimateTIFF(RandomAccessInputStream is, boolean tiled, int pageIndex, int tileSize, long maxCacheBytes) throws IOException {
+		List<IFD> list = new ArrayList<IFD>();
+		TIFFTweaker.readIFDs(list, is);
+		if(list.isEmpty())
+			throw new IOException("No TIFF page found");
+		if(pageIndex < 0 || pageIndex >= list.size())
+			throw new IllegalArgumentException("Invalid page index: " + pageIndex);
+		// The reader works on a cache file of the stream up to the end of the last strip or tile
+		long streamBytes = is.getStreamPointer();
+		long rasterTotal = 0;
+		long maxWorkingBytes = 0;
+		for(IFD ifd : list) {
+			int[] offsets = getData(ifd, TiffTag.TILE_OFFSETS, TiffTag.STRIP_OFFSETS);
+			int[] byteCounts = getData(ifd, TiffTag.TILE_BYTE_COUNTS, TiffTag.STRIP_BYTE_COUNTS);
+			long maxChunk = 0;
+			if(offsets != null && byteCounts != null) {
+				for(int i = 0; i < Math.min(offsets.length, byteCounts.length); i++) {
+					streamBytes = Math.max(streamBytes, (offsets[i]&0xffffffffL) + (byteCounts[i]&0xffffffffL));
+					maxChunk = Math.max(maxChunk, byteCounts[i]&0xffffffffL);
+				}
+			}
+			long rasterBytes = getRasterBytes(ifd);
+			rasterTotal += rasterBytes;
+			// The uncompressed page, one compressed chunk and its decompressed copy
+			maxWorkingBytes = Math.max(maxWorkingBytes, rasterBytes + 2*maxChunk);
+		}
+		IFD page = list.get(tiled? pageIndex : 0);
+		int width = page.getField(TiffTag.IMAGE_WIDTH).getDataAsLong()[0];
+		int height = page.getField(TiffTag.IMAGE_LENGTH).getDataAsLong()[0];
+		if(tiled) {
+			// One band of strips or tiles is decoded at a time, at least the default band width
+			long pageBytes = getRasterBytes(page);
+			long bandBytes = pageBytes/Math.max(1, height)*Math.min(height, tileSize)*2;
+			long scratchBytes = (long)width*height*ARGB_BYTES;
+			return new DecodeEstimate(ImageType.TIFF, width, height, 1, bandBytes + maxCacheBytes, scratchBytes);
+		}
+
+		return new DecodeEstimate(ImageType.TIFF, width, height, list.size(), rasterTotal + maxWorkingBytes, streamBytes);
+	}
+
+	// Bytes of the raster a TIFF page decodes into
+	private static long getRasterBytes(IFD ifd) throws IOException {
+		int width = ifd.getField(TiffTag.IMAGE_WIDTH).getDataAsLong()[0];
+		int height = ifd.getField(TiffTag.IMAGE_LENGTH).getDataAsLong()[0];
+		checkDimension(width, height);
+		int bitsPerSample = 1;
+		TiffField<?> field = ifd.getField(TiffTag.BITS_PER_SAMPLE);
+		if(field != null) bitsPerSample = field.getDataAsLong()[0];
+		int samplesPerPixel = 1;
+		field = ifd.getField(TiffTag.SAMPLES_PER_PIXEL);
+		if(field != null) samplesPerPixel = field.getDataAsLong()[0];
+		TiffFieldEnum.PhotoMetric photoMetric = TiffFieldEnum.PhotoMetric.UNKNOWN;
+		field = ifd.getField(TiffTag.PHOTOMETRIC_INTERPRETATION);
+		if(field != null) photoMetric = TiffFieldEnum.PhotoMetric.fromValue(field.getDataAsLong()[0]);
+		if(bitsPerSample < 8)
+			return ((long)width*samplesPerPixel*bitsPerSample + 7)/8*height;
+		long rasterBytes = (long)width*height*samplesPerPixel*(bitsPerSample/8);
+		// CMYK and YCbCr are converted to RGB
+		if(photoMetric == TiffFieldEnum.PhotoMetric.SEPARATED || photoMetric == TiffFieldEnum.PhotoMetric.YCbCr)
+			rasterBytes += (long)width*height*3;
+
+		return rasterBytes;
+	}
+
+	private static int[] getData(IFD ifd, TiffTag tiledTag, TiffTag strippedTag) {
+		TiffField<?> field = ifd.getField(tiledTag);
+		if(field == null) field = ifd.getField(strippedTag);
+
+		return (field == null)? null : field.getDataAsLong();
+	}
+
+	private static void checkDimension(int width, int height) throws IOException {
+		if(width <= 0 || height <= 0)
+			throw new IOException("Invalid image dimension: " + width + "x" + height);
+	}
+
+	private static void skipSubBlocks(RandomAccessInputStream is) throws IOException {
+		int size = 0;
+		while((size = is.read()) > 0)
+			is.seek(is.getStreamPointer() + size);
+		if(size < 0)
+			throw new IOException("Unexpected end of GIF data blocks");
+	}
+
+	private DecodeEstimator() {}
+}
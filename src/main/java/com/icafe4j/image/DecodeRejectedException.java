@@ -0,0 +1,38 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image;
+
+import java.io.IOException;
+
+/**
+ * Thrown when {@link DecodeAdmission} turns a decode away because it would
+ * go over the memory budget.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public class DecodeRejectedException extends IOException {
+	private static final long serialVersionUID = 6040245367352846613L;
+
+	private final long requestedBytes;
+
+	public DecodeRejectedException(String message, long requestedBytes) {
+		super(message);
+		this.requestedBytes = requestedBytes;
+	}
+
+	/**
+	 * @return the estimated peak heap of the rejected decode
+	 */
+	public long getRequestedBytes() {
+		return requestedBytes;
+	}
+}
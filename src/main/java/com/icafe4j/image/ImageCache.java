@@ -0,0 +1,413 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrent cache of decoded images bounded by the total size of their pixel data.
+ * <p>
+ * Images are keyed by {@link Key}, the identity of the source, either its content digest
+ * or the file path, length and modification time, plus the decode options. Lookups go
+ * to a ConcurrentHashMap and never block. The eviction order is kept by a segmented LRU
+ * policy: a new image enters the probation segment and moves to the protected segment
+ * on its second hit, so a burst of one-off requests can't flush the images which are
+ * asked for again and again. Hits are recorded only when the policy lock is free, the
+ * order is approximate under heavy contention but readers never wait for each other.
+ * <p>
+ * {@link #get(Key, Callable)} loads a missing image once no matter how many threads ask
+ * for it at the same time, the other threads wait for the result. A failed load is not
+ * cached. An image larger than the whole budget is returned but not kept.
+ * <p>
+ * The cached BufferedImages are shared and must not be modified. This class is thread safe.
+ * <pre>
+ * ImageCache cache = new ImageCache(512L*1024*1024);
+ * final File file = new File(path);
+ * BufferedImage image = cache.get(ImageCache.Key.forFile(file, null), new Callable&lt;BufferedImage&gt;() {
+ *     public BufferedImage call() throws Exception {
+ *         return ImageIO.read(file);
+ *     }
+ * });
+ * </pre>
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public class ImageCache {
+	// Share of the budget for the protected segment
+	private static final double PROTECTED_RATIO = 0.8;
+
+	private final long maxBytes;
+	private final long maxProtectedBytes;
+	private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+	private final ConcurrentMap<Key, FutureTask<BufferedImage>> loads = new ConcurrentHashMap<Key, FutureTask<BufferedImage>>();
+	// Eviction order, the eldest entry comes first. Guarded by lock
+	private final LinkedHashMap<Key, Entry> probation = new LinkedHashMap<Key, Entry>();
+	private final LinkedHashMap<Key, Entry> protectedSegment = new LinkedHashMap<Key, Entry>();
+	private final ReentrantLock lock = new ReentrantLock();
+	// Guarded by lock
+	private long probationBytes;
+	private long protectedBytes;
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	private static final class Entry {
+		private final Key key;
+		private final BufferedImage image;
+		private final long weight;
+		// Guarded by lock
+		private boolean isProtected;
+		private boolean removed;
+
+		private Entry(Key key, BufferedImage image, long weight) {
+			this.key = key;
+			this.image = image;
+			this.weight = weight;
+		}
+	}
+
+	/**
+	 * Identifies a decoded image: the source of the image and the options it was decoded with.
+	 * The options object must implement equals() and hashCode(), a String or an enum will do.
+	 */
+	public static final class Key {
+		private final String source;
+		private final Object options;
+
+		public Key(String source, Object options) {
+			if(source == null)
+				throw new IllegalArgumentException("Source is null");
+			this.source = source;
+			this.options = options;
+		}
+
+		/**
+		 * Key by the content of the image, an SHA-1 digest of the data
+		 */
+		public static Key forContent(byte[] data, Object options) {
+			MessageDigest digest = sha1();
+			digest.update(data);
+
+			return new Key("sha1:" + toHex(digest.digest()), options);
+		}
+
+		/**
+		 * Key by the content of the image read from the InputStream. The stream is read to the end but not closed.
+		 */
+		public static Key forContent(InputStream is, Object options) throws IOException {
+			MessageDigest digest = sha1();
+			byte[] buf = new byte[8192];
+			int bytesRead = 0;
+			while((bytesRead = is.read(buf)) != -1)
+				digest.update(buf, 0, bytesRead);
+
+			return new Key("sha1:" + toHex(digest.digest()), options);
+		}
+
+		/**
+		 * Key by the identity of the file: the canonical path, length and modification time.
+		 * A file changed in place gets a new key.
+		 */
+		public static Key forFile(File file, Object options) throws IOException {
+			return new Key("file:" + file.getCanonicalPath() + ":" + file.length() + ":" + file.lastModified(), options);
+		}
+
+		private static String toHex(byte[] digest) {
+			StringBuilder hex = new StringBuilder(digest.length*2);
+			for(byte b : digest)
+				hex.append(Character.forDigit((b>>4)&0x0f, 16)).append(Character.forDigit(b&0x0f, 16));
+
+			return hex.toString();
+		}
+
+		private static MessageDigest sha1() {
+			try {
+				return MessageDigest.getInstance("SHA-1");
+			} catch (NoSuchAlgorithmException e) {
+				throw new RuntimeException("SHA-1 not available", e);
+			}
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) return true;
+			if(!(obj instanceof Key)) return false;
+			Key other = (Key)obj;
+
+			return source.equals(other.source) && (options == null ? other.options == null : options.equals(other.options));
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * source.hashCode() + (options == null ? 0 : options.hashCode());
+		}
+
+		@Override
+		public String toString() {
+			return source + (options == null ? "" : " " + options);
+		}
+	}
+
+	/**
+	 * @param maxBytes maximum total size of the pixel data of the cached images
+	 */
+	public ImageCache(long maxBytes) {
+		if(maxBytes <= 0)
+			throw new IllegalArgumentException("Invalid cache size: " + maxBytes);
+		this.maxBytes = maxBytes;
+		this.maxProtectedBytes = (long)(maxBytes * PROTECTED_RATIO);
+	}
+
+	/**
+	 * Size of the pixel data of the image in bytes
+	 */
+	public static long weigh(BufferedImage image) {
+		DataBuffer dataBuffer = image.getRaster().getDataBuffer();
+
+		return (long)dataBuffer.getSize() * dataBuffer.getNumBanks() * DataBuffer.getDataTypeSize(dataBuffer.getDataType()) / 8;
+	}
+
+	public void clear() {
+		lock.lock();
+		try {
+			for(Entry entry : probation.values()) entry.removed = true;
+			for(Entry entry : protectedSegment.values()) entry.removed = true;
+			probation.clear();
+			protectedSegment.clear();
+			probationBytes = protectedBytes = 0;
+			entries.clear();
+			// Loads in flight would put back images from before the clear
+			loads.clear();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the cached image or null if it is not in the cache
+	 */
+	public BufferedImage get(Key key) {
+		Entry entry = entries.get(key);
+		if(entry == null) {
+			missCount.incrementAndGet();
+			return null;
+		}
+		hitCount.incrementAndGet();
+		// Skip the bookkeeping rather than wait for another thread
+		if(lock.tryLock()) {
+			try {
+				recordHit(entry);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		return entry.image;
+	}
+
+	/**
+	 * Return the cached image or load it. Concurrent calls for the same key share a single load.
+	 *
+	 * @param key identity of the image
+	 * @param loader decodes the image, called on the current thread
+	 * @return the cached or loaded image
+	 * @throws Exception whatever the loader throws
+	 */
+	public BufferedImage get(Key key, Callable<BufferedImage> loader) throws Exception {
+		BufferedImage image = get(key);
+		if(image != null) return image;
+		FutureTask<BufferedImage> load = new FutureTask<BufferedImage>(loader);
+		FutureTask<BufferedImage> inFlight = loads.putIfAbsent(key, load);
+		if(inFlight == null) {
+			try {
+				// Another thread may have put the image in between
+				Entry entry = entries.get(key);
+				if(entry != null) return entry.image;
+				load.run();
+				image = waitFor(load);
+				if(image != null) put(key, image, load);
+				return image;
+			} finally {
+				loads.remove(key, load);
+			}
+		}
+
+		return waitFor(inFlight);
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * Total size of the pixel data of the cached images
+	 */
+	public long getSize() {
+		lock.lock();
+		try {
+			return probationBytes + protectedBytes;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Put an image into the cache, replacing the image with the same key. A load of
+	 * the key in flight is not cached. An image larger than the whole budget is not cached.
+	 */
+	public void put(Key key, BufferedImage image) {
+		if(key == null || image == null)
+			throw new IllegalArgumentException("Key or image is null");
+		put(key, image, null);
+	}
+
+	/**
+	 * Remove the image from the cache. A load of the image in flight is not cached
+	 * when it completes, the threads waiting for it still get its image.
+	 */
+	public void remove(Key key) {
+		lock.lock();
+		try {
+			Entry entry = entries.remove(key);
+			if(entry != null) unlink(entry);
+			loads.remove(key);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	@Override
+	public String toString() {
+		return "ImageCache[images=" + size() + ", bytes=" + getSize() + "/" + maxBytes + ", hits=" + getHitCount()
+				+ ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+	}
+
+	// Drop the eldest probation entries, then the eldest protected ones, until we are within budget
+	private void evict() {
+		while(probationBytes + protectedBytes > maxBytes) {
+			Map<Key, Entry> segment = probation.isEmpty() ? protectedSegment : probation;
+			Iterator<Entry> iter = segment.values().iterator();
+			Entry victim = iter.next();
+			iter.remove();
+			victim.removed = true;
+			if(victim.isProtected)
+				protectedBytes -= victim.weight;
+			else
+				probationBytes -= victim.weight;
+			entries.remove(victim.key, victim);
+			evictionCount.incrementAndGet();
+		}
+	}
+
+	// Put the image loaded by load, unless a remove(), put() or clear() has dropped the load meanwhile
+	private void put(Key key, BufferedImage image, FutureTask<BufferedImage> load) {
+		long weight = weigh(image);
+		Entry entry = new Entry(key, image, weight);
+		lock.lock();
+		try {
+			if(load == null)
+				loads.remove(key); // A load in flight would replace the image with an older one
+			else if(loads.get(key) != load)
+				return;
+			Entry old = (weight > maxBytes)? entries.remove(key) : entries.put(key, entry);
+			if(old != null) unlink(old);
+			if(weight > maxBytes) return;
+			probation.put(key, entry);
+			probationBytes += weight;
+			evict();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void recordHit(Entry entry) {
+		if(entry.removed) return;
+		if(entry.isProtected) {
+			// Move to the most recently used end
+			protectedSegment.remove(entry.key);
+			protectedSegment.put(entry.key, entry);
+			return;
+		}
+		// Second hit, promote to the protected segment
+		probation.remove(entry.key);
+		probationBytes -= entry.weight;
+		entry.isProtected = true;
+		protectedSegment.put(entry.key, entry);
+		protectedBytes += entry.weight;
+		// Demote the eldest protected entries back to probation, they get another chance there
+		while(protectedBytes > maxProtectedBytes && protectedSegment.size() > 1) {
+			Iterator<Entry> iter = protectedSegment.values().iterator();
+			Entry eldest = iter.next();
+			iter.remove();
+			eldest.isProtected = false;
+			protectedBytes -= eldest.weight;
+			probation.put(eldest.key, eldest);
+			probationBytes += eldest.weight;
+		}
+	}
+
+	private void unlink(Entry entry) {
+		if(entry.removed) return;
+		entry.removed = true;
+		if(entry.isProtected) {
+			protectedSegment.remove(entry.key);
+			protectedBytes -= entry.weight;
+		} else {
+			probation.remove(entry.key);
+			probationBytes -= entry.weight;
+		}
+	}
+
+	private static BufferedImage waitFor(FutureTask<BufferedImage> load) throws Exception {
+		try {
+			return load.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof Exception) throw (Exception)cause;
+			if(cause instanceof Error) throw (Error)cause;
+			throw e;
+		}
+	}
+}
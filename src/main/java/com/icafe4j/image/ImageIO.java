@@ -13,6 +13,10 @@
  *
  * Who   Date       Description
  * ====  =========  =================================================
+ * AG    18Oct2026  Added transcode() to keep indexed images indexed from reader to writer
+ * AG    18Oct2026  Revised read(InputStream) to go through the global DecodeAdmission
+ * AG    18Oct2026  Added read() and write() taking a CodecControl
+ * AG    18Oct2026  Added flight recorder events for read() and write()
  * WY    22Jan2015  Revised read(InputStream) to leave the stream open
  * WY    08Jan2015  Added getReader(PushbackInputStream)
  * WY    22Sep2014  Added read() to detect image type and read image
@@ -27,11 +31,20 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.Callable;
+
 import com.icafe4j.image.reader.ImageReader;
 import com.icafe4j.image.util.IMGUtils;
 import com.icafe4j.image.writer.ImageWriter;
+import com.icafe4j.io.CountingInputStream;
+import com.icafe4j.io.CountingOutputStream;
+import com.icafe4j.io.MemoryCacheRandomAccessInputStream;
 import com.icafe4j.io.PeekHeadInputStream;
 import com.icafe4j.io.RandomAccessInputStream;
+import com.icafe4j.io.RandomAccessOutputStream;
+import com.icafe4j.jfr.CodecTrace;
+import com.icafe4j.jfr.CodecEvent;
+import com.icafe4j.jfr.FlightRecorder;
 
 public final class ImageIO {
 	// Image header magic number length
@@ -107,12 +120,90 @@ public final class ImageIO {
 	/**
 	 * Read the image or the first frame of the image as a BufferedImage
 	 * from the InputStream for the image.
+	 * <p>
+	 * If a global {@link DecodeAdmission} is installed, the header is parsed first to
+	 * estimate the memory the decode takes and the decode waits for or is refused
+	 * room in the budget.
 	 * 
 	 * @param is InputStream for the image
 	 * @return BufferedImage or null
+	 * @throws DecodeRejectedException if the decode doesn't fit in the global budget
 	 * @throws Exception
 	 */
 	public static BufferedImage read(InputStream is) throws Exception {
+		return read(is, false);
+	}
+	
+	// Read with ImageReader.readNative() instead of read() if keepNative is true
+	private static BufferedImage read(InputStream is, boolean keepNative) throws Exception {
+		DecodeAdmission admission = DecodeAdmission.getGlobal();
+		if(admission == null)
+			return readRecorded(is, keepNative);
+		// The header is parsed ahead of the decode, so the stream has to be seekable. It is
+		// cached in memory, a file cache would put every image through a temporary file.
+		RandomAccessInputStream rin = (is instanceof RandomAccessInputStream)? (RandomAccessInputStream)is
+				: new MemoryCacheRandomAccessInputStream(is);
+		try {
+			DecodeEstimate estimate = DecodeEstimator.estimate(rin);
+			// Nothing to hold back for the image types we can't read anyway
+			long bytes = (estimate == null)? 0 : estimate.getPeakHeapBytes();
+			admission.acquire(bytes);
+			try {
+				return readRecorded(rin, keepNative);
+			} finally {
+				admission.release(bytes);
+			}
+		} finally {
+			if(rin != is) rin.shallowClose();
+		}
+	}
+	
+	private static BufferedImage readRecorded(InputStream is, boolean keepNative) throws Exception {
+		CodecEvent event = FlightRecorder.imageRead();
+		if(event == null)
+			return readImage(is, null, keepNative);
+		// Only keep track of the stages and the bytes read if somebody is listening
+		CodecTrace trace = CodecTrace.begin();
+		CountingInputStream counter = null;
+		// A RandomAccessInputStream has to stay one for the image type check
+		if(!(is instanceof RandomAccessInputStream))
+			is = counter = new CountingInputStream(is);
+		event.begin();
+		BufferedImage bi = null;
+		try {
+			bi = readImage(is, event, keepNative);
+		} finally {
+			trace.end();
+			if(counter != null) event.bytes = counter.getCount();
+			if(bi != null) {
+				event.width = bi.getWidth();
+				event.height = bi.getHeight();
+			}
+			event.commit(trace);
+		}
+		
+		return bi;
+	}
+	
+	/**
+	 * Read the image or the first frame of the image under the control of a
+	 * {@link CodecControl} which reports the progress and may stop the read.
+	 * 
+	 * @param is InputStream for the image
+	 * @param control progress, cancellation and deadline of the read
+	 * @return BufferedImage or null
+	 * @throws CodecCancelledException if the read is cancelled or runs out of time
+	 * @throws Exception
+	 */
+	public static BufferedImage read(final InputStream is, CodecControl control) throws Exception {
+		return control.call(new Callable<BufferedImage>() {
+			public BufferedImage call() throws Exception {
+				return read(is);
+			}
+		});
+	}
+	
+	private static BufferedImage readImage(InputStream is, CodecEvent event, boolean keepNative) throws Exception {
 		ImageType imageType = null;
 		boolean closeStream = false;
 		// 4 byte as image magic number
@@ -122,10 +213,12 @@ public final class ImageIO {
 			is = new PeekHeadInputStream(is, IMAGE_MAGIC_NUMBER_LEN); 
 			imageType = IMGUtils.guessImageType((PeekHeadInputStream)is);
 			closeStream = true;
-		}		
+		}
+		if(event != null) event.format = imageType.name();
 		BufferedImage bi = null;		
 		if(imageType != ImageType.UNKNOWN) {
-			bi = getReader(imageType).read(is);
+			ImageReader reader = getReader(imageType);
+			bi = keepNative? reader.readNative(is) : reader.read(is);
 		}
 		// Close the PeekHeadInputStream we created internally
 		if(closeStream) ((PeekHeadInputStream)is).shallowClose();		
@@ -147,11 +240,111 @@ public final class ImageIO {
 	}
 	
 	public static void write(BufferedImage img, OutputStream os, ImageType imageType, ImageParam imageParam) throws Exception {
+		write(img, null, os, imageType, imageParam);
+	}
+	
+	// Write the indexed pixels of the image if they are not null, otherwise the image itself
+	private static void write(BufferedImage img, IndexedPixels indexed, OutputStream os, ImageType imageType, ImageParam imageParam) throws Exception {
 		ImageWriter imageWriter = getWriter(imageType);
-		if(imageWriter != null) {
-			imageWriter.setImageParam(imageParam);
+		if(imageWriter == null) return;
+		imageWriter.setImageParam(imageParam);
+		CodecEvent event = FlightRecorder.imageWrite();
+		if(event == null) {
+			writeImage(imageWriter, img, indexed, os);
+			return;
+		}
+		// Only keep track of the stages and the bytes written if somebody is listening
+		CodecTrace trace = CodecTrace.begin();
+		CountingOutputStream counter = null;
+		RandomAccessOutputStream rout = null;
+		long startPos = 0, startLength = 0;
+		// A RandomAccessOutputStream has to stay one so writers can seek back, count from its position instead
+		if(os instanceof RandomAccessOutputStream) {
+			rout = (RandomAccessOutputStream)os;
+			startPos = rout.getStreamPointer();
+			startLength = rout.getLength();
+		} else
+			os = counter = new CountingOutputStream(os);
+		event.begin();
+		try {
+			writeImage(imageWriter, img, indexed, os);
+		} finally {
+			trace.end();
+			event.format = imageType.name();
+			event.width = img.getWidth();
+			event.height = img.getHeight();
+			if(counter != null)
+				event.bytes = counter.getCount();
+			else // Closing the stream moves the position back to the flush position, the length still shows the bytes added
+				event.bytes = Math.max(rout.getStreamPointer() - startPos, rout.getLength() - startLength);
+			event.commit(trace);
+		}
+	}
+	
+	/**
+	 * Write the image under the control of a {@link CodecControl} which reports
+	 * the progress and may stop the write. Nothing is guaranteed about the data
+	 * already written to the OutputStream if the write is stopped.
+	 * 
+	 * @throws CodecCancelledException if the write is cancelled or runs out of time
+	 */
+	public static void write(final BufferedImage img, final OutputStream os, final ImageType imageType, final ImageParam imageParam,
+			CodecControl control) throws Exception {
+		control.call(new Callable<Void>() {
+			public Void call() throws Exception {
+				write(img, os, imageType, imageParam);
+				return null;
+			}
+		});
+	}
+	
+	/**
+	 * Convert the image, or the first frame of a multiple frame image, from the
+	 * InputStream to imageType on the OutputStream.
+	 * <p>
+	 * Unlike a {@link #read(InputStream)} followed by a {@link #write(BufferedImage, OutputStream, ImageType, ImageParam)},
+	 * an indexed image goes from the reader to the writer as palette indices, see {@link IndexedPixels}.
+	 * This covers GIF, palette PNG, TIFF and PCX images as well as gray PNG and TIFF
+	 * images up to 8 bits, which the readers return as gray palette images. No ARGB
+	 * copy of the image is made and the GIF, PNG and TIFF writers put out the palette
+	 * as it is instead of counting colors or quantizing. The image stays indexed
+	 * whatever the color type of the ImageParam, except GRAY_SCALE and BILEVEL.
+	 * <p>
+	 * Only the first frame of a GIF is decoded. The stream is not closed by us, though
+	 * some writers close the OutputStream themselves.
+	 * 
+	 * @param is InputStream for the source image
+	 * @param os OutputStream to write the image
+	 * @param imageType image type to convert to
+	 * @param imageParam parameters for the writer
+	 * @throws IOException if the source image type is unknown or not supported
+	 * @throws Exception
+	 */
+	public static void transcode(InputStream is, OutputStream os, ImageType imageType, ImageParam imageParam) throws Exception {
+		transcodeWrite(transcodeRead(is), os, imageType, imageParam);
+	}
+	
+	// The read half of transcode(), AsyncImageIO runs the two halves under different permits
+	static BufferedImage transcodeRead(InputStream is) throws Exception {
+		BufferedImage img = read(is, true);
+		if(img == null)
+			throw new IOException("Unsupported or unknown source image type");
+		return img;
+	}
+	
+	// The write half of transcode()
+	static void transcodeWrite(BufferedImage img, OutputStream os, ImageType imageType, ImageParam imageParam) throws Exception {
+		IndexedPixels indexed = null;
+		if(imageParam.getColorType() != ImageColorType.BILEVEL)
+			indexed = IndexedPixels.from(img);
+		write(img, indexed, os, imageType, imageParam);
+	}
+	
+	private static void writeImage(ImageWriter imageWriter, BufferedImage img, IndexedPixels indexed, OutputStream os) throws Exception {
+		if(indexed != null)
+			imageWriter.writeIndexed(indexed, os);
+		else
 			imageWriter.write(img, os);
-		}		
 	}
 	
 	private ImageIO() {}
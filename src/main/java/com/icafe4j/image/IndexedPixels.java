@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.util.Arrays;
+
+/**
+ * An indexed image as palette indices plus an ARGB palette, the way indexed
+ * and gray palette images are stored by GIF, PNG and TIFF.
+ * <p>
+ * Handed to {@link com.icafe4j.image.writer.ImageWriter#writeIndexed(IndexedPixels, java.io.OutputStream)}
+ * it lets a writer put out the palette it is given instead of expanding the image to
+ * ARGB and finding the palette again with a color count or a quantizer. One byte per
+ * pixel is kept in place of the four of an ARGB array.
+ * <p>
+ * The index array is not copied and must not be modified while the pixels are in use.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public final class IndexedPixels {
+	private final int width;
+	private final int height;
+	// 1, 2, 4 or 8
+	private final int bitsPerPixel;
+	// One unpacked index for each pixel, row after row
+	private final byte[] indices;
+	// ARGB, 1<<bitsPerPixel entries
+	private final int[] palette;
+
+	/**
+	 * @param indices one palette index for each pixel, not packed, width*height in all
+	 * @param palette ARGB palette with at least 1&lt;&lt;bitsPerPixel entries
+	 * @param bitsPerPixel 1, 2, 4 or 8
+	 */
+	public IndexedPixels(byte[] indices, int[] palette, int bitsPerPixel, int width, int height) {
+		if(bitsPerPixel != 1 && bitsPerPixel != 2 && bitsPerPixel != 4 && bitsPerPixel != 8)
+			throw new IllegalArgumentException("Invalid bits per pixel: " + bitsPerPixel);
+		if(width <= 0 || height <= 0 || indices.length != (long)width*height)
+			throw new IllegalArgumentException("Image size " + width + "x" + height + " doesn't match " + indices.length + " indices");
+		if(palette.length < (1<<bitsPerPixel))
+			throw new IllegalArgumentException("Palette too short for " + bitsPerPixel + " bits per pixel: " + palette.length);
+		this.indices = indices;
+		this.palette = palette;
+		this.bitsPerPixel = bitsPerPixel;
+		this.width = width;
+		this.height = height;
+	}
+
+	/**
+	 * Take the indices and palette out of an image with an IndexColorModel, such
+	 * as the indexed and gray palette images returned by the PNG, TIFF, GIF and PCX readers.
+	 * Unused palette entries are dropped and the bit depth is brought down to
+	 * what the colors in use need.
+	 *
+	 * @return the IndexedPixels or null if the image is not an indexed image of up to 8 bits
+	 */
+	public static IndexedPixels from(BufferedImage image) {
+		if(!(image.getColorModel() instanceof IndexColorModel))
+			return null;
+		IndexColorModel cm = (IndexColorModel)image.getColorModel();
+		Raster raster = image.getRaster();
+		if(cm.getPixelSize() > 8 || raster.getNumBands() != 1)
+			return null;
+		int width = image.getWidth();
+		int height = image.getHeight();
+		byte[] indices = new byte[width*height];
+		boolean[] used = new boolean[256];
+		int maxIndex = 0;
+		if(raster.getDataBuffer().getDataType() == DataBuffer.TYPE_BYTE && raster.getSampleModel() instanceof ComponentSampleModel
+				&& ((ComponentSampleModel)raster.getSampleModel()).getPixelStride() == 1) {
+			// One byte for each pixel, copy rows straight from the data buffer
+			ComponentSampleModel sm = (ComponentSampleModel)raster.getSampleModel();
+			byte[] data = ((DataBufferByte)raster.getDataBuffer()).getData();
+			int scanlineStride = sm.getScanlineStride();
+			int offset = raster.getDataBuffer().getOffset() + sm.getOffset(raster.getMinX() - raster.getSampleModelTranslateX(),
+					raster.getMinY() - raster.getSampleModelTranslateY());
+			for(int i = 0, index = 0; i < height; i++, offset += scanlineStride) {
+				for(int j = offset, end = offset + width; j < end; j++, index++) {
+					int value = data[j]&0xff;
+					used[value] = true;
+					indices[index] = (byte)value;
+				}
+			}
+		} else {
+			// Packed or otherwise laid out pixels
+			int[] row = new int[width];
+			int minX = raster.getMinX();
+			int minY = raster.getMinY();
+			for(int i = 0, index = 0; i < height; i++) {
+				raster.getSamples(minX, minY + i, width, 1, 0, row);
+				for(int j = 0; j < width; j++, index++) {
+					used[row[j]] = true;
+					indices[index] = (byte)row[j];
+				}
+			}
+		}
+		int numOfColors = 0;
+		for(int i = 0; i < used.length; i++) {
+			if(used[i]) {
+				numOfColors++;
+				maxIndex = i;
+			}
+		}
+		int bitsPerPixel = getBitsPerPixel(Math.max(numOfColors, 2));
+		int[] palette = new int[1<<bitsPerPixel];
+		// Entries past the colors in use are opaque black, they don't add to the transparency
+		Arrays.fill(palette, 0xff000000);
+		if(numOfColors < maxIndex + 1) {
+			// Not all the entries are used, move the used ones to the front
+			byte[] newIndex = new byte[256];
+			for(int i = 0, index = 0; i < used.length; i++) {
+				if(used[i]) {
+					palette[index] = cm.getRGB(i);
+					newIndex[i] = (byte)index++;
+				}
+			}
+			for(int i = 0; i < indices.length; i++)
+				indices[i] = newIndex[indices[i]&0xff];
+		} else {
+			for(int i = 0; i < numOfColors; i++)
+				palette[i] = cm.getRGB(i);
+		}
+
+		return new IndexedPixels(indices, palette, bitsPerPixel, width, height);
+	}
+
+	// Bits for the number of colors rounded up to what GIF, PNG and TIFF all allow
+	private static int getBitsPerPixel(int numOfColors) {
+		int bitsPerPixel = 1;
+		while((1<<bitsPerPixel) < numOfColors) bitsPerPixel++;
+		switch(bitsPerPixel) {
+			case 3:
+				return 4;
+			case 5:
+			case 6:
+			case 7:
+				return 8;
+			default:
+				return bitsPerPixel;
+		}
+	}
+
+	public int getBitsPerPixel() {
+		return bitsPerPixel;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @return the index array itself, one byte for each pixel
+	 */
+	public byte[] getIndices() {
+		return indices;
+	}
+
+	/**
+	 * @return the ARGB palette itself, at least 1&lt;&lt;bitsPerPixel entries
+	 */
+	public int[] getPalette() {
+		return palette;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+}
@@ -0,0 +1,40 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image;
+
+import java.io.IOException;
+
+/**
+ * Source of image scan lines for the image writers.
+ * <p>
+ * Writers pull a band of rows at a time instead of requiring the whole image
+ * as one ARGB array. Rows can be requested in any order and more than once, so
+ * the implementation must support random access by row. Besides the adapter
+ * for BufferedImage {@link BufferedImageRowSource}, a custom generator can
+ * implement this interface directly to produce rows on demand.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public interface RowSource {
+	public int getWidth();
+	public int getHeight();
+	/**
+	 * Fill the buffer with rows in default ARGB format
+	 * 
+	 * @param startRow first row to read
+	 * @param numOfRows number of rows to read
+	 * @param rgbs buffer to hold at least numOfRows*getWidth() pixels
+	 * @param offset offset into the buffer to put the first pixel
+	 * @throws IOException
+	 */
+	public void getRGB(int startRow, int numOfRows, int[] rgbs, int offset) throws IOException;
+}
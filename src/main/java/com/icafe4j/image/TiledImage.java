@@ -0,0 +1,403 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.icafe4j.jfr.FlightRecorder;
+
+/**
+ * Disk backed ARGB image made of fixed size square tiles.
+ * <p>
+ * Only a bounded number of tiles are kept in memory. The least recently used tile
+ * is spilled to a memory-mapped scratch file when the cache is full and mapped back
+ * when it is needed again, so the heap in use does not depend on the image size.
+ * Tiles which have never been written read as transparent black without touching
+ * the scratch file. The scratch file is deleted by {@link #close()}.
+ * <p>
+ * TiledImage is a {@link RowSource}, so the image writers can write it band by band.
+ * Regions are pulled out as BufferedImage by {@link #getSubimage(int, int, int, int)}
+ * and {@link #getReducedImage(Rectangle, int)} for the image operations which need one.
+ * <p>
+ * For row by row access, the cache should hold at least one row of tiles:
+ * getWidth()/getTileSize() + 1 tiles. The methods are thread safe.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public class TiledImage implements RowSource, Closeable {
+	public static final int DEFAULT_TILE_SIZE = 256;
+	// Upper limit for a single mapping of the scratch file
+	private static final long MAX_SEGMENT_SIZE = 1L<<30;
+
+	private final int width;
+	private final int height;
+	private final int tileSize;
+	private final int tilesAcross;
+	private final int tilesDown;
+	private final int maxCachedTiles;
+	private final File scratchDirectory;
+	// Access ordered, the eldest entry is the least recently used tile
+	private final LinkedHashMap<Integer, Tile> cache = new LinkedHashMap<Integer, Tile>(16, 0.75f, true);
+	// Tiles which have been spilled to the scratch file
+	private final BitSet spilled = new BitSet();
+	private final int tilesPerSegment;
+	private MappedByteBuffer[] segments;
+	private File scratchFile;
+	private RandomAccessFile scratch;
+	private boolean closed;
+	// Guards the tiles, the scratch file and the closed flag
+	private final ReentrantLock lock = new ReentrantLock();
+
+	// Obtain a logger instance
+	private static final Logger LOGGER = LoggerFactory.getLogger(TiledImage.class);
+
+	private static final class Tile {
+		private final int[] pixels;
+		private boolean dirty;
+
+		private Tile(int[] pixels) {
+			this.pixels = pixels;
+		}
+	}
+
+	/**
+	 * Create a TiledImage with the default tile size and the scratch file in the
+	 * default temporary-file directory.
+	 *
+	 * @param width image width
+	 * @param height image height
+	 * @param maxCacheBytes memory for the tiles kept in memory
+	 */
+	public TiledImage(int width, int height, long maxCacheBytes) {
+		this(width, height, DEFAULT_TILE_SIZE, maxCacheBytes, null);
+	}
+
+	/**
+	 * @param width image width
+	 * @param height image height
+	 * @param tileSize width and height of a tile
+	 * @param maxCacheBytes memory for the tiles kept in memory, at least one tile is kept
+	 * @param scratchDirectory directory for the scratch file, null for the default temporary-file directory
+	 */
+	public TiledImage(int width, int height, int tileSize, long maxCacheBytes, File scratchDirectory) {
+		if(width <= 0 || height <= 0)
+			throw new IllegalArgumentException("Invalid image size: " + width + "x" + height);
+		if(tileSize <= 0 || tileSize > 8192)
+			throw new IllegalArgumentException("Invalid tile size: " + tileSize);
+		this.width = width;
+		this.height = height;
+		this.tileSize = tileSize;
+		this.tilesAcross = (width + tileSize - 1)/tileSize;
+		this.tilesDown = (height + tileSize - 1)/tileSize;
+		if((long)tilesAcross*tilesDown > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Too many tiles, use a larger tile size");
+		long tileBytes = 4L*tileSize*tileSize;
+		this.maxCachedTiles = (int)Math.max(1, Math.min(Integer.MAX_VALUE, maxCacheBytes/tileBytes));
+		this.tilesPerSegment = (int)Math.max(1, MAX_SEGMENT_SIZE/tileBytes);
+		this.scratchDirectory = scratchDirectory;
+	}
+
+	/**
+	 * Wrap a BufferedImage into a TiledImage with the default tile size.
+	 *
+	 * @param image BufferedImage to copy
+	 * @param maxCacheBytes memory for the tiles kept in memory
+	 * @return a new TiledImage holding a copy of the image
+	 */
+	public static TiledImage fromImage(BufferedImage image, long maxCacheBytes) throws IOException {
+		TiledImage tiledImage = new TiledImage(image.getWidth(), image.getHeight(), maxCacheBytes);
+		tiledImage.setRGB(0, 0, image);
+
+		return tiledImage;
+	}
+
+	private void checkRegion(int x, int y, int w, int h) {
+		if(x < 0 || y < 0 || w < 0 || h < 0 || (long)x + w > width || (long)y + h > height)
+			throw new IllegalArgumentException("Region [" + x + ", " + y + ", " + w + ", " + h + "] is outside of the image");
+	}
+
+	public void close() throws IOException {
+		lock.lock();
+		try {
+			if(closed) return;
+			closed = true;
+			cache.clear();
+			// A mapping is only released by the garbage collector, so the file may outlive us on some platforms
+			segments = null;
+			if(scratch != null) {
+				scratch.close();
+				if(!scratchFile.delete())
+					scratchFile.deleteOnExit();
+				scratch = null;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if(closed)
+			throw new IOException("TiledImage is closed");
+	}
+
+	/**
+	 * Write all the modified tiles held in memory to the scratch file.
+	 */
+	public void flush() throws IOException {
+		lock.lock();
+		try {
+			ensureOpen();
+			for(Map.Entry<Integer, Tile> entry : cache.entrySet()) {
+				Tile tile = entry.getValue();
+				if(tile.dirty) {
+					spill(entry.getKey(), tile);
+					tile.dirty = false;
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Downscale a region by averaging blocks of factor by factor pixels. Only one
+	 * row of tiles of the region is needed at a time.
+	 *
+	 * @param region region to downscale, null for the whole image
+	 * @param factor reduction factor, 1 returns a copy of the region
+	 * @return a TYPE_INT_ARGB BufferedImage of ceil(region.width/factor) by ceil(region.height/factor) pixels
+	 */
+	public BufferedImage getReducedImage(Rectangle region, int factor) throws IOException {
+		if(factor < 1)
+			throw new IllegalArgumentException("Invalid reduction factor: " + factor);
+		if(region == null) region = new Rectangle(0, 0, width, height);
+		checkRegion(region.x, region.y, region.width, region.height);
+		int dstWidth = (region.width + factor - 1)/factor;
+		int dstHeight = (region.height + factor - 1)/factor;
+		BufferedImage image = new BufferedImage(dstWidth, dstHeight, BufferedImage.TYPE_INT_ARGB);
+		int[] row = new int[region.width];
+		long[] sums = new long[dstWidth*4];
+		int[] dstRow = new int[dstWidth];
+		for(int dy = 0; dy < dstHeight; dy++) {
+			int y0 = region.y + dy*factor;
+			int rows = Math.min(factor, region.y + region.height - y0);
+			Arrays.fill(sums, 0L);
+			for(int j = 0; j < rows; j++) {
+				getRGB(region.x, y0 + j, region.width, 1, row, 0, region.width);
+				for(int i = 0; i < region.width; i++) {
+					int pixel = row[i];
+					int k = (i/factor)*4;
+					sums[k] += pixel>>>24;
+					sums[k + 1] += (pixel>>16)&0xff;
+					sums[k + 2] += (pixel>>8)&0xff;
+					sums[k + 3] += pixel&0xff;
+				}
+			}
+			for(int dx = 0, k = 0; dx < dstWidth; dx++, k += 4) {
+				long count = (long)rows*Math.min(factor, region.width - dx*factor);
+				long half = count/2;
+				dstRow[dx] = (int)((sums[k] + half)/count)<<24|(int)((sums[k + 1] + half)/count)<<16|
+						(int)((sums[k + 2] + half)/count)<<8|(int)((sums[k + 3] + half)/count);
+			}
+			image.setRGB(0, dy, dstWidth, 1, dstRow, 0, dstWidth);
+		}
+
+		return image;
+	}
+
+	/**
+	 * Fill the buffer with rows in default ARGB format
+	 */
+	public void getRGB(int startRow, int numOfRows, int[] rgbs, int offset) throws IOException {
+		getRGB(0, startRow, width, numOfRows, rgbs, offset, width);
+	}
+
+	/**
+	 * Read a region of ARGB pixels, the same layout as BufferedImage.getRGB()
+	 */
+	public int[] getRGB(int x, int y, int w, int h, int[] rgbs, int offset, int scansize) throws IOException {
+		lock.lock();
+		try {
+			ensureOpen();
+			checkRegion(x, y, w, h);
+			if(rgbs == null) rgbs = new int[offset + h*scansize];
+			copy(x, y, w, h, rgbs, offset, scansize, false);
+
+			return rgbs;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Copy a region into a new TYPE_INT_ARGB BufferedImage
+	 */
+	public BufferedImage getSubimage(int x, int y, int w, int h) throws IOException {
+		checkRegion(x, y, w, h);
+		if(w == 0 || h == 0)
+			throw new IllegalArgumentException("Empty region");
+		BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+		int[] rgbs = ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+		getRGB(x, y, w, h, rgbs, 0, w);
+
+		return image;
+	}
+
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Write a region of ARGB pixels, the same layout as BufferedImage.setRGB()
+	 */
+	public void setRGB(int x, int y, int w, int h, int[] rgbs, int offset, int scansize) throws IOException {
+		lock.lock();
+		try {
+			ensureOpen();
+			checkRegion(x, y, w, h);
+			copy(x, y, w, h, rgbs, offset, scansize, true);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Copy a whole BufferedImage into this image with its upper left corner at (x, y)
+	 */
+	public void setRGB(int x, int y, BufferedImage image) throws IOException {
+		int w = image.getWidth();
+		int h = image.getHeight();
+		checkRegion(x, y, w, h);
+		// Go one row of tiles at a time, one tile wide at most
+		int[] rgbs = new int[tileSize*tileSize];
+		for(int j = 0; j < h; j += tileSize) {
+			int rows = Math.min(tileSize, h - j);
+			for(int i = 0; i < w; i += tileSize) {
+				int cols = Math.min(tileSize, w - i);
+				image.getRGB(i, j, cols, rows, rgbs, 0, cols);
+				setRGB(x + i, y + j, cols, rows, rgbs, 0, cols);
+			}
+		}
+	}
+
+	// Copy between the tiles and a region of an ARGB buffer
+	private void copy(int x, int y, int w, int h, int[] rgbs, int offset, int scansize, boolean toTiles) throws IOException {
+		int endX = x + w;
+		int endY = y + h;
+		for(int ty = y/tileSize; ty*tileSize < endY; ty++) {
+			int tileY = ty*tileSize;
+			int y0 = Math.max(y, tileY);
+			int y1 = Math.min(endY, tileY + tileSize);
+			for(int tx = x/tileSize; tx*tileSize < endX; tx++) {
+				int tileX = tx*tileSize;
+				int x0 = Math.max(x, tileX);
+				int cols = Math.min(endX, tileX + tileSize) - x0;
+				Tile tile = getTile(ty*tilesAcross + tx, toTiles);
+				if(tile == null) { // Never written
+					for(int j = y0; j < y1; j++)
+						Arrays.fill(rgbs, offset + (j - y)*scansize + x0 - x, offset + (j - y)*scansize + x0 - x + cols, 0);
+					continue;
+				}
+				if(toTiles) tile.dirty = true;
+				for(int j = y0; j < y1; j++) {
+					int tileOffset = (j - tileY)*tileSize + x0 - tileX;
+					int bufOffset = offset + (j - y)*scansize + x0 - x;
+					if(toTiles)
+						System.arraycopy(rgbs, bufOffset, tile.pixels, tileOffset, cols);
+					else
+						System.arraycopy(tile.pixels, tileOffset, rgbs, bufOffset, cols);
+				}
+			}
+		}
+	}
+
+	// Returns null for a tile which has never been written unless create is true
+	private Tile getTile(int index, boolean create) throws IOException {
+		Tile tile = cache.get(index);
+		if(tile != null) return tile;
+		boolean onDisk = spilled.get(index);
+		if(!onDisk && !create) return null;
+		int[] pixels = null;
+		if(cache.size() >= maxCachedTiles) {
+			// Evict the least recently used tile and reuse its pixels
+			Iterator<Map.Entry<Integer, Tile>> iter = cache.entrySet().iterator();
+			Map.Entry<Integer, Tile> eldest = iter.next();
+			iter.remove();
+			Tile victim = eldest.getValue();
+			if(victim.dirty) spill(eldest.getKey(), victim);
+			pixels = victim.pixels;
+			if(!onDisk) Arrays.fill(pixels, 0);
+		} else
+			pixels = new int[tileSize*tileSize];
+		if(onDisk) tileBuffer(index).get(pixels);
+		tile = new Tile(pixels);
+		cache.put(index, tile);
+
+		return tile;
+	}
+
+	private void spill(int index, Tile tile) throws IOException {
+		tileBuffer(index).put(tile.pixels);
+		spilled.set(index);
+	}
+
+	// View of the scratch file region for a tile, mapping the file on demand
+	private IntBuffer tileBuffer(int index) throws IOException {
+		if(scratch == null) {
+			scratchFile = FlightRecorder.createTempFile("icafe", ".tiles", scratchDirectory, TiledImage.class);
+			scratch = new RandomAccessFile(scratchFile, "rw");
+			segments = new MappedByteBuffer[(int)(((long)tilesAcross*tilesDown + tilesPerSegment - 1)/tilesPerSegment)];
+			LOGGER.debug("Created scratch file {} for {}x{} image", scratchFile, width, height);
+		}
+		int tilePixels = tileSize*tileSize;
+		int segment = index/tilesPerSegment;
+		if(segments[segment] == null) {
+			long segmentSize = 4L*tilePixels*tilesPerSegment;
+			long position = segment*segmentSize;
+			long size = Math.min(segmentSize, 4L*tilePixels*tilesAcross*tilesDown - position);
+			// Mapping beyond the end of the file grows it, sparsely where the file system allows it
+			segments[segment] = scratch.getChannel().map(FileChannel.MapMode.READ_WRITE, position, size);
+			segments[segment].order(ByteOrder.nativeOrder());
+		}
+		IntBuffer buffer = segments[segment].asIntBuffer();
+		buffer.position((index%tilesPerSegment)*tilePixels);
+
+		return buffer;
+	}
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image.color;
+
+import java.awt.color.ICC_ColorSpace;
+import java.awt.color.ICC_Profile;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.icafe4j.io.IOUtils;
+
+/**
+ * Bounded cache of parsed ICC profiles shared across images.
+ * <p>
+ * Most images carry one of a handful of well known profiles. Parsing the profile data
+ * and setting up the color conversion of an ICC_ColorSpace is expensive, so the parsed
+ * profile and its color space are kept and handed out again for the same profile data.
+ * Entries are keyed by the content of the profile: the profile ID field, an MD5 digest
+ * of the profile, if set, otherwise a hash of the whole profile. A hit is always checked
+ * against the full profile data, so different profiles never share an entry.
+ * <p>
+ * The returned ICC_Profile and ICC_ColorSpace instances are shared and must not be modified.
+ * The least recently used entry is dropped when the cache is full. This class is thread safe.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public final class ICCProfileCache {
+	public static final int DEFAULT_MAX_ENTRIES = 32;
+
+	// Offset and length of the profile ID in the profile header
+	private static final int PROFILE_ID_OFFSET = 84;
+	private static final int PROFILE_ID_LENGTH = 16;
+
+	private static final ICCProfileCache instance = new ICCProfileCache(DEFAULT_MAX_ENTRIES);
+
+	private static final class CachedProfile {
+		private final byte[] data;
+		private final ICC_ColorSpace colorSpace;
+
+		private CachedProfile(byte[] data, ICC_ColorSpace colorSpace) {
+			this.data = data;
+			this.colorSpace = colorSpace;
+		}
+	}
+
+	private final Map<Integer, CachedProfile[]> entries;
+	private final Map<String, ICC_ColorSpace> resources;
+
+	public static ICCProfileCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * @param maxEntries maximum number of profiles to keep
+	 */
+	public ICCProfileCache(final int maxEntries) {
+		if(maxEntries <= 0)
+			throw new IllegalArgumentException("Invalid cache size: " + maxEntries);
+		// Access order LinkedHashMap makes an LRU cache
+		this.entries = new LinkedHashMap<Integer, CachedProfile[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			protected boolean removeEldestEntry(Map.Entry<Integer, CachedProfile[]> eldest) {
+				return size() > maxEntries;
+			}
+		};
+		this.resources = new LinkedHashMap<String, ICC_ColorSpace>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			protected boolean removeEldestEntry(Map.Entry<String, ICC_ColorSpace> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		resources.clear();
+	}
+
+	/**
+	 * Return a shared ICC_ColorSpace for the profile data, parsing the profile
+	 * only if it is not in the cache.
+	 *
+	 * @param profile ICC profile data
+	 * @return a shared ICC_ColorSpace for the profile
+	 * @throws IllegalArgumentException if the profile data is not valid
+	 */
+	public ICC_ColorSpace getColorSpace(byte[] profile) {
+		if(profile == null)
+			throw new IllegalArgumentException("Input profile is null");
+		int hash = hash(profile);
+		synchronized(this) {
+			CachedProfile entry = lookup(hash, profile);
+			if(entry != null)
+				return entry.colorSpace;
+		}
+		// Parse outside of the lock, a profile parsed twice is harmless
+		ICC_ColorSpace colorSpace = new ICC_ColorSpace(ICC_Profile.getInstance(profile));
+		synchronized(this) {
+			CachedProfile entry = lookup(hash, profile);
+			if(entry != null)
+				return entry.colorSpace;
+			CachedProfile[] bucket = entries.get(hash);
+			CachedProfile newEntry = new CachedProfile(profile.clone(), colorSpace);
+			if(bucket == null) {
+				bucket = new CachedProfile[] {newEntry};
+			} else { // Hash collision, very unlikely
+				bucket = Arrays.copyOf(bucket, bucket.length + 1);
+				bucket[bucket.length - 1] = newEntry;
+			}
+			entries.put(hash, bucket);
+		}
+
+		return colorSpace;
+	}
+
+	/**
+	 * Return a shared ICC_ColorSpace for an ICC profile loaded as a class path resource.
+	 *
+	 * @param pathToICCProfile absolute resource path of the ICC profile
+	 * @return a shared ICC_ColorSpace for the profile
+	 * @throws IOException if the resource can't be read
+	 */
+	public ICC_ColorSpace getColorSpace(String pathToICCProfile) throws IOException {
+		synchronized(this) {
+			ICC_ColorSpace colorSpace = resources.get(pathToICCProfile);
+			if(colorSpace != null)
+				return colorSpace;
+		}
+		InputStream is = ICCProfileCache.class.getResourceAsStream(pathToICCProfile);
+		if(is == null)
+			throw new IOException("ICC profile resource not found: " + pathToICCProfile);
+		byte[] profile = null;
+		try {
+			profile = IOUtils.inputStreamToByteArray(is);
+		} finally {
+			is.close();
+		}
+		ICC_ColorSpace colorSpace = getColorSpace(profile);
+		synchronized(this) {
+			resources.put(pathToICCProfile, colorSpace);
+		}
+
+		return colorSpace;
+	}
+
+	/**
+	 * Return a shared ICC_Profile for the profile data.
+	 *
+	 * @param profile ICC profile data
+	 * @return a shared ICC_Profile
+	 * @throws IllegalArgumentException if the profile data is not valid
+	 */
+	public ICC_Profile getProfile(byte[] profile) {
+		return getColorSpace(profile).getProfile();
+	}
+
+	private static int hash(byte[] profile) {
+		if(profile.length >= PROFILE_ID_OFFSET + PROFILE_ID_LENGTH) {
+			int hash = 0;
+			boolean hasID = false;
+			for(int i = PROFILE_ID_OFFSET; i < PROFILE_ID_OFFSET + PROFILE_ID_LENGTH; i++) {
+				hash = 31 * hash + profile[i];
+				if(profile[i] != 0) hasID = true;
+			}
+			if(hasID) return 31 * hash + profile.length;
+		}
+
+		return Arrays.hashCode(profile);
+	}
+
+	private CachedProfile lookup(int hash, byte[] profile) {
+		CachedProfile[] bucket = entries.get(hash);
+		if(bucket != null) {
+			for(CachedProfile entry : bucket)
+				if(Arrays.equals(entry.data, profile)) return entry;
+		}
+
+		return null;
+	}
+
+	public synchronized int size() {
+		int size = 0;
+		for(CachedProfile[] bucket : entries.values())
+			size += bucket.length;
+
+		return size;
+	}
+}
@@ -0,0 +1,374 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image.color;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorConvertOp;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Color transform through a lookup table sampled from the exact transform.
+ * <p>
+ * ColorConvertOp goes through the color management module for every pixel. Here the
+ * transform between the two color spaces is done once for the nodes of a regular grid
+ * over the source color space: 33 nodes per channel for 3 channel sources and 17 nodes
+ * per channel for 4 channel (CMYK) sources. Pixels are then converted by tetrahedral
+ * interpolation between the nodes, the 4 channel case interpolates between two K planes.
+ * Large images are converted in bands by the calling thread and a shared pool of
+ * daemon threads, one per extra processor. A failure in any band is thrown to the caller.
+ * <p>
+ * Only 8 bit samples are supported. Instances are immutable, thread safe and cached
+ * per source and destination color space pair.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public final class LUTColorTransform {
+	private static final int GRID_SIZE_3D = 33;
+	private static final int GRID_SIZE_4D = 17;
+	// Fraction precision of the interpolation weights
+	private static final int FRACTION_BITS = 12;
+	private static final int ONE = 1 << FRACTION_BITS;
+	// Don't bother with threads below this number of pixels
+	private static final int MIN_PIXELS_PER_THREAD = 1 << 16;
+	private static final int MAX_CACHED_TRANSFORMS = 16;
+
+	private static final Map<Key, LUTColorTransform> cache = new LinkedHashMap<Key, LUTColorTransform>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		protected boolean removeEldestEntry(Map.Entry<Key, LUTColorTransform> eldest) {
+			return size() > MAX_CACHED_TRANSFORMS;
+		}
+	};
+
+	// Color space pair, compared by identity like ColorSpace itself
+	private static final class Key {
+		private final ColorSpace source;
+		private final ColorSpace destination;
+
+		private Key(ColorSpace source, ColorSpace destination) {
+			this.source = source;
+			this.destination = destination;
+		}
+
+		public boolean equals(Object other) {
+			if(!(other instanceof Key)) return false;
+			Key that = (Key)other;
+			return source == that.source && destination == that.destination;
+		}
+
+		public int hashCode() {
+			return 31 * System.identityHashCode(source) + System.identityHashCode(destination);
+		}
+	}
+
+	private final int inChannels;
+	private final int outChannels;
+	private final int gridSize;
+	// Node values scaled to 0 - 65535, the output channels of a node are contiguous
+	private final int[] lut;
+	// Grid cell index and fraction for each 8 bit input value
+	private final int[] cellIndex = new int[256];
+	private final int[] cellFraction = new int[256];
+
+	private LUTColorTransform(ColorSpace source, ColorSpace destination) {
+		this.inChannels = source.getNumComponents();
+		this.outChannels = destination.getNumComponents();
+		if(inChannels != 3 && inChannels != 4)
+			throw new IllegalArgumentException("Only 3 or 4 channel source color spaces are supported");
+		this.gridSize = (inChannels == 3) ? GRID_SIZE_3D : GRID_SIZE_4D;
+		for(int i = 0; i < 256; i++) {
+			int scaled = i * (gridSize - 1) * ONE / 255;
+			cellIndex[i] = Math.min(scaled >> FRACTION_BITS, gridSize - 2);
+			cellFraction[i] = scaled - (cellIndex[i] << FRACTION_BITS);
+		}
+		this.lut = sample(source, destination);
+	}
+
+	/**
+	 * Return the cached transform between the two color spaces or create a new one.
+	 *
+	 * @param source color space with 3 or 4 components
+	 * @param destination color space to convert to
+	 * @return a LUTColorTransform from source to destination
+	 */
+	public static LUTColorTransform getInstance(ColorSpace source, ColorSpace destination) {
+		Key key = new Key(source, destination);
+		synchronized(cache) {
+			LUTColorTransform transform = cache.get(key);
+			if(transform != null)
+				return transform;
+		}
+		// Sample outside of the lock, a transform built twice is harmless
+		LUTColorTransform transform = new LUTColorTransform(source, destination);
+		synchronized(cache) {
+			cache.put(key, transform);
+		}
+
+		return transform;
+	}
+
+	public int getInputChannels() {
+		return inChannels;
+	}
+
+	public int getOutputChannels() {
+		return outChannels;
+	}
+
+	// Run the exact transform on all the grid nodes at once
+	private int[] sample(ColorSpace source, ColorSpace destination) {
+		int numOfNodes = 1;
+		for(int i = 0; i < inChannels; i++)
+			numOfNodes *= gridSize;
+		short[] nodes = new short[numOfNodes * inChannels];
+		// Grid index digits, the last one changes fastest. For 4 channels K
+		// comes first so that each K value has its own contiguous 3D grid
+		int[] channels = (inChannels == 3) ? new int[] {0, 1, 2} : new int[] {3, 0, 1, 2};
+		int[] counter = new int[inChannels];
+		for(int n = 0, index = 0; n < numOfNodes; n++, index += inChannels) {
+			for(int d = 0; d < inChannels; d++)
+				nodes[index + channels[d]] = (short)Math.round(counter[d] * 65535.0f / (gridSize - 1));
+			for(int d = inChannels - 1; d >= 0; d--) {
+				if(++counter[d] < gridSize) break;
+				counter[d] = 0;
+			}
+		}
+		ComponentColorModel srcCM = new ComponentColorModel(source, false, false, Transparency.OPAQUE, DataBuffer.TYPE_USHORT);
+		ComponentColorModel dstCM = new ComponentColorModel(destination, false, false, Transparency.OPAQUE, DataBuffer.TYPE_USHORT);
+		WritableRaster srcRaster = Raster.createInterleavedRaster(new DataBufferUShort(nodes, nodes.length), numOfNodes, 1,
+				numOfNodes * inChannels, inChannels, bandOffsets(inChannels), null);
+		WritableRaster dstRaster = dstCM.createCompatibleWritableRaster(numOfNodes, 1);
+		new ColorConvertOp(source, destination, null).filter(new BufferedImage(srcCM, srcRaster, false, null),
+				new BufferedImage(dstCM, dstRaster, false, null));
+
+		return dstRaster.getPixels(0, 0, numOfNodes, 1, (int[])null);
+	}
+
+	private static int[] bandOffsets(int numOfBands) {
+		int[] offsets = new int[numOfBands];
+		for(int i = 0; i < numOfBands; i++)
+			offsets[i] = i;
+
+		return offsets;
+	}
+
+	// Tetrahedral interpolation in the 3D cell at base for all the output channels
+	private void interpolate(int base, int a, int b, int c, int[] result) {
+		int g = gridSize;
+		int s1 = g * g * outChannels, s2 = g * outChannels, s3 = outChannels;
+		// Offsets of the other three corners of the tetrahedron and weights
+		int o1, o2, o3, w1, w2, w3;
+		if(a >= b) {
+			if(b >= c) { // a >= b >= c
+				o1 = s1; o2 = s1 + s2; o3 = s1 + s2 + s3; w1 = a; w2 = b; w3 = c;
+			} else if(a >= c) { // a >= c > b
+				o1 = s1; o2 = s1 + s3; o3 = s1 + s2 + s3; w1 = a; w2 = c; w3 = b;
+			} else { // c > a >= b
+				o1 = s3; o2 = s1 + s3; o3 = s1 + s2 + s3; w1 = c; w2 = a; w3 = b;
+			}
+		} else {
+			if(c >= b) { // c >= b > a
+				o1 = s3; o2 = s2 + s3; o3 = s1 + s2 + s3; w1 = c; w2 = b; w3 = a;
+			} else if(c >= a) { // b > c >= a
+				o1 = s2; o2 = s2 + s3; o3 = s1 + s2 + s3; w1 = b; w2 = c; w3 = a;
+			} else { // b > a > c
+				o1 = s2; o2 = s1 + s2; o3 = s1 + s2 + s3; w1 = b; w2 = a; w3 = c;
+			}
+		}
+		for(int ch = 0; ch < outChannels; ch++) {
+			int v0 = lut[base + ch], v1 = lut[base + o1 + ch], v2 = lut[base + o2 + ch], v3 = lut[base + o3 + ch];
+			result[ch] = (v0 << FRACTION_BITS) + w1 * (v1 - v0) + w2 * (v2 - v1) + w3 * (v3 - v2);
+		}
+	}
+
+	// Convert one pixel given as 8 bit input values, results are 0 - 65535 scaled by ONE
+	private void lookup(int[] in, int[] result, int[] temp) {
+		int a = in[0], b = in[1], c = in[2];
+		int base3 = ((cellIndex[a] * gridSize + cellIndex[b]) * gridSize + cellIndex[c]) * outChannels;
+		if(inChannels == 3) {
+			interpolate(base3, cellFraction[a], cellFraction[b], cellFraction[c], result);
+			return;
+		}
+		int k = in[3];
+		int cubeSize = gridSize * gridSize * gridSize * outChannels;
+		// Interpolate in the two K planes around the K value, then between them
+		int base = cellIndex[k] * cubeSize + base3;
+		interpolate(base, cellFraction[a], cellFraction[b], cellFraction[c], result);
+		interpolate(base + cubeSize, cellFraction[a], cellFraction[b], cellFraction[c], temp);
+		int wk = cellFraction[k];
+		for(int ch = 0; ch < outChannels; ch++)
+			result[ch] += (int)(((long)(temp[ch] - result[ch]) * wk) >> FRACTION_BITS);
+	}
+
+	private static int toByte(int value) {
+		// From 0 - 65535 scaled by ONE to 0 - 255 with rounding
+		int v = value >> FRACTION_BITS;
+		if(v < 0) v = 0;
+		else if(v > 65535) v = 65535;
+		return (v + 128) / 257;
+	}
+
+	// Split the pixels into bands and convert them on the worker threads
+	private void run(final int numOfPixels, final Band band) {
+		int numOfThreads = Math.min(Runtime.getRuntime().availableProcessors(), numOfPixels / MIN_PIXELS_PER_THREAD);
+		if(numOfThreads <= 1) {
+			band.convert(0, numOfPixels);
+			return;
+		}
+		int bandSize = (numOfPixels + numOfThreads - 1) / numOfThreads;
+		List<Future<?>> futures = new ArrayList<Future<?>>(numOfThreads - 1);
+		for(int i = 1; i < numOfThreads; i++) {
+			final int start = i * bandSize;
+			final int end = Math.min(start + bandSize, numOfPixels);
+			futures.add(Workers.EXECUTOR.submit(new Runnable() {
+				public void run() {
+					band.convert(start, end);
+				}
+			}));
+		}
+		// The first band is done by the calling thread
+		Throwable failure = null;
+		try {
+			band.convert(0, bandSize);
+		} catch(RuntimeException e) {
+			failure = e;
+		} catch(Error e) {
+			failure = e;
+		}
+		// The bands write to the caller's arrays, wait for all of them even if one failed
+		boolean interrupted = false;
+		for(Future<?> future : futures) {
+			while(true) {
+				try {
+					future.get();
+					break;
+				} catch(InterruptedException e) {
+					interrupted = true;
+				} catch(ExecutionException e) {
+					if(failure == null) failure = e.getCause();
+					break;
+				}
+			}
+		}
+		if(interrupted)
+			Thread.currentThread().interrupt();
+		if(failure instanceof RuntimeException)
+			throw (RuntimeException)failure;
+		if(failure instanceof Error)
+			throw (Error)failure;
+	}
+
+	// Daemon threads shared by all the transforms, created on first use
+	private static final class Workers {
+		private static final ExecutorService EXECUTOR = createExecutor();
+
+		private static ExecutorService createExecutor() {
+			// The calling thread converts a band too
+			int numOfThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+			final AtomicInteger count = new AtomicInteger();
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(numOfThreads, numOfThreads, 30L, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "LUTColorTransform-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			executor.allowCoreThreadTimeOut(true);
+
+			return executor;
+		}
+	}
+
+	// A range of pixels to convert
+	private interface Band {
+		public void convert(int start, int end);
+	}
+
+	/**
+	 * Convert 8 bit interleaved samples.
+	 *
+	 * @param in input samples, the first getInputChannels() samples of each pixel are converted
+	 * @param inOffset offset of the first input pixel
+	 * @param inStride number of samples per input pixel
+	 * @param out output samples, the first getOutputChannels() samples of each pixel are written
+	 * @param outOffset offset of the first output pixel
+	 * @param outStride number of samples per output pixel
+	 * @param numOfPixels number of pixels to convert
+	 */
+	public void transform(final byte[] in, final int inOffset, final int inStride, final byte[] out, final int outOffset, final int outStride, int numOfPixels) {
+		run(numOfPixels, new Band() {
+			public void convert(int start, int end) {
+				int[] pixel = new int[inChannels];
+				int[] result = new int[outChannels];
+				int[] temp = new int[outChannels];
+				for(int i = start, src = inOffset + start * inStride, dst = outOffset + start * outStride; i < end; i++, src += inStride, dst += outStride) {
+					for(int c = 0; c < inChannels; c++)
+						pixel[c] = in[src + c]&0xff;
+					lookup(pixel, result, temp);
+					for(int c = 0; c < outChannels; c++)
+						out[dst + c] = (byte)toByte(result[c]);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Convert packed RGB pixels from a 3 channel source color space.
+	 *
+	 * @param rgb packed ARGB pixels
+	 * @param offset offset of the first pixel
+	 * @param out output samples, getOutputChannels() samples per pixel plus alpha if keepAlpha is true
+	 * @param outOffset offset of the first output pixel
+	 * @param numOfPixels number of pixels to convert
+	 * @param keepAlpha true to write the alpha of the pixel after the converted samples
+	 */
+	public void transformRGB(final int[] rgb, final int offset, final byte[] out, final int outOffset, int numOfPixels, final boolean keepAlpha) {
+		if(inChannels != 3)
+			throw new IllegalStateException("Source color space is not a 3 channel color space");
+		final int outStride = keepAlpha ? outChannels + 1 : outChannels;
+		run(numOfPixels, new Band() {
+			public void convert(int start, int end) {
+				int[] pixel = new int[3];
+				int[] result = new int[outChannels];
+				for(int i = start, dst = outOffset + start * outStride; i < end; i++, dst += outStride) {
+					int value = rgb[offset + i];
+					pixel[0] = (value >> 16)&0xff;
+					pixel[1] = (value >> 8)&0xff;
+					pixel[2] = value&0xff;
+					lookup(pixel, result, null);
+					for(int c = 0; c < outChannels; c++)
+						out[dst + c] = (byte)toByte(result[c]);
+					if(keepAlpha)
+						out[dst + outChannels] = (byte)(value >>> 24);
+				}
+			}
+		});
+	}
+}
@@ -13,6 +13,7 @@ package com.icafe4j.image.compression.deflate;
 import java.util.zip.Inflater;
 
 import com.icafe4j.image.compression.ImageDecoder;
+import com.icafe4j.jfr.CodecTrace;
 
 /** A wrapper class for Java deflate decoding
  *
@@ -32,6 +33,13 @@ public class DeflateDecoder implements ImageDecoder {
 		inflater = new Inflater();
 	}
 	
+	/**
+	 * Decode with an Inflater owned by the caller, to be reused from one image to the next
+	 */
+	public DeflateDecoder(Inflater inflater) {
+		this.inflater = inflater;
+	}
+	
 	public void setInput(byte[] input) {
 		setInput(input, 0, input.length);
 	}
@@ -42,12 +50,14 @@ public class DeflateDecoder implements ImageDecoder {
 	}
 	
 	public int decode(byte[] pixels, int start, int len) throws Exception {
+		long startTime = CodecTrace.start();
 		int totalBytes = 0;
 		while(totalBytes < len && !inflater.needsInput()) {
 			int bytesInflated = inflater.inflate(pixels, start, len);
 			start += bytesInflated;
 			totalBytes += bytesInflated;
 		}
+		CodecTrace.stop(CodecTrace.Stage.DECOMPRESS, startTime);
 		return totalBytes;
 	}
 }
\ No newline at end of file
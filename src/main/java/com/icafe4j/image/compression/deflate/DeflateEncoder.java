@@ -14,6 +14,7 @@ import java.io.OutputStream;
 import java.util.zip.Deflater;
 
 import com.icafe4j.image.compression.ImageEncoder;
+import com.icafe4j.jfr.CodecTrace;
 import com.icafe4j.util.Updatable;
 
 /** A wrapper class for Java deflate encoding
@@ -41,7 +42,19 @@ public class DeflateEncoder implements ImageEncoder {
 		this.isTIFF = true;
 	}
 	
+	/**
+	 * Encode with a Deflater owned by the caller, to be reused from one image to the next
+	 */
+	public DeflateEncoder(OutputStream os, int bufferSize, Deflater deflater, Updatable<Integer> writer) {
+		this.os = os;
+		this.buffer = new byte[bufferSize];
+		this.deflater = deflater;
+		this.writer = writer;
+		this.isTIFF = true;
+	}
+	
 	public void encode(byte[] pixels, int start, int len) throws Exception {
+		long startTime = CodecTrace.start();
 		// Set input
 		deflater.setInput(pixels, start, len);
 		// This is the magic here
@@ -51,6 +64,7 @@ public class DeflateEncoder implements ImageEncoder {
 			if(temp <= 0) break;
 			os.write(buffer, 0, temp);			
 		}
+		CodecTrace.stop(CodecTrace.Stage.COMPRESS, startTime);
 	}
 
 	public void finish() throws Exception {
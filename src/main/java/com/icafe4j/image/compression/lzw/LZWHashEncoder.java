@@ -14,6 +14,7 @@ import java.io.*;
 import java.util.Arrays;
 
 import com.icafe4j.image.compression.ImageEncoder;
+import com.icafe4j.jfr.CodecTrace;
 import com.icafe4j.util.Updatable;
 
 /** 
@@ -87,6 +88,7 @@ public class LZWHashEncoder implements ImageEncoder {
 		if(start < 0 || len <= 0) {
 			return;
 		}
+		long startTime = CodecTrace.start();
 		// Define local variables
 		byte c = 0;
 		short cur_str = 0;// Current string
@@ -110,6 +112,7 @@ public class LZWHashEncoder implements ImageEncoder {
 				prefix = (short)(c&0xff);
 			}
 		}
+		CodecTrace.stop(CodecTrace.Stage.COMPRESS, startTime);
 	}
 	
 	/**
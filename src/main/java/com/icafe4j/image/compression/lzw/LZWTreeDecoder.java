@@ -13,6 +13,7 @@
  *
  * Who   Date       Description
  * ====  =======    ============================================================
+ * AG    18Oct2026  Added reset() to decode another GIF frame with the same tables
  * WY    14Oct2014  Revised to show specification violation TIFF LZW compression
  *                  which actually falls back to GIF LZW compression completely
  */
@@ -23,6 +24,7 @@ import java.io.*;
 
 import com.icafe4j.image.compression.ImageDecoder;
 import com.icafe4j.io.IOUtils;
+import com.icafe4j.jfr.CodecTrace;
 
 /** 
  * General purpose LZW decoder to decode LZW encoded GIF or TIFF images.
@@ -109,6 +111,30 @@ public class LZWTreeDecoder implements ImageDecoder {
 	   	clearStringTable();
 	}
 	
+	/**
+	 * Get ready to decode a new GIF image data stream, reusing the string tables
+	 * instead of allocating a new decoder for each frame.
+	 */
+	public void reset(InputStream is, int min_code_size) {
+		if(min_code_size < 2 || min_code_size > 12)
+			   throw new IllegalArgumentException("invalid min_code_size: " + min_code_size);
+		this.is = is;
+		this.min_code_size = min_code_size;
+		clearCode = (1<<min_code_size);
+		endOfImage = clearCode+1;
+		first_code_index = endOfImage+1;
+		// Discard whatever is left of the previous data stream
+		bits_remain = 0;
+		bytes_available = 0;
+		temp_byte = 0;
+		bufIndex = 0;
+		oldcode = 0;
+		code = 0;
+		first_char = 0;
+		leftOver = 0;
+		clearStringTable();
+	}
+	
 	public LZWTreeDecoder(int min_code_size, boolean isTIFF) {
 		this(null, min_code_size);
 		this.isTIFF = isTIFF;
@@ -122,6 +148,15 @@ public class LZWTreeDecoder implements ImageDecoder {
 	}
 	
 	public int decode(byte[] pix, int offset, int len) throws Exception {
+		long start = CodecTrace.start();
+		try {
+			return decodeCodes(pix, offset, len);
+		} finally {
+			CodecTrace.stop(CodecTrace.Stage.DECOMPRESS, start);
+		}
+	}
+	
+	private int decodeCodes(byte[] pix, int offset, int len) throws Exception {
 		int counter = 0;// Keep track of how many bytes have been decoded.
 		///////////////
 		int tempcode = 0;
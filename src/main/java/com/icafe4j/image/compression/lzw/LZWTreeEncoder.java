@@ -14,6 +14,7 @@ import java.io.*;
 import java.util.Arrays;
 
 import com.icafe4j.image.compression.ImageEncoder;
+import com.icafe4j.jfr.CodecTrace;
 import com.icafe4j.util.Updatable;
 
 /** 
@@ -108,6 +109,7 @@ public class LZWTreeEncoder implements ImageEncoder {
 	public void encode(byte[] pixels, int start, int len) throws Exception {
 		if(start < 0 || len <= 0) return;
 		if(start + len > pixels.length) len = pixels.length - start;
+		long startTime = CodecTrace.start();
 		// Define local variables
 		int son = 0;
 		int brother = 0;
@@ -176,6 +178,7 @@ public class LZWTreeEncoder implements ImageEncoder {
 			    }
 			}
 		}
+		CodecTrace.stop(CodecTrace.Stage.COMPRESS, startTime);
 	}
 	
 	/**
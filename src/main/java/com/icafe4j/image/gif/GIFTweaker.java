@@ -13,6 +13,7 @@
  *
  * Who   Date       Description
  * ====  =========  ====================================================
+ * AG    18Oct2026  Added editMetadata() to apply a MetadataEditPlan in one pass
  * WY    20Feb2017  Fix splitFrames() throws stream closed exception
  * WY    04Apr2016  Rewrite insertXMPApplicationBlock() to leverage GifXMP
  * WY    09Oct2015  Fixed regression bug with splitAnimatedGIF()
@@ -60,6 +61,7 @@ import com.icafe4j.image.ImageIO;
 import com.icafe4j.image.ImageParam;
 import com.icafe4j.image.ImageType;
 import com.icafe4j.image.meta.Metadata;
+import com.icafe4j.image.meta.MetadataEditPlan;
 import com.icafe4j.image.meta.MetadataType;
 import com.icafe4j.image.meta.gif.GifXMP;
 import com.icafe4j.image.meta.image.Comments;
@@ -168,6 +170,112 @@ public class GIFTweaker {
 		return true;
 	}
 	
+	// Copy or skip data sub-blocks up to and including the block terminator
+	private static void copySubBlocks(InputStream is, OutputStream os) throws IOException {
+		int len = 0;
+		byte[] block = new byte[0xff];
+		while((len = IOUtils.read(is)) > 0) {
+			IOUtils.readFully(is, block, 0, len);
+			if(os != null) {
+				os.write(len);
+				os.write(block, 0, len);
+			}
+		}
+		if(len < 0)
+			throw new IOException("Premature end of GIF image");
+		if(os != null) os.write(0);
+	}
+	
+	/**
+	 * Apply all the edits of a MetadataEditPlan in one pass. GIF only has comments and XMP,
+	 * the other metadata is skipped. The new comments and XMP go right after the global
+	 * palette. If old comments or XMP have to go, the blocks are walked and filtered on the
+	 * fly, otherwise the rest of the image is copied as is.
+	 * 
+	 * @param is InputStream for the image
+	 * @param os OutputStream for the edited image
+	 * @param plan the metadata edits
+	 * @throws IOException
+	 */
+	public static void editMetadata(InputStream is, OutputStream os, MetadataEditPlan plan) throws IOException {
+		boolean removeComments = plan.getRemovals().contains(MetadataType.COMMENT);
+		// Only one XMP application block is allowed, replace the old one
+		boolean removeXMP = plan.getRemovals().contains(MetadataType.XMP) || plan.getXMP() != null;
+		if(plan.getExif() != null || plan.getICCProfile() != null || plan.getIPTC() != null || plan.getIRB() != null)
+			LOGGER.info("GIF image format does not support EXIF, ICCProfile, IPTC and IRB data");
+		// Read and copy header and LSD
+		DataTransferObject DTO = new DataTransferObject();
+		readHeader(is, DTO);
+		readLSD(is, DTO);
+		os.write(DTO.header);
+		os.write(DTO.logicalScreenDescriptor);
+		if((DTO.logicalScreenDescriptor[4]&0x80) == 0x80) {
+			int bitsPerPixel = (DTO.logicalScreenDescriptor[4]&0x07)+1;
+			int colorsUsed = (1 << bitsPerPixel);
+			
+			readGlobalPalette(is, colorsUsed, DTO);
+			os.write(DTO.globalPalette);
+		}
+		writeComments(os, plan.getComments());
+		if(plan.getXMP() != null)
+			new GifXMP(plan.getXMP().getData()).write(os);
+		if(!removeComments && !removeXMP) { // Nothing to filter
+			byte[] buf = new byte[10240]; // 10K
+			int bytesRead = -1;
+			while((bytesRead = is.read(buf)) != -1)
+				os.write(buf, 0, bytesRead);
+			return;
+		}
+		byte[] xmp_id = {'X', 'M', 'P', ' ', 'D', 'a', 't', 'a', 'X', 'M', 'P' };
+		int blockType = 0;
+		while((blockType = IOUtils.read(is)) != -1) {
+			if(blockType == (EXTENSION_INTRODUCER&0xff)) {
+				int label = IOUtils.read(is);
+				if(label == (COMMENT_EXTENSION_LABEL&0xff) && removeComments) {
+					copySubBlocks(is, null);
+				} else if(label == (APPLICATION_EXTENSION_LABEL&0xff)) {
+					int len = IOUtils.read(is);
+					if(len < 0)
+						throw new IOException("Premature end of GIF image");
+					byte[] id = new byte[len];
+					IOUtils.readFully(is, id);
+					// The XMP magic trailer makes the XMP packet look like sub-blocks
+					if(removeXMP && Arrays.equals(xmp_id, id)) {
+						copySubBlocks(is, null);
+					} else {
+						os.write(EXTENSION_INTRODUCER);
+						os.write(label);
+						os.write(len);
+						os.write(id);
+						copySubBlocks(is, os);
+					}
+				} else {
+					os.write(EXTENSION_INTRODUCER);
+					os.write(label);
+					copySubBlocks(is, os);
+				}
+			} else if(blockType == IMAGE_SEPARATOR) {
+				os.write(IMAGE_SEPARATOR);
+				readImageDescriptor(is, DTO);
+				os.write(DTO.imageDescriptor);
+				if((DTO.imageDescriptor[8]&0x80) == 0x80) { // Local color table
+					byte[] localPalette = new byte[3*(1 << ((DTO.imageDescriptor[8]&0x07)+1))];
+					IOUtils.readFully(is, localPalette);
+					os.write(localPalette);
+				}
+				os.write(IOUtils.read(is)); // LZW minimum code size
+				copySubBlocks(is, os);
+			} else { // Trailer or anything we don't know, copy the rest as is
+				os.write(blockType);
+				byte[] buf = new byte[10240]; // 10K
+				int bytesRead = -1;
+				while((bytesRead = is.read(buf)) != -1)
+					os.write(buf, 0, bytesRead);
+				break;
+			}
+		}
+	}
+	
 	/**
 	 * This is intended to be called after writing all the frames if we write
 	 * an animated GIF frame by frame.
@@ -195,27 +303,7 @@ public class GIFTweaker {
 			readGlobalPalette(is, colorsUsed, DTO);
 			os.write(DTO.globalPalette);
 		}
-		int numOfComments = comments.size();
-		for(int i = 0; i < numOfComments; i++) {
-			os.write(EXTENSION_INTRODUCER);
-			os.write(COMMENT_EXTENSION_LABEL);
-			byte[] commentBytes = comments.get(i).getBytes();
-			int numBlocks = commentBytes.length/0xff;
-			int leftOver = commentBytes.length % 0xff;
-			int offset = 0;
-			if(numBlocks > 0) {
-				for(int block = 0; block < numBlocks; block++) {
-					os.write(0xff);
-					os.write(commentBytes, offset, 0xff);
-					offset += 0xff;
-				}
-			}
-			if(leftOver > 0) {
-				os.write(leftOver);
-				os.write(commentBytes, offset, leftOver);
-			}
-			os.write(0);			
-		}
+		writeComments(os, comments);
 		// Copy the rest of the input stream
  		byte buf[] = new byte[10240]; // 10K
  		int bytesRead = is.read(buf);
@@ -689,5 +777,29 @@ public class GIFTweaker {
 		writer.writeFrame(os, frame);
 	}
 	
+	private static void writeComments(OutputStream os, List<String> comments) throws IOException {
+		int numOfComments = comments.size();
+		for(int i = 0; i < numOfComments; i++) {
+			os.write(EXTENSION_INTRODUCER);
+			os.write(COMMENT_EXTENSION_LABEL);
+			byte[] commentBytes = comments.get(i).getBytes();
+			int numBlocks = commentBytes.length/0xff;
+			int leftOver = commentBytes.length % 0xff;
+			int offset = 0;
+			if(numBlocks > 0) {
+				for(int block = 0; block < numBlocks; block++) {
+					os.write(0xff);
+					os.write(commentBytes, offset, 0xff);
+					offset += 0xff;
+				}
+			}
+			if(leftOver > 0) {
+				os.write(leftOver);
+				os.write(commentBytes, offset, leftOver);
+			}
+			os.write(0);			
+		}
+	}
+	
 	private GIFTweaker() {}
 }
\ No newline at end of file
@@ -0,0 +1,361 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image.jpeg;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collection;
+import java.util.List;
+
+import com.icafe4j.image.meta.adobe._8BIM;
+import com.icafe4j.image.meta.exif.Exif;
+import com.icafe4j.image.meta.iptc.IPTCDataSet;
+import com.icafe4j.image.meta.xmp.XMP;
+import com.icafe4j.image.util.IMGUtils;
+import com.icafe4j.jfr.FlightRecorder;
+
+/**
+ * Updates JPEG metadata segments in place.
+ * <p>
+ * Only the segments before the first SOS are read. The requested edit is done by the
+ * corresponding JPEGTweaker method on these segments alone and, if the result fits into
+ * the space taken by the original segments, the header is overwritten through a
+ * FileChannel and the entropy coded data is never touched. Unused space is kept as
+ * padding: APP15 segments filled with zeros, which any JPEG reader skips, right after
+ * the last APPn or COM segment. Padding segments found in the file count as free space.
+ * <p>
+ * If the new segments don't fit, the image is written with the new segments and the
+ * padding reserve, if any, to a new file in the same directory, which is then renamed
+ * over the original. The original stays intact until the new file is complete, and the
+ * reserve lets following edits be done in place. With {@link #setShiftInPlace(boolean)}
+ * the entropy coded data is moved up inside the file instead. This saves writing a new
+ * file but leaves the file corrupt if the move stops half way.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public class JPEGInPlaceEditor {
+	// Largest data length of one padding segment
+	private static final int MAX_PADDING_DATA_LEN = 65533;
+	// Smallest padding segment: marker plus length field
+	private static final int MIN_PADDING_LEN = 4;
+	private static final int COPY_BUFFER_SIZE = 65536;
+
+	/**
+	 * Metadata edit on a JPEG stream, like the insertXXX methods of JPEGTweaker.
+	 * The input contains only the segments up to and including the SOS marker.
+	 */
+	public interface Edit {
+		public void apply(InputStream is, OutputStream os) throws IOException;
+	}
+
+	private int paddingReserve;
+	private boolean shiftInPlace;
+
+	public JPEGInPlaceEditor() {}
+
+	/**
+	 * @param paddingReserve number of padding bytes to reserve when the file has to be rewritten
+	 */
+	public JPEGInPlaceEditor(int paddingReserve) {
+		setPaddingReserve(paddingReserve);
+	}
+
+	public int getPaddingReserve() {
+		return paddingReserve;
+	}
+
+	public boolean insertComments(File file, final List<String> comments) throws IOException {
+		return update(file, new Edit() {
+			public void apply(InputStream is, OutputStream os) throws IOException {
+				JPEGTweaker.insertComments(is, os, comments);
+			}
+		});
+	}
+
+	public boolean insertExif(File file, final Exif exif, final boolean update) throws IOException {
+		// The thumbnail has to be created from the whole image
+		if(exif.isThumbnailRequired() && !exif.containsThumbnail()) {
+			InputStream is = new FileInputStream(file);
+			try {
+				exif.setThumbnailImage(IMGUtils.createThumbnail(is));
+			} finally {
+				is.close();
+			}
+		}
+		return update(file, new Edit() {
+			public void apply(InputStream is, OutputStream os) throws IOException {
+				JPEGTweaker.insertExif(is, os, exif, update);
+			}
+		});
+	}
+
+	public boolean insertIPTC(File file, final Collection<IPTCDataSet> iptcs, final boolean update) throws IOException {
+		return update(file, new Edit() {
+			public void apply(InputStream is, OutputStream os) throws IOException {
+				JPEGTweaker.insertIPTC(is, os, iptcs, update);
+			}
+		});
+	}
+
+	public boolean insertIRB(File file, final Collection<_8BIM> bims, final boolean update) throws IOException {
+		return update(file, new Edit() {
+			public void apply(InputStream is, OutputStream os) throws IOException {
+				JPEGTweaker.insertIRB(is, os, bims, update);
+			}
+		});
+	}
+
+	public boolean insertXMP(File file, final XMP xmp) throws IOException {
+		return update(file, new Edit() {
+			public void apply(InputStream is, OutputStream os) throws IOException {
+				JPEGTweaker.insertXMP(is, os, xmp);
+			}
+		});
+	}
+
+	private static boolean isPadding(int marker, byte[] data) {
+		if(marker != (Marker.APP15.getValue()&0xffff))
+			return false;
+		for(byte b : data)
+			if(b != 0) return false;
+
+		return true;
+	}
+
+	public boolean isShiftInPlace() {
+		return shiftInPlace;
+	}
+
+	private static boolean isStandAlone(int marker) {
+		Marker emarker = Marker.fromShort((short)marker);
+
+		return emarker == Marker.TEM || emarker == Marker.JPG || emarker == Marker.JPG0 || emarker == Marker.JPG13;
+	}
+
+	// Insert the padding after the last APPn or COM segment of the header
+	private static byte[] pad(byte[] header, int len, int padding) throws IOException {
+		int insertAt = 2; // Right after SOI
+		int offset = 2;
+		while(offset < len) {
+			int marker = ((header[offset]&0xff) << 8) | (header[offset + 1]&0xff);
+			if(isStandAlone(marker)) {
+				offset += 2;
+				continue;
+			}
+			offset += 2 + (((header[offset + 2]&0xff) << 8) | (header[offset + 3]&0xff));
+			if((marker >= (Marker.APP0.getValue()&0xffff) && marker <= (Marker.APP15.getValue()&0xffff))
+					|| marker == (Marker.COM.getValue()&0xffff))
+				insertAt = offset;
+		}
+		if(offset != len)
+			throw new IOException("Invalid JPEG segment found in the edited header");
+
+		byte[] padded = new byte[len + padding];
+		System.arraycopy(header, 0, padded, 0, insertAt);
+		int pos = insertAt;
+		while(padding > 0) {
+			int size = Math.min(padding, MAX_PADDING_DATA_LEN + 4);
+			// Leave enough for one more padding segment
+			if(padding - size > 0 && padding - size < MIN_PADDING_LEN)
+				size -= MIN_PADDING_LEN;
+			padded[pos] = (byte)(Marker.APP15.getValue() >> 8);
+			padded[pos + 1] = (byte)Marker.APP15.getValue();
+			padded[pos + 2] = (byte)((size - 2) >> 8);
+			padded[pos + 3] = (byte)(size - 2);
+			// The data is already zero
+			pos += size;
+			padding -= size;
+		}
+		System.arraycopy(header, insertAt, padded, pos, len - insertAt);
+
+		return padded;
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			int nbytes = channel.read(buffer, position);
+			if(nbytes < 0)
+				throw new EOFException("Unexpected end of JPEG file");
+			position += nbytes;
+		}
+		buffer.flip();
+	}
+
+	/*
+	 * Copy the segments before SOS, except padding, to the output stream
+	 * and return the offset of the SOS marker.
+	 */
+	private static long readHeader(FileChannel channel, OutputStream os) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(4);
+		buffer.limit(2);
+		readFully(channel, buffer, 0);
+		if(buffer.getShort() != Marker.SOI.getValue())
+			throw new IOException("Invalid JPEG image, expected SOI marker not found!");
+		os.write(buffer.array(), 0, 2);
+		long offset = 2;
+
+		for(;;) {
+			buffer.clear();
+			buffer.limit(2);
+			readFully(channel, buffer, offset);
+			int marker = buffer.getShort()&0xffff;
+			if(marker == (Marker.SOS.getValue()&0xffff))
+				return offset;
+			if(marker == (Marker.PADDING.getValue()&0xffff)) { // Fill byte, drop it
+				offset++;
+				continue;
+			}
+			if(isStandAlone(marker)) {
+				os.write(buffer.array(), 0, 2);
+				offset += 2;
+				continue;
+			}
+			buffer.clear();
+			readFully(channel, buffer, offset);
+			int length = buffer.getShort(2)&0xffff;
+			if(length < 2)
+				throw new IOException("Invalid JPEG segment length: " + length);
+			ByteBuffer data = ByteBuffer.allocate(length - 2);
+			readFully(channel, data, offset + 4);
+			if(!isPadding(marker, data.array())) {
+				os.write(buffer.array(), 0, 4);
+				os.write(data.array());
+			}
+			offset += length + 2;
+		}
+	}
+
+	// Some platforms won't rename over an existing file
+	private static void replace(File tempFile, File file) throws IOException {
+		if(tempFile.renameTo(file))
+			return;
+		if(!file.delete() || !tempFile.renameTo(file))
+			throw new IOException("Unable to replace " + file + ", the edited image is kept in " + tempFile);
+	}
+
+	// Write the new header and the image from the SOS marker on to a new file next to the original
+	private static File rewrite(FileChannel channel, long sosOffset, byte[] header, File file) throws IOException {
+		File tempFile = FlightRecorder.createTempFile("icafe-", ".jpg", file.getAbsoluteFile().getParentFile(), JPEGInPlaceEditor.class);
+		boolean done = false;
+		FileOutputStream fout = new FileOutputStream(tempFile);
+		try {
+			fout.write(header);
+			FileChannel out = fout.getChannel();
+			long size = channel.size();
+			for(long position = sosOffset; position < size; )
+				position += channel.transferTo(position, size - position, out);
+			out.force(true);
+			done = true;
+		} finally {
+			fout.close();
+			if(!done) tempFile.delete();
+		}
+
+		return tempFile;
+	}
+
+	public void setPaddingReserve(int paddingReserve) {
+		if(paddingReserve < 0)
+			throw new IllegalArgumentException("Negative padding reserve: " + paddingReserve);
+		this.paddingReserve = paddingReserve;
+	}
+
+	/**
+	 * @param shiftInPlace true to move the entropy coded data inside the file when the
+	 *        new segments don't fit, false to write a new file and rename it over the original
+	 */
+	public void setShiftInPlace(boolean shiftInPlace) {
+		this.shiftInPlace = shiftInPlace;
+	}
+
+	// Move everything from the old offset to the end of the file up to the new offset
+	private static void shift(FileChannel channel, long from, long to) throws IOException {
+		long delta = to - from;
+		long position = channel.size();
+		ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+		// Copy backwards so we never overwrite data not yet moved
+		while(position > from) {
+			int nbytes = (int)Math.min(COPY_BUFFER_SIZE, position - from);
+			position -= nbytes;
+			buffer.clear();
+			buffer.limit(nbytes);
+			readFully(channel, buffer, position);
+			write(channel, buffer, position + delta);
+		}
+	}
+
+	/**
+	 * Apply the edit to the metadata segments of the JPEG file
+	 *
+	 * @param file JPEG file to update
+	 * @param edit the metadata edit
+	 * @return true if the file was updated in place, false if it had to be rewritten
+	 *         or the entropy coded data moved to make room for the new segments
+	 * @throws IOException
+	 */
+	public boolean update(File file, Edit edit) throws IOException {
+		File tempFile = null;
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteArrayOutputStream header = new ByteArrayOutputStream();
+			long sosOffset = readHeader(channel, header);
+			// The edit copies the "rest of the image" after SOS, give it nothing more than the marker
+			header.write(Marker.SOS.getValue() >> 8);
+			header.write(Marker.SOS.getValue());
+			ByteArrayOutputStream bout = new ByteArrayOutputStream();
+			edit.apply(new ByteArrayInputStream(header.toByteArray()), bout);
+			byte[] newHeader = bout.toByteArray();
+			int len = newHeader.length - 2;
+			if(len < 2 || newHeader[len] != (byte)(Marker.SOS.getValue() >> 8) || newHeader[len + 1] != (byte)Marker.SOS.getValue())
+				throw new IOException("JPEG edit didn't produce a valid header");
+			long gap = sosOffset - len;
+			if(gap == 0 || gap >= MIN_PADDING_LEN) { // It fits
+				write(channel, ByteBuffer.wrap(pad(newHeader, len, (int)gap)), 0);
+				return true;
+			}
+			// Make room for the new segments plus the reserve. A reserve must be at
+			// least one padding segment and we also need one if the gap is too small
+			int padding = paddingReserve;
+			if((padding > 0 || gap > 0) && padding < MIN_PADDING_LEN)
+				padding = MIN_PADDING_LEN;
+			byte[] padded = pad(newHeader, len, padding);
+			if(shiftInPlace) {
+				shift(channel, sosOffset, padded.length);
+				write(channel, ByteBuffer.wrap(padded), 0);
+				return false;
+			}
+			tempFile = rewrite(channel, sosOffset, padded, file);
+		} finally {
+			raf.close();
+		}
+		// The original has to be closed before it can be replaced
+		replace(tempFile, file);
+
+		return false;
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining())
+			position += channel.write(buffer, position);
+	}
+}
@@ -13,6 +13,9 @@
  *
  * Who   Date       Description
  * ====  =======    =====================================================================
+ * AG    18Oct2026  Added editMetadata() to apply a MetadataEditPlan in one pass
+ * AG    18Oct2026  Read the ExtendedXMP GUID with XMPPropertyReader instead of DOM
+ * AG    18Oct2026  readMetadata() stops at the first SOS unless asked to scan trailing segments
  * WY    02Mar2017  Added insertMetadata(Collection<Metadata>, InputStream, OutputStream)
  * WY    13Feb2017  Fixed bug with APP1 segment length too small
  * WY    06Nov2016  Added support for Cardboard Camera image and audio
@@ -78,6 +81,7 @@ import java.awt.image.DataBufferByte;
 import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -101,6 +105,7 @@ import org.slf4j.LoggerFactory;
 import com.icafe4j.image.ImageIO;
 import com.icafe4j.image.ImageType;
 import com.icafe4j.image.meta.Metadata;
+import com.icafe4j.image.meta.MetadataEditPlan;
 import com.icafe4j.image.meta.MetadataType;
 import com.icafe4j.image.meta.Thumbnail;
 import com.icafe4j.image.meta.adobe.IRB;
@@ -121,6 +126,7 @@ import com.icafe4j.image.meta.jpeg.JFIF;
 import com.icafe4j.image.meta.jpeg.JpegExif;
 import com.icafe4j.image.meta.jpeg.JpegXMP;
 import com.icafe4j.image.meta.xmp.XMP;
+import com.icafe4j.image.meta.xmp.XMPPropertyReader;
 import com.icafe4j.image.tiff.IFD;
 import com.icafe4j.image.tiff.TiffTag;
 import com.icafe4j.image.util.IMGUtils;
@@ -229,7 +235,66 @@ public class JPEGTweaker {
 			os.write(buffer, 0, bytesRead);
 		}
 	}
-	
+
+	/**
+	 * Apply all the edits of a MetadataEditPlan in one pass. The segments before SOS are read
+	 * into memory and edited there one step after another, the rest of the image is copied once.
+	 *
+	 * @param is InputStream for the image
+	 * @param os OutputStream for the edited image
+	 * @param plan the metadata edits
+	 * @throws IOException
+	 */
+	public static void editMetadata(InputStream is, OutputStream os, MetadataEditPlan plan) throws IOException {
+		Exif exif = plan.getExif();
+		// The thumbnail has to be created from the whole image
+		if(exif != null && exif.isThumbnailRequired() && !exif.containsThumbnail()) {
+			is = new FileCacheRandomAccessInputStream(is);
+			exif.setThumbnailImage(IMGUtils.createThumbnail(is));
+		}
+		byte[] header = readHeader(is);
+		ByteArrayOutputStream bout = new ByteArrayOutputStream(header.length);
+		if(plan.getRemovals().size() > 0) {
+			removeMetadata(plan.getRemovals(), new ByteArrayInputStream(header), bout);
+			header = bout.toByteArray();
+			bout.reset();
+		}
+		if(exif != null) {
+			insertExif(new ByteArrayInputStream(header), bout, exif, plan.isExifUpdate());
+			header = bout.toByteArray();
+			bout.reset();
+		}
+		if(plan.getICCProfile() != null) {
+			insertICCProfile(new ByteArrayInputStream(header), bout, plan.getICCProfile());
+			header = bout.toByteArray();
+			bout.reset();
+		}
+		if(plan.getXMP() != null) {
+			insertXMP(new ByteArrayInputStream(header), bout, plan.getXMP());
+			header = bout.toByteArray();
+			bout.reset();
+		}
+		// IRB before IPTC, so a new IRB doesn't drop the new IPTC
+		if(plan.getIRB() != null) {
+			insertIRB(new ByteArrayInputStream(header), bout, plan.getIRB(), plan.isIRBUpdate());
+			header = bout.toByteArray();
+			bout.reset();
+		}
+		if(plan.getIPTC() != null) {
+			insertIPTC(new ByteArrayInputStream(header), bout, plan.getIPTC(), plan.isIPTCUpdate());
+			header = bout.toByteArray();
+			bout.reset();
+		}
+		if(plan.getComments().size() > 0) {
+			insertComments(new ByteArrayInputStream(header), bout, plan.getComments());
+			header = bout.toByteArray();
+			bout.reset();
+		}
+		// The header ends with the SOS marker, the rest follows it
+		os.write(header);
+		copyToEnd(is, os);
+	}
+
 	public static byte[] extractICCProfile(InputStream is) throws IOException {
 		ByteArrayOutputStream bo = new ByteArrayOutputStream();
 		// Flag when we are done
@@ -1534,7 +1599,70 @@ public class JPEGTweaker {
 		m_qTables.addAll(qTables);		
 	}
 	
+	// Read the segments up to and including the SOS marker, the stream is left right after the marker
+	private static byte[] readHeader(InputStream is) throws IOException {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		// The very first marker should be the start_of_image marker!
+		if(Marker.fromShort(IOUtils.readShortMM(is)) != Marker.SOI)
+			throw new IOException("Invalid JPEG image, expected SOI marker not found!");
+		IOUtils.writeShortMM(bout, Marker.SOI.getValue());
+		short marker = IOUtils.readShortMM(is);
+
+		for(;;) {
+			Marker emarker = Marker.fromShort(marker);
+			switch(emarker) {
+				case SOS:
+					IOUtils.writeShortMM(bout, marker);
+					return bout.toByteArray();
+				case EOI:
+					throw new IOException("Unexpected EOI marker before SOS");
+				case JPG: // JPG and JPGn shouldn't appear in the image.
+				case JPG0:
+				case JPG13:
+				case TEM: // The only stand alone marker besides SOI, EOI, and RSTn.
+					IOUtils.writeShortMM(bout, marker);
+					marker = IOUtils.readShortMM(is);
+					break;
+				case PADDING:
+					int nextByte = 0;
+					while((nextByte = IOUtils.read(is)) == 0xff) ;
+					if(nextByte == -1)
+						throw new IOException("Premature end of JPEG image!");
+					marker = (short)((0xff << 8) | nextByte);
+					break;
+				default:
+					marker = copySegment(marker, is, bout);
+			}
+		}
+	}
+
+	/**
+	 * Reads the metadata stored in front of the image data. Reading stops at the
+	 * first SOS segment, so the entropy coded image data is never read.
+	 * 
+	 * @param is InputStream for the JPEG image
+	 * @return a map of the metadata found
+	 * @throws IOException
+	 */
 	public static Map<MetadataType, Metadata> readMetadata(InputStream is) throws IOException {
+		return readMetadata(is, false);
+	}
+	
+	/**
+	 * Reads the metadata of a JPEG image.
+	 * <p>
+	 * Metadata segments usually all come before the first SOS segment. Reading the image
+	 * data only to look for segments after it is expensive for large images since every
+	 * byte of the entropy coded data has to be examined.
+	 * 
+	 * @param is InputStream for the JPEG image
+	 * @param scanTrailingSegments if true, read through all the image data to the EOI
+	 *        marker and pick up segments following the first SOS, otherwise stop at the
+	 *        first SOS segment
+	 * @return a map of the metadata found
+	 * @throws IOException
+	 */
+	public static Map<MetadataType, Metadata> readMetadata(InputStream is, boolean scanTrailingSegments) throws IOException {
 		// Create a map to hold all the metadata and thumbnails
 		Map<MetadataType, Metadata> metadataMap = new HashMap<MetadataType, Metadata>();
 		Map<String, Thumbnail> thumbnails = new HashMap<String, Thumbnail>();
@@ -1637,6 +1765,10 @@ public class JPEGTweaker {
 						marker = IOUtils.readShortMM(is);
 						break;
 					case SOS:
+						if(!scanTrailingSegments) { // Nothing but image data and tables from here on
+							finished = true;
+							break;
+						}
 						SOFReader reader = readers.get(readers.size() - 1);
 						marker = readSOS(is, reader);
 						LOGGER.debug("\n{}", sofToString(reader));
@@ -1685,8 +1817,14 @@ public class JPEGTweaker {
 					// We found XMP, add it to metadata list (We may later revise it if we have ExtendedXMP)
 					XMP xmp = new JpegXMP(ArrayUtils.subArray(data, XMP_ID.length(), length - XMP_ID.length() - 2));
 					metadataMap.put(MetadataType.XMP, xmp);
-					// Retrieve XMP GUID if available
-					xmpGUID = XMLUtils.getAttribute(xmp.getXmpDocument(), "rdf:Description", "xmpNote:HasExtendedXMP");
+					// Retrieve XMP GUID if available, no need to build the DOM for this
+					xmpGUID = "";
+					try {
+						List<String> guid = new XMPPropertyReader("xmpNote").read(xmp.getData()).get("xmpNote:HasExtendedXMP");
+						if(guid != null) xmpGUID = guid.get(0);
+					} catch(IOException ex) {
+						LOGGER.warn("Unable to read XMP GUID", ex);
+					}
 				} else if(data.length >= XMP_EXT_ID.length() && new String(data, 0, XMP_EXT_ID.length()).equals(XMP_EXT_ID)) {
 					// We found ExtendedXMP, add the data to ExtendedXMP memory buffer				
 					int i = XMP_EXT_ID.length();
@@ -0,0 +1,407 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image.meta;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a metadata operation over a large number of image files on an ExecutorService.
+ * <p>
+ * Files are handed to the executor only while the total size of the files being processed
+ * stays within a byte budget and their number within a file limit. The thread that calls
+ * {@link #process(Iterator, Operation, ResultHandler)} blocks until there is room for the next
+ * file, so neither the task queue nor the memory in use grows with the number of files. A file
+ * larger than the whole budget is processed on its own.
+ * <p>
+ * The executor belongs to the caller and is not shut down. Any ExecutorService will do, a fixed
+ * thread pool or, on a recent JVM, one that starts a virtual thread per task.
+ * <pre>
+ * ExecutorService executor = Executors.newFixedThreadPool(8);
+ * BatchMetadataProcessor processor = new BatchMetadataProcessor(executor, 64, 256L*1024*1024);
+ * BatchMetadataProcessor.Summary summary = processor.process(BatchMetadataProcessor.listFiles(dir, true),
+ *     BatchMetadataProcessor.removeMetadata(dir, outDir, MetadataType.XMP), handler);
+ * executor.shutdown();
+ * </pre>
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public class BatchMetadataProcessor {
+	private final ExecutorService executor;
+	private final int maxFilesInFlight;
+	private final long maxBytesInFlight;
+	// Guards the counts in flight, released is signalled as files are done
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition released = lock.newCondition();
+	// Guarded by lock
+	private int filesInFlight;
+	private long bytesInFlight;
+
+	// Obtain a logger instance
+	private static final Logger LOGGER = LoggerFactory.getLogger(BatchMetadataProcessor.class);
+
+	/**
+	 * An operation on a single image file
+	 */
+	public interface Operation<T> {
+		public T process(File file) throws Exception;
+	}
+
+	/**
+	 * Receives the result of each file. It is called from the executor threads,
+	 * so it has to be thread safe.
+	 */
+	public interface ResultHandler<T> {
+		public void handle(Result<T> result);
+	}
+
+	public static final class Result<T> {
+		private final File file;
+		private final T value;
+		private final Throwable error;
+		private final long elapsedMillis;
+
+		private Result(File file, T value, Throwable error, long elapsedMillis) {
+			this.file = file;
+			this.value = value;
+			this.error = error;
+			this.elapsedMillis = elapsedMillis;
+		}
+
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		/** The failure or null if the operation succeeded */
+		public Throwable getError() {
+			return error;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		/** The value returned by the operation, null if it failed */
+		public T getValue() {
+			return value;
+		}
+
+		public boolean isSuccess() {
+			return error == null;
+		}
+
+		@Override
+		public String toString() {
+			return file + (error == null ? " processed in " + elapsedMillis + "ms" : " failed: " + error);
+		}
+	}
+
+	/**
+	 * Counts for a finished batch
+	 */
+	public static final class Summary {
+		private int processed;
+		private int failed;
+		private long bytes;
+
+		/** Total size of the files handed to the operation */
+		public synchronized long getBytes() {
+			return bytes;
+		}
+
+		public synchronized int getFailed() {
+			return failed;
+		}
+
+		public synchronized int getProcessed() {
+			return processed;
+		}
+
+		public synchronized int getSucceeded() {
+			return processed - failed;
+		}
+
+		private synchronized void add(long size, boolean success) {
+			processed++;
+			bytes += size;
+			if(!success) failed++;
+		}
+
+		@Override
+		public synchronized String toString() {
+			return processed + " file(s), " + failed + " failed, " + bytes + " bytes";
+		}
+	}
+
+	/**
+	 * @param executor ExecutorService to run the operations, owned by the caller
+	 * @param maxFilesInFlight maximum number of files submitted but not yet finished
+	 * @param maxBytesInFlight maximum total size of the files submitted but not yet finished
+	 */
+	public BatchMetadataProcessor(ExecutorService executor, int maxFilesInFlight, long maxBytesInFlight) {
+		if(executor == null)
+			throw new IllegalArgumentException("Executor is null");
+		if(maxFilesInFlight <= 0 || maxBytesInFlight <= 0)
+			throw new IllegalArgumentException("File and byte limits must be positive");
+		this.executor = executor;
+		this.maxFilesInFlight = maxFilesInFlight;
+		this.maxBytesInFlight = maxBytesInFlight;
+	}
+
+	// Block until the file fits into the budget, a file larger than the budget waits for an idle processor
+	private void acquire(long size) throws InterruptedException {
+		long cost = Math.min(size, maxBytesInFlight);
+		lock.lock();
+		try {
+			while(filesInFlight >= maxFilesInFlight || bytesInFlight + cost > maxBytesInFlight)
+				released.await();
+			filesInFlight++;
+			bytesInFlight += cost;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void release(long size) {
+		lock.lock();
+		try {
+			filesInFlight--;
+			bytesInFlight -= Math.min(size, maxBytesInFlight);
+			released.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void awaitIdle() throws InterruptedException {
+		lock.lock();
+		try {
+			while(filesInFlight > 0)
+				released.await();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Run the operation on every file. Returns when all the files have been processed.
+	 * A failure of one file is reported to the handler and does not stop the batch.
+	 *
+	 * @param files files to process, consumed lazily by the calling thread
+	 * @param operation operation to run on each file
+	 * @param handler receives the result of each file, may be null
+	 * @return counts for the batch
+	 * @throws InterruptedException if the calling thread is interrupted while waiting.
+	 *         Files already submitted are left to finish.
+	 */
+	public <T> Summary process(Iterator<File> files, final Operation<T> operation, final ResultHandler<T> handler) throws InterruptedException {
+		final Summary summary = new Summary();
+		while(files.hasNext()) {
+			final File file = files.next();
+			final long size = file.length();
+			acquire(size);
+			try {
+				executor.execute(new Runnable() {
+					public void run() {
+						long start = System.currentTimeMillis();
+						T value = null;
+						Throwable error = null;
+						try {
+							value = operation.process(file);
+						} catch(Throwable e) {
+							error = e;
+						}
+						try {
+							summary.add(size, error == null);
+							if(error != null)
+								LOGGER.debug("Failed to process {}", file, error);
+							if(handler != null)
+								handler.handle(new Result<T>(file, value, error, System.currentTimeMillis() - start));
+						} catch(RuntimeException e) {
+							LOGGER.error("Result handler failed for {}", file, e);
+						} finally {
+							release(size);
+						}
+					}
+				});
+			} catch(RejectedExecutionException e) {
+				release(size);
+				throw e;
+			}
+		}
+		awaitIdle();
+
+		return summary;
+	}
+
+	/**
+	 * Run the operation on every file of a directory or on a single file.
+	 *
+	 * @param fileOrDirectory image file or directory
+	 * @param recursive true to include the sub-directories
+	 * @param operation operation to run on each file
+	 * @param handler receives the result of each file, may be null
+	 * @return counts for the batch
+	 * @throws InterruptedException
+	 */
+	public <T> Summary process(File fileOrDirectory, boolean recursive, Operation<T> operation, ResultHandler<T> handler) throws InterruptedException {
+		return process(listFiles(fileOrDirectory, recursive), operation, handler);
+	}
+
+	/**
+	 * Walk a directory lazily, one directory listing at a time. Hidden files are skipped.
+	 *
+	 * @param fileOrDirectory a directory or a single file
+	 * @param recursive true to include the sub-directories
+	 * @return an Iterator over the files found
+	 */
+	public static Iterator<File> listFiles(File fileOrDirectory, final boolean recursive) {
+		final Deque<File> pending = new ArrayDeque<File>();
+		pending.push(fileOrDirectory);
+		final FileFilter filter = new FileFilter() {
+			public boolean accept(File file) {
+				return !file.isHidden() && (file.isFile() || (recursive && file.isDirectory()));
+			}
+		};
+
+		return new Iterator<File>() {
+			private File next;
+
+			public boolean hasNext() {
+				while(next == null && !pending.isEmpty()) {
+					File file = pending.pop();
+					if(file.isDirectory()) {
+						File[] children = file.listFiles(filter);
+						if(children == null) {
+							LOGGER.warn("Unable to list directory {}", file);
+							continue;
+						}
+						Arrays.sort(children);
+						// Push in reverse so the files come out in name order
+						for(int i = children.length - 1; i >= 0; i--)
+							pending.push(children[i]);
+					} else {
+						next = file;
+					}
+				}
+				return next != null;
+			}
+
+			public File next() {
+				if(!hasNext())
+					throw new NoSuchElementException();
+				File file = next;
+				next = null;
+				return file;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Operation reading all the metadata of a file
+	 */
+	public static Operation<Map<MetadataType, Metadata>> readMetadata() {
+		return new Operation<Map<MetadataType, Metadata>>() {
+			public Map<MetadataType, Metadata> process(File file) throws IOException {
+				InputStream is = new BufferedInputStream(new FileInputStream(file));
+				try {
+					return Metadata.readMetadata(is);
+				} finally {
+					is.close();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Operation removing metadata from each file. The output keeps the path of the file
+	 * relative to inputRoot under outputRoot.
+	 *
+	 * @param inputRoot directory the files are taken from
+	 * @param outputRoot directory for the edited files, must differ from inputRoot
+	 * @param metadataTypes metadata to remove
+	 * @return an Operation returning the output file
+	 */
+	public static Operation<File> removeMetadata(File inputRoot, File outputRoot, MetadataType ... metadataTypes) {
+		return applyPlan(inputRoot, outputRoot, new MetadataEditPlan().removeMetadata(metadataTypes));
+	}
+
+	/**
+	 * Operation applying a MetadataEditPlan to each file. The output keeps the path of the
+	 * file relative to inputRoot under outputRoot. The plan is shared by all the files, so it
+	 * should not hold an Exif with a thumbnail created from the image.
+	 *
+	 * @param inputRoot directory the files are taken from
+	 * @param outputRoot directory for the edited files, must differ from inputRoot
+	 * @param plan metadata edits
+	 * @return an Operation returning the output file
+	 */
+	public static Operation<File> applyPlan(final File inputRoot, final File outputRoot, final MetadataEditPlan plan) {
+		if(inputRoot.getAbsoluteFile().equals(outputRoot.getAbsoluteFile()))
+			throw new IllegalArgumentException("Output directory must differ from input directory");
+
+		return new Operation<File>() {
+			public File process(File file) throws IOException {
+				File outFile = new File(outputRoot, relativePath(inputRoot, file));
+				File parent = outFile.getParentFile();
+				if(parent != null && !parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory())
+					throw new IOException("Unable to create directory " + parent);
+				InputStream is = new BufferedInputStream(new FileInputStream(file));
+				try {
+					OutputStream os = new BufferedOutputStream(new FileOutputStream(outFile));
+					try {
+						plan.apply(is, os);
+					} finally {
+						os.close();
+					}
+				} finally {
+					is.close();
+				}
+				return outFile;
+			}
+		};
+	}
+
+	// Path of file relative to root, or the file name if file is not under root
+	private static String relativePath(File root, File file) {
+		String rootPath = root.getAbsolutePath();
+		String filePath = file.getAbsolutePath();
+		if(root.isDirectory() && filePath.startsWith(rootPath + File.separator))
+			return filePath.substring(rootPath.length() + 1);
+
+		return file.getName();
+	}
+}
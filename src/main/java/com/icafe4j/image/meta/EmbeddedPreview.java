@@ -0,0 +1,622 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image.meta;
+
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.icafe4j.image.jpeg.Marker;
+import com.icafe4j.image.meta.adobe.ImageResourceID;
+import com.icafe4j.image.reader.TIFFReader;
+import com.icafe4j.image.tiff.FieldType;
+import com.icafe4j.image.tiff.IFD;
+import com.icafe4j.image.tiff.LazyIFD;
+import com.icafe4j.image.tiff.LongField;
+import com.icafe4j.image.tiff.Tag;
+import com.icafe4j.image.tiff.TiffField;
+import com.icafe4j.image.tiff.TiffFieldEnum;
+import com.icafe4j.image.tiff.TiffTag;
+import com.icafe4j.io.ByteArrayRandomAccessOutputStream;
+import com.icafe4j.io.IOUtils;
+import com.icafe4j.io.WriteStrategyII;
+import com.icafe4j.io.WriteStrategyMM;
+
+/**
+ * Embedded preview image of a JPEG or TIFF image, read without a full metadata parse.
+ * <p>
+ * Unlike {@link Metadata#extractThumbnails(InputStream, String)}, which reads and parses
+ * all the metadata and writes the thumbnails to files, only the places known to hold a
+ * preview are looked at: the JFIF and JFXX APP0 segments, IFD1 of the EXIF APP1 segment
+ * and the thumbnail resource of the Photoshop APP13 segment for JPEG; reduced-resolution
+ * subfiles and the thumbnail resource of the Photoshop tag for TIFF. JPEG segments are
+ * skipped by their length and the scan stops at the first SOS. TIFF files are mapped into
+ * memory and only the directory entries are read.
+ * <p>
+ * Compressed previews are handed out as read-only slices of the segment or the file data
+ * and are decoded into a BufferedImage only when {@link #getImage()} is called.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public final class EmbeddedPreview {
+	// Where the preview comes from
+	public enum Source {
+		JFIF,
+		JFXX,
+		EXIF,
+		PHOTOSHOP_IRB,
+		TIFF_SUBFILE
+	}
+
+	// JFXX extension codes
+	private static final int JFXX_JPEG = 0x10;
+	private static final int JFXX_PALETTE = 0x11;
+	private static final int JFXX_RGB = 0x13;
+	// Size of the Photoshop thumbnail resource header
+	private static final int THUMBNAIL_HEADER_LEN = 28;
+	private static final int SKIP_BUFFER_SIZE = 4096;
+
+	private static final String JFIF_ID = "JFIF\0";
+	private static final String JFXX_ID = "JFXX\0";
+	private static final String EXIF_ID = "Exif\0\0";
+	private static final String PHOTOSHOP_IRB_ID = "Photoshop 3.0\0";
+	// Longest identifier we check before reading a whole segment
+	private static final int MAX_ID_LEN = 14;
+
+	private Source source;
+	private int dataType;
+	private int width;
+	private int height;
+	// Row stride of the raw RGB data
+	private int stride;
+	private ByteBuffer data;
+	private BufferedImage image;
+	// Guards image
+	private final ReentrantLock lock = new ReentrantLock();
+
+	// Obtain a logger instance
+	private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedPreview.class);
+
+	private EmbeddedPreview(Source source, int dataType, int width, int height, int stride, ByteBuffer data) {
+		this.source = source;
+		this.dataType = dataType;
+		this.width = width;
+		this.height = height;
+		this.stride = stride;
+		this.data = data.asReadOnlyBuffer();
+	}
+
+	// JPEG preview, the size is taken from the SOF segment
+	private static EmbeddedPreview createJPEG(Source source, ByteBuffer data) {
+		int[] size = getJPEGSize(data);
+
+		return new EmbeddedPreview(source, Thumbnail.DATA_TYPE_KJpegRGB, size[0], size[1], 0, data);
+	}
+
+	private static BufferedImage createRGBImage(ByteBuffer data, int width, int height, int stride) {
+		byte[] pixels = new byte[stride * height];
+		ByteBuffer src = data.duplicate();
+		src.get(pixels, 0, Math.min(pixels.length, src.remaining()));
+		DataBuffer db = new DataBufferByte(pixels, pixels.length);
+		int[] off = {0, 1, 2}; // RGB band offset, we have 3 bands
+		WritableRaster raster = Raster.createInterleavedRaster(db, width, height, stride, 3, off, null);
+		ColorModel cm = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+
+		return new BufferedImage(cm, raster, false, null);
+	}
+
+	// Write the subfile as a standalone TIFF, copying the strips or tiles
+	private static ByteBuffer createTIFF(LazyIFD subfile, ByteBuffer tiff) throws IOException {
+		IFD ifd = subfile.toIFD();
+		// Drop links to other IFDs
+		Tag[] links = {TiffTag.SUB_IFDS, TiffTag.EXIF_SUB_IFD, TiffTag.GPS_SUB_IFD};
+		for(Tag link : links) {
+			ifd.removeChild(link);
+			ifd.removeField(link);
+		}
+		for(TiffField<?> field : new ArrayList<TiffField<?>>(ifd.getFields())) {
+			Tag tag = TiffTag.fromShort(field.getTag());
+			if(field.getType() == FieldType.IFD && tag != TiffTag.UNKNOWN)
+				ifd.removeField(tag);
+		}
+		TiffTag offsetsTag = TiffTag.STRIP_OFFSETS;
+		TiffTag countsTag = TiffTag.STRIP_BYTE_COUNTS;
+		if(ifd.getField(offsetsTag) == null) {
+			offsetsTag = TiffTag.TILE_OFFSETS;
+			countsTag = TiffTag.TILE_BYTE_COUNTS;
+		}
+		TiffField<?> offsets = ifd.getField(offsetsTag);
+		TiffField<?> counts = ifd.getField(countsTag);
+		if(offsets == null || counts == null)
+			throw new IOException("Subfile has no image data");
+		int[] off = offsets.getDataAsLong();
+		int[] len = counts.getDataAsLong();
+		if(off.length != len.length)
+			throw new IOException("Subfile strip offsets and byte counts don't match");
+		// Offsets are rewritten as LONG, the original might be SHORT
+		LongField newOffsets = new LongField(offsetsTag.getValue(), new int[off.length]);
+		ifd.addField(newOffsets);
+
+		ByteArrayRandomAccessOutputStream rout = new ByteArrayRandomAccessOutputStream();
+		short endian = tiff.getShort(0);
+		if(endian == IOUtils.BIG_ENDIAN)
+			rout.setWriteStrategy(WriteStrategyMM.getInstance());
+		else
+			rout.setWriteStrategy(WriteStrategyII.getInstance());
+		rout.writeShort(endian);
+		rout.writeShort(0x2a);
+		rout.writeInt(8);
+		int offset = ifd.write(rout, 8);
+		int[] newOff = new int[off.length];
+		for(int i = 0; i < off.length; i++) {
+			ByteBuffer strip = subfile.slice(off[i], len[i]);
+			byte[] temp = new byte[len[i]];
+			strip.get(temp);
+			rout.seek(offset);
+			rout.write(temp);
+			newOff[i] = offset;
+			offset += len[i];
+		}
+		rout.seek(newOffsets.getDataOffset());
+		for(int i : newOff)
+			rout.writeInt(i);
+		rout.close();
+
+		return ByteBuffer.wrap(rout.toByteArray());
+	}
+
+	private static int getInt(TiffField<?> field) {
+		if(field == null) return 0;
+		int[] value = field.getDataAsLong();
+
+		return (value.length > 0) ? value[0] : 0;
+	}
+
+	private static int[] getJPEGSize(ByteBuffer jpeg) {
+		int pos = jpeg.position() + 2;
+		int limit = jpeg.limit();
+		while(pos + 4 <= limit) {
+			if((jpeg.get(pos)&0xff) != 0xff) break;
+			int marker = jpeg.get(pos + 1)&0xff;
+			if(marker == 0xff) { // Fill byte
+				pos++;
+				continue;
+			}
+			if(marker == (Marker.SOS.getValue()&0xff) || marker == (Marker.EOI.getValue()&0xff)) break;
+			int length = ((jpeg.get(pos + 2)&0xff) << 8) | (jpeg.get(pos + 3)&0xff);
+			// SOF0 - SOF15 except DHT, JPG and DAC
+			if(marker >= 0xc0 && marker <= 0xcf && marker != 0xc4 && marker != 0xc8 && marker != 0xcc && pos + 9 <= limit) {
+				int height = ((jpeg.get(pos + 5)&0xff) << 8) | (jpeg.get(pos + 6)&0xff);
+				int width = ((jpeg.get(pos + 7)&0xff) << 8) | (jpeg.get(pos + 8)&0xff);
+				return new int[] {width, height};
+			}
+			pos += 2 + length;
+		}
+
+		return new int[] {0, 0};
+	}
+
+	private static boolean startsWith(byte[] data, int len, String id) {
+		if(len < id.length()) return false;
+		for(int i = 0; i < id.length(); i++)
+			if(data[i] != (byte)id.charAt(i)) return false;
+
+		return true;
+	}
+
+	/**
+	 * Read the best embedded preview, the one with the most pixels, of a JPEG or TIFF image.
+	 *
+	 * @param file the image file
+	 * @return the best preview or null if the image has none
+	 * @throws IOException
+	 */
+	public static EmbeddedPreview read(File file) throws IOException {
+		return selectBest(readAll(file));
+	}
+
+	/**
+	 * Read the best embedded preview, the one with the most pixels, of a JPEG or TIFF image.
+	 *
+	 * @param is InputStream for the image
+	 * @return the best preview or null if the image has none
+	 * @throws IOException
+	 */
+	public static EmbeddedPreview read(InputStream is) throws IOException {
+		return selectBest(readAll(is));
+	}
+
+	/**
+	 * Read all the embedded previews of a JPEG or TIFF image. A TIFF file is mapped into memory
+	 * and the previews refer to the mapping.
+	 *
+	 * @param file the image file
+	 * @return a list of previews, empty if the image has none or is neither JPEG nor TIFF
+	 * @throws IOException
+	 */
+	public static List<EmbeddedPreview> readAll(File file) throws IOException {
+		InputStream is = new BufferedInputStream(new FileInputStream(file), SKIP_BUFFER_SIZE);
+		try {
+			int magic = IOUtils.readUnsignedShortMM(is);
+			if(magic == (Marker.SOI.getValue()&0xffff))
+				return readJPEG(is);
+			if(magic != (IOUtils.LITTLE_ENDIAN&0xffff) && magic != (IOUtils.BIG_ENDIAN&0xffff))
+				return Collections.emptyList();
+		} finally {
+			is.close();
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if(channel.size() > Integer.MAX_VALUE)
+				throw new IOException("TIFF file larger than 2GB is not supported");
+			// The mapping stays valid after the file is closed
+			return readTIFF(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Read all the embedded previews of a JPEG or TIFF image. Only the JPEG segments
+	 * before the first SOS are read, a TIFF image is read into memory as a whole.
+	 *
+	 * @param is InputStream for the image
+	 * @return a list of previews, empty if the image has none or is neither JPEG nor TIFF
+	 * @throws IOException
+	 */
+	public static List<EmbeddedPreview> readAll(InputStream is) throws IOException {
+		int magic = IOUtils.readUnsignedShortMM(is);
+		if(magic == (Marker.SOI.getValue()&0xffff))
+			return readJPEG(is);
+		if(magic != (IOUtils.LITTLE_ENDIAN&0xffff) && magic != (IOUtils.BIG_ENDIAN&0xffff))
+			return Collections.emptyList();
+		byte[] rest = IOUtils.inputStreamToByteArray(is);
+		ByteBuffer tiff = ByteBuffer.allocate(rest.length + 2);
+		tiff.putShort((short)magic);
+		tiff.put(rest);
+		tiff.flip();
+
+		return readTIFF(tiff);
+	}
+
+	private static void readExif(ByteBuffer exif, List<EmbeddedPreview> previews) {
+		try {
+			List<LazyIFD> ifds = LazyIFD.readIFDs(exif);
+			if(ifds.size() < 2) return;
+			LazyIFD ifd1 = ifds.get(1);
+			int offset = getInt(ifd1.getField(TiffTag.JPEG_INTERCHANGE_FORMAT));
+			int length = getInt(ifd1.getField(TiffTag.JPEG_INTERCHANGE_FORMAT_LENGTH));
+			// Uncompressed EXIF thumbnails are rare, we leave them to Exif
+			if(offset > 0 && length > 0)
+				previews.add(createJPEG(Source.EXIF, ifd1.slice(offset, length)));
+		} catch (IOException e) {
+			LOGGER.warn("Invalid EXIF thumbnail: {}", e.getMessage());
+		}
+	}
+
+	// Scan the Photoshop image resource blocks for the thumbnail resource
+	private static void readIRB(ByteBuffer irb, List<EmbeddedPreview> previews) {
+		int pos = irb.position();
+		int limit = irb.limit();
+		while(pos + 12 <= limit) {
+			if(irb.get(pos) != '8' || irb.get(pos + 1) != 'B' || irb.get(pos + 2) != 'I' || irb.get(pos + 3) != 'M')
+				break;
+			short id = (short)(((irb.get(pos + 4)&0xff) << 8) | (irb.get(pos + 5)&0xff));
+			int nameLen = irb.get(pos + 6)&0xff;
+			// Pascal string padded to even length
+			int dataPos = pos + 6 + ((nameLen + 2) & ~1);
+			if(dataPos + 4 > limit) break;
+			int size = readIntMM(irb, dataPos);
+			dataPos += 4;
+			if(size < 0 || dataPos + size > limit) break;
+			if((id == ImageResourceID.THUMBNAIL_RESOURCE_PS4.getValue() || id == ImageResourceID.THUMBNAIL_RESOURCE_PS5.getValue())
+					&& size >= THUMBNAIL_HEADER_LEN) {
+				int dataType = readIntMM(irb, dataPos);
+				int width = readIntMM(irb, dataPos + 4);
+				int height = readIntMM(irb, dataPos + 8);
+				int paddedRowBytes = readIntMM(irb, dataPos + 12);
+				int totalSize = readIntMM(irb, dataPos + 16);
+				int compressedSize = readIntMM(irb, dataPos + 20);
+				int available = size - THUMBNAIL_HEADER_LEN;
+				ByteBuffer image = irb.duplicate();
+				image.position(dataPos + THUMBNAIL_HEADER_LEN);
+				if(dataType == Thumbnail.DATA_TYPE_KJpegRGB && compressedSize > 0 && compressedSize <= available) {
+					image.limit(dataPos + THUMBNAIL_HEADER_LEN + compressedSize);
+					previews.add(new EmbeddedPreview(Source.PHOTOSHOP_IRB, dataType, width, height, 0, image.slice()));
+				} else if(dataType == Thumbnail.DATA_TYPE_KRawRGB && totalSize > 0 && totalSize <= available
+						&& paddedRowBytes >= width * 3 && (long)paddedRowBytes * height <= totalSize) {
+					image.limit(dataPos + THUMBNAIL_HEADER_LEN + totalSize);
+					previews.add(new EmbeddedPreview(Source.PHOTOSHOP_IRB, dataType, width, height, paddedRowBytes, image.slice()));
+				}
+				return;
+			}
+			// Data padded to even length
+			pos = dataPos + ((size + 1) & ~1);
+		}
+	}
+
+	private static int readIntMM(ByteBuffer buffer, int pos) {
+		return ((buffer.get(pos)&0xff) << 24) | ((buffer.get(pos + 1)&0xff) << 16)
+				| ((buffer.get(pos + 2)&0xff) << 8) | (buffer.get(pos + 3)&0xff);
+	}
+
+	private static void readJFIF(Source source, byte[] segment, List<EmbeddedPreview> previews) {
+		if(source == Source.JFIF) {
+			// Version, units, densities, then thumbnail width and height
+			if(segment.length < 14) return;
+			int width = segment[12]&0xff;
+			int height = segment[13]&0xff;
+			if(width > 0 && height > 0 && 14 + 3 * width * height <= segment.length)
+				previews.add(new EmbeddedPreview(source, Thumbnail.DATA_TYPE_KRawRGB, width, height, 3 * width, ByteBuffer.wrap(segment, 14, 3 * width * height).slice()));
+			return;
+		}
+		if(segment.length < 6) return;
+		int extension = segment[5]&0xff;
+		if(extension == JFXX_JPEG) {
+			previews.add(createJPEG(source, ByteBuffer.wrap(segment, 6, segment.length - 6).slice()));
+			return;
+		}
+		if(segment.length < 8) return;
+		int width = segment[6]&0xff;
+		int height = segment[7]&0xff;
+		if(width == 0 || height == 0) return;
+		if(extension == JFXX_RGB && 8 + 3 * width * height <= segment.length) {
+			previews.add(new EmbeddedPreview(source, Thumbnail.DATA_TYPE_KRawRGB, width, height, 3 * width, ByteBuffer.wrap(segment, 8, 3 * width * height).slice()));
+		} else if(extension == JFXX_PALETTE && 8 + 768 + width * height <= segment.length) {
+			// Expand the palette, the preview is tiny anyway
+			byte[] rgb = new byte[3 * width * height];
+			for(int i = 0, j = 0; i < width * height; i++) {
+				int index = 8 + 3 * (segment[8 + 768 + i]&0xff);
+				rgb[j++] = segment[index];
+				rgb[j++] = segment[index + 1];
+				rgb[j++] = segment[index + 2];
+			}
+			previews.add(new EmbeddedPreview(source, Thumbnail.DATA_TYPE_KRawRGB, width, height, 3 * width, ByteBuffer.wrap(rgb)));
+		}
+	}
+
+	// Walk the segments up to SOS, only the APP0, APP1 and APP13 segments with a known identifier are read
+	private static List<EmbeddedPreview> readJPEG(InputStream is) throws IOException {
+		List<EmbeddedPreview> previews = new ArrayList<EmbeddedPreview>();
+		byte[] id = new byte[MAX_ID_LEN];
+		int marker = nextMarker(is);
+		while(marker != (Marker.SOS.getValue()&0xffff) && marker != (Marker.EOI.getValue()&0xffff)) {
+			// Stand-alone markers have no length
+			if(marker == (Marker.TEM.getValue()&0xffff) || (marker >= (Marker.RST0.getValue()&0xffff) && marker <= (Marker.RST7.getValue()&0xffff))) {
+				marker = nextMarker(is);
+				continue;
+			}
+			int length = IOUtils.readUnsignedShortMM(is) - 2;
+			if(length < 0)
+				throw new IOException("Invalid JPEG segment length: " + (length + 2));
+			Source source = null;
+			int idLen = 0;
+			if(marker == (Marker.APP0.getValue()&0xffff) || marker == (Marker.APP1.getValue()&0xffff) || marker == (Marker.APP13.getValue()&0xffff)) {
+				idLen = Math.min(length, MAX_ID_LEN);
+				IOUtils.readFully(is, id, 0, idLen);
+				if(marker == (Marker.APP0.getValue()&0xffff)) {
+					if(startsWith(id, idLen, JFIF_ID)) source = Source.JFIF;
+					else if(startsWith(id, idLen, JFXX_ID)) source = Source.JFXX;
+				} else if(marker == (Marker.APP1.getValue()&0xffff)) {
+					if(startsWith(id, idLen, EXIF_ID)) source = Source.EXIF;
+				} else if(startsWith(id, idLen, PHOTOSHOP_IRB_ID)) {
+					source = Source.PHOTOSHOP_IRB;
+				}
+			}
+			if(source == null) {
+				skip(is, length - idLen);
+			} else {
+				byte[] segment = new byte[length];
+				System.arraycopy(id, 0, segment, 0, idLen);
+				IOUtils.readFully(is, segment, idLen, length - idLen);
+				switch(source) {
+					case JFIF:
+					case JFXX:
+						readJFIF(source, segment, previews);
+						break;
+					case EXIF:
+						readExif(ByteBuffer.wrap(segment, EXIF_ID.length(), length - EXIF_ID.length()), previews);
+						break;
+					default:
+						readIRB(ByteBuffer.wrap(segment, PHOTOSHOP_IRB_ID.length(), length - PHOTOSHOP_IRB_ID.length()), previews);
+				}
+			}
+			marker = nextMarker(is);
+		}
+
+		return previews;
+	}
+
+	private static List<EmbeddedPreview> readTIFF(ByteBuffer tiff) throws IOException {
+		List<EmbeddedPreview> previews = new ArrayList<EmbeddedPreview>();
+		List<LazyIFD> ifds = LazyIFD.readIFDs(tiff);
+		tiff = tiff.slice();
+		List<LazyIFD> candidates = new ArrayList<LazyIFD>(ifds);
+		for(LazyIFD ifd : ifds) {
+			// Only the first of the sub IFDs is looked at
+			LazyIFD child = ifd.getChild(TiffTag.SUB_IFDS);
+			if(child != null) candidates.add(child);
+		}
+		for(LazyIFD ifd : candidates) {
+			// Bit 0 of NewSubfileType marks a reduced-resolution version of another image
+			if((getInt(ifd.getField(TiffTag.NEW_SUBFILE_TYPE)) & 1) == 0) continue;
+			try {
+				previews.add(readSubfile(ifd, tiff));
+			} catch (Exception e) {
+				LOGGER.warn("Invalid TIFF subfile: {}", e.getMessage());
+			}
+		}
+		if(ifds.size() > 0) {
+			ByteBuffer irb = ifds.get(0).getFieldData(TiffTag.PHOTOSHOP);
+			if(irb != null) readIRB(irb, previews);
+		}
+
+		return previews;
+	}
+
+	private static EmbeddedPreview readSubfile(LazyIFD ifd, ByteBuffer tiff) throws IOException {
+		int width = getInt(ifd.getField(TiffTag.IMAGE_WIDTH));
+		int height = getInt(ifd.getField(TiffTag.IMAGE_LENGTH));
+		int compression = getInt(ifd.getField(TiffTag.COMPRESSION));
+		if(compression == TiffFieldEnum.Compression.OLD_JPG.getValue()) {
+			int offset = getInt(ifd.getField(TiffTag.JPEG_INTERCHANGE_FORMAT));
+			int length = getInt(ifd.getField(TiffTag.JPEG_INTERCHANGE_FORMAT_LENGTH));
+			if(offset > 0 && length > 0)
+				return new EmbeddedPreview(Source.TIFF_SUBFILE, Thumbnail.DATA_TYPE_KJpegRGB, width, height, 0, ifd.slice(offset, length));
+		} else if(compression == TiffFieldEnum.Compression.JPG.getValue() && !ifd.containsField(TiffTag.JPEG_TABLES)) {
+			// A single strip with its own tables is a complete JPEG stream
+			TiffField<?> offsets = ifd.getField(TiffTag.STRIP_OFFSETS);
+			TiffField<?> counts = ifd.getField(TiffTag.STRIP_BYTE_COUNTS);
+			if(offsets != null && counts != null && offsets.getDataAsLong().length == 1)
+				return new EmbeddedPreview(Source.TIFF_SUBFILE, Thumbnail.DATA_TYPE_KJpegRGB, width, height, 0, ifd.slice(getInt(offsets), getInt(counts)));
+		}
+
+		return new EmbeddedPreview(Source.TIFF_SUBFILE, Thumbnail.DATA_TYPE_TIFF, width, height, 0, createTIFF(ifd, tiff));
+	}
+
+	private static EmbeddedPreview selectBest(List<EmbeddedPreview> previews) {
+		EmbeddedPreview best = null;
+		for(EmbeddedPreview preview : previews) {
+			if(best == null || (long)preview.width * preview.height > (long)best.width * best.height)
+				best = preview;
+		}
+
+		return best;
+	}
+
+	// Read the next marker, skipping fill bytes
+	private static int nextMarker(InputStream is) throws IOException {
+		int b = IOUtils.read(is);
+		if(b < 0)
+			throw new EOFException("Unexpected end of JPEG stream");
+		if(b != 0xff)
+			throw new IOException("Invalid JPEG marker prefix: " + b);
+		do {
+			b = IOUtils.read(is);
+		} while(b == 0xff);
+		if(b < 0)
+			throw new EOFException("Unexpected end of JPEG stream");
+
+		return 0xff00 | b;
+	}
+
+	private static void skip(InputStream is, long n) throws IOException {
+		while(n > 0) {
+			long skipped = is.skip(n);
+			if(skipped <= 0) { // skip() may give up early, make sure we are not at the end
+				if(IOUtils.read(is) < 0)
+					throw new EOFException("Unexpected end of JPEG stream");
+				skipped = 1;
+			}
+			n -= skipped;
+		}
+	}
+
+	/**
+	 * Preview data, which depends on the data type: a JPEG stream for DATA_TYPE_KJpegRGB,
+	 * a standalone TIFF for DATA_TYPE_TIFF and RGB pixels, with rows {@link #getRowStride()}
+	 * bytes apart, for DATA_TYPE_KRawRGB.
+	 *
+	 * @return a read-only ByteBuffer for the preview data
+	 */
+	public ByteBuffer getData() {
+		return data.duplicate();
+	}
+
+	/** One of the Thumbnail.DATA_TYPE_XXX values */
+	public int getDataType() {
+		return dataType;
+	}
+
+	/** Height of the preview, 0 if unknown */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Decode the preview data. The image is created the first time this method is called.
+	 *
+	 * @return a BufferedImage for the preview
+	 * @throws IOException if the preview data can't be decoded
+	 */
+	public BufferedImage getImage() throws IOException {
+		// Decode only once if several threads ask for the image at the same time
+		lock.lock();
+		try {
+			if(image == null) {
+				if(dataType == Thumbnail.DATA_TYPE_KRawRGB) {
+					image = createRGBImage(data, width, height, stride);
+				} else {
+					byte[] bytes = new byte[data.remaining()];
+					data.duplicate().get(bytes);
+					if(dataType == Thumbnail.DATA_TYPE_KJpegRGB) {
+						image = javax.imageio.ImageIO.read(new ByteArrayInputStream(bytes));
+					} else {
+						try {
+							image = new TIFFReader().read(new ByteArrayInputStream(bytes));
+						} catch (Exception e) {
+							throw new IOException("Error decoding TIFF preview", e);
+						}
+					}
+					if(image == null)
+						throw new IOException("Unable to decode " + source + " preview");
+				}
+			}
+	
+			return image;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** Row stride of DATA_TYPE_KRawRGB data, 0 for other data types */
+	public int getRowStride() {
+		return stride;
+	}
+
+	public Source getSource() {
+		return source;
+	}
+
+	/** Width of the preview, 0 if unknown */
+	public int getWidth() {
+		return width;
+	}
+
+	public String toString() {
+		return source + " preview " + width + "x" + height + ", " + data.remaining() + " bytes";
+	}
+}
@@ -13,6 +13,7 @@
  *
  * Who   Date       Description
  * ====  =========  =====================================================================
+ * AG    18Oct2026  Added flight recorder event to readMetadata(InputStream)
  * WY    02Mar2017  Added insertMetadata(Collection<Metadata>, InputStream, OutputStream)
  * WY    26Sep2015  Added insertComment(InputStream, OutputStream, String)
  * WY    06Jul2015  Added insertXMP(InputSream, OutputStream, XMP)
@@ -63,6 +64,8 @@ import com.icafe4j.io.FileCacheRandomAccessOutputStream;
 import com.icafe4j.io.PeekHeadInputStream;
 import com.icafe4j.io.RandomAccessInputStream;
 import com.icafe4j.io.RandomAccessOutputStream;
+import com.icafe4j.jfr.CodecEvent;
+import com.icafe4j.jfr.FlightRecorder;
 
 /**
  * Base class for image metadata.
@@ -445,36 +448,47 @@ public abstract class Metadata implements MetadataReader {
 	 * @throws IOException
 	 */
 	public static Map<MetadataType, Metadata> readMetadata(InputStream is) throws IOException {
+		CodecEvent event = FlightRecorder.metadataRead();
+		ImageType imageType = null;
 		// Metadata map for all the Metadata read
 		Map<MetadataType, Metadata> metadataMap = new HashMap<MetadataType, Metadata>();
-		// ImageIO.IMAGE_MAGIC_NUMBER_LEN bytes as image magic number
-		PeekHeadInputStream peekHeadInputStream = new PeekHeadInputStream(is, ImageIO.IMAGE_MAGIC_NUMBER_LEN);
-		ImageType imageType = IMGUtils.guessImageType(peekHeadInputStream);		
-		// Delegate metadata reading to corresponding image tweakers.
-		switch(imageType) {
-			case JPG:
-				metadataMap = JPEGTweaker.readMetadata(peekHeadInputStream);
-				break;
-			case TIFF:
-				RandomAccessInputStream randIS = new FileCacheRandomAccessInputStream(peekHeadInputStream);
-				metadataMap = TIFFTweaker.readMetadata(randIS);
-				randIS.shallowClose();
-				break;
-			case PNG:
-				metadataMap = PNGTweaker.readMetadata(peekHeadInputStream);
-				break;
-			case GIF:
-				metadataMap = GIFTweaker.readMetadata(peekHeadInputStream);
-				break;
-			case BMP:
-				metadataMap = BMPTweaker.readMetadata(peekHeadInputStream);
-				break;
-			default:
-				peekHeadInputStream.close();
-				throw new IllegalArgumentException("Metadata reading is not supported for " + imageType + " image");
+		if(event != null) event.begin();
+		try {
+			// ImageIO.IMAGE_MAGIC_NUMBER_LEN bytes as image magic number
+			PeekHeadInputStream peekHeadInputStream = new PeekHeadInputStream(is, ImageIO.IMAGE_MAGIC_NUMBER_LEN);
+			imageType = IMGUtils.guessImageType(peekHeadInputStream);		
+			// Delegate metadata reading to corresponding image tweakers.
+			switch(imageType) {
+				case JPG:
+					metadataMap = JPEGTweaker.readMetadata(peekHeadInputStream);
+					break;
+				case TIFF:
+					RandomAccessInputStream randIS = new FileCacheRandomAccessInputStream(peekHeadInputStream);
+					metadataMap = TIFFTweaker.readMetadata(randIS);
+					randIS.shallowClose();
+					break;
+				case PNG:
+					metadataMap = PNGTweaker.readMetadata(peekHeadInputStream);
+					break;
+				case GIF:
+					metadataMap = GIFTweaker.readMetadata(peekHeadInputStream);
+					break;
+				case BMP:
+					metadataMap = BMPTweaker.readMetadata(peekHeadInputStream);
+					break;
+				default:
+					peekHeadInputStream.close();
+					throw new IllegalArgumentException("Metadata reading is not supported for " + imageType + " image");
 				
-		}	
-		peekHeadInputStream.shallowClose();
+			}	
+			peekHeadInputStream.shallowClose();
+		} finally {
+			if(event != null) {
+				if(imageType != null) event.format = imageType.name();
+				event.metadataTypes = metadataMap.keySet().toString();
+				event.commit(null);
+			}
+		}
 		
 		return metadataMap;
 	}
@@ -0,0 +1,249 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image.meta;
+
+import java.awt.color.ICC_Profile;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.icafe4j.image.ImageIO;
+import com.icafe4j.image.ImageType;
+import com.icafe4j.image.gif.GIFTweaker;
+import com.icafe4j.image.jpeg.JPEGTweaker;
+import com.icafe4j.image.meta.adobe._8BIM;
+import com.icafe4j.image.meta.exif.Exif;
+import com.icafe4j.image.meta.iptc.IPTCDataSet;
+import com.icafe4j.image.meta.xmp.XMP;
+import com.icafe4j.image.png.PNGTweaker;
+import com.icafe4j.image.tiff.TIFFTweaker;
+import com.icafe4j.image.util.IMGUtils;
+import com.icafe4j.io.FileCacheRandomAccessInputStream;
+import com.icafe4j.io.FileCacheRandomAccessOutputStream;
+import com.icafe4j.io.PeekHeadInputStream;
+import com.icafe4j.io.RandomAccessInputStream;
+import com.icafe4j.io.RandomAccessOutputStream;
+
+/**
+ * Collects metadata removals, inserts and updates and applies them to an image in one pass.
+ * <p>
+ * Calling the insertXXX methods of {@link Metadata} one after another copies the whole image
+ * once for each call. With a plan, the image is copied only once: the JPEG segments before
+ * SOS are edited in memory and the entropy coded data is copied as is, the TIFF page IFD is
+ * changed once before the pages are copied, the PNG chunk list is changed once before it is
+ * written out and the GIF blocks are filtered on the fly.
+ * <p>
+ * The removals are done first, then the inserts, whatever order the methods are called in.
+ * Metadata not supported by the image format is skipped. A plan can be applied to any
+ * number of images, but an Exif with a thumbnail created from the image should not be shared.
+ * <pre>
+ * new MetadataEditPlan().removeMetadata(MetadataType.COMMENT)
+ *     .insertXMP(xmp).insertIPTC(iptcs, true)
+ *     .apply(is, os);
+ * </pre>
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public class MetadataEditPlan {
+	private Set<MetadataType> removals = EnumSet.noneOf(MetadataType.class);
+	private Exif exif;
+	private boolean exifUpdate;
+	private byte[] iccProfile;
+	private Collection<IPTCDataSet> iptcs;
+	private boolean iptcUpdate;
+	private Collection<_8BIM> bims;
+	private boolean irbUpdate;
+	private XMP xmp;
+	private List<String> comments = new ArrayList<String>();
+	// Working page for multiple page TIFF
+	private int pageNumber;
+
+	// Obtain a logger instance
+	private static final Logger LOGGER = LoggerFactory.getLogger(MetadataEditPlan.class);
+
+	public MetadataEditPlan() {}
+
+	/**
+	 * Apply the plan to an image, copying it from the input stream to the output stream once.
+	 *
+	 * @param is InputStream for the image
+	 * @param os OutputStream for the edited image
+	 * @throws IOException
+	 */
+	public void apply(InputStream is, OutputStream os) throws IOException {
+		// ImageIO.IMAGE_MAGIC_NUMBER_LEN bytes as image magic number
+		PeekHeadInputStream peekHeadInputStream = new PeekHeadInputStream(is, ImageIO.IMAGE_MAGIC_NUMBER_LEN);
+		ImageType imageType = IMGUtils.guessImageType(peekHeadInputStream);
+		// Delegate metadata editing to corresponding image tweaker.
+		switch(imageType) {
+			case JPG:
+				JPEGTweaker.editMetadata(peekHeadInputStream, os, this);
+				break;
+			case TIFF:
+				RandomAccessInputStream randIS = new FileCacheRandomAccessInputStream(peekHeadInputStream);
+				RandomAccessOutputStream randOS = new FileCacheRandomAccessOutputStream(os);
+				TIFFTweaker.editMetadata(randIS, randOS, pageNumber, this);
+				randIS.shallowClose();
+				randOS.shallowClose();
+				break;
+			case PNG:
+				PNGTweaker.editMetadata(peekHeadInputStream, os, this);
+				break;
+			case GIF:
+				GIFTweaker.editMetadata(peekHeadInputStream, os, this);
+				break;
+			case PCX:
+			case TGA:
+			case BMP:
+				LOGGER.info("{} image format does not support meta data, image copied unchanged", imageType);
+				byte[] buf = new byte[10240]; // 10K
+				int bytesRead = -1;
+				while((bytesRead = peekHeadInputStream.read(buf)) != -1)
+					os.write(buf, 0, bytesRead);
+				break;
+			default:
+				peekHeadInputStream.close();
+				throw new IllegalArgumentException("Metadata editing is not supported for " + imageType + " image");
+		}
+		peekHeadInputStream.shallowClose();
+	}
+
+	public List<String> getComments() {
+		return Collections.unmodifiableList(comments);
+	}
+
+	public Exif getExif() {
+		return exif;
+	}
+
+	public byte[] getICCProfile() {
+		return iccProfile;
+	}
+
+	public Collection<IPTCDataSet> getIPTC() {
+		return iptcs;
+	}
+
+	public Collection<_8BIM> getIRB() {
+		return bims;
+	}
+
+	public int getPageNumber() {
+		return pageNumber;
+	}
+
+	/** Metadata types to be removed before anything is inserted */
+	public Set<MetadataType> getRemovals() {
+		return Collections.unmodifiableSet(removals);
+	}
+
+	public XMP getXMP() {
+		return xmp;
+	}
+
+	/**
+	 * Add comments to the image. Existing comments are kept unless COMMENT is also removed.
+	 */
+	public MetadataEditPlan insertComments(List<String> comments) {
+		this.comments.addAll(comments);
+		return this;
+	}
+
+	/**
+	 * @param exif Exif instance
+	 * @param update True to keep the original data, otherwise false
+	 */
+	public MetadataEditPlan insertExif(Exif exif, boolean update) {
+		this.exif = exif;
+		this.exifUpdate = update;
+		return this;
+	}
+
+	public MetadataEditPlan insertICCProfile(byte[] iccProfile) {
+		this.iccProfile = iccProfile;
+		return this;
+	}
+
+	public MetadataEditPlan insertICCProfile(ICC_Profile iccProfile) {
+		return insertICCProfile(iccProfile.getData());
+	}
+
+	/**
+	 * @param iptcs IPTC data sets
+	 * @param update True to keep the original data, otherwise false
+	 */
+	public MetadataEditPlan insertIPTC(Collection<IPTCDataSet> iptcs, boolean update) {
+		this.iptcs = iptcs;
+		this.iptcUpdate = update;
+		return this;
+	}
+
+	/**
+	 * @param bims Photoshop IRB 8BIM blocks
+	 * @param update True to keep the original data, otherwise false
+	 */
+	public MetadataEditPlan insertIRB(Collection<_8BIM> bims, boolean update) {
+		this.bims = bims;
+		this.irbUpdate = update;
+		return this;
+	}
+
+	/**
+	 * Insert XMP data, replacing the existing XMP if any.
+	 */
+	public MetadataEditPlan insertXMP(XMP xmp) {
+		this.xmp = xmp;
+		return this;
+	}
+
+	public boolean isEmpty() {
+		return removals.isEmpty() && exif == null && iccProfile == null && iptcs == null
+				&& bims == null && xmp == null && comments.isEmpty();
+	}
+
+	public boolean isExifUpdate() {
+		return exifUpdate;
+	}
+
+	public boolean isIPTCUpdate() {
+		return iptcUpdate;
+	}
+
+	public boolean isIRBUpdate() {
+		return irbUpdate;
+	}
+
+	public MetadataEditPlan removeMetadata(MetadataType ... metadataTypes) {
+		removals.addAll(Arrays.asList(metadataTypes));
+		return this;
+	}
+
+	/**
+	 * @param pageNumber zero based TIFF page to edit, ignored by the other formats
+	 */
+	public MetadataEditPlan setPageNumber(int pageNumber) {
+		if(pageNumber < 0)
+			throw new IllegalArgumentException("Negative page number: " + pageNumber);
+		this.pageNumber = pageNumber;
+		return this;
+	}
+}
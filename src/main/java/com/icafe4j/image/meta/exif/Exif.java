@@ -13,6 +13,7 @@
  *
  * Who   Date       Description
  * ====  =======    =================================================
+ * AG    18Oct2026  Read raw data on demand, added lazy IFD views and thumbnail slice
  * WY    10Apr2015  Moved data loaded checking to ExifReader
  * WY    31Mar2015  Fixed bug with getImageIFD() etc
  * WY    17Feb2015  Added addImageField() to add TIFF image tag
@@ -26,12 +27,12 @@
 package com.icafe4j.image.meta.exif;
 
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -42,14 +43,14 @@ import com.icafe4j.image.meta.MetadataType;
 import com.icafe4j.image.meta.Thumbnail;
 import com.icafe4j.image.tiff.FieldType;
 import com.icafe4j.image.tiff.IFD;
+import com.icafe4j.image.tiff.LazyIFD;
 import com.icafe4j.image.tiff.TIFFTweaker;
 import com.icafe4j.image.tiff.TiffField;
 import com.icafe4j.image.tiff.TiffTag;
-import com.icafe4j.io.FileCacheRandomAccessInputStream;
-import com.icafe4j.io.FileCacheRandomAccessOutputStream;
+import com.icafe4j.io.ByteArrayRandomAccessInputStream;
+import com.icafe4j.io.ByteArrayRandomAccessOutputStream;
 import com.icafe4j.io.IOUtils;
 import com.icafe4j.io.RandomAccessInputStream;
-import com.icafe4j.io.RandomAccessOutputStream;
 
 /**
  * EXIF wrapper
@@ -65,6 +66,8 @@ public abstract class Exif extends Metadata {
 	
 	private boolean containsThumbnail;
 	private boolean isThumbnailRequired;
+	// Lazy views of the IFDs of the raw data
+	private List<LazyIFD> views;
 	
 	public static final int FIRST_IFD_OFFSET = 0x08;
 	
@@ -78,7 +81,6 @@ public abstract class Exif extends Metadata {
 	
 	public Exif(byte[] data) {
 		super(MetadataType.EXIF, data);
-		ensureDataRead();
 	}
 	
 	public Exif(IFD imageIFD) {
@@ -91,6 +93,7 @@ public abstract class Exif extends Metadata {
 	}
 	
 	public void addExifField(ExifTag tag, FieldType type, Object data) {
+		ensureDataRead();
 		if(exifSubIFD == null)
 			exifSubIFD = new IFD();
 		TiffField<?> field = FieldType.createField(tag, type, data);
@@ -101,6 +104,7 @@ public abstract class Exif extends Metadata {
 	}
 	
 	public void addGPSField(GPSTag tag, FieldType type, Object data) {
+		ensureDataRead();
 		if(gpsSubIFD == null)
 			gpsSubIFD = new IFD();
 		TiffField<?> field = FieldType.createField(tag, type, data);
@@ -111,6 +115,7 @@ public abstract class Exif extends Metadata {
 	}
 	
 	public void addImageField(TiffTag tag, FieldType type, Object data) {
+		ensureDataRead();
 		if(imageIFD == null)
 			imageIFD = new IFD();
 		TiffField<?> field = FieldType.createField(tag, type, data);
@@ -121,6 +126,7 @@ public abstract class Exif extends Metadata {
 	}
 	
 	public boolean containsThumbnail() {
+		ensureDataRead();
 		if(containsThumbnail)
 			return true;
 		if(thumbnail != null)
@@ -129,6 +135,7 @@ public abstract class Exif extends Metadata {
 	}
 	
 	public IFD getExifIFD() {
+		ensureDataRead();
 		if(exifSubIFD != null) {
 			return new IFD(exifSubIFD);
 		}
@@ -136,7 +143,22 @@ public abstract class Exif extends Metadata {
 		return null;
 	}
 	
+	/**
+	 * Lazy view of the EXIF sub IFD of the raw EXIF data.
+	 * 
+	 * @return the EXIF sub IFD view or null if not available
+	 * @see #getImageIFDView()
+	 */
+	public LazyIFD getExifIFDView() {
+		LazyIFD imageView = getImageIFDView();
+		if(imageView != null)
+			return imageView.getChild(TiffTag.EXIF_SUB_IFD);
+		
+		return null;
+	}
+	
 	public IFD getGPSIFD() {
+		ensureDataRead();
 		if(gpsSubIFD != null) {
 			return new IFD(gpsSubIFD);
 		} 
@@ -144,7 +166,22 @@ public abstract class Exif extends Metadata {
 		return null;
 	}
 	
+	/**
+	 * Lazy view of the GPS sub IFD of the raw EXIF data.
+	 * 
+	 * @return the GPS sub IFD view or null if not available
+	 * @see #getImageIFDView()
+	 */
+	public LazyIFD getGPSIFDView() {
+		LazyIFD imageView = getImageIFDView();
+		if(imageView != null)
+			return imageView.getChild(TiffTag.GPS_SUB_IFD);
+		
+		return null;
+	}
+	
 	public IFD getImageIFD() {
+		ensureDataRead();
 		if(imageIFD != null) {
 			return new IFD(imageIFD);
 		}
@@ -152,20 +189,74 @@ public abstract class Exif extends Metadata {
 		return null;		
 	}
 
+	/**
+	 * Lazy view of the image IFD (IFD0) of the raw EXIF data. The fields are decoded only
+	 * when asked for and reading the views doesn't decode the whole EXIF data, so this is
+	 * much cheaper than {@link #getImageIFD()} when only a few fields are needed.
+	 * <p>
+	 * The views reflect the raw data this Exif was created from, not later changes.
+	 * 
+	 * @return the image IFD view or null if this Exif was not created from raw data
+	 */
+	public LazyIFD getImageIFDView() {
+		List<LazyIFD> views = getViews();
+		if(views.size() > 0)
+			return views.get(0);
+		
+		return null;
+	}
+	
 	public ExifThumbnail getThumbnail() {
+		ensureDataRead();
 		if(thumbnail != null)
 			return new ExifThumbnail(thumbnail);
 	
 		return null;
 	}
 	
+	/**
+	 * Return the JPEG thumbnail bytes of the raw EXIF data as a read-only slice, without
+	 * decoding the EXIF data or copying the thumbnail.
+	 * 
+	 * @return the JPEG thumbnail data or null if there is no JPEG thumbnail
+	 */
+	public ByteBuffer getThumbnailData() {
+		List<LazyIFD> views = getViews();
+		if(views.size() < 2) return null;
+		LazyIFD thumbnailView = views.get(1);
+		TiffField<?> offsetField = thumbnailView.getField(TiffTag.JPEG_INTERCHANGE_FORMAT);
+		TiffField<?> lengthField = thumbnailView.getField(TiffTag.JPEG_INTERCHANGE_FORMAT_LENGTH);
+		if(offsetField == null || lengthField == null) return null;
+		try {
+			return thumbnailView.slice(offsetField.getDataAsLong()[0], lengthField.getDataAsLong()[0]);
+		} catch (IOException e) {
+			LOGGER.warn("Invalid EXIF thumbnail: {}", e.getMessage());
+			return null;
+		}
+	}
+	
+	private List<LazyIFD> getViews() {
+		if(views == null) {
+			views = Collections.emptyList();
+			if(data != null && data.length > 0) {
+				try {
+					views = LazyIFD.readIFDs(ByteBuffer.wrap(data));
+				} catch (IOException e) {
+					LOGGER.warn("Invalid EXIF data: {}", e.getMessage());
+				}
+			}
+		}
+		
+		return views;
+	}
+	
 	public boolean isThumbnailRequired() {
 		return isThumbnailRequired;
 	}
 	
 	public void read() throws IOException {
 		if(!isDataRead) {
-			RandomAccessInputStream exifIn = new FileCacheRandomAccessInputStream(new ByteArrayInputStream(data));
+			RandomAccessInputStream exifIn = new ByteArrayRandomAccessInputStream(data);
 			List<IFD> ifds = new ArrayList<IFD>(3);
 			TIFFTweaker.readIFDs(ifds, exifIn);
 			if(ifds.size() > 0) {
@@ -200,11 +291,10 @@ public abstract class Exif extends Metadata {
 		    			field = thumbnailIFD.getField(TiffTag.TILE_OFFSETS);
 		    		if(field != null) {
 		    			 exifIn.seek(0);
-		    			 ByteArrayOutputStream bout = new ByteArrayOutputStream();
-		    			 RandomAccessOutputStream tiffout = new FileCacheRandomAccessOutputStream(bout);
+		    			 ByteArrayRandomAccessOutputStream tiffout = new ByteArrayRandomAccessOutputStream();
 		    			 TIFFTweaker.retainPages(exifIn, tiffout, 1);
-		    			 tiffout.close(); // Auto flush when closed
-		    			 thumbnail = new ExifThumbnail(width, height, Thumbnail.DATA_TYPE_TIFF, bout.toByteArray(), thumbnailIFD);
+		    			 tiffout.close();
+		    			 thumbnail = new ExifThumbnail(width, height, Thumbnail.DATA_TYPE_TIFF, tiffout.toByteArray(), thumbnailIFD);
 		    			 containsThumbnail = true;		    			    
 		    		}
 		    	}
@@ -215,16 +305,19 @@ public abstract class Exif extends Metadata {
 	}
 	
 	public void setExifIFD(IFD exifSubIFD) {
+		ensureDataRead();
 		this.exifSubIFD = exifSubIFD;
 	}
 	
 	public void setGPSIFD(IFD gpsSubIFD) {
+		ensureDataRead();
 		this.gpsSubIFD = gpsSubIFD;
 	}
 	
 	public void setImageIFD(IFD imageIFD) {
 		if(imageIFD == null)
 			throw new IllegalArgumentException("Input image IFD is null");
+		ensureDataRead();
 		this.imageIFD = imageIFD;
 		this.exifSubIFD = imageIFD.getChild(TiffTag.EXIF_SUB_IFD);
 		this.gpsSubIFD = imageIFD.getChild(TiffTag.GPS_SUB_IFD);
@@ -235,10 +328,12 @@ public abstract class Exif extends Metadata {
 	 *        will be generated from the input image.
 	 */	
 	public void setThumbnail(ExifThumbnail thumbnail) {
+		ensureDataRead();
 		this.thumbnail = thumbnail;
 	}
 	
 	public void setThumbnailImage(BufferedImage thumbnail) {
+		ensureDataRead();
 		if(this.thumbnail == null)
 			this.thumbnail = new ExifThumbnail(); 
 		this.thumbnail.setImage(thumbnail);
@@ -22,7 +22,6 @@
 package com.icafe4j.image.meta.exif;
 
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
@@ -42,7 +41,7 @@ import com.icafe4j.image.tiff.TiffField;
 import com.icafe4j.image.tiff.TiffFieldEnum;
 import com.icafe4j.image.tiff.TiffTag;
 import com.icafe4j.image.writer.ImageWriter;
-import com.icafe4j.io.FileCacheRandomAccessInputStream;
+import com.icafe4j.io.ByteArrayRandomAccessInputStream;
 import com.icafe4j.io.MemoryCacheRandomAccessOutputStream;
 import com.icafe4j.io.RandomAccessInputStream;
 import com.icafe4j.io.RandomAccessOutputStream;
@@ -102,7 +101,7 @@ public class ExifThumbnail extends Thumbnail {
 		} else if(getDataType() == Thumbnail.DATA_TYPE_TIFF) { // Uncompressed TIFF format
 			// Read the IFDs into a list first
 			List<IFD> list = new ArrayList<IFD>();			   
-			RandomAccessInputStream tiffIn = new FileCacheRandomAccessInputStream(new ByteArrayInputStream(getCompressedImage()));
+			RandomAccessInputStream tiffIn = new ByteArrayRandomAccessInputStream(getCompressedImage());
 			TIFFTweaker.readIFDs(list, tiffIn);
 			TiffField<?> stripOffset = list.get(0).getField(TiffTag.STRIP_OFFSETS);
     		if(stripOffset == null) 
@@ -13,6 +13,8 @@
  *
  * Who   Date       Description
  * ====  =========  =================================================
+ * AG    18Oct2026  Build the DOM lazily and added getProperties() to read
+ *                  common properties without DOM
  * WY    03Apr2016  Added new constructor XMP(String, String)
  * WY    31Mar2016  Moved to new package
  * WY    31Mar2016  Made XMP abstract and overrode write() method
@@ -27,8 +29,11 @@
 
 package com.icafe4j.image.meta.xmp;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -45,6 +50,7 @@ public abstract class XMP extends Metadata {
 	private Document extendedXmpDocument;
 	//document contains the complete XML as a Tree.
 	private Document mergedXmpDocument;
+	private Map<String, List<String>> properties;
 	private boolean hasExtendedXmp;
 	private byte[] extendedXmpData;
 	
@@ -126,8 +132,54 @@ public abstract class XMP extends Metadata {
 			return getXmpDocument();
 	}
 	
+	/**
+	 * Read the Dublin Core, XMP basic and Photoshop properties from the standard XMP
+	 * <p>
+	 * The properties are pulled from the XMP packet without building the DOM, so this
+	 * is much cheaper than getXmpDocument() if only a few values are needed.
+	 * 
+	 * @return a map from qualified property name, e.g. "dc:creator", to its values
+	 * @throws IOException if the XMP can't be parsed
+	 */
+	public Map<String, List<String>> getProperties() throws IOException {
+		if(properties == null) {
+			if(xmp != null)
+				properties = new XMPPropertyReader().read(xmp.getBytes("UTF-8"));
+			else if(data != null && data.length > 0)
+				properties = new XMPPropertyReader().read(new ByteArrayInputStream(data));
+		}
+		
+		return properties;
+	}
+	
+	/**
+	 * @param name qualified property name, e.g. "xmp:CreatorTool"
+	 * @return the first value of the property or null if it is not found
+	 * @throws IOException if the XMP can't be parsed
+	 * @see #getProperties()
+	 */
+	public String getProperty(String name) throws IOException {
+		Map<String, List<String>> properties = getProperties();
+		if(properties == null) return null;
+		List<String> values = properties.get(name);
+		
+		return (values == null || values.isEmpty())? null : values.get(0);
+	}
+	
+	/**
+	 * The DOM is only built the first time it is asked for
+	 * 
+	 * @return the DOM for the standard XMP
+	 */
 	public Document getXmpDocument() {
-		ensureDataRead();		
+		ensureDataRead();
+		if(xmpDocument == null) {
+			if(xmp != null)
+				xmpDocument = XMLUtils.createXML(xmp);
+			else if(data != null && data.length > 0)
+				xmpDocument = XMLUtils.createXML(data);
+		}
+		
 		return xmpDocument;
 	}
 	
@@ -135,17 +187,34 @@ public abstract class XMP extends Metadata {
 		return hasExtendedXmp;
 	}
 	
+	// Nothing to read up front, the DOM is built by getXmpDocument() on demand
 	public void read() throws IOException {
 		if(!isDataRead) {
-			if(xmp != null)
-				xmpDocument = XMLUtils.createXML(xmp);
-			else if(data != null)
-				xmpDocument = XMLUtils.createXML(data);
-			
 			isDataRead = true;
 		}
 	}
 	
+	/**
+	 * Add the xpacket processing instructions around the XMP text without building the DOM.
+	 * An XML declaration is dropped since it can't follow the leading PI. XMP text which
+	 * already starts with an xpacket PI is returned unchanged.
+	 * 
+	 * @param xmp XMP text
+	 * @return XMP text wrapped in xpacket processing instructions
+	 */
+	public static String wrapPacket(String xmp) {
+		String body = xmp.trim();
+		if(body.startsWith("\uFEFF")) body = body.substring(1).trim();
+		if(body.startsWith("<?xml")) {
+			int end = body.indexOf("?>");
+			if(end >= 0) body = body.substring(end + 2).trim();
+		}
+		if(body.startsWith("<?xpacket"))
+			return body;
+		
+		return "<?xpacket begin='' id='W5M0MpCehiHzreSzNTczkc9d'?>" + body + "<?xpacket end='r'?>";
+	}
+	
 	public void setExtendedXMPData(byte[] extendedXmpData) {
 		this.extendedXmpData = extendedXmpData;
 		hasExtendedXmp = true;
@@ -0,0 +1,172 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image.meta.xmp;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.icafe4j.string.XMLUtils;
+
+/**
+ * Streaming XMP property reader
+ * <p>
+ * Pulls simple properties and the items of rdf:Bag, rdf:Seq and rdf:Alt arrays
+ * from the XMP packet with StAX, without building a DOM. Properties can be written
+ * either as attributes of rdf:Description or as child elements; both forms are read.
+ * Structured properties are flattened to the text they contain.
+ * <p>
+ * Properties are keyed by their qualified name as it appears in the packet, for
+ * example "dc:creator", and only properties with one of the requested prefixes are
+ * kept. This matches the way the rest of the XMP code looks up names in the DOM.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public class XMPPropertyReader {
+	// Default prefixes: Dublin Core, XMP basic and Photoshop
+	public static final String[] DEFAULT_PREFIXES = {"dc", "xmp", "photoshop"};
+	
+	private static final String RDF = "rdf";
+	
+	private Set<String> prefixes;
+	
+	public XMPPropertyReader() {
+		this(DEFAULT_PREFIXES);
+	}
+	
+	public XMPPropertyReader(String ... prefixes) {
+		this.prefixes = new HashSet<String>(Arrays.asList(prefixes));
+	}
+	
+	private static void addValue(Map<String, List<String>> properties, String name, String value) {
+		List<String> values = properties.get(name);
+		if(values == null) {
+			values = new ArrayList<String>(1);
+			properties.put(name, values);
+		}
+		values.add(value);
+	}
+	
+	private static String getQName(XMLStreamReader reader) {
+		String prefix = reader.getPrefix();
+		if(prefix == null || prefix.length() == 0)
+			return reader.getLocalName();
+		return prefix + ":" + reader.getLocalName();
+	}
+	
+	private boolean isWanted(String prefix) {
+		return prefix != null && prefixes.contains(prefix);
+	}
+	
+	public Map<String, List<String>> read(byte[] xmp) throws IOException {
+		return read(new ByteArrayInputStream(xmp));
+	}
+	
+	/**
+	 * Read the wanted properties from the XMP packet
+	 * 
+	 * @param is InputStream for the XMP packet. It is not closed by this method
+	 * @return a map from qualified property name to the list of its values, in
+	 *         document order. Simple properties have exactly one value.
+	 * @throws IOException if the XMP can't be parsed
+	 */
+	public Map<String, List<String>> read(InputStream is) throws IOException {
+		Map<String, List<String>> properties = new LinkedHashMap<String, List<String>>();
+		XMLStreamReader reader = XMLUtils.createXMLStreamReader(is);
+		// Property being read and its element depth
+		String property = null;
+		int propertyDepth = -1;
+		int depth = 0;
+		boolean hasItems = false;
+		StringBuilder text = new StringBuilder();
+		StringBuilder item = null;
+		
+		try {
+			while(reader.hasNext()) {
+				switch(reader.next()) {
+					case XMLStreamConstants.START_ELEMENT:
+						depth++;
+						String prefix = reader.getPrefix();
+						if(property == null) {
+							if(RDF.equals(prefix) && reader.getLocalName().equals("Description")) {
+								// Properties in attribute form
+								for(int i = 0; i < reader.getAttributeCount(); i++) {
+									if(isWanted(reader.getAttributePrefix(i)))
+										addValue(properties, reader.getAttributePrefix(i) + ":" + reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+								}
+							} else if(isWanted(prefix)) {
+								property = getQName(reader);
+								propertyDepth = depth;
+								hasItems = false;
+								text.setLength(0);
+								// Simple property with the value as a resource reference
+								String resource = null;
+								for(int i = 0; resource == null && i < reader.getAttributeCount(); i++) {
+									if(RDF.equals(reader.getAttributePrefix(i)) && reader.getAttributeLocalName(i).equals("resource"))
+										resource = reader.getAttributeValue(i);
+								}
+								if(resource != null) text.append(resource);
+							}
+						} else if(RDF.equals(prefix) && reader.getLocalName().equals("li")) {
+							item = new StringBuilder();
+						}
+						break;
+					case XMLStreamConstants.CHARACTERS:
+					case XMLStreamConstants.CDATA:
+						if(item != null)
+							item.append(reader.getText());
+						else if(property != null)
+							text.append(reader.getText());
+						break;
+					case XMLStreamConstants.END_ELEMENT:
+						if(property != null) {
+							if(depth == propertyDepth) {
+								String value = text.toString().trim();
+								if(!hasItems && value.length() > 0)
+									addValue(properties, property, value);
+								property = null;
+							} else if(item != null && RDF.equals(reader.getPrefix()) && reader.getLocalName().equals("li")) {
+								addValue(properties, property, item.toString().trim());
+								hasItems = true;
+								item = null;
+							}
+						}
+						depth--;
+						break;
+					default:
+				}
+			}
+		} catch (XMLStreamException e) {
+			throw new IOException("Unable to read XMP properties", e);
+		} finally {
+			try {
+				reader.close();
+			} catch (XMLStreamException e) {
+				// Nothing we can do
+			}
+		}
+		
+		return Collections.unmodifiableMap(properties);
+	}
+}
@@ -13,6 +13,7 @@
  *
  * Who   Date       Description
  * ====  =========  =====================================================
+ * AG    18Oct2026  Added constructor taking a shared Deflater, end our own Deflater once finished
  * WY    31Mar2016  Reversed changes to constructor on 27Mar2016
  * WY    27Mar2016  Changed constructor to set new compression level
  */
@@ -22,6 +23,7 @@ package com.icafe4j.image.png;
 import java.io.ByteArrayOutputStream;
 import java.util.zip.Deflater;
 
+import com.icafe4j.jfr.CodecTrace;
 import com.icafe4j.util.Builder;
 
 /**
@@ -33,10 +35,13 @@ import com.icafe4j.util.Builder;
 public class IDATBuilder extends ChunkBuilder implements Builder<Chunk> {
 
 	private ByteArrayOutputStream bout = new ByteArrayOutputStream(4096);
-	private Deflater deflater = new Deflater(5);
+	private byte buffer[] = new byte[4096];
+	private Deflater deflater;
+	// Whether we created the Deflater and have to end it
+	private boolean ownDeflater = true;
 		
 	public IDATBuilder() {
-		super(ChunkType.IDAT);		
+		this(5);
 	}
 	
 	public IDATBuilder(int compressionLevel) {
@@ -44,6 +49,17 @@ public class IDATBuilder extends ChunkBuilder implements Builder<Chunk> {
 		deflater = new Deflater(compressionLevel);
 	}
 	
+	/**
+	 * Build with a Deflater owned by the caller, which is reset but not ended.
+	 * Useful to reuse the Deflater from one image to the next.
+	 */
+	public IDATBuilder(Deflater deflater) {
+		super(ChunkType.IDAT);
+		deflater.reset();
+		this.deflater = deflater;
+		this.ownDeflater = false;
+	}
+	
 	public IDATBuilder data(byte[] data, int offset, int length) {
 		// Caches the bytes
 		bout.write(data, offset, length);
@@ -57,11 +73,11 @@ public class IDATBuilder extends ChunkBuilder implements Builder<Chunk> {
 
 	@Override
 	protected byte[] buildData() {
+		long start = CodecTrace.start();
 		// Compresses raw data
 		deflater.setInput(bout.toByteArray());
 		
 		bout.reset();
-		byte buffer[] = new byte[4096];
 		
 		if(finish)
 			// This is to make sure we get all the input data compressed
@@ -76,6 +92,10 @@ public class IDATBuilder extends ChunkBuilder implements Builder<Chunk> {
 		byte temp[] = bout.toByteArray();
 			
 		bout.reset();
+		// Free the native memory of our Deflater now rather than whenever it is collected
+		if(finish && ownDeflater)
+			deflater.end();
+		CodecTrace.stop(CodecTrace.Stage.COMPRESS, start);
 		
 		return temp;
 	}
@@ -13,6 +13,8 @@
  *
  * Who   Date       Description
  * ====  =========  =====================================================
+ * AG    18Oct2026  Added editMetadata() to apply a MetadataEditPlan in one pass
+ * AG    18Oct2026  insertXMP() no longer builds the DOM to add the packet wrapper
  * WY    30Mar2016  Changed removeAncillaryChunks() method signature
  * WY    30Mar2016  Added insertTextChunk()
  * WY    06Jul2015  Added insertXMP(InputSream, OutputStream, XMP)
@@ -52,9 +54,9 @@ import java.util.zip.InflaterInputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
 
 import com.icafe4j.image.meta.Metadata;
+import com.icafe4j.image.meta.MetadataEditPlan;
 import com.icafe4j.image.meta.MetadataType;
 import com.icafe4j.image.meta.icc.ICCProfile;
 import com.icafe4j.image.meta.png.PngXMP;
@@ -63,7 +65,6 @@ import com.icafe4j.image.meta.png.TextualChunks;
 import com.icafe4j.image.meta.xmp.XMP;
 import com.icafe4j.io.IOUtils;
 import com.icafe4j.string.StringUtils;
-import com.icafe4j.string.XMLUtils;
 import com.icafe4j.util.ArrayUtils;
 
 /**
@@ -98,6 +99,57 @@ public class PNGTweaker {
    		LOGGER.info("\n{}", readTextChunks(is));
     }
 
+  	/**
+  	 * Apply all the edits of a MetadataEditPlan in one pass. The chunks are read once,
+  	 * changed and written out once. PNG has no place for EXIF, IPTC and IRB, they are skipped.
+  	 * 
+  	 * @param is InputStream for the image
+  	 * @param os OutputStream for the edited image
+  	 * @param plan the metadata edits
+  	 * @throws IOException
+  	 */
+  	public static void editMetadata(InputStream is, OutputStream os, MetadataEditPlan plan) throws IOException {
+  		List<Chunk> chunks = readChunks(is);
+  		Set<MetadataType> removals = plan.getRemovals();
+  		// Only one iCCP and one XMP iTXt are allowed, replace the old ones
+  		boolean removeICCProfile = removals.contains(MetadataType.ICC_PROFILE) || plan.getICCProfile() != null;
+  		boolean removeXMP = removals.contains(MetadataType.XMP) || plan.getXMP() != null;
+  		ListIterator<Chunk> itr = chunks.listIterator();
+  		while(itr.hasNext()) {
+  			Chunk chunk = itr.next();
+  			ChunkType type = chunk.getChunkType();
+  			if(type == ChunkType.ICCP) {
+  				if(removeICCProfile) itr.remove();
+  			} else if(type == ChunkType.TIME) {
+  				if(removals.contains(MetadataType.PNG_TIME)) itr.remove();
+  			} else if(type == ChunkType.TEXT || type == ChunkType.ZTXT || type == ChunkType.ITXT) {
+  				String keyword = new TextReader(chunk).getKeyword();
+  				if(keyword.equals("XML:com.adobe.xmp")) {
+  					if(removeXMP) itr.remove();
+  				} else if(removals.contains(MetadataType.PNG_TEXTUAL)
+  						|| (removals.contains(MetadataType.COMMENT) && keyword.equals("Comment"))) {
+  					itr.remove();
+  				}
+  			}
+  		}
+  		if(plan.getExif() != null || plan.getIPTC() != null || plan.getIRB() != null)
+  			LOGGER.info("PNG image format does not support EXIF, IPTC and IRB data");
+  		if(plan.getICCProfile() != null)
+  			chunks.add(new ICCPBuilder().name("ICC Profile").data(plan.getICCProfile()).build());
+  		if(plan.getXMP() != null) {
+  			// Use the original XMP data if possible to avoid building the DOM
+  			String xmp = new String(plan.getXMP().getData(), "UTF-8");
+  			chunks.add(new TextBuilder(ChunkType.ITXT).keyword("XML:com.adobe.xmp").text(xmp).build());
+  		}
+  		TextBuilder txtBuilder = new TextBuilder(ChunkType.TEXT);
+  		for(String comment : plan.getComments())
+  			chunks.add(txtBuilder.keyword("Comment").text(comment).build());
+  		
+  		IOUtils.writeLongMM(os, SIGNATURE);
+  		
+  		serializeChunks(chunks, os);
+  	}
+  	
   	public static void insertChunk(Chunk chunk, InputStream is, OutputStream os) throws IOException {
   		insertChunks(is, os, chunk);
   	}
@@ -155,16 +207,13 @@ public class PNGTweaker {
   	}
   	
   	public static void insertXMP(InputStream is, OutputStream os, XMP xmp) throws IOException {
-  		insert(is, os, XMLUtils.serializeToString(xmp.getMergedDocument()));
+  		// Use the original XMP data if possible to avoid building the DOM
+  		insert(is, os, new String(xmp.getData(), "UTF-8"));
   	}
   	
   	// Add leading and trailing PI
   	public static void insertXMP(InputStream is, OutputStream os, String xmp) throws IOException {
-  		Document doc = XMLUtils.createXML(xmp);
-		XMLUtils.insertLeadingPI(doc, "xpacket", "begin='' id='W5M0MpCehiHzreSzNTczkc9d'");
-		XMLUtils.insertTrailingPI(doc, "xpacket", "end='r'");
-		String newXmp = XMLUtils.serializeToString(doc); // DONOT use XMLUtils.serializeToStringLS()
-  		insert(is, os, newXmp);
+  		insert(is, os, XMP.wrapPacket(xmp));
     }
   	
   	private static void insert(InputStream is, OutputStream os, String xmp) throws IOException {
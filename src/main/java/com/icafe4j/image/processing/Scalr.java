@@ -35,9 +35,12 @@ import java.awt.image.IndexColorModel;
 import java.awt.image.Kernel;
 import java.awt.image.RasterFormatException;
 import java.awt.image.RescaleOp;
+import java.io.IOException;
 
 import javax.imageio.ImageIO;
 
+import com.icafe4j.image.TiledImage;
+
 /**
  * Class used to implement performant, high-quality and intelligent image
  * scaling and manipulation algorithms in native Java 2D.
@@ -1724,6 +1727,100 @@ public class Scalr {
 		return result;
 	}
 
+	/**
+	 * Used to crop the given region out of a disk backed {@link TiledImage}.
+	 * Only the tiles covering the region are read.
+	 * 
+	 * @param src
+	 *            The tiled image to crop.
+	 * @param x
+	 *            The x-coordinate of the top-left corner of the bounding box.
+	 * @param y
+	 *            The y-coordinate of the top-left corner of the bounding box.
+	 * @param width
+	 *            The width of the bounding cropping box.
+	 * @param height
+	 *            The height of the bounding cropping box.
+	 * @param ops
+	 *            <code>0</code> or more ops to apply to the cropped image.
+	 * 
+	 * @return a new {@link BufferedImage} representing the cropped region of
+	 *         the <code>src</code> image with any optional operations applied
+	 *         to it.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>src</code> is <code>null</code> or the bounding box
+	 *             is not within the image.
+	 * @throws IOException
+	 *             if the tiles can not be read back from the scratch file.
+	 * 
+	 * @see #crop(BufferedImage, int, int, int, int, BufferedImageOp...)
+	 */
+	public static BufferedImage crop(TiledImage src, int x, int y, int width,
+			int height, BufferedImageOp... ops) throws IOException {
+		if (src == null)
+			throw new IllegalArgumentException("src cannot be null");
+
+		BufferedImage result = src.getSubimage(x, y, width, height);
+
+		if (ops != null && ops.length > 0)
+			result = apply(result, ops);
+
+		return result;
+	}
+
+	/**
+	 * Resize a disk backed {@link TiledImage}. The image is first reduced by
+	 * averaging blocks of pixels, one row of tiles at a time, to the smallest
+	 * integral fraction of its size which is still larger than the target, and
+	 * then resized by
+	 * {@link #resize(BufferedImage, Method, Mode, int, int, BufferedImageOp...)}.
+	 * The full size image is never held in memory.
+	 * 
+	 * @param src
+	 *            The tiled image to resize.
+	 * @param scalingMethod
+	 *            The method used for scaling the reduced image.
+	 * @param resizeMode
+	 *            Used to indicate how imgscalr should calculate the final
+	 *            target size for the image.
+	 * @param targetWidth
+	 *            The target width that you wish the image to have.
+	 * @param targetHeight
+	 *            The target height that you wish the image to have.
+	 * @param ops
+	 *            <code>0</code> or more ops to apply to the image.
+	 * 
+	 * @return a new {@link BufferedImage} representing the scaled
+	 *         <code>src</code> image.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if <code>src</code> is <code>null</code> or the target size
+	 *             is &lt;= 0.
+	 * @throws IOException
+	 *             if the tiles can not be read back from the scratch file.
+	 */
+	public static BufferedImage resize(TiledImage src, Method scalingMethod,
+			Mode resizeMode, int targetWidth, int targetHeight,
+			BufferedImageOp... ops) throws IOException {
+		if (src == null)
+			throw new IllegalArgumentException("src cannot be null");
+		if (targetWidth <= 0 || targetHeight <= 0)
+			throw new IllegalArgumentException(
+					"targetWidth and targetHeight must be > 0");
+
+		// The reduced image stays at least as large as the target in both dimensions
+		int factor = Math.max(1, Math.min(src.getWidth() / targetWidth,
+				src.getHeight() / targetHeight));
+
+		if (DEBUG)
+			log(0, "Reducing Tiled Image [size=%dx%d] by a factor of %d",
+					src.getWidth(), src.getHeight(), factor);
+
+		return resize(src.getReducedImage(null, factor), scalingMethod,
+				resizeMode, targetWidth, targetHeight, ops);
+	}
+
 	/**
 	 * Used to apply a {@link Rotation} and then <code>0</code> or more
 	 * {@link BufferedImageOp}s to a given image and return the result.
@@ -28,9 +28,11 @@ import java.util.Arrays;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.icafe4j.image.CodecControl;
 import com.icafe4j.image.bmp.BmpCompression;
 import com.icafe4j.image.options.BMPOptions;
 import com.icafe4j.io.IOUtils;
+import com.icafe4j.jfr.CodecTrace;
 import com.icafe4j.util.ArrayUtils;
 
 /** 
@@ -62,7 +64,9 @@ public class BMPReader extends ImageReader {
    
     public BufferedImage read(InputStream is) throws Exception {
         bitmapHeader = new BitmapHeader();
+        long start = CodecTrace.start();
 		bitmapHeader.readHeader(is);
+		CodecTrace.stop(CodecTrace.Stage.PARSE, start);
 		width = bitmapHeader.imageWidth;
 		height = bitmapHeader.imageHeight;
 		compression = bitmapHeader.compression;
@@ -72,7 +76,7 @@ public class BMPReader extends ImageReader {
 			height = -height;
 		}
 		
-		LOGGER.info("Scanline alignment: {}", ((alignment == BMPOptions.ALIGN_BOTTOM_UP)?"BOTTOM_UP":"TOP_DOWN"));
+		LOGGER.debug("Scanline alignment: {}", ((alignment == BMPOptions.ALIGN_BOTTOM_UP)?"BOTTOM_UP":"TOP_DOWN"));
 		
 		bitsPerPixel = bitmapHeader.bitCount;
 
@@ -124,7 +128,7 @@ public class BMPReader extends ImageReader {
     }
 
     private BufferedImage read24bitTrueColorBitmap(InputStream is) throws Exception {
-    	LOGGER.info("24 bits bitmap color image!");
+    	LOGGER.debug("24 bits bitmap color image!");
         int npad = bytePerScanLine - 3*width;
 		if(npad == 4) npad = 0;
 	
@@ -135,17 +139,19 @@ public class BMPReader extends ImageReader {
 		
 		byte[] pixels = new byte[bytePerWidth * height];  
 		        
-		LOGGER.info("Scanline padding: {}", npad);		
+		LOGGER.debug("Scanline padding: {}", npad);		
 		
 		if(alignment == BMPOptions.ALIGN_BOTTOM_UP) {
 			for(int i = 0, startIndex =  (height-1)*bytePerWidth; i < height; i++, startIndex -= bytePerWidth) {
 				IOUtils.readFully(is, buffer);
 				System.arraycopy(buffer, 0, pixels, startIndex, bytePerWidth);
+				CodecControl.checkpoint(CodecControl.Unit.ROWS, i + 1, height);
 			}
 		} else {
 			for(int i = 0, startIndex =  0; i < height; i++, startIndex += bytePerWidth) {
 				IOUtils.readFully(is, buffer);
 				System.arraycopy(buffer, 0, pixels, startIndex, bytePerWidth);
+				CodecControl.checkpoint(CodecControl.Unit.ROWS, i + 1, height);
 			}
 		}
 		
@@ -166,7 +172,7 @@ public class BMPReader extends ImageReader {
   
     // This actually deals with the case of RGB888 mask case for the 32 bits image but it seems to work for other mask too
     private BufferedImage read32bitTrueColorBitmap(InputStream is) throws Exception { 
-    	LOGGER.info("32 bits bitmap color image!");
+    	LOGGER.debug("32 bits bitmap color image!");
  		
  		byte brgb[] = new byte[bytePerScanLine];
  		int pix[] = new int[width*height];
@@ -203,7 +209,7 @@ public class BMPReader extends ImageReader {
     
     @SuppressWarnings("unused")
 	private BufferedImage read32bitTrueColorBitmap2(InputStream is) throws Exception {
-    	LOGGER.info("32 bits bitmap color image!");
+    	LOGGER.debug("32 bits bitmap color image!");
        
         IOUtils.skipFully(is, bitmapHeader.dataOffSet - 54);
 		
@@ -253,6 +259,7 @@ public class BMPReader extends ImageReader {
       
     private BufferedImage readCompressedIndexColorBitmap(InputStream is) throws Exception {
     	byte pixels[] = null;
+    	long start = CodecTrace.start();
       	
     	if(bitsPerPixel == 8)
       		pixels = read256ColorCompressedBitmap(is);
@@ -260,6 +267,7 @@ public class BMPReader extends ImageReader {
 			pixels = read16ColorCompressedBitmap(is);
       	else
       		throw new IllegalArgumentException("Invalid bitsPerPixel: " + bitsPerPixel);
+    	CodecTrace.stop(CodecTrace.Stage.DECOMPRESS, start);
     		// Create BufferedImage
 		DataBuffer db = new DataBufferByte(pixels, pixels.length);
 		WritableRaster raster = null;
@@ -275,7 +283,7 @@ public class BMPReader extends ImageReader {
     }
     
     private BufferedImage readIndexColorBitmap(InputStream is) throws Exception {
-    	LOGGER.info("{} color bitmap color image!", (1<<bitsPerPixel));
+    	LOGGER.debug("{} color bitmap color image!", (1<<bitsPerPixel));
   		readPalette(is);
   		int npad = 0;
   		
@@ -300,17 +308,19 @@ public class BMPReader extends ImageReader {
 		
 		byte[] pixels = new byte[bytePerWidth * height];  
 		        
-		LOGGER.info("Scanline padding: {}", npad);		
+		LOGGER.debug("Scanline padding: {}", npad);		
 		
 		if(alignment == BMPOptions.ALIGN_BOTTOM_UP) {
 			for(int i = 0, startIndex =  (height-1)*bytePerWidth; i < height; i++, startIndex -= bytePerWidth) {
 				IOUtils.readFully(is, buffer);
 				System.arraycopy(buffer, 0, pixels, startIndex, bytePerWidth);
+				CodecControl.checkpoint(CodecControl.Unit.ROWS, i + 1, height);
 			}
 		} else {
 			for(int i = 0, startIndex =  0; i < height; i++, startIndex += bytePerWidth) {
 				IOUtils.readFully(is, buffer);
 				System.arraycopy(buffer, 0, pixels, startIndex, bytePerWidth);
+				CodecControl.checkpoint(CodecControl.Unit.ROWS, i + 1, height);
 			}
 		}
 		
@@ -331,8 +341,8 @@ public class BMPReader extends ImageReader {
     }
 
     private byte[] read256ColorCompressedBitmap(InputStream is) throws Exception {
-    	LOGGER.info("256 color bitmap color image!");
- 		LOGGER.info("compressed format!");
+    	LOGGER.debug("256 color bitmap color image!");
+ 		LOGGER.debug("compressed format!");
     	
  		readPalette(is);
 
@@ -387,7 +397,7 @@ public class BMPReader extends ImageReader {
  					if((count%2) != 0) nindex++;// Each absolute run must be aligned on a word boundary!
  				}
  				if (esc == DELTA) {
- 					LOGGER.info("found delta");
+ 					LOGGER.debug("found delta");
  					horz_offset = brgb[nindex++]&0xff;
  					if (nindex >= readSize) {
  						readSize = is.read(brgb, 0, bufferSize);
@@ -432,8 +442,8 @@ public class BMPReader extends ImageReader {
 	}
     
     private byte[] read16ColorCompressedBitmap(InputStream is) throws Exception {
-    	LOGGER.info("16 color bitmap color image!");
-    	LOGGER.info("compressed format!");
+    	LOGGER.debug("16 color bitmap color image!");
+    	LOGGER.debug("compressed format!");
     	
     	readPalette(is);
 
@@ -473,7 +483,7 @@ public class BMPReader extends ImageReader {
 				if(esc == END_OF_BITMAP) done_with_bitmap = true;
 				
 				if (esc == DELTA) {
-					LOGGER.info("found delta");
+					LOGGER.debug("found delta");
 					horz_offset = brgb[nindex++]&0xff;
 					if (nindex >= readSize) {
 						readSize = is.read(brgb, 0, bufferSize);
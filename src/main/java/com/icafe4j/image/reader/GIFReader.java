@@ -13,6 +13,8 @@
  *
  * Who   Date       Description
  * ====  =========  =========================================================
+ * AG    18Oct2026  Added readNative() to read the first frame as an indexed image
+ * AG    18Oct2026  Reuse the LZW decoder and interlaced scratch buffer from frame to frame
  * WY    14Oct2015  Fixed bug with transparent color
  * WY    08Oct2015  Removed frame specific methods
  * WY    08Oct2015  Added getGIFFrames()
@@ -39,12 +41,14 @@ import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.icafe4j.image.CodecControl;
 import com.icafe4j.image.compression.lzw.LZWTreeDecoder;
 import com.icafe4j.image.gif.GIFFrame;
 import com.icafe4j.io.IOUtils;
@@ -84,6 +88,9 @@ public class GIFReader extends ImageReader {
 	
 	// BufferedImage with the width and height of the logical screen to draw frames upon
 	private BufferedImage baseImage;
+	// Kept from one frame to the next
+	private LZWTreeDecoder decoder;
+	private byte[] interlacedBuf;
 	
 	// Obtain a logger instance
 	private static final Logger LOGGER = LoggerFactory.getLogger(GIFReader.class);
@@ -93,8 +100,7 @@ public class GIFReader extends ImageReader {
 		byte[] temp_ = new byte[dimension];
 
 		int min_code_size = is.read();// The length of the root
-		LZWTreeDecoder decoder = new LZWTreeDecoder(is, min_code_size);
-		decoder.decode(temp_, 0, dimension);
+		getDecoder(is, min_code_size).decode(temp_, 0, dimension);
 		
 		return temp_;
 	}
@@ -111,11 +117,16 @@ public class GIFReader extends ImageReader {
 		int min_code_size = is.read();// The length of the root
 
 		int dimension = width*height;
-		byte[] buf = new byte[dimension];
+		// Scratch buffer kept from frame to frame
+		if(interlacedBuf == null || interlacedBuf.length < dimension)
+			interlacedBuf = new byte[dimension];
+		byte[] buf = interlacedBuf;
 		byte[] temp_ = new byte[dimension];
 
-		LZWTreeDecoder decoder = new LZWTreeDecoder(is, min_code_size);
-		decoder.decode(buf, 0, dimension);
+		int decoded = getDecoder(is, min_code_size).decode(buf, 0, dimension);
+		// Don't let a truncated frame pick up pixels of the previous one
+		if(decoded < dimension)
+			Arrays.fill(buf, Math.max(decoded, 0), dimension, (byte)0);
    
 		for (int pass=1;pass<5;pass++)
 		{
@@ -137,6 +148,16 @@ public class GIFReader extends ImageReader {
 		return temp_;
 	}
    
+	// The LZW decoder is reused for all the frames
+	private LZWTreeDecoder getDecoder(InputStream is, int min_code_size) {
+		if(decoder == null)
+			decoder = new LZWTreeDecoder(is, min_code_size);
+		else
+			decoder.reset(is, min_code_size);
+		
+		return decoder;
+	}
+	
 	public Color getBackgroundColor() {
 		return backgroundColor;
 	}
@@ -438,11 +459,32 @@ public class GIFReader extends ImageReader {
 		
 		while((bi = getFrameAsBufferedImageEx(is)) != null) {
 			gifFrames.add(new GIFFrame(bi, image_x, image_y, delay, disposalMethod, userInputFlag, transparencyFlag, transparent_color));
-			frames.add(bi);			
+			frames.add(bi);
+			CodecControl.checkpoint(CodecControl.Unit.FRAMES, frames.size(), 0);
 		}
 		
 		return frames.get(0);
 	}
+	
+	/**
+	 * Read only the first frame, as an indexed image with the frame palette if it
+	 * covers the whole logical screen. A smaller frame is put in place on an ARGB
+	 * logical screen the same way as {@link #read(InputStream) read} does.
+	 * <p>
+	 * The rest of the stream is left unread and {@link #getFrames()} stays empty.
+	 */
+	@Override
+	public BufferedImage readNative(InputStream is) throws Exception {
+		BufferedImage bi = getFrameAsBufferedImage(is);
+		if(bi == null || (image_x == 0 && image_y == 0 && width == logicalScreenWidth && height == logicalScreenHeight))
+			return bi;
+		BufferedImage screen = new BufferedImage(logicalScreenWidth, logicalScreenHeight, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = screen.createGraphics();
+		g.drawImage(bi, image_x, image_y, null);
+		g.dispose();
+		
+		return screen;
+	}
     
 	private byte readImageDescriptor(InputStream is) throws Exception {	 	
 		int nindex = 0;
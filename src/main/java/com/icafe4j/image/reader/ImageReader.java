@@ -13,6 +13,7 @@
  *
  * Who   Date       Description
  * ====  =========  ===============================================================
+ * AG    18Oct2026  Added readNative() to read indexed images without converting them
  * WY    30May2015  Changed getFrames() to return an empty list instead of null
  * WY    02Jan2015  Added getFrames() and getFrameCount() for multiple frame images
  * WY    29May2015  Removed debug field, replace with logging
@@ -25,6 +26,7 @@ import java.io.*;
 import java.util.Collections;
 import java.util.List;
 
+import com.icafe4j.image.CodecContext;
 import com.icafe4j.image.ImageParam;
 
 /** 
@@ -42,6 +44,23 @@ public abstract class ImageReader {
     protected int rgbColorPalette[];
        
     protected ImageParam param = ImageParam.DEFAULT_IMAGE_PARAM;
+    // Set by the caller to be reused from one image to the next
+    private CodecContext context;
+    
+    /**
+     * Give back a context taken by {@link #openContext()}
+     */
+    protected void closeContext(CodecContext context) {
+    	if(context != this.context)
+    		context.close();
+    }
+    
+    /**
+     * @return the context set by the caller or null if there is none
+     */
+    public CodecContext getContext() {
+    	return context;
+    }
     
     public int getFrameCount() {
     	return 0;
@@ -55,7 +74,39 @@ public abstract class ImageReader {
     public ImageParam getImageParam() {
 		return param;
 	}
+    
+    /**
+     * The context to read the image with: the one set by the caller or one borrowed
+     * from the pool. Each call must be followed by a {@link #closeContext(CodecContext)}.
+     */
+    protected CodecContext openContext() {
+    	return (context != null)? context : CodecContext.acquire();
+    }
+    
+    /**
+     * Read with the caller's context, reusing its buffers and zlib objects, instead of
+     * one borrowed from the pool for each image. The caller keeps ownership of the context.
+     */
+    public void setContext(CodecContext context) {
+    	this.context = context;
+    }
         
 	// Entry method, to be implemented by specific ImageReader subclass
     public abstract BufferedImage read(InputStream is) throws Exception;
+    
+    /**
+     * Read the image, or the first frame of a multiple frame image, keeping the
+     * pixels the way the file stores them where the reader can: an indexed image
+     * comes back with its IndexColorModel instead of converted to ARGB.
+     * <p>
+     * This default implementation is the same as {@link #read(InputStream)}, for the
+     * readers which already keep indexed and gray palette images as they are.
+     * 
+     * @param is InputStream for the image
+     * @return BufferedImage or null
+     * @throws Exception
+     */
+    public BufferedImage readNative(InputStream is) throws Exception {
+    	return read(is);
+    }
 } 
\ No newline at end of file
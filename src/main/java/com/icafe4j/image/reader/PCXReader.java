@@ -18,15 +18,20 @@ import java.awt.image.ComponentColorModel;
 import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferByte;
 import java.awt.image.IndexColorModel;
+import java.awt.image.MultiPixelPackedSampleModel;
 import java.awt.image.Raster;
+import java.awt.image.SampleModel;
 import java.awt.image.WritableRaster;
 import java.io.*;
+import java.util.Arrays;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.icafe4j.image.CodecControl;
 import com.icafe4j.image.util.BytePacker;
 import com.icafe4j.io.IOUtils;
+import com.icafe4j.io.UnsyncBufferedInputStream;
 import com.icafe4j.util.ArrayUtils;
 
 /** 
@@ -35,6 +40,10 @@ import com.icafe4j.util.ArrayUtils;
  *
  * Support is added for PCX images with 2 and 4 bits 
  * per pixel, one color plane
+ * <p>
+ * The RLE data is decoded a scan line at a time from a fixed size buffer
+ * instead of reading the whole file into memory first. True color images
+ * are interleaved into a BGR byte raster as they are decoded.
  *
  * @author Wen Yu, yuwen_66@yahoo.com
  * @version 1.0 04/03/2007
@@ -50,6 +59,8 @@ public class PCXReader extends ImageReader {
    	public BufferedImage read(InputStream is) throws Exception {
 		pcxHeader = new PcxHeader();
       	pcxHeader.readHeader(is);
+      	// The image data is decoded a scan line at a time through a fixed size buffer
+      	is = new UnsyncBufferedInputStream(is);
 		width = pcxHeader.xmax-pcxHeader.xmin+1;
 	    height = pcxHeader.ymax-pcxHeader.ymin+1;
 		bytesPerLine = pcxHeader.bytes_per_line;
@@ -121,55 +132,64 @@ public class PCXReader extends ImageReader {
     }
    
     private BufferedImage readTrueColorPcx(InputStream is) throws Exception {
-      	byte brgb[] = IOUtils.readFully(is, 4096);
-    	byte pixels[] = new byte[bytesPerLine*NPlanes*height];
+    	int totalBytes = bytesPerLine*NPlanes;
+    	byte line[] = new byte[totalBytes];
+    	byte pixels[] = new byte[width*height*3];
 
-    	/**
-    	 * A BufferedInputStream could have been constructed from the InputStream,
-    	 * but for maximum decoding speed, one time reading of the image data 
-    	 * into memory is ideal though this is memory consuming.
-    	 */
        	LOGGER.info("true color pcx image!");
 		
-    	readScanLines(brgb, brgb.length, pixels);
+       	// Each scan line holds the red, green and blue planes one after another,
+       	// interleave them into BGR order as they are decoded
+       	for(int i = 0, index = 0; i < height; i++) {
+       		if(!readScanLine(is, line, 0, totalBytes)) break;
+       		for(int j = 0; j < width; j++) {
+       			pixels[index++] = line[j + bytesPerLine*2];
+       			pixels[index++] = line[j + bytesPerLine];
+       			pixels[index++] = line[j];
+       		}
+       	}
     	is.close();
     	
 	    DataBuffer db = new DataBufferByte(pixels, pixels.length);
-	    int trans = Transparency.OPAQUE;
-	    int[] nBits = {8, 8, 8};						
-	    WritableRaster raster = Raster.createBandedRaster(db, width, height, bytesPerLine*3,
-                new int[]{0, 0, 0}, new int[] {0, bytesPerLine, bytesPerLine*2}, null);
-	    ColorModel cm = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), nBits, false, false,
-                trans, DataBuffer.TYPE_BYTE);
+	    WritableRaster raster = Raster.createInterleavedRaster(db, width, height, width*3, 3, new int[] {2, 1, 0}, null);
+	    ColorModel cm = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), false, false,
+                Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
 	    
 	    return new BufferedImage(cm, raster, false, null);
     }
     
-    private void readScanLines(byte[] brgb, int buf_len, byte[] pixels) throws Exception {
-    	int counter = 0, bt = 0, bt1 = 0, index = 0, nindex = 0, num_of_rep = 0;
+    /**
+     * Decode one RLE compressed scan line from the stream. A run going past the
+     * end of the scan line is cut short.
+     * 
+     * @return false if the image data ends before the scan line is complete
+     */
+    private static boolean readScanLine(InputStream is, byte[] pixels, int offset, int totalBytes) throws IOException {
+    	int counter = 0;
+    	
+    	while(counter < totalBytes) {
+			int bt = is.read();
+			if(bt == -1) return false;
+			if((bt&0xC0) == 0xC0) {
+				int num_of_rep = Math.min(bt&0x3F, totalBytes - counter);
+				int bt1 = is.read();
+				if(bt1 == -1) return false;
+				Arrays.fill(pixels, offset + counter, offset + counter + num_of_rep, (byte)bt1);
+				counter += num_of_rep;
+			} else {
+				pixels[offset + counter++] = (byte)bt;
+			}
+    	}
+    	
+    	return true;
+    }
+   	
+    private void readScanLines(InputStream is, byte[] pixels) throws Exception {
     	int totalBytes = NPlanes * bytesPerLine;
     	
-    	image:// Label to break
-    	for(int i = 0; i < height; i++, counter = 0) {    	
-			do {
-				bt = (brgb[nindex++]&0xff);
-				if((bt&0xC0) == 0xC0) {
-					num_of_rep = bt&0x3F;
-					bt1 = (brgb[nindex++]&0xff);
-					for(int k = 0; k < num_of_rep && counter < totalBytes; k++, counter++) {
-						pixels[index++] = (byte)bt1; 
-					}
-					if (nindex >= buf_len) {
-						break image;
-					}
-				} else {
-					pixels[index++] = (byte)bt;
-					counter++;
-					if (nindex >= buf_len) {
-						break image;
-					}
-				}
-			} while(counter < totalBytes);		
+    	for(int i = 0, offset = 0; i < height; i++, offset += totalBytes) {
+    		if(!readScanLine(is, pixels, offset, totalBytes)) break;
+    		CodecControl.checkpoint(CodecControl.Unit.ROWS, i + 1, height);
     	}
     }
    	
@@ -177,45 +197,21 @@ public class PCXReader extends ImageReader {
 		int totalBytes = bytesPerLine*NPlanes;
         byte pixels[] = new byte[totalBytes*height];		
 	
-        byte[] data = IOUtils.readFully(is, 4096);
-	
 		int colorsUsed = (1<<NPlanes*pcxHeader.bits_per_pixel);
 		int color_tb_bytes = 3*colorsUsed;
 		
 		rgbColorPalette = new int[colorsUsed];
 
-		int buf_len = data.length - color_tb_bytes;
-		byte brgb[] = ArrayUtils.subArray(data, 0, buf_len);
-      
-        readPalette(ArrayUtils.subArray(data, buf_len, color_tb_bytes));
-
-	    /** 
-	     * If a BufferedInputStream is used for a 256-color image, we have to use 
-		 * mark(int), skip(long) and reset() methods to put the stream pointer to
-		 * the beginning of the color palette, fill the color palette and reset the pointer to
-		 * the beginning of the image data. This is awkward and equally memory consuming since
-		 * the system must maintain a buffer for the reset() method and we have to keep track
-		 * of the skip(long) method to ensure reading of the required bytes as shown below:
-		 * 	
-		 * <p> 
-		 * is.mark(available);
-         * long i = 0, count = 0;
-		 *
-         * while(count < buf_len)
-		 *  {
-		 *     i = is.skip(buf_len-count);
-         *     count += i;
-		 *  }
-		 *
-		 * readPalette(is, color_tb_bytes);
-		 * is.reset();
-         *
-	 	 * @see java.io.BufferedInputStream
-		 */
-
 		LOGGER.info("256 color pcx image!");
 
-		readScanLines(brgb, buf_len, pixels);   	
+		readScanLines(is, pixels);
+		
+		// The color palette is at the end of the file, right after the image data
+		byte[] tail = IOUtils.readFully(is, 1024);
+		if(tail.length >= color_tb_bytes)
+			readPalette(ArrayUtils.subArray(tail, tail.length - color_tb_bytes, color_tb_bytes));
+		else
+			LOGGER.warn("256 color palette not found!");
     	is.close();    	
 		//Create a BufferedImage
 		int[] off = {0};//band offset, we have only one band start at 0
@@ -227,44 +223,16 @@ public class PCXReader extends ImageReader {
 	}
 
 	private BufferedImage readOneBitEgaPcx(InputStream is) throws Exception {
-	    int index = 0, counter = 0, abyte = 0, nindex = 0;
-	    int bt = 0, bt1 = 0; 
-	    int totalBytes = 0, num_of_rep = 0;
-        int  buf[];
-	  
-  		byte brgb[] = IOUtils.readFully(is, 4096);
-
-	    int buf_len = brgb.length;
-
-		totalBytes = bytesPerLine*NPlanes;
-        buf = new int[totalBytes];
+	    int counter = 0, abyte = 0;
+	    int totalBytes = bytesPerLine*NPlanes;
+        byte buf[] = new byte[totalBytes];
         
         byte[] pixels;
         
         BytePacker bytePacker = new BytePacker(bitsPerPixel, width, width*height);
 
-   		image:
-		for(int i = 0; i < height; i++, index = 0) {	
-			do {
-				bt = brgb[nindex++]&0xff;
-				if((bt&0xC0) == 0xC0) {
-					num_of_rep = bt&0x3F;
-					bt1 = brgb[nindex++]&0xff;
-				  
-					for(int k = 0; k < num_of_rep && index < totalBytes; k++) {
-						buf[index++] = bt1;
-					}
-					if (nindex >= buf_len) {
-						break image;
-					}
-				} else {
-					buf[index++] = bt;
-
-					if (nindex >= buf_len) {
-						break image;
-					}
-				}
-			} while(index < totalBytes);
+		for(int i = 0; i < height; i++) {	
+			if(!readScanLine(is, buf, 0, totalBytes)) break;
 			
 			scanLine:
 			for(int k = 0; k < bytesPerLine; k++) {							
@@ -294,20 +262,22 @@ public class PCXReader extends ImageReader {
 	private BufferedImage readOnePlaneEgaPcx(InputStream is) throws Exception {
 		// Try to decode 2, 4 and 16 color images as implemented 
 		// by using 1, 2 and 4 bits per pixel and one color plane
-		byte brgb[] = IOUtils.readFully(is, 4096);
 	    byte[] pixels = new byte[bytesPerLine*height];
-	    readScanLines(brgb, brgb.length, pixels);
+	    readScanLines(is, pixels);
 		is.close();
 		
 		DataBuffer db = new DataBufferByte(pixels, pixels.length);
-		WritableRaster  raster = Raster.createPackedRaster(db, width, height, bitsPerPixel, null);
+		// Scan lines are bytesPerLine long, which may include padding
+		SampleModel sm = new MultiPixelPackedSampleModel(DataBuffer.TYPE_BYTE, width, height, bitsPerPixel, bytesPerLine, 0);
+		WritableRaster  raster = Raster.createWritableRaster(sm, db, null);
 		if(bitsPerPixel == 1) {
 			int BW_palette[] = new int[2];	        
 			BW_palette[0] = 0xff000000;
 			BW_palette[1] =0xff000000|0xff0000|0xff00|0xff;
 			rgbColorPalette = BW_palette;
 		}
-	    ColorModel cm = new IndexColorModel(bitsPerPixel, rgbColorPalette.length, rgbColorPalette, 0, false, -1, DataBuffer.TYPE_BYTE);
+		// The header palette has 16 entries, only the first 2^bitsPerPixel are used
+	    ColorModel cm = new IndexColorModel(bitsPerPixel, Math.min(rgbColorPalette.length, 1<<bitsPerPixel), rgbColorPalette, 0, false, -1, DataBuffer.TYPE_BYTE);
 	   
 	    return new BufferedImage(cm, raster, false, null);
 	}
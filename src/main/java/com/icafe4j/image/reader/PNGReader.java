@@ -13,6 +13,11 @@
  *
  * Who   Date       Description
  * ====  =========  ===================================================
+ * AG    18Oct2026  Reuse Inflater, IDAT buffer and gamma tables of a CodecContext
+ * AG    18Oct2026  Added flight recorder stage times, image info goes to debug level
+ * AG    18Oct2026  Added decoding into TiledImage
+ * AG    18Oct2026  Shared parsed ICC profiles through ICCProfileCache
+ * AG    18Oct2026  Added pipelined decoding for non-interlaced true color images
  * WY    18Nov2015  Bug fix to fully skip the chunk if not interested
  * WY    25Dec2014  Added iCCP chunk support for RGB images 
  */
@@ -21,8 +26,6 @@ package com.icafe4j.image.reader;
 
 import java.awt.Transparency;
 import java.awt.color.ColorSpace;
-import java.awt.color.ICC_ColorSpace;
-import java.awt.color.ICC_Profile;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
 import java.awt.image.ComponentColorModel;
@@ -33,11 +36,28 @@ import java.awt.image.IndexColorModel;
 import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
 import java.io.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Inflater;
 import java.util.zip.InflaterInputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.icafe4j.image.CodecCancelledException;
+import com.icafe4j.image.CodecContext;
+import com.icafe4j.image.CodecControl;
+import com.icafe4j.image.TiledImage;
+import com.icafe4j.image.color.ICCProfileCache;
 import com.icafe4j.image.meta.icc.ICCProfile;
 import com.icafe4j.image.png.ChunkType;
 import com.icafe4j.image.png.ColorType;
@@ -45,6 +65,7 @@ import com.icafe4j.image.png.Filter;
 import com.icafe4j.image.png.PNGDescriptor;
 import com.icafe4j.image.util.IMGUtils;
 import com.icafe4j.io.IOUtils;
+import com.icafe4j.jfr.CodecTrace;
 import com.icafe4j.util.ArrayUtils;
 
 /** 
@@ -83,29 +104,58 @@ public class PNGReader extends ImageReader {
 			
 	 private static void apply_defilter(InputStream bis, byte[] pixBytes, int height, int bytesPerPixel, int bytesPerScanLine) throws Exception {		 
 		 int filter_type = Filter.NONE;
+		 CodecTrace trace = CodecTrace.current();
+		 if(trace != null) {
+			 apply_defilter(bis, pixBytes, height, bytesPerPixel, bytesPerScanLine, trace);
+			 return;
+		 }
 
 		 for (int j = 0, offset = 0; j < height; j++, offset += bytesPerScanLine) {
               filter_type = bis.read();
               IOUtils.readFully(bis, pixBytes, offset, bytesPerScanLine);
               // Do the filter
-              switch (filter_type) {
-		  		case Filter.NONE:
-		  			break;
-		  		case Filter.SUB:
-		  			Filter.defilter_sub(bytesPerPixel, bytesPerScanLine, pixBytes, offset);
-		  			break;
-		  		case Filter.UP:
-		  			Filter.defilter_up(bytesPerScanLine, pixBytes, offset);
-		  			break;
-		  		case Filter.AVERAGE:
-		  			Filter.defilter_average(bytesPerPixel, bytesPerScanLine, pixBytes, offset);
-		  			break;
-		  		case Filter.PAETH:
-		  			Filter.defilter_paeth(bytesPerPixel, bytesPerScanLine, pixBytes, offset);
-		  			break;
-		  		default:
-		  			break;
-              }                         
+              defilter(filter_type, pixBytes, offset, bytesPerPixel, bytesPerScanLine);
+              CodecControl.checkpoint(CodecControl.Unit.ROWS, j + 1, height);
+		 }
+	 }
+	 
+	 // Same as above, keeping the inflating and the defiltering time apart
+	 private static void apply_defilter(InputStream bis, byte[] pixBytes, int height, int bytesPerPixel, int bytesPerScanLine, CodecTrace trace) throws Exception {
+		 long inflateTime = 0, defilterTime = 0;
+		 
+		 for (int j = 0, offset = 0; j < height; j++, offset += bytesPerScanLine) {
+			 long t0 = System.nanoTime();
+			 int filter_type = bis.read();
+			 IOUtils.readFully(bis, pixBytes, offset, bytesPerScanLine);
+			 long t1 = System.nanoTime();
+			 defilter(filter_type, pixBytes, offset, bytesPerPixel, bytesPerScanLine);
+			 inflateTime += t1 - t0;
+			 defilterTime += System.nanoTime() - t1;
+			 CodecControl.checkpoint(CodecControl.Unit.ROWS, j + 1, height);
+		 }
+		 trace.add(CodecTrace.Stage.DECOMPRESS, inflateTime);
+		 trace.add(CodecTrace.Stage.DEFILTER, defilterTime);
+	 }
+	 
+	 // Defilter one scan line in place, the previous scan line is expected right in front of it
+	 private static void defilter(int filter_type, byte[] pixBytes, int offset, int bytesPerPixel, int bytesPerScanLine) {
+		 switch (filter_type) {
+		 	case Filter.NONE:
+		 		break;
+		 	case Filter.SUB:
+		 		Filter.defilter_sub(bytesPerPixel, bytesPerScanLine, pixBytes, offset);
+		 		break;
+		 	case Filter.UP:
+		 		Filter.defilter_up(bytesPerScanLine, pixBytes, offset);
+		 		break;
+		 	case Filter.AVERAGE:
+		 		Filter.defilter_average(bytesPerPixel, bytesPerScanLine, pixBytes, offset);
+		 		break;
+		 	case Filter.PAETH:
+		 		Filter.defilter_paeth(bytesPerPixel, bytesPerScanLine, pixBytes, offset);
+		 		break;
+		 	default:
+		 		break;
 		 }
 	 }
 	 
@@ -119,6 +169,11 @@ public class PNGReader extends ImageReader {
      private boolean hasGamma;
 
 	 private float displayExponent = 2.2f;
+	 private boolean pipelined;
+	 // Defiltered scan lines of the current band when decoding into a TiledImage
+	 private InputStream imageData;
+	 // Context of the image being read
+	 private CodecContext codecContext;
 	 private byte[] alpha;
 	 private byte[] gammaTable;
 	 
@@ -278,23 +333,58 @@ public class PNGReader extends ImageReader {
 		 }
 	 }
 
-	 // Byte type image data gamma correction table
-	 private void createGammaTable(float gamma, float displayExponent) {
-		 int size =  1 << 8;
-		 gammaTable = new byte[size];
-		 double decodingExponent = 1d / ((double)gamma * (double)displayExponent);
-		 for (int i = 0; i < size; i++)
-			 gammaTable[i] = (byte)(Math.pow((double)i / (size - 1), decodingExponent) * (size - 1));
-     }
-	 
-	 // Short type image data gamma correction table
-	 private void createUShortGammaTable(float gamma, float displayExponent) {
-		 int size =  1 << 16;
-		 gammaUShortTable = new short[size];
-		 double decodingExponent = 1d / ((double)gamma * (double)displayExponent);
-		 for (int i = 0; i < size; i++)
-			 gammaUShortTable[i] = (short)(Math.pow((double)i / (size - 1), decodingExponent) * (size - 1));
-     }
+	 // Decodes non-interlaced 8 or 16 bit RGB image data with inflating running on a separate thread.
+	 // Returns a byte array for 8 bit and a short array for 16 bit image data.
+	 private Object decodeTrueColorPipelined(byte[] compr_data, boolean fullAlpha, boolean gammaCorrect) throws Exception {
+		 int bytesPerSample = bitsPerPixel/8;
+		 int bytesPerPixel = (fullAlpha? 4 : 3)*bytesPerSample;
+		 int numOfBands = (fullAlpha || alpha != null)? 4 : 3;
+		 
+		 bytesPerScanLine = width*bytesPerPixel;
+		 
+		 byte[] bpixels = null;
+		 short[] spixels = null;
+		 if(bytesPerSample == 1)
+			 bpixels = new byte[width*height*numOfBands];
+		 else
+			 spixels = new short[width*height*numOfBands];
+		 
+		 InflaterInputStream iis = new InflaterInputStream(new ByteArrayInputStream(compr_data), codecContext.getInflater());
+		 FilteredRowPipe pipe = new FilteredRowPipe(iis, height, bytesPerScanLine);
+		 Future<?> inflater = Inflaters.EXECUTOR.submit(pipe);
+		 
+		 // Previous and current defiltered scan lines
+		 byte[] rows = new byte[bytesPerScanLine*2];
+		 
+		 try {
+			 for(int j = 0, offset = 0, destOffset = 0; j < height; j++, destOffset += width*numOfBands) {
+				 byte[] row = pipe.take();
+				 System.arraycopy(row, 1, rows, offset, bytesPerScanLine);
+				 defilter(row[0], rows, offset, bytesPerPixel, bytesPerScanLine);
+				 pipe.release(row);
+				 if(bpixels != null)
+					 pack8BitRGBRow(rows, offset, bpixels, destOffset, fullAlpha, gammaCorrect);
+				 else
+					 pack16BitRGBRow(rows, offset, spixels, destOffset, fullAlpha, gammaCorrect);
+				 // Keep the current scan line as the previous one for the next row
+				 if(offset == 0)
+					 offset = bytesPerScanLine;
+				 else
+					 System.arraycopy(rows, bytesPerScanLine, rows, 0, bytesPerScanLine);
+				 CodecControl.checkpoint(CodecControl.Unit.ROWS, j + 1, height);
+			 }
+		 } finally {
+			 // Stop the inflating in case we bailed out early. It uses the Inflater
+			 // of the CodecContext, so it has to be done before the context is released.
+			 pipe.stop(inflater);
+			 iis.close();
+		 }
+		 
+		 if(bpixels != null)
+			 return bpixels;
+		 
+		 return spixels;
+	 }
 	 
 	 private byte[] deflateRGBPixels(byte[] compr_data, boolean fullAlpha) throws Exception {
 		 int bytesPerPixel = 0;
@@ -321,8 +411,7 @@ public class PNGReader extends ImageReader {
 		 
 		 // Now inflate the data.
 		 pixBytes = new byte[height * bytesPerScanLine];
-         // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-		 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
+		 InputStream bis = openImageData(compr_data);
         
 		 apply_defilter(bis, pixBytes, height, bytesPerPixel, bytesPerScanLine);
 		 
@@ -344,8 +433,7 @@ public class PNGReader extends ImageReader {
 		 } else
 			 spixels = new short[width*height];
 		  
-		 // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-		 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
+		 InputStream bis = openImageData(compr_data);
 		 // Decoding the image pass by pass. There are 7 passes for ADAM7 interlacing method. 
 		 for (int pass = 1; pass < 8; pass++) {
 			 if(!calculatePassVariables(pass)) continue;
@@ -395,8 +483,7 @@ public class PNGReader extends ImageReader {
 		 bytesPerScanLine = bytesPerPixel*width;
 		 // Now inflate the data.
 		 pixBytes = new byte[height * bytesPerScanLine];
-		 // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-		 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
+		 InputStream bis = openImageData(compr_data);
 
 		 apply_defilter(bis, pixBytes, height, bytesPerPixel, bytesPerScanLine);
 		 
@@ -448,8 +535,7 @@ public class PNGReader extends ImageReader {
 		 else
 			 spixels = new short[width*height*3];
 		 ////////////////////////////////////////////////////////////////////////////////////////////////
-		 // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-	  	 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
+	  	 InputStream bis = openImageData(compr_data);
 		 // Decoding the image pass by pass. There are 7 passes for ADAM7 interlacing method. 
 		 for (int pass = 1; pass < 8; pass++) {
 			 if(!calculatePassVariables(pass)) continue;
@@ -521,8 +607,7 @@ public class PNGReader extends ImageReader {
 		 // Now inflate the data.
 		 pixBytes = new byte[height * bytesPerScanLine];
 		 
-         // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-		 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
+		 InputStream bis = openImageData(compr_data);
         
 		 apply_defilter(bis, pixBytes, height, bytesPerPixel, bytesPerScanLine);
 		 
@@ -566,8 +651,7 @@ public class PNGReader extends ImageReader {
 	
 		 if(fullAlpha || alpha != null) bpixels = new byte[width*height*4];
 		 ////////////////////////////////////////////////////////////////////////////////////////////////
-		 // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-	  	 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
+	  	 InputStream bis = openImageData(compr_data);
 		 // Decoding the image pass by pass. There are 7 passes for ADAM7 interlacing method. 
 		 for (int pass = 1; pass < 8; pass++) {
 			 if(!calculatePassVariables(pass)) continue;
@@ -832,6 +916,83 @@ public class PNGReader extends ImageReader {
 	 public boolean hasICCProfile() {
 		 return hasICCP;
 	 }
+	 
+	 public boolean isPipelined() {
+		 return pipelined;
+	 }
+	 
+	 // Packs one defiltered 16 bit RGB scan line into the image data, dealing with transparency and gamma
+	 private void pack16BitRGBRow(byte[] row, int offset, short[] spixels, int destOffset, boolean fullAlpha, boolean gammaCorrect) {
+		 short[] table = gammaCorrect? gammaUShortTable : null;
+		 int end = offset + bytesPerScanLine;
+		 
+		 if(fullAlpha) {
+			 for(int i = offset, index = destOffset; i < end; index += 4) {
+				 for(int k = 0; k < 3; k++, i += 2) {
+					 int sample = (row[i]&0xff)<<8|(row[i + 1]&0xff);
+					 spixels[index + k] = (table != null)? table[sample] : (short)sample;
+				 }
+				 spixels[index + 3] = (short)((row[i]&0xff)<<8|(row[i + 1]&0xff));
+				 i += 2;
+			 }
+		 } else if(alpha != null) { // Deal with single color transparency
+			 int redMask = (alpha[1]&0xff)|(alpha[0]&0xff)<<8;
+			 int greenMask = (alpha[3]&0xff)|(alpha[2]&0xff)<<8;
+			 int blueMask = (alpha[5]&0xff)|(alpha[4]&0xff)<<8;
+			 for(int i = offset, index = destOffset; i < end; i += 6, index += 4) {
+				 int red = (row[i]&0xff)<<8|(row[i + 1]&0xff);
+				 int green = (row[i + 2]&0xff)<<8|(row[i + 3]&0xff);
+				 int blue = (row[i + 4]&0xff)<<8|(row[i + 5]&0xff);
+				 spixels[index] = (table != null)? table[red] : (short)red;
+				 spixels[index + 1] = (table != null)? table[green] : (short)green;
+				 spixels[index + 2] = (table != null)? table[blue] : (short)blue;
+				 spixels[index + 3] = (red == redMask && green == greenMask && blue == blueMask)? (short)0x0000 : (short)0xffff;
+			 }
+		 } else {
+			 for(int i = offset, index = destOffset; i < end; i += 2, index++) {
+				 int sample = (row[i]&0xff)<<8|(row[i + 1]&0xff);
+				 spixels[index] = (table != null)? table[sample] : (short)sample;
+			 }
+		 }
+	 }
+	 
+	 // Packs one defiltered 8 bit RGB scan line into the image data, dealing with transparency and gamma
+	 private void pack8BitRGBRow(byte[] row, int offset, byte[] bpixels, int destOffset, boolean fullAlpha, boolean gammaCorrect) {
+		 byte[] table = gammaCorrect? gammaTable : null;
+		 int end = offset + bytesPerScanLine;
+		 
+		 if(fullAlpha) {
+			 System.arraycopy(row, offset, bpixels, destOffset, bytesPerScanLine);
+			 if(table != null) {
+				 for(int index = destOffset, last = destOffset + bytesPerScanLine; index < last; index += 4) {
+					 bpixels[index] = table[bpixels[index]&0xff];
+					 bpixels[index + 1] = table[bpixels[index + 1]&0xff];
+					 bpixels[index + 2] = table[bpixels[index + 2]&0xff];
+				 }
+			 }
+		 } else if(alpha != null) { // Deal with single color transparency
+			 for(int i = offset, index = destOffset; i < end; i += 3, index += 4) {
+				 byte red = row[i];
+				 byte green = row[i + 1];
+				 byte blue = row[i + 2];
+				 if(table != null) {
+					 bpixels[index] = table[red&0xff];
+					 bpixels[index + 1] = table[green&0xff];
+					 bpixels[index + 2] = table[blue&0xff];
+				 } else {
+					 bpixels[index] = red;
+					 bpixels[index + 1] = green;
+					 bpixels[index + 2] = blue;
+				 }
+				 bpixels[index + 3] = (red == alpha[1] && green == alpha[3] && blue == alpha[5])? (byte)0x00 : (byte)0xff;
+			 }
+		 } else if(table != null) {
+			 for(int i = offset, index = destOffset; i < end; i++, index++)
+				 bpixels[index] = table[row[i]&0xff];
+		 } else {
+			 System.arraycopy(row, offset, bpixels, destOffset, bytesPerScanLine);
+		 }
+	 }
 
 	 private byte[] process_grayscaleAlphaImage(byte[] compr_data) throws Exception {
  		 //
@@ -853,8 +1014,7 @@ public class PNGReader extends ImageReader {
 		 
 		 // Now inflate the data.  		 
 		 pixBytes = new byte[height * bytesPerScanLine];
-		 // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-		 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
+		 InputStream bis = openImageData(compr_data);
        
 		 apply_defilter(bis, pixBytes, height, bytesPerPixel, bytesPerScanLine);	
 		 
@@ -882,8 +1042,7 @@ public class PNGReader extends ImageReader {
 		 pixels = new byte[width*height*bytesPerPixel];
 		 
 		 ////////////////////////////////////////////////////////////////////////////////////////////////
-		 // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-	  	 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
+	  	 InputStream bis = openImageData(compr_data);
 		 // Decoding the image pass by pass. There are 7 passes for ADAM7 interlacing method. 
 		 for (int pass = 1; pass < 8; pass++) {				
 			 if(!calculatePassVariables(pass)) continue;
@@ -930,22 +1089,22 @@ public class PNGReader extends ImageReader {
 			       
 		 switch (bitsPerPixel) {
 		    case 8:				
-				rgbColorPalette = EIGHT_BIT_COLOR_PALETTE;
+				rgbColorPalette = EIGHT_BIT_COLOR_PALETTE.clone(); // Gamma correction works on the palette in place
 				bytesPerScanLine = width;
 			    break;
 			case 4:
 				padding = width%2;
-				rgbColorPalette = SIXTEEN_COLOR_PALETTE;
+				rgbColorPalette = SIXTEEN_COLOR_PALETTE.clone(); // Gamma correction works on the palette in place
 				bytesPerScanLine = (width>>>1) + ((padding == 0)?0:1);
 				break;
 			case 2:
 				padding = width%4;
-				rgbColorPalette = FOUR_COLOR_PALETTE;
+				rgbColorPalette = FOUR_COLOR_PALETTE.clone(); // Gamma correction works on the palette in place
 				bytesPerScanLine = (width>>>2) + ((padding == 0)?0:1);
 				break;
 			case 1:
 				padding = width%8;
-				rgbColorPalette = BLACK_WHITE_PALETTE;
+				rgbColorPalette = BLACK_WHITE_PALETTE.clone(); // Gamma correction works on the palette in place
 				bytesPerScanLine = (width>>>3) + ((padding == 0)?0:1);
 				break;
 			default:
@@ -953,8 +1112,7 @@ public class PNGReader extends ImageReader {
 		 }
 		 // Now inflate the data.        
 		 pixBytes = new byte[height * bytesPerScanLine];
-		 // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-		 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
+		 InputStream bis = openImageData(compr_data);
 
 		 apply_defilter(bis, pixBytes, height, bytesPerPixel, bytesPerScanLine);
 		 
@@ -972,19 +1130,19 @@ public class PNGReader extends ImageReader {
 		 switch (bitsPerPixel) {
 		    case 8:
 				bytesPerPixel = 1;
-				rgbColorPalette = EIGHT_BIT_COLOR_PALETTE;
+				rgbColorPalette = EIGHT_BIT_COLOR_PALETTE.clone(); // Gamma correction works on the palette in place
 			    break;
 			case 1:
 				bytesPerPixel = 1;
-				rgbColorPalette = BLACK_WHITE_PALETTE;
+				rgbColorPalette = BLACK_WHITE_PALETTE.clone(); // Gamma correction works on the palette in place
 				break;
 			case 2:
 				bytesPerPixel = 1;
-				rgbColorPalette = FOUR_COLOR_PALETTE;
+				rgbColorPalette = FOUR_COLOR_PALETTE.clone(); // Gamma correction works on the palette in place
 				break;
 			case 4:
 				bytesPerPixel = 1;
-				rgbColorPalette = SIXTEEN_COLOR_PALETTE;
+				rgbColorPalette = SIXTEEN_COLOR_PALETTE.clone(); // Gamma correction works on the palette in place
 			    break;			
 			default: 
 				LOGGER.error("... " + bitsPerPixel + " bit color depth is not valid for grayscale image...");
@@ -992,8 +1150,7 @@ public class PNGReader extends ImageReader {
 		 
 		 pixels = new byte[width*height*bytesPerPixel];
 		 
-		 // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-		 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
+		 InputStream bis = openImageData(compr_data);
 		 // Decoding the image pass by pass. There are 7 passes for ADAM7 interlacing method. 
 		 for (int pass = 1; pass < 8; pass++) {
 			 if(!calculatePassVariables(pass)) continue;
@@ -1022,7 +1179,11 @@ public class PNGReader extends ImageReader {
 		 ColorModel cm = null;
 		 
 		 ColorSpace colorSpace = ColorSpace.getInstance(ColorSpace.CS_sRGB);		
-		 if(hasICCP) colorSpace = new ICC_ColorSpace(ICC_Profile.getInstance(icc_profile));
+		 if(hasICCP) colorSpace = ICCProfileCache.getInstance().getColorSpace(icc_profile);
+		 
+		 boolean gammaCorrect = hasGamma && renderingIntent == -1 && !hasICCP;
+		 // Gamma correction is done along the way by the pipelined decoding. There is nothing to gain from it on a single core.
+		 boolean pipelinedRGB = pipelined && imageData == null && interlace_method == NON_INTERLACED && Runtime.getRuntime().availableProcessors() > 1;
 		 
 		 switch (ColorType.fromInt(color_format)) {
 		   case GRAY_SCALE:
@@ -1091,12 +1252,14 @@ public class PNGReader extends ImageReader {
 			   return new BufferedImage(cm, raster, false, null);		
 		   case TRUE_COLOR:
 			   if(bitsPerPixel == 16) {
-				   if(interlace_method==NON_INTERLACED)
+				   if(pipelinedRGB)
+					   spixels = (short[])decodeTrueColorPipelined(compr_data, false, gammaCorrect);
+				   else if(interlace_method==NON_INTERLACED)
 					   spixels = generate16BitRGBPixels(compr_data, false);
 				   else {
 					   spixels = generate16BitRGBInterlacedPixels(compr_data, false);
 				   }					   
-				   if(hasGamma && renderingIntent == -1 && !hasICCP) {
+				   if(gammaCorrect && !pipelinedRGB) {
 					   if(alpha != null)
 						   correctGamma(spixels, width, height, 3, 1);
 					   else
@@ -1122,11 +1285,13 @@ public class PNGReader extends ImageReader {
 					   cm = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), nBits, hasAlpha, false, trans, DataBuffer.TYPE_USHORT);
 				   }					 
 			   } else {
-				   if(interlace_method==NON_INTERLACED)
+				   if(pipelinedRGB)
+					   bpixels = (byte[])decodeTrueColorPipelined(compr_data, false, gammaCorrect);
+				   else if(interlace_method==NON_INTERLACED)
 					   bpixels = generate8BitRGBPixels(compr_data, false);
 			       else if(interlace_method==ADAM7)
 			    	   bpixels = generate8BitRGBInterlacedPixels(compr_data, false);
-				   if(hasGamma && renderingIntent == -1 && !hasICCP)
+				   if(gammaCorrect && !pipelinedRGB)
 						 correctGamma(bpixels, width, height, alpha != null);
 				   int[] off = {0, 1, 2}; //band offset, we have 3 bands
 				   int numOfBands = 3;
@@ -1151,12 +1316,14 @@ public class PNGReader extends ImageReader {
 			   return new BufferedImage(cm, raster, false, null);
 		   case TRUE_COLOR_WITH_ALPHA:
 			   if(bitsPerPixel == 16) {
-				   if(interlace_method==NON_INTERLACED)
+				   if(pipelinedRGB)
+					   spixels = (short[])decodeTrueColorPipelined(compr_data, true, gammaCorrect);
+				   else if(interlace_method==NON_INTERLACED)
 					   spixels = generate16BitRGBPixels(compr_data, true);
 				   else {
 					   spixels = generate16BitRGBInterlacedPixels(compr_data, true);
 				   }
-				   if(hasGamma && renderingIntent == -1 && !hasICCP) correctGamma(spixels, width, height, 3, 1);
+				   if(gammaCorrect && !pipelinedRGB) correctGamma(spixels, width, height, 3, 1);
 				   db = new DataBufferUShort(spixels, spixels.length);
 				   int[] off = {0, 1, 2, 3}; //band offset, we have 4 bands
 				   int numOfBands = 4;
@@ -1169,11 +1336,13 @@ public class PNGReader extends ImageReader {
 					   cm = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), nBits, true, false, trans, DataBuffer.TYPE_USHORT);
 				   }
 			   } else {
-				   if(interlace_method==NON_INTERLACED)
+				   if(pipelinedRGB)
+					   bpixels = (byte[])decodeTrueColorPipelined(compr_data, true, gammaCorrect);
+				   else if(interlace_method==NON_INTERLACED)
 					   bpixels = generate8BitRGBPixels(compr_data, true);
 			       else if(interlace_method==ADAM7)
 			    	   bpixels = generate8BitRGBInterlacedPixels(compr_data, true);
-				   if(hasGamma && renderingIntent == -1 && !hasICCP)
+				   if(gammaCorrect && !pipelinedRGB)
 						 correctGamma(bpixels, width, height, true); 
 				   //Create a BufferedImage
 				   int[] off = {0, 1, 2, 3}; //band offset, we have 4 bands
@@ -1220,8 +1389,7 @@ public class PNGReader extends ImageReader {
 		 bytesPerScanLine = getBytesPerScanLine(width);
 		 // Now inflate the data.        
 		 byte[] pixBytes = new byte[height * bytesPerScanLine];
-         // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-		 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
+		 InputStream bis = openImageData(compr_data);
 
 		 apply_defilter(bis, pixBytes, height, 1, bytesPerScanLine);
 		 
@@ -1242,8 +1410,7 @@ public class PNGReader extends ImageReader {
 			default: 
 				LOGGER.error("... " + bitsPerPixel + " bit color depth is not valid for indexed image...");
 		 }
-		 // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
-		 BufferedInputStream bis = new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data)));
+		 InputStream bis = openImageData(compr_data);
 		 // Decoding the image pass by pass. There are 7 passes for ADAM7 interlacing method. 
 		 for (int pass = 1; pass < 8; pass++) {
 			 if(!calculatePassVariables(pass)) continue;
@@ -1262,6 +1429,16 @@ public class PNGReader extends ImageReader {
 	 }		
 	 
 	 public BufferedImage read(InputStream is) throws Exception {
+		 codecContext = openContext();
+		 try {
+			 return readImage(is);
+		 } finally {
+			 closeContext(codecContext);
+			 codecContext = null;
+		 }
+	 }
+	 
+	 private BufferedImage readImage(InputStream is) throws Exception {
 		 // Local variables for reading chunks
 		 int data_len = 0;
          int chunk_type = 0;
@@ -1285,6 +1462,7 @@ public class PNGReader extends ImageReader {
           *******************************************************************
           */
 		  //long signature = ((IOUtils.readIntMM(is)&0xffffffffffffL)<<32)|IOUtils.readIntMM(is);
+          long start = CodecTrace.start();
           long signature = IOUtils.readLongMM(is);
 		 
           if (signature != SIGNATURE) {
@@ -1339,15 +1517,15 @@ public class PNGReader extends ImageReader {
 			    throw new IOException("NOT A VALID PNG IMAGE");
 
 		  // Dumping
-		  LOGGER.info("--- PNG IMAGE INFO ---");
-		  LOGGER.info("image width: {}", width);
-		  LOGGER.info("image height: {}", height);
-		  LOGGER.info("image bit depth: {}", bitsPerPixel);
-		  LOGGER.info("Image color type: {}", ColorType.fromInt(color_format));
-	  	  LOGGER.info("image compression: {} - {}", compression, PNGDescriptor.getCompressionTypeDescrition(compression));
-		  LOGGER.info("image filter method: {} - {}", filter_method, PNGDescriptor.getFilterTypeDescription(filter_method));
-		  LOGGER.info("image interlace method: {} - {}", interlace_method, PNGDescriptor.getInterlaceTypeDescription(interlace_method));
-		  LOGGER.info("--- END PNG IMAGE INFO ---");
+		  LOGGER.debug("--- PNG IMAGE INFO ---");
+		  LOGGER.debug("image width: {}", width);
+		  LOGGER.debug("image height: {}", height);
+		  LOGGER.debug("image bit depth: {}", bitsPerPixel);
+		  LOGGER.debug("Image color type: {}", ColorType.fromInt(color_format));
+	  	  LOGGER.debug("image compression: {} - {}", compression, PNGDescriptor.getCompressionTypeDescrition(compression));
+		  LOGGER.debug("image filter method: {} - {}", filter_method, PNGDescriptor.getFilterTypeDescription(filter_method));
+		  LOGGER.debug("image interlace method: {} - {}", interlace_method, PNGDescriptor.getInterlaceTypeDescription(interlace_method));
+		  LOGGER.debug("--- END PNG IMAGE INFO ---");
 		  // End of dumping
 
 		  while (true) {
@@ -1358,57 +1536,195 @@ public class PNGReader extends ImageReader {
 			  if (chunk_type == ChunkType.IEND.getValue())
 				  break;
 			
-			  ChunkType chunk = ChunkType.fromInt(chunk_type);
-			
-			  switch (chunk) {
-			  	case IDAT: 
-			  		read_IDAT(is, data_len, compr_data);
-			  		break;
-			  	case TRNS:
-			  		alpha = new byte[data_len];
-			  		is.read(alpha, 0, data_len);
-			  		IOUtils.readUnsignedIntMM(is);// CRC
-			  		if(color_format == 3)
-			  			adjust_PLTE();
-			  		else if(color_format == 0) {
-			  			if(bitsPerPixel == 1)
-			  				adjust_grayscale_PLTE(BLACK_WHITE_PALETTE);
-			  			else if(bitsPerPixel == 2)
-			  				adjust_grayscale_PLTE(FOUR_COLOR_PALETTE);
-			  			else if(bitsPerPixel == 4)
-			  				adjust_grayscale_PLTE(SIXTEEN_COLOR_PALETTE);
-			  			else if(bitsPerPixel == 8)
-			  				adjust_grayscale_PLTE(EIGHT_BIT_COLOR_PALETTE);
-			  		} else if(color_format == 2)
-			  			LOGGER.info("full color transparent image!");
-			  		break;
-			  	case GAMA:
-			  		read_GAMMA(is, data_len);
-			  		break;
-			  	case SRGB:
-			  		read_SRGB(is, data_len);
-			  		break;
-			  	case PLTE:
-			  		rgbColorPalette = new int[data_len/3];
-			  		read_PLTE(is, data_len);
-			  		break;
-			  	case ICCP:
-			  		hasICCP = true;
-			  		icc_profile = readICCProfile(is, data_len);
-			  		IOUtils.readUnsignedIntMM(is);
-			  		break;
-			  	default:
-			  		IOUtils.skipFully(is, data_len);
-			  		IOUtils.readUnsignedIntMM(is);// CRC
-			  		break;
-			  }
+			  if (chunk_type == ChunkType.IDAT.getValue())
+				  read_IDAT(is, data_len, compr_data);
+			  else
+				  read_Chunk(is, chunk_type, data_len);
 		  }
 	  
 		  is.close();
-
-		  return process_IDAT(compr_data.toByteArray());
+		  
+		  CodecTrace trace = CodecTrace.current();
+		  if(trace == null)
+			  return process_IDAT(compr_data.toByteArray());
+		  
+		  trace.add(CodecTrace.Stage.PARSE, System.nanoTime() - start);
+		  start = System.nanoTime();
+		  long nested = trace.getTotalTime();
+		  BufferedImage image = process_IDAT(compr_data.toByteArray());
+		  // Whatever is left after inflating and defiltering goes to creating the image
+		  trace.add(CodecTrace.Stage.COLOR_CONVERT, System.nanoTime() - start - (trace.getTotalTime() - nested));
+		  
+		  return image;
      }
 	 
+	 /**
+	  * Decodes a PNG image into a disk backed {@link TiledImage}.
+	  * <p>
+	  * Non-interlaced images are inflated straight from the IDAT chunks and decoded one
+	  * row of tiles at a time, so neither the compressed nor the decoded image is held in
+	  * memory as a whole. Adam7 interlaced images are decoded at once and copied over.
+	  * 
+	  * @param is InputStream for the PNG image, closed when done
+	  * @param tileSize tile size of the TiledImage
+	  * @param maxCacheBytes memory for the tiles of the TiledImage kept in memory
+	  * @return a TiledImage holding the image, to be closed by the caller
+	  * @throws Exception
+	  */
+	 public TiledImage readTiled(InputStream is, int tileSize, long maxCacheBytes) throws Exception {
+		 codecContext = openContext();
+		 try {
+			 return readTiledImage(is, tileSize, maxCacheBytes);
+		 } finally {
+			 closeContext(codecContext);
+			 codecContext = null;
+		 }
+	 }
+	 
+	 private TiledImage readTiledImage(InputStream is, int tileSize, long maxCacheBytes) throws Exception {
+		 if (IOUtils.readLongMM(is) != SIGNATURE)
+			 throw new IOException("NOT A PNG IMAGE");
+		 if (!read_IHDR(is))
+			 throw new IOException("NOT A VALID PNG IMAGE");
+		 
+		 // Adam7 passes span the whole image, so interlaced image data is collected first
+		 ByteArrayOutputStream compr_data = null;
+		 if(interlace_method != NON_INTERLACED)
+			 compr_data = new ByteArrayOutputStream(65536);
+		 
+		 int data_len = 0;
+		 boolean foundIDAT = false;
+		 
+		 while (true) {
+			 data_len = IOUtils.readIntMM(is);
+			 int chunk_type = IOUtils.readIntMM(is);
+			 if (chunk_type == ChunkType.IEND.getValue())
+				 break;
+			 if (chunk_type == ChunkType.IDAT.getValue()) {
+				 foundIDAT = true;
+				 if(compr_data == null) break; // Streamed below
+				 read_IDAT(is, data_len, compr_data);
+			 } else
+				 read_Chunk(is, chunk_type, data_len);
+		 }
+		 
+		 if(!foundIDAT)
+			 throw new IOException("No image data found");
+		 
+		 if(compr_data != null) {
+			 is.close();
+			 BufferedImage image = process_IDAT(compr_data.toByteArray());
+			 TiledImage tiledImage = new TiledImage(width, height, tileSize, maxCacheBytes, null);
+			 boolean done = false;
+			 try {
+				 tiledImage.setRGB(0, 0, image);
+				 done = true;
+			 } finally {
+				 // Errors as well as exceptions would leave the scratch file behind
+				 if(!done) tiledImage.close();
+			 }
+			 return tiledImage;
+		 }
+		 
+		 int channels = 1;
+		 switch (ColorType.fromInt(color_format)) {
+		 	case GRAY_SCALE_WITH_ALPHA:
+		 		channels = 2;
+		 		break;
+		 	case TRUE_COLOR:
+		 		channels = 3;
+		 		break;
+		 	case TRUE_COLOR_WITH_ALPHA:
+		 		channels = 4;
+		 		break;
+		 	default:
+		 		break;
+		 }
+		 int bytesPerPixel = Math.max(1, channels*bitsPerPixel/8);
+		 long rowBytes = ((long)width*channels*bitsPerPixel + 7)/8;
+		 if(rowBytes*tileSize > Integer.MAX_VALUE)
+			 throw new IOException("Image too wide for tile size " + tileSize);
+		 
+		 Inflater inflater = codecContext.getInflater();
+		 imageData = new DefilteredRowStream(new InflaterInputStream(new IDATInputStream(is, data_len), inflater, 8192), (int)rowBytes, bytesPerPixel);
+		 
+		 int imageHeight = height;
+		 // Palette gamma correction is done in place for each band
+		 int[] palette = rgbColorPalette;
+		 TiledImage tiledImage = new TiledImage(width, imageHeight, tileSize, maxCacheBytes, null);
+		 boolean done = false;
+		 
+		 try {
+			 // Decode one row of tiles at a time as if it were an image on its own
+			 for(int y = 0; y < imageHeight; y += tileSize) {
+				 height = Math.min(tileSize, imageHeight - y);
+				 if(palette != null) rgbColorPalette = palette.clone();
+				 tiledImage.setRGB(0, y, process_IDAT(null));
+			 }
+			 done = true;
+		 } finally {
+			 // Errors as well as exceptions would leave the scratch file behind
+			 if(!done) tiledImage.close();
+			 imageData = null;
+			 height = imageHeight;
+			 rgbColorPalette = palette;
+			 is.close();
+		 }
+		 
+		 return tiledImage;
+	 }
+	 
+	 // Inflated image data for the generate and process methods
+	 private InputStream openImageData(byte[] compr_data) {
+		 if(imageData != null)
+			 return imageData;
+		 // Wrap an InflaterInputStream with a bufferedInputStream to speed up reading
+		 return new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(compr_data), codecContext.getInflater()));
+	 }
+	 
+	 // Handles the chunks other than IDAT and IEND
+	 private void read_Chunk(InputStream is, int chunk_type, int data_len) throws Exception {
+		 switch (ChunkType.fromInt(chunk_type)) {
+		 	case TRNS:
+		 		alpha = new byte[data_len];
+		 		is.read(alpha, 0, data_len);
+		 		IOUtils.readUnsignedIntMM(is);// CRC
+		 		if(color_format == 3)
+		 			adjust_PLTE();
+		 		else if(color_format == 0) {
+		 			if(bitsPerPixel == 1)
+		 				adjust_grayscale_PLTE(BLACK_WHITE_PALETTE);
+		 			else if(bitsPerPixel == 2)
+		 				adjust_grayscale_PLTE(FOUR_COLOR_PALETTE);
+		 			else if(bitsPerPixel == 4)
+		 				adjust_grayscale_PLTE(SIXTEEN_COLOR_PALETTE);
+		 			else if(bitsPerPixel == 8)
+		 				adjust_grayscale_PLTE(EIGHT_BIT_COLOR_PALETTE);
+		 		} else if(color_format == 2)
+		 			LOGGER.info("full color transparent image!");
+		 		break;
+		 	case GAMA:
+		 		read_GAMMA(is, data_len);
+		 		break;
+		 	case SRGB:
+		 		read_SRGB(is, data_len);
+		 		break;
+		 	case PLTE:
+		 		rgbColorPalette = new int[data_len/3];
+		 		read_PLTE(is, data_len);
+		 		break;
+		 	case ICCP:
+		 		hasICCP = true;
+		 		icc_profile = readICCProfile(is, data_len);
+		 		IOUtils.readUnsignedIntMM(is);
+		 		break;
+		 	default:
+		 		IOUtils.skipFully(is, data_len);
+		 		IOUtils.readUnsignedIntMM(is);// CRC
+		 		break;
+		 }
+	 }
+	 
 	 private void read_GAMMA(InputStream is, int data_len) throws Exception {
 		 if(data_len != 4){
 			 LOGGER.error("Invalid Gamma data length: {}", data_len);
@@ -1416,15 +1732,17 @@ public class PNGReader extends ImageReader {
 		 }
 		 hasGamma = true;
 		 gamma = (IOUtils.readUnsignedIntMM(is)/100000.0f);
+		 // The tables are shared through the context, we only ever read them
 		 if(bitsPerPixel == 16) {
-			 createUShortGammaTable(gamma, displayExponent);
+			 gammaUShortTable = codecContext.getGammaUShortTable(gamma, displayExponent);
 		 } else
-			 createGammaTable(gamma, displayExponent);
+			 gammaTable = codecContext.getGammaTable(gamma, displayExponent);
 		 IOUtils.readUnsignedIntMM(is);// CRC
 	 }
 	 
 	 private void read_IDAT(InputStream is, int data_len, ByteArrayOutputStream compr_data) throws Exception {
- 		 byte[] buf = new byte[data_len];
+ 		 // Scratch buffer, the bytes are copied over right away
+ 		 byte[] buf = codecContext.getBuffer(data_len);
 		 IOUtils.readFully(is,buf,0,data_len);
 		 compr_data.write(buf, 0, data_len);
  		 IOUtils.readUnsignedIntMM(is);// CRC
@@ -1513,4 +1831,241 @@ public class PNGReader extends ImageReader {
  		 
  		 return icc_profile;
 	 }
-}
\ No newline at end of file
+	 
+	 /**
+	  * Turns pipelined decoding on or off for non-interlaced true color images.
+	  * <p>
+	  * With pipelined decoding, the image data is inflated on a separate thread which
+	  * hands the filtered scan lines over through a bounded ring buffer, while the calling
+	  * thread defilters, gamma-corrects and packs them into the raster. Other image
+	  * types, as well as any image on a single processor machine, are always decoded
+	  * sequentially.
+	  * 
+	  * @param pipelined true to inflate and defilter in parallel
+	  */
+	 public void setPipelined(boolean pipelined) {
+		 this.pipelined = pipelined;
+	 }
+	 
+	 /**
+	  * Compressed image data spread over consecutive IDAT chunks, read straight
+	  * from the PNG stream. Ends at the first chunk which is not an IDAT.
+	  */
+	 private static class IDATInputStream extends InputStream {
+		 private final InputStream is;
+		 private int remaining;
+		 private boolean done;
+		 
+		 // The stream is positioned at the data of the first IDAT chunk
+		 IDATInputStream(InputStream is, int data_len) {
+			 this.is = is;
+			 this.remaining = data_len;
+		 }
+		 
+		 private boolean nextChunk() throws IOException {
+			 while(remaining == 0) {
+				 if(done) return false;
+				 IOUtils.readUnsignedIntMM(is);// CRC
+				 int data_len = IOUtils.readIntMM(is);
+				 if(IOUtils.readIntMM(is) != ChunkType.IDAT.getValue()) {
+					 done = true;
+					 return false;
+				 }
+				 remaining = data_len;
+			 }
+			 return true;
+		 }
+		 
+		 @Override
+		 public int read() throws IOException {
+			 if(!nextChunk()) return -1;
+			 remaining--;
+			 return IOUtils.read(is);
+		 }
+		 
+		 @Override
+		 public int read(byte[] b, int off, int len) throws IOException {
+			 if(len == 0) return 0;
+			 if(!nextChunk()) return -1;
+			 int n = is.read(b, off, Math.min(len, remaining));
+			 if(n < 0) throw new EOFException("Unexpected end of IDAT chunk");
+			 remaining -= n;
+			 return n;
+		 }
+	 }
+	 
+	 /**
+	  * Defilters the scan lines as they are inflated and hands them out with filter
+	  * type NONE, so a band of rows can be decoded as if it were an image on its own.
+	  * Closing the stream does nothing, the band decoding closes it after each band.
+	  */
+	 private static class DefilteredRowStream extends InputStream {
+		 private final InputStream is;
+		 private final int bytesPerPixel;
+		 private final int bytesPerScanLine;
+		 // Previous scan line followed by the current one
+		 private final byte[] rows;
+		 // Position in the current scan line, -1 for its filter type byte
+		 private int position;
+		 
+		 DefilteredRowStream(InputStream is, int bytesPerScanLine, int bytesPerPixel) {
+			 this.is = is;
+			 this.bytesPerScanLine = bytesPerScanLine;
+			 this.bytesPerPixel = bytesPerPixel;
+			 this.rows = new byte[bytesPerScanLine*2];
+			 this.position = bytesPerScanLine;
+		 }
+		 
+		 private boolean nextRow() throws IOException {
+			 int filter_type = is.read();
+			 if(filter_type < 0) return false;
+			 System.arraycopy(rows, bytesPerScanLine, rows, 0, bytesPerScanLine);
+			 IOUtils.readFully(is, rows, bytesPerScanLine, bytesPerScanLine);
+			 // The previous scan line of the first row is all zeros which is the same as no previous scan line
+			 defilter(filter_type, rows, bytesPerScanLine, bytesPerPixel, bytesPerScanLine);
+			 position = -1;
+			 return true;
+		 }
+		 
+		 @Override
+		 public void close() {
+			 // Keep going with the next band
+		 }
+		 
+		 @Override
+		 public int read() throws IOException {
+			 if(position >= bytesPerScanLine && !nextRow()) return -1;
+			 if(position++ < 0) return Filter.NONE;
+			 return rows[bytesPerScanLine + position - 1]&0xff;
+		 }
+		 
+		 @Override
+		 public int read(byte[] b, int off, int len) throws IOException {
+			 if(len == 0) return 0;
+			 if(position >= bytesPerScanLine && !nextRow()) return -1;
+			 int n = 0;
+			 if(position < 0) {
+				 b[off] = Filter.NONE;
+				 position++;
+				 n++;
+			 }
+			 int count = Math.min(len - n, bytesPerScanLine - position);
+			 System.arraycopy(rows, bytesPerScanLine + position, b, off + n, count);
+			 position += count;
+			 return n + count;
+		 }
+	 }
+	 
+	 // Daemon threads inflating for the pipelined decoding, shared by all the readers and created on first use
+	 private static final class Inflaters {
+		 private static final ExecutorService EXECUTOR = createExecutor();
+		 
+		 private static ExecutorService createExecutor() {
+			 int numOfThreads = Runtime.getRuntime().availableProcessors();
+			 final AtomicInteger count = new AtomicInteger();
+			 ThreadPoolExecutor executor = new ThreadPoolExecutor(numOfThreads, numOfThreads, 30L, TimeUnit.SECONDS,
+					 new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				 public Thread newThread(Runnable r) {
+					 Thread thread = new Thread(r, "PNGReader-inflater-" + count.incrementAndGet());
+					 thread.setDaemon(true);
+					 return thread;
+				 }
+			 });
+			 executor.allowCoreThreadTimeOut(true);
+			 
+			 return executor;
+		 }
+	 }
+	 
+	 /**
+	  * Bounded ring buffer of filtered scan lines fed by the inflater thread.
+	  * Each scan line buffer starts with the filter type byte. Buffers go back
+	  * to the free queue once the consumer has defiltered them.
+	  */
+	 private static class FilteredRowPipe implements Runnable {
+		 // Upper limit for the ring buffer memory
+		 private static final int MAX_BUFFER_SIZE = 0x100000;
+		 private static final byte[] END_OF_DATA = new byte[0];
+		 
+		 private final InputStream is;
+		 private final int height;
+		 private final BlockingQueue<byte[]> free;
+		 private final BlockingQueue<byte[]> filled;
+		 private volatile Throwable error;
+		 // Set by whoever comes first, the worker running the pipe or stop() before it runs
+		 private final AtomicBoolean started = new AtomicBoolean();
+		 private final CountDownLatch done = new CountDownLatch(1);
+		 
+		 FilteredRowPipe(InputStream is, int height, int bytesPerScanLine) {
+			 this.is = is;
+			 this.height = height;
+			 int slots = Math.max(4, Math.min(64, MAX_BUFFER_SIZE/(bytesPerScanLine + 1)));
+			 free = new ArrayBlockingQueue<byte[]>(slots);
+			 filled = new ArrayBlockingQueue<byte[]>(slots);
+			 for(int i = 0; i < slots; i++)
+				 free.add(new byte[bytesPerScanLine + 1]);
+		 }
+		 
+		 public void run() {
+			 if(!started.compareAndSet(false, true))
+				 return;
+			 try {
+				 for(int j = 0; j < height; j++) {
+					 byte[] row = free.take();
+					 IOUtils.readFully(is, row, 0, row.length);
+					 filled.put(row);
+				 }
+			 } catch(InterruptedException ex) {
+				 // The consumer gave up, we are done
+			 } catch(Throwable ex) {
+				 // Errors too, or the consumer would wait for a row forever
+				 error = ex;
+				 // There is always room for the marker since we are holding one of the buffers
+				 filled.add(END_OF_DATA);
+			 } finally {
+				 done.countDown();
+			 }
+		 }
+		 
+		 byte[] take() throws IOException {
+			 byte[] row = null;
+			 try {
+				 row = filled.take();
+			 } catch(InterruptedException ex) {
+				 // An interrupted thread is a cancellation, keep the interrupt status like CodecControl does
+				 Thread.currentThread().interrupt();
+				 throw new CodecCancelledException("Interrupted", false);
+			 }
+			 if(row == END_OF_DATA)
+				 throw new IOException("Error inflating image data", error);
+			 return row;
+		 }
+		 
+		 void release(byte[] row) {
+			 free.add(row);
+		 }
+		 
+		 /*
+		  * Interrupt the inflating and wait for it to finish even if we are interrupted,
+		  * keeping the interrupt status. A pipe which hasn't started yet won't run at all.
+		  */
+		 void stop(Future<?> future) {
+			 if(started.compareAndSet(false, true)) {
+				 future.cancel(false);
+				 return;
+			 }
+			 future.cancel(true);
+			 boolean interrupted = false;
+			 while(true) {
+				 try {
+					 done.await();
+					 break;
+				 } catch(InterruptedException ex) {
+					 interrupted = true;
+				 }
+			 }
+			 if(interrupted)
+				 Thread.currentThread().interrupt();
+		 }
+	 }
+}
@@ -10,25 +10,38 @@
 
 package com.icafe4j.image.reader;
 
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
 import java.awt.image.DataBuffer;
-import java.awt.image.DataBufferInt;
-import java.awt.image.DirectColorModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
 import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
 import java.io.*;
+import java.util.Arrays;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.icafe4j.image.CodecCancelledException;
+import com.icafe4j.image.CodecControl;
 import com.icafe4j.io.IOUtils;
+import com.icafe4j.io.UnsyncBufferedInputStream;
 
 /** 
  * Decodes and shows 8 bit color mapped,black and white and 16,24 and 32 bit
  * true color uncompressed and RLE TGA images. The compressed color mapped
  * formats 32 and 33 are not implemented in this version because I have not
  * found any information on these two formats.
+ * <p>
+ * The image data is read through a fixed size buffer and RLE packets are decoded
+ * a scan line at a time straight into a byte raster of the native pixel layout:
+ * BGR for 15, 16 and 24 bit, BGRA for 32 bit and indexed for color mapped and
+ * black and white images. The image origin is handled by the row a scan line is
+ * stored to and, for right to left images, by reversing the scan line.
  * 
  * @author Wen Yu, yuwen_66@yahoo.com
  * @version 1.0 03/26/2007
@@ -82,18 +95,21 @@ public class TGAReader extends ImageReader {
 	private TgaHeader tgaHeader;
 	
    	private int scanMode = 0;
-	private int l = 0, m = 0, n = 0, o = 0;
+   	private boolean bottomUp;
+   	private boolean rightToLeft;
+   	// Bytes per pixel in the file and in the raster
+   	private int srcBytes;
+   	private int dstBytes;
 	
-	private int[] pix;
+	private byte[] pixels;
   
 	public BufferedImage read(InputStream is) throws Exception {
 		tgaHeader = new TgaHeader();
 		tgaHeader.readHeader(is);
     
 		bitsPerPixel = tgaHeader.bits_per_pixel;
- 	   	width = tgaHeader.width;
- 	   	height = tgaHeader.height;
- 	   	pix = new int[width*height];
+ 	   	width = tgaHeader.width&0xffff;
+ 	   	height = tgaHeader.height&0xffff;
 	
  	   	if (tgaHeader.colourmap_type != 0 && tgaHeader.colourmap_type != 1) {
  	   		LOGGER.error("Can only handle colour map types of 0 and 1");    
@@ -101,47 +117,57 @@ public class TGAReader extends ImageReader {
  	   	}
 
  	   	scanMode = ((tgaHeader.image_descriptor&0x30)>>4);
-
- 	   	switch (scanMode) { 	   	
- 	   		case SCAN_MODE_BOTTOM_LEFT:
-				l = height-1; m = -1; n = 0; o = 1;
-				break;
-            case SCAN_MODE_BOTTOM_RIGHT:
-                l = height-1; m = -1; n = width-1; o = -1;
-				break;
-			case SCAN_MODE_TOP_LEFT:
-                l = 0; m = 1; n = 0; o = 1;
-				break;
-            case SCAN_MODE_TOP_RIGHT:
-				l = 0; m = 1; n = width-1; o = -1; 
-				break;
-			default:
- 	   	}
+ 	   	bottomUp = (scanMode == SCAN_MODE_BOTTOM_LEFT || scanMode == SCAN_MODE_BOTTOM_RIGHT);
+ 	   	rightToLeft = (scanMode == SCAN_MODE_BOTTOM_RIGHT || scanMode == SCAN_MODE_TOP_RIGHT);
        
  	   	LOGGER.info("Image x_origin: {}", tgaHeader.x_origin);
  	   	LOGGER.info("Image y_origin: {}", tgaHeader.y_origin);
+ 	   	
+ 	   	is = new UnsyncBufferedInputStream(is);
+ 	   	boolean rle = false;
 
  	   	switch (tgaHeader.image_type) {
 	   		case 0:
-	   			LOGGER.info("There are no data in the image file");
-	   			System.exit(1);
+	   			LOGGER.error("There are no data in the image file");
+	   			return null;
 	   		case 1:
-	   			readCMPTga(is);
-	   			break;
-	   		case 2: 
-	   			readTrueColorTga(is);
-	   			break;
-	   		case 3:
-	   			read_BW_Tga(is);
-	   			break;
 	   		case 9:
-	   			read_RLE_CMP_Tga(is);
+	   			rle = (tgaHeader.image_type == 9);
+	   			LOGGER.info("color mapped Tga {} image!", rle ? "RLE" : "uncompressed");
+	   			if (tgaHeader.bits_per_pixel != 8) {
+	   				LOGGER.error("Can only handle 8 bit color mapped tga file");
+	   				return null;
+	   			}
+	   			readPalette(is);
+	   			srcBytes = dstBytes = 1;
 	   			break;
+	   		case 2:
 	   		case 10:
-	   			read_RLE_TrueColor_Tga(is);
+	   			rle = (tgaHeader.image_type == 10);
+	   			skipToImageData(is);
+	   			if (tgaHeader.bits_per_pixel == 24) {
+	   				srcBytes = dstBytes = 3;
+	   			} else if (tgaHeader.bits_per_pixel == 32) {
+	   				srcBytes = dstBytes = 4;
+	   			} else if (tgaHeader.bits_per_pixel == 15 || tgaHeader.bits_per_pixel == 16) {
+	   				srcBytes = 2;
+	   				dstBytes = 3;
+	   			} else {
+	   				LOGGER.error("Unsupported bits per pixel: {}", tgaHeader.bits_per_pixel);
+	   				return null;
+	   			}
+	   			LOGGER.info("{} bits Tga {} image!", tgaHeader.bits_per_pixel, rle ? "RLE" : "uncompressed");
 	   			break;
+	   		case 3:
 	   		case 11:
-	   			read_RLE_BW_Tga(is);
+	   			rle = (tgaHeader.image_type == 11);
+	   			LOGGER.info("Black and White Tga {} image!", rle ? "RLE" : "uncompressed");
+	   			bitsPerPixel = 1;
+	   			skipToImageData(is);
+	   			rgbColorPalette = new int[256];
+	   			for(int i = 0; i < 256; i++)
+	   				rgbColorPalette[i] = (0xff<<24)|(i<<16)|(i<<8)|i;
+	   			srcBytes = dstBytes = 1;
 	   			break;
 	   		case 32: 
 	   		case 33:
@@ -151,299 +177,49 @@ public class TGAReader extends ImageReader {
 	   			LOGGER.error("I can't find a type matches this");
 	   			return null;			
  	   	}
+ 	   	
+ 	   	pixels = new byte[width*height*dstBytes];
+ 	   	
+ 	   	if(rle)
+ 	   		readRLEScanLines(is);
+ 	   	else
+ 	   		readScanLines(is);
+ 	   	
+ 	   	is.close();
 	   
- 	   	//Create a BufferedImage
- 	   	DataBuffer db = new DataBufferInt(pix, pix.length);
- 	   	WritableRaster raster = Raster.createPackedRaster(db, width, height, width,  new int[] {0x00ff0000, 0x0000ff00, 0x000000ff, 0xff000000}, null);
- 	   	ColorModel cm = new DirectColorModel(32, 0x00FF0000, 0x0000ff00, 0x000000ff, 0xff000000);
-			
- 	   	return new BufferedImage(cm, raster, false, null);
+ 	   	return createImage();
 	}
-   	
-	private void read_BW_Tga(InputStream is) throws Exception {
-		bitsPerPixel = 1;
-		LOGGER.info("Uncompressed Black and White Tga image!");
-
-		int index = 0;
-		  
-		IOUtils.skipFully(is, tgaHeader.id_length);
-		IOUtils.skipFully(is, tgaHeader.colourmap_type * tgaHeader.colourmap_length);
-
-		byte brgb[] = new byte[width*height];
-		IOUtils.readFully(is, brgb, 0, width*height);
-
-		for(int i = 0; i < height; i++) {
-			for(int j = 0; j < width; j++) {
-				pix[width*(l+m*i)+n+o*j] = (0xff<<24)|((brgb[index]&0xff))|((brgb[index]&0xff)<<8)|((brgb[index++]&0xff)<<16);
-			}
-		}
-		is.close();
-	}
-
-	private void read_RLE_BW_Tga(InputStream is) throws Exception {
-		bitsPerPixel = 1;
-		LOGGER.info("Black and White Tga RLE image!");
-
-		int nindex = 0;
-		int p = 0, k = 0, i = 0, j = 0;
-   
-		IOUtils.skipFully(is, tgaHeader.id_length);
-		IOUtils.skipFully(is, tgaHeader.colourmap_type * tgaHeader.colourmap_length);
-
-		byte brgb[] = IOUtils.readFully(is, 4096);
 	
-		while(p < width*height) { 
-			            
-			k = (brgb[nindex++] & 0x7f)+1; 
-						 					       
-			if ((brgb[nindex-1] & 0x80) != 0) {
-				for(int q = 0; q < k; q++){
-					pix[width*(l+m*i)+n+o*j] = (0xff<<24)|((brgb[nindex]&0xff))|((brgb[nindex]&0xff)<<8)|((brgb[nindex]&0xff)<<16);
-					j++;
-					if(j%width == 0) {
-						i++;
-						j = 0;
-					}
-					p++;
-					if (p >= width*height) {
-						break;
-					}
-				}
-				nindex += 1;
-			} else {
-				for (int q = 0; q < k; q++) {
-					pix[width*(l+m*i)+n+o*j] = (0xff<<24)|((brgb[nindex]&0xff))|((brgb[nindex]&0xff)<<8)|((brgb[nindex++]&0xff)<<16);
-					j++;
-					if(j%width == 0) {
-						i++;
-						j = 0;
-					}
-					p++;
-					if (p >= width*height) {
-						break;
-					}
-				}
-			}
-		}
-		is.close();
-	}
-
-	private void  read_RLE_CMP_Tga(InputStream is) throws Exception {
-		LOGGER.info("color mapped Tga RLE image!");
-	   
-		int nindex = 0;
-		int p = 0, k = 0, i = 0, j = 0;
-
-		if (tgaHeader.bits_per_pixel != 8) {
-			LOGGER.error("Can only handle 8 bit color mapped tga file");
-			return;
-		}
-
-		readPalette(is);
-
-		byte brgb[] = IOUtils.readFully(is, 4096);
-	     
-		while(p < width*height) { 
-
-			k = (brgb[nindex++] & 0x7f)+1; 
-						 					       
-			if ((brgb[nindex-1] & 0x80) != 0) {
-				for(int q = 0; q < k; q++){
-					pix[width*(l+m*i)+n+o*j] = rgbColorPalette[brgb[nindex]&0xff];
-					j++;
-					if(j%width == 0) {
-						i++;
-						j = 0;
-					}
-					p++;
-					if (p >= width*height) {
-						break;
-					}
-				}
-				nindex += 1;
-			} else {
-				for (int q = 0; q < k; q++)	{
-					pix[width*(l+m*i)+n+o*j] = rgbColorPalette[brgb[nindex++]&0xff];
-					j++;
-					if(j%width == 0) {
-						i++;
-						j = 0;
-					}
-					p++;
-					if (p >= width*height) {
-						break;
-					}
-				}
-			}
-		} 
-		is.close();
-	}
-
-	private void  read_RLE_TrueColor_Tga(InputStream is) throws Exception {
-		int skipover = 0;
-		int nindex = 0;
-		int p = 0, k = 0, i = 0, j = 0;
-
-		skipover += tgaHeader.id_length; 
-		skipover += tgaHeader.colourmap_type * tgaHeader.colourmap_length; 
-		IOUtils.skipFully(is, skipover);
-	          
-		byte brgb[] = IOUtils.readFully(is, 4096);
-		 
-		if(tgaHeader.bits_per_pixel  == 24) { // 24 bit image
-			LOGGER.info("24 bits Tga RLE image!");
-			 
-			while(p < width*height) { 
-				k = (brgb[nindex++] & 0x7f)+1; 
-						 					       
-				if ((brgb[nindex-1] & 0x80) != 0) {
-					for(int q = 0; q < k; q++){
-						pix[width*(l+m*i)+n+o*j] = (0xff<<24)|((brgb[nindex]&0xff))|((brgb[nindex+1]&0xff)<<8)|((brgb[nindex+2]&0xff)<<16);
-						j++;
-						if(j%width == 0) {
-							i++;
-							j = 0;
-						}
-						p++;
-						if (p >= width*height) {
-							break;
-						}
-					}
-					nindex += 3;
-				} else {
-					for (int q = 0; q < k; q++)	{
-						pix[width*(l+m*i)+n+o*j] = (0xff<<24)|((brgb[nindex++]&0xff))|((brgb[nindex++]&0xff)<<8)|((brgb[nindex++]&0xff)<<16);  
-						j++;
-						if(j%width == 0) {
-							i++;
-							j = 0;
-						}
-						p++;
-						if (p >= width*height) {
-							break;
-						}
-					}
-				}
-			} 
-		} else if (tgaHeader.bits_per_pixel  == 32) { // 32 bit image 
-			LOGGER.info("32 bits Tga RLE image!");            
-			
-			while(p < width*height) { 
-				k = (brgb[nindex++] & 0x7f)+1; 
-						 					       
-				if ((brgb[nindex-1] & 0x80) != 0) {
-					for(int q = 0; q < k; q++){
-						pix[width*(l+m*i)+n+o*j] = ((brgb[nindex]&0xff))|((brgb[nindex+1]&0xff)<<8)|((brgb[nindex+2]&0xff)<<16)|(((brgb[nindex+3]&0xff)<<24));
-						j++;
-						if(j%width == 0) {
-							i++;
-							j = 0;
-						}
-						p++;
-						if (p >= width*height) {
-							break;
-						}
-					}
-					nindex += 4;
-				} else {
-					for (int q = 0; q < k; q++) {
-						pix[width*(l+m*i)+n+o*j] = ((brgb[nindex++]&0xff))|((brgb[nindex++]&0xff)<<8)|((brgb[nindex++]&0xff)<<16)|(((brgb[nindex++]&0xff)<<24));  
-						j++;
-						if(j%width == 0) {
-							i++;
-							j = 0;
-						}
-						p++;
-						if (p >= width*height) {
-							break;
-						}
-					}
-				}
-			}	 
-		} else if (tgaHeader.bits_per_pixel == 15
-					|| tgaHeader.bits_per_pixel == 16) {			
+	private BufferedImage createImage() {
+		DataBuffer db = new DataBufferByte(pixels, pixels.length);
+		WritableRaster raster = null;
+		ColorModel cm = null;
 		
-			LOGGER.info("16 bits Tga RLE image!");
-			 
-			int r = 0, g = 0, b = 0, a = 0;  
-  
-			/** 
-			 * The two byte entry is broken down as follows:
-			 * ARRRRRGG GGGBBBBB, where each letter represents a bit.
-			 * but, because of the lo-hi storage order, the first byte
-			 * coming from the file will actually be GGGBBBBB, and the
-			 * second will be ARRRRRGG. "A" represents an attribute.
-			 */	 
-	
-			while(p < width*height) { 
-			            
-				k = (brgb[nindex++] & 0x7f)+1; 
-						 					       
-				if ((brgb[nindex-1] & 0x80) != 0) {
-					r = ((brgb[++nindex] & 0x7c) <<1);
-					g = (((brgb[nindex] & 0x03) << 6) | ((brgb[nindex-1] & 0xe0) >> 2));
-					b = ((brgb[nindex-1] & 0x1f)<<3);
-					a = 0xff;
-					nindex++;
-					for(int q = 0; q < k; q++) {
-						pix[width*(l+m*i)+n+o*j] = ((a<<24)|(r<<16)|(g<<8)|b);
-						j++;
-						if(j%width == 0) {
-							i++;
-							j = 0;
-						}
-						p++;
-						if (p >= width*height) {
-							break;
-						}
-					}
-				} else {
-					for (int q = 0; q < k; q++)	{
-						r = ((brgb[++nindex] & 0x7c) <<1);
-						g = (((brgb[nindex] & 0x03) << 6) | ((brgb[nindex-1] & 0xe0) >> 2));
-						b = ((brgb[nindex-1] & 0x1f)<<3);
-						a = 0xff;
-						nindex++;
-						pix[width*(l+m*i)+n+o*j] = ((a<<24)|(r<<16)|(g<<8)|b);
-						j++;
-						if(j%width == 0) {
-							i++;
-							j = 0;
-						}
-						p++;
-						if (p >= width*height) {
-							break;
-						}
-					}
+		switch(dstBytes) {
+			case 1:
+				raster = Raster.createInterleavedRaster(db, width, height, width, 1, new int[] {0}, null);
+				int[] palette = rgbColorPalette;
+				// Indexes out of the color map show as black
+				if(palette.length < 256) {
+					palette = new int[256];
+					System.arraycopy(rgbColorPalette, 0, palette, 0, rgbColorPalette.length);
+					for(int i = rgbColorPalette.length; i < 256; i++)
+						palette[i] = 0xff000000;
 				}
-			} 
-		}	
-		is.close();
-	}
-
-	private void  readCMPTga(InputStream is) throws Exception {
-		LOGGER.info("color mapped Tga uncompressed image!");
-
-		int index = 0;
-
-		readPalette(is);
-         
-		if (tgaHeader.bits_per_pixel != 8) {	
-			LOGGER.error("Can only handle 8 bit color mapped tga file");
-			return;
+				cm = new IndexColorModel(8, palette.length, palette, 0, tgaHeader.colourmap_entry_size == 32, -1, DataBuffer.TYPE_BYTE);
+				break;
+			case 3:
+				raster = Raster.createInterleavedRaster(db, width, height, width*3, 3, new int[] {2, 1, 0}, null);
+				cm = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), false, false, Transparency.OPAQUE, DataBuffer.TYPE_BYTE);
+				break;
+			default:
+				raster = Raster.createInterleavedRaster(db, width, height, width*4, 4, new int[] {2, 1, 0, 3}, null);
+				cm = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), true, false, Transparency.TRANSLUCENT, DataBuffer.TYPE_BYTE);
 		}
 		
-		byte brgb[] = new byte[width*height];
-		IOUtils.readFully(is, brgb, 0, width*height);
-
-		for(int i = 0; i < height; i++) {
-			for(int j = 0; j < width; j++) {
-				pix[width*(l+m*i)+n+o*j] = rgbColorPalette[brgb[index++]&0xff];
-			}
-		}
-		is.close();
+		return new BufferedImage(cm, raster, false, null);
 	}
-
+	
 	private void readPalette(InputStream is) throws Exception {
 		int index = 0, r = 0, g = 0, b = 0, a = 0;
 		int byte_per_pixel = (tgaHeader.colourmap_entry_size+1)/8;
@@ -480,41 +256,72 @@ public class TGAReader extends ImageReader {
 			default:
 		}
 	}
-
-	private void readTrueColorTga(InputStream is) throws Exception {
-		int skipover = 0;
-		int nindex = 0;
 	
-		skipover +=  tgaHeader.id_length;
-		skipover += tgaHeader.colourmap_type * tgaHeader.colourmap_length; 
-		IOUtils.skipFully(is, skipover);
-	
-		int bytes2read = (tgaHeader.bits_per_pixel + 7) / 8;
+	// Decode RLE packets into a scan line buffer, packets may run across scan lines
+	private void readRLEScanLines(InputStream is) throws Exception {
+		byte[] line = new byte[width*srcBytes];
+		byte[] pixel = new byte[srcBytes];
+		int pos = 0;
 		
-		byte brgb[] = new byte[bytes2read*width*height];
-		IOUtils.readFully(is, brgb, 0, bytes2read*width*height);
-	   
-		 
-		if (tgaHeader.bits_per_pixel == 24) { // 24 bit image
-			LOGGER.info("24 bits Tga uncompressed image!");
-            
-			for(int i = 0; i < height; i++) {
-				for(int j = 0; j < width; j++) {
-					pix[width*(l+m*i)+n+o*j] = (0xff<<24)|((brgb[nindex++]&0xff))|((brgb[nindex++]&0xff)<<8)|((brgb[nindex++]&0xff)<<16);
+		for(int row = 0; row < height; ) {
+			int header = is.read();
+			if(header == -1)
+				throw new EOFException("Premature end of TGA image data");
+			int count = (header&0x7f) + 1;
+			if((header&0x80) != 0) { // Run length packet
+				IOUtils.readFully(is, pixel);
+				while(count > 0 && row < height) {
+					int n = Math.min(count, (line.length - pos)/srcBytes);
+					if(srcBytes == 1) {
+						Arrays.fill(line, pos, pos + n, pixel[0]);
+						pos += n;
+					} else {
+						for(int k = 0; k < n; k++, pos += srcBytes)
+							System.arraycopy(pixel, 0, line, pos, srcBytes);
+					}
+					count -= n;
+					if(pos == line.length) {
+						storeScanLine(line, row++);
+						pos = 0;
+					}
 				}
-			}
-		} else if (tgaHeader.bits_per_pixel == 32) {// 32 bit image 
-			LOGGER.info("32 bits Tga uncompressed image!");
-            
-			for(int i = 0; i < height; i++) {
-				for(int j = 0; j < width; j++) {
-					pix[width*(l+m*i)+n+o*j] = ((brgb[nindex++]&0xff))|((brgb[nindex++]&0xff)<<8)|((brgb[nindex++]&0xff)<<16)|((brgb[nindex++]&0xff)<<24);
+			} else { // Raw packet
+				while(count > 0 && row < height) {
+					int n = Math.min(count, (line.length - pos)/srcBytes);
+					IOUtils.readFully(is, line, pos, n*srcBytes);
+					pos += n*srcBytes;
+					count -= n;
+					if(pos == line.length) {
+						storeScanLine(line, row++);
+						pos = 0;
+					}
 				}
 			}
-		} else if (tgaHeader.bits_per_pixel == 15 
-					|| tgaHeader.bits_per_pixel == 16) { // 16 bit image
-			LOGGER.info("16 bits Tga uncompressed image!");
-			int r = 0, g = 0, b = 0, a = 0;
+		}
+	}
+	
+	private void readScanLines(InputStream is) throws Exception {
+		byte[] line = new byte[width*srcBytes];
+		
+		for(int row = 0; row < height; row++) {
+			IOUtils.readFully(is, line);
+			storeScanLine(line, row);
+		}
+	}
+	
+	private void skipToImageData(InputStream is) throws Exception {
+		int skipover = tgaHeader.id_length&0xff;
+		if(tgaHeader.colourmap_type == 1)
+			skipover += (tgaHeader.colourmap_length&0xffff)*((tgaHeader.colourmap_entry_size + 7)/8);
+		IOUtils.skipFully(is, skipover);
+	}
+	
+	// Store a scan line in file order to its place in the raster
+	private void storeScanLine(byte[] line, int row) throws CodecCancelledException {
+		int y = bottomUp ? (height - 1 - row) : row;
+		int offset = y*width*dstBytes;
+		
+		if(srcBytes == 2) {
 			/** 
 			 * The two byte entry is broken down as follows:
 			 * ARRRRRGG GGGBBBBB, where each letter represents a bit.
@@ -522,18 +329,19 @@ public class TGAReader extends ImageReader {
 			 * coming from the file will actually be GGGBBBBB, and the
 			 * second will be ARRRRRGG. "A" represents an attribute.
 			 */
-			for(int i = 0; i < height; i++) {
-				for(int j = 0; j < width; j++) {
-					r = ((brgb[++nindex] & 0x7c) <<1);
-					g = (((brgb[nindex] & 0x03) << 6) | ((brgb[nindex-1] & 0xe0) >> 2));
-					b = ((brgb[nindex-1] & 0x1f)<<3);
-					//a = (brgb[nindex] & 0x80);
-					a = 0xff;
-					nindex++;
-					pix[width*(l+m*i)+n+o*j] = ((a<<24)|(r<<16)|(g<<8)|b);
-				}
+			for(int j = 0, nindex = 0; j < width; j++, nindex += 2) {
+				int lo = line[nindex]&0xff, hi = line[nindex + 1]&0xff;
+				int index = offset + 3*(rightToLeft ? (width - 1 - j) : j);
+				pixels[index++] = (byte)((lo&0x1f)<<3);
+				pixels[index++] = (byte)(((hi&0x03)<<6)|((lo&0xe0)>>2));
+				pixels[index] = (byte)((hi&0x7c)<<1);
 			}
+		} else if(!rightToLeft) {
+			System.arraycopy(line, 0, pixels, offset, line.length);
+		} else {
+			for(int j = 0, nindex = 0; j < width; j++, nindex += dstBytes)
+				System.arraycopy(line, nindex, pixels, offset + (width - 1 - j)*dstBytes, dstBytes);
 		}
-		is.close();
+		CodecControl.checkpoint(CodecControl.Unit.ROWS, row + 1, height);
 	}
-}
\ No newline at end of file
+}
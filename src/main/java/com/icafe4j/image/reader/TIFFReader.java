@@ -13,6 +13,11 @@
  *
  * Who   Date       Description
  * ====  =======    ============================================================
+ * AG    18Oct2026  Reuse Inflater and compressed data buffer of a CodecContext
+ * AG    18Oct2026  Added flight recorder stage times, dumps go to debug level
+ * AG    18Oct2026  Added decoding into TiledImage
+ * AG    18Oct2026  Shared parsed ICC profiles through ICCProfileCache
+ * AG    18Oct2026  Added region of interest and subsampling decoding
  * WY    09Nov2015  Fixed bug with stripped CMYK decoding
  * WY    13Sep2015  Extract unpackStrip() method
  * WY    08Jan2015  Better exception handling to resume from failed frame decoding 
@@ -35,6 +40,7 @@
 
 package com.icafe4j.image.reader;
 
+import java.awt.Rectangle;
 import java.awt.Transparency;
 import java.awt.color.ColorSpace;
 import java.awt.color.ICC_ColorSpace;
@@ -63,7 +69,12 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.icafe4j.image.CodecCancelledException;
+import com.icafe4j.image.CodecContext;
+import com.icafe4j.image.CodecControl;
+import com.icafe4j.image.TiledImage;
 import com.icafe4j.image.color.CMYKColorSpace;
+import com.icafe4j.image.color.ICCProfileCache;
 import com.icafe4j.image.color.Int32ComponentColorModel;
 import com.icafe4j.image.compression.ImageDecoder;
 import com.icafe4j.image.compression.deflate.DeflateDecoder;
@@ -90,6 +101,7 @@ import com.icafe4j.io.IOUtils;
 import com.icafe4j.io.RandomAccessInputStream;
 import com.icafe4j.io.ReadStrategyII;
 import com.icafe4j.io.ReadStrategyMM;
+import com.icafe4j.jfr.CodecTrace;
 import com.icafe4j.string.StringUtils;
 import com.icafe4j.util.ArrayUtils;
 
@@ -103,18 +115,32 @@ public class TIFFReader extends ImageReader {
 	private RandomAccessInputStream randIS = null;
 	private List<IFD> list = new ArrayList<IFD>();
 	private List<BufferedImage> frames = new ArrayList<BufferedImage>();
+	// Context of the page being decoded
+	private CodecContext codecContext;
 	private int endian = IOUtils.BIG_ENDIAN;
 	private static final int[] redMask =   {0x00, 0x04, 0x30, 0x1c0, 0xf00};
 	private static final int[] greenMask = {0x00, 0x02, 0x0c, 0x038, 0x0f0};
 	private static final int[] blueMask =  {0x00, 0x01, 0x03, 0x007, 0x00f};
 	
 	private static final int bufLen = 40960; // 40K read buffer
+	// Minimum width of a band when decoding a tiled page into a TiledImage
+	private static final int MIN_TILED_BAND_WIDTH = 4096;
 	
 	// Obtain a logger instance
 	private static final Logger LOGGER = LoggerFactory.getLogger(TIFFReader.class);		
 		 
 	public BufferedImage read(InputStream is) throws Exception {
+		long start = CodecTrace.start();
 		randIS = new FileCacheRandomAccessInputStream(is, bufLen);
+		try {
+			return read(start);
+		} finally {
+			// Drop the cache file even if we bail out early
+			randIS.shallowClose();
+		}
+	}
+	
+	private BufferedImage read(long start) throws Exception {
 		if(!readHeader(randIS)) return null;
 		 
 		int offset = randIS.readInt();
@@ -124,6 +150,8 @@ public class TIFFReader extends ImageReader {
 		while (offset != 0)	{
 			try {
 				offset = readIFD(ifd++, offset);
+			} catch(CodecCancelledException ex) {
+				throw ex;
 			} catch(Exception ex) {
 				ex.printStackTrace();
 				break;
@@ -132,9 +160,19 @@ public class TIFFReader extends ImageReader {
 		
 		BufferedImage frame = null;
 		
+		CodecTrace trace = CodecTrace.current();
+		long nested = 0;
+		if(trace != null) {
+			trace.add(CodecTrace.Stage.PARSE, System.nanoTime() - start);
+			start = System.nanoTime();
+			nested = trace.getTotalTime();
+		}
+		
 		for(IFD page : list) {
 			try {
 				frame = decode(page);
+			} catch(CodecCancelledException ex) {
+				throw ex;
 			} catch(Exception ex) {
 				ex.printStackTrace();
 				continue;
@@ -142,8 +180,10 @@ public class TIFFReader extends ImageReader {
 			if(frame != null)
 				frames.add(frame);
 		}		
+		// Whatever is left after decompressing goes to creating the images
+		if(trace != null)
+			trace.add(CodecTrace.Stage.COLOR_CONVERT, System.nanoTime() - start - (trace.getTotalTime() - nested));
 		
-		randIS.shallowClose();
 		if(frames.size() > 0)
 			return frames.get(0);
 		return null;
@@ -153,9 +193,15 @@ public class TIFFReader extends ImageReader {
 		// Grab some of the TIFF fields we are interested in
 		TiffField<?> f_tileWidth = ifd.getField(TiffTag.TILE_WIDTH);
 		TiffField<?> f_tileLength = ifd.getField(TiffTag.TILE_LENGTH);
-		if(f_tileWidth != null && f_tileLength != null)
-			return decodeTiledTiff(ifd);
-		return decodeStrippedTiff(ifd);
+		codecContext = openContext();
+		try {
+			if(f_tileWidth != null && f_tileLength != null)
+				return decodeTiledTiff(ifd);
+			return decodeStrippedTiff(ifd);
+		} finally {
+			closeContext(codecContext);
+			codecContext = null;
+		}
 	}
 	
 	private BufferedImage decodeStrippedTiff(IFD ifd) throws Exception {
@@ -165,7 +211,7 @@ public class TIFFReader extends ImageReader {
 		if(field != null)
 			data = (short[])field.getData();
 		TiffFieldEnum.Compression compression = TiffFieldEnum.Compression.fromValue(data[0]&0xffff);
-		LOGGER.info("Compression type: {}", compression.getDescription());
+		LOGGER.debug("Compression type: {}", compression.getDescription());
 		// Forget about tiled TIFF for now
 		TiffField<?> f_stripOffsets = ifd.getField(TiffTag.STRIP_OFFSETS);
 		TiffField<?> f_stripByteCounts = ifd.getField(TiffTag.STRIP_BYTE_COUNTS);
@@ -173,34 +219,34 @@ public class TIFFReader extends ImageReader {
 		int[] stripByteCounts = f_stripByteCounts.getDataAsLong();
 		int imageWidth = ifd.getField(TiffTag.IMAGE_WIDTH).getDataAsLong()[0];
 		int imageHeight = ifd.getField(TiffTag.IMAGE_LENGTH).getDataAsLong()[0];
-		LOGGER.info("Image width: {}", imageWidth);
-		LOGGER.info("Image height: {}", imageHeight);
+		LOGGER.debug("Image width: {}", imageWidth);
+		LOGGER.debug("Image height: {}", imageHeight);
 		TiffField<?> f_rowsPerStrip = ifd.getField(TiffTag.ROWS_PER_STRIP);
 		int rowsPerStrip = imageHeight;
 		if(f_rowsPerStrip != null)
 			rowsPerStrip = f_rowsPerStrip.getDataAsLong()[0];
-		LOGGER.info("Rows per strip: {}", rowsPerStrip);		
+		LOGGER.debug("Rows per strip: {}", rowsPerStrip);		
 		TiffField<?> f_photoMetric = ifd.getField(TiffTag.PHOTOMETRIC_INTERPRETATION);
 		int photoMetric = f_photoMetric.getDataAsLong()[0];
 		TiffFieldEnum.PhotoMetric e_photoMetric = TiffFieldEnum.PhotoMetric.fromValue(photoMetric);
-		LOGGER.info("PhotoMetric: {}", e_photoMetric);
+		LOGGER.debug("PhotoMetric: {}", e_photoMetric);
 		TiffField<?> f_bitsPerSample = ifd.getField(TiffTag.BITS_PER_SAMPLE);
 		int bitsPerSample = f_bitsPerSample.getDataAsLong()[0];
-		LOGGER.info("Bits per sample: {}", bitsPerSample);
+		LOGGER.debug("Bits per sample: {}", bitsPerSample);
 		TiffField<?> f_samplesPerPixel = ifd.getField(TiffTag.SAMPLES_PER_PIXEL);
 		int samplesPerPixel = f_samplesPerPixel.getDataAsLong()[0];
-		LOGGER.info("Samples per pixel: {}", samplesPerPixel);
+		LOGGER.debug("Samples per pixel: {}", samplesPerPixel);
 		TiffField<?> f_predictor = ifd.getField(TiffTag.PREDICTOR);
 		int predictor = 0;
 		if(f_predictor != null) {
 			predictor = f_predictor.getDataAsLong()[0];
-			LOGGER.info("Predictor: {}", predictor);
+			LOGGER.debug("Predictor: {}", predictor);
 		}
 		TiffField<?> f_planaryConfiguration = ifd.getField(TiffTag.PLANAR_CONFIGURATTION);
 		int planaryConfiguration = 1;
 		if(f_planaryConfiguration != null) planaryConfiguration = f_planaryConfiguration.getDataAsLong()[0];
 		TiffFieldEnum.PlanarConfiguration e_planaryConfiguration = TiffFieldEnum.PlanarConfiguration.fromValue(planaryConfiguration);
-		LOGGER.info("Planary configuration: {}", e_planaryConfiguration);
+		LOGGER.debug("Planary configuration: {}", e_planaryConfiguration);
 		
 		TiffField<?> f_sampleFormat = ifd.getField(TiffTag.SAMPLE_FORMAT);
 		TiffField<?> f_sampleMaxValue = ifd.getField(TiffTag.S_MAX_SAMPLE_VALUE);
@@ -225,8 +271,8 @@ public class TIFFReader extends ImageReader {
 			} else if(bitsPerSample > 32 && f_sampleMinValue != null) {
 				minValue = ((double[])f_sampleMinValue.getData())[0];
 			}				
-			LOGGER.info("Sample MAX value: {}", maxValue);
-			LOGGER.info("Sample MIN vlaue: {}", minValue);
+			LOGGER.debug("Sample MAX value: {}", maxValue);
+			LOGGER.debug("Sample MIN vlaue: {}", minValue);
 		}
 		boolean transparent = false;
 		boolean isAssociatedAlpha = false;
@@ -269,6 +315,7 @@ public class TIFFReader extends ImageReader {
 				switch(compression) {
 					case NONE:
 						for(int i = 0; i < stripByteCounts.length; i++) {
+							CodecControl.checkpoint(CodecControl.Unit.STRIPS, i, stripByteCounts.length);
 							int bytes2Read = stripBytes[i];
 							randIS.seek(stripOffsets[i]);
 							randIS.readFully(pixels, offset, bytes2Read);
@@ -280,10 +327,11 @@ public class TIFFReader extends ImageReader {
 						break;
 					case DEFLATE:
 					case DEFLATE_ADOBE:
-						decoder = new DeflateDecoder();
+						decoder = new DeflateDecoder(codecContext.getInflater());
 						break;
 					case PACKBITS:
 						for(int i = 0; i < stripByteCounts.length; i++) {
+							CodecControl.checkpoint(CodecControl.Unit.STRIPS, i, stripByteCounts.length);
 							int bytes2Read = stripBytes[i];
 							unpackStrip(pixels, offset, stripBytes[i], stripOffsets[i], stripByteCounts[i]);
 							offset += bytes2Read;
@@ -293,10 +341,8 @@ public class TIFFReader extends ImageReader {
 				}
 				if(decoder != null) {
 					for(int i = 0; i < stripByteCounts.length; i++) {
-						byte[] temp = new byte[stripByteCounts[i]];
-						randIS.seek(stripOffsets[i]);
-						randIS.readFully(temp);
-						decoder.setInput(temp);
+						CodecControl.checkpoint(CodecControl.Unit.STRIPS, i, stripByteCounts.length);
+						setDecoderInput(decoder, stripOffsets[i], stripByteCounts[i]);
 						int numOfBytes = decoder.decode(pixels, offset, stripBytes[i]);
 						offset += numOfBytes;
 					}
@@ -322,6 +368,7 @@ public class TIFFReader extends ImageReader {
 				switch(compression) {
 					case NONE:
 						for(int i = 0; i < stripByteCounts.length; i++) {
+							CodecControl.checkpoint(CodecControl.Unit.STRIPS, i, stripByteCounts.length);
 							int bytes2Read = stripBytes[i];
 							randIS.seek(stripOffsets[i]);
 							randIS.readFully(pixels, offset, bytes2Read);
@@ -330,6 +377,7 @@ public class TIFFReader extends ImageReader {
 						break;
 					case PACKBITS:
 						for(int i = 0; i < stripByteCounts.length; i++) {
+							CodecControl.checkpoint(CodecControl.Unit.STRIPS, i, stripByteCounts.length);
 							int bytes2Read = stripBytes[i];
 							unpackStrip(pixels, offset, stripBytes[i], stripOffsets[i], stripByteCounts[i]);
 							offset += bytes2Read;
@@ -340,18 +388,16 @@ public class TIFFReader extends ImageReader {
 						break;
 					case DEFLATE:
 					case DEFLATE_ADOBE:
-						decoder = new DeflateDecoder();
+						decoder = new DeflateDecoder(codecContext.getInflater());
 						break;
 					default:
 						break;
 				}
 				if(decoder != null) {
 					for(int i = 0; i < stripByteCounts.length; i++) {
+						CodecControl.checkpoint(CodecControl.Unit.STRIPS, i, stripByteCounts.length);
 						int bytes2Read = stripBytes[i];
-						byte[] temp = new byte[stripByteCounts[i]];
-						randIS.seek(stripOffsets[i]);
-						randIS.readFully(temp);
-						decoder.setInput(temp);
+						setDecoderInput(decoder, stripOffsets[i], stripByteCounts[i]);
 						int numOfBytes = decoder.decode(pixels, offset, bytes2Read);							
 						offset += numOfBytes;
 					}
@@ -364,9 +410,12 @@ public class TIFFReader extends ImageReader {
 				// Get ICC_Profile
 				TiffField<?> f_colorProfile = ifd.getField(TiffTag.ICC_PROFILE);
 				ICC_Profile profile = null;
-				if(f_colorProfile != null) profile = ICC_Profile.getInstance((byte[])f_colorProfile.getData());
 				ColorSpace colorSpace  = CMYKColorSpace.getInstance();
-				if(profile != null) colorSpace = new ICC_ColorSpace(profile);			
+				if(f_colorProfile != null) { // Parsed profiles are shared across images
+					ICC_ColorSpace iccColorSpace = ICCProfileCache.getInstance().getColorSpace((byte[])f_colorProfile.getData());
+					profile = iccColorSpace.getProfile();
+					colorSpace = iccColorSpace;
+				}			
 				//band offset, we have 4 bands if no extra sample is specified, otherwise 5
 				int[] bandoff = {0, 1, 2, 3}; 
 				int[] nBits = {bitsPerSample, bitsPerSample, bitsPerSample, bitsPerSample};
@@ -482,6 +531,7 @@ public class TIFFReader extends ImageReader {
 					switch(compression) {
 						case NONE:
 							for(int i = 0; i < stripByteCounts.length; i++) {
+								CodecControl.checkpoint(CodecControl.Unit.STRIPS, i, stripByteCounts.length);
 								randIS.seek(stripOffsets[i]);
 								int len = stripByteCounts[i];
 								temp = new byte[len];
@@ -544,6 +594,7 @@ public class TIFFReader extends ImageReader {
 							break;
 						case LZW:
 							for(int i = 0; i < stripByteCounts.length; i++) {
+								CodecControl.checkpoint(CodecControl.Unit.STRIPS, i, stripByteCounts.length);
 								randIS.seek(stripOffsets[i]);
 								int len = stripByteCounts[i];
 								temp = new byte[len];
@@ -701,6 +752,7 @@ public class TIFFReader extends ImageReader {
 				switch(compression) {
 					case NONE:
 						for(int i = 0; i < stripByteCounts.length; i++) {
+							CodecControl.checkpoint(CodecControl.Unit.STRIPS, i, stripByteCounts.length);
 							int bytes2Read = stripBytes[i];
 							randIS.seek(stripOffsets[i]);
 							randIS.readFully(pixels, offset, bytes2Read);
@@ -709,6 +761,7 @@ public class TIFFReader extends ImageReader {
 						break;
 					case PACKBITS:
 						for(int i = 0; i < stripByteCounts.length; i++) {
+							CodecControl.checkpoint(CodecControl.Unit.STRIPS, i, stripByteCounts.length);
 							int bytes2Read = stripBytes[i];
 							unpackStrip(pixels, offset, stripBytes[i], stripOffsets[i], stripByteCounts[i]);
 							offset += bytes2Read;			
@@ -719,17 +772,15 @@ public class TIFFReader extends ImageReader {
 						break;
 					case DEFLATE:
 					case DEFLATE_ADOBE:
-						decoder = new DeflateDecoder();
+						decoder = new DeflateDecoder(codecContext.getInflater());
 						break;
 					default:
 				}				
 				if(decoder != null) {					
 					pixels = new byte[stripOffsets.length*stripBytes[0]];
 					for(int i = 0; i < stripByteCounts.length; i++) {
-						temp = new byte[stripByteCounts[i]];
-						randIS.seek(stripOffsets[i]);
-						randIS.readFully(temp);
-						decoder.setInput(temp);
+						CodecControl.checkpoint(CodecControl.Unit.STRIPS, i, stripByteCounts.length);
+						setDecoderInput(decoder, stripOffsets[i], stripByteCounts[i]);
 						int numOfBytes = decoder.decode(pixels, offset, stripBytes[i]);							
 						offset += numOfBytes;
 					}
@@ -914,7 +965,7 @@ public class TIFFReader extends ImageReader {
 		TiffField<?> field = ifd.getField(TiffTag.COMPRESSION);
 		short[] data = (short[])field.getData();
 		TiffFieldEnum.Compression compression = TiffFieldEnum.Compression.fromValue(data[0]&0xffff);
-		LOGGER.info("Compression type: {}", compression.getDescription());
+		LOGGER.debug("Compression type: {}", compression.getDescription());
 		
 		TiffField<?> f_tileOffsets = ifd.getField(TiffTag.TILE_OFFSETS);
 		if(f_tileOffsets == null) f_tileOffsets = ifd.getField(TiffTag.STRIP_OFFSETS);
@@ -927,8 +978,8 @@ public class TIFFReader extends ImageReader {
 		
 		int imageWidth = ifd.getField(TiffTag.IMAGE_WIDTH).getDataAsLong()[0];
 		int imageHeight = ifd.getField(TiffTag.IMAGE_LENGTH).getDataAsLong()[0];
-		LOGGER.info("Image width: {}", imageWidth);
-		LOGGER.info("Image height: {}", imageHeight);
+		LOGGER.debug("Image width: {}", imageWidth);
+		LOGGER.debug("Image height: {}", imageHeight);
 		
 		TiffField<?> f_tileWidth = ifd.getField(TiffTag.TILE_WIDTH);
 		TiffField<?> f_tileLength = ifd.getField(TiffTag.TILE_LENGTH);
@@ -942,28 +993,28 @@ public class TIFFReader extends ImageReader {
 		TiffField<?> f_photoMetric = ifd.getField(TiffTag.PHOTOMETRIC_INTERPRETATION);
 		int photoMetric = f_photoMetric.getDataAsLong()[0];
 		TiffFieldEnum.PhotoMetric e_photoMetric = TiffFieldEnum.PhotoMetric.fromValue(photoMetric);
-		LOGGER.info("PhotoMetric: {}", e_photoMetric);
+		LOGGER.debug("PhotoMetric: {}", e_photoMetric);
 		
 		TiffField<?> f_bitsPerSample = ifd.getField(TiffTag.BITS_PER_SAMPLE);
 		int bitsPerSample = f_bitsPerSample.getDataAsLong()[0];
-		LOGGER.info("Bits per sample: {}", bitsPerSample);
+		LOGGER.debug("Bits per sample: {}", bitsPerSample);
 		
 		TiffField<?> f_samplesPerPixel = ifd.getField(TiffTag.SAMPLES_PER_PIXEL);
 		int samplesPerPixel = f_samplesPerPixel.getDataAsLong()[0];
-		LOGGER.info("Samples per pixel: {}", samplesPerPixel);
+		LOGGER.debug("Samples per pixel: {}", samplesPerPixel);
 		
 		TiffField<?> f_predictor = ifd.getField(TiffTag.PREDICTOR);
 		int predictor = 0;
 		if(f_predictor != null) {
 			predictor = f_predictor.getDataAsLong()[0];
-			LOGGER.info("Predictor: {}", predictor);
+			LOGGER.debug("Predictor: {}", predictor);
 		}
 		
 		TiffField<?> f_planaryConfiguration = ifd.getField(TiffTag.PLANAR_CONFIGURATTION);
 		int planaryConfiguration = 1;
 		if(f_planaryConfiguration != null) planaryConfiguration = f_planaryConfiguration.getDataAsLong()[0];
 		TiffFieldEnum.PlanarConfiguration e_planaryConfiguration = TiffFieldEnum.PlanarConfiguration.fromValue(planaryConfiguration);
-		LOGGER.info("Planary configuration: {}", e_planaryConfiguration);
+		LOGGER.debug("Planary configuration: {}", e_planaryConfiguration);
 		
 		TiffField<?> f_sampleFormat = ifd.getField(TiffTag.SAMPLE_FORMAT);
 		TiffField<?> f_sampleMaxValue = ifd.getField(TiffTag.S_MAX_SAMPLE_VALUE);
@@ -986,8 +1037,8 @@ public class TIFFReader extends ImageReader {
 			} else if(bitsPerSample > 32 && f_sampleMinValue != null) {
 				minValue = ((double[])f_sampleMinValue.getData())[0];
 			}				
-			LOGGER.info("Sample MAX value: {}", maxValue);
-			LOGGER.info("Sample MIN vlaue: {}", minValue);
+			LOGGER.debug("Sample MAX value: {}", maxValue);
+			LOGGER.debug("Sample MIN vlaue: {}", minValue);
 		}
 
 		int tilesAcross = (imageWidth + tileWidth - 1) / tileWidth;
@@ -1036,6 +1087,7 @@ public class TIFFReader extends ImageReader {
 				switch(compression) {
 					case NONE:
 						for(int i = 0; i < tileByteCounts.length; i++) {
+							CodecControl.checkpoint(CodecControl.Unit.TILES, i, tileByteCounts.length);
 							byte[] temp = new byte[tileByteCounts[i]];
 							randIS.seek(tileOffsets[i]);
 							randIS.readFully(temp);
@@ -1060,17 +1112,15 @@ public class TIFFReader extends ImageReader {
 						break;
 					case DEFLATE:
 					case DEFLATE_ADOBE:
-						decoder = new DeflateDecoder();
+						decoder = new DeflateDecoder(codecContext.getInflater());
 						break;
 					default:
 				}
 				if(decoder != null) {
 					for(int i = 0; i < tileByteCounts.length; i++) {
-						byte[] temp = new byte[tileByteCounts[i]];
+						CodecControl.checkpoint(CodecControl.Unit.TILES, i, tileByteCounts.length);
 						byte[] temp2 = new byte[bytes2Read];
-						randIS.seek(tileOffsets[i]);
-						randIS.readFully(temp);
-						decoder.setInput(temp);
+						setDecoderInput(decoder, tileOffsets[i], tileByteCounts[i]);
 						decoder.decode(temp2, 0, bytes2Read);
 						if(bitsPerSample == 16) {
 							raster.setDataElements(xoff, yoff, tileWidth, tileLength, ArrayUtils.toShortArray(temp2, endian == IOUtils.BIG_ENDIAN));
@@ -1137,6 +1187,7 @@ public class TIFFReader extends ImageReader {
 					case NONE:
 						if(planaryConfiguration == 1) {
 							for(int i = 0; i < tileByteCounts.length; i++) {
+								CodecControl.checkpoint(CodecControl.Unit.TILES, i, tileByteCounts.length);
 								byte[] temp = new byte[tileByteCounts[i]];
 								randIS.seek(tileOffsets[i]);
 								randIS.readFully(temp);
@@ -1182,6 +1233,7 @@ public class TIFFReader extends ImageReader {
 							bandoff = new int[]{0, 0, 0};
 							int dataBufferType = DataBuffer.TYPE_BYTE;
 							for(int i = 0; i < tilesPerImage; i++) {
+								CodecControl.checkpoint(CodecControl.Unit.TILES, i, tilesPerImage);
 								rgb[0] = new byte[tileByteCounts[i]];
 								randIS.seek(tileOffsets[i]);
 								randIS.readFully(rgb[0]);
@@ -1257,11 +1309,14 @@ public class TIFFReader extends ImageReader {
 						break;
 					case PACKBITS:
 						for(int i = 0; i < tileByteCounts.length; i++) {
+							CodecControl.checkpoint(CodecControl.Unit.TILES, i, tileByteCounts.length);
 							byte[] temp = new byte[tileByteCounts[i]];
 							randIS.seek(tileOffsets[i]);
 							randIS.readFully(temp);
 							byte[] temp2 = new byte[bytes2Read];
+							long start = CodecTrace.start();
 							Packbits.unpackbits(temp, temp2);
+							CodecTrace.stop(CodecTrace.Stage.DECOMPRESS, start);
 							if(bitsPerSample == 16) {
 								raster.setDataElements(xoff, yoff, tileWidth, tileLength, ArrayUtils.toShortArray(temp2, endian == IOUtils.BIG_ENDIAN));
 							} else
@@ -1280,17 +1335,15 @@ public class TIFFReader extends ImageReader {
 						break;
 					case DEFLATE:
 					case DEFLATE_ADOBE:
-						decoder = new DeflateDecoder();
+						decoder = new DeflateDecoder(codecContext.getInflater());
 						break;
 					default:
 				}
 				if(decoder != null) {					
 					for(int i = 0; i < tileByteCounts.length; i++) {
-						byte[] temp = new byte[tileByteCounts[i]];
+						CodecControl.checkpoint(CodecControl.Unit.TILES, i, tileByteCounts.length);
 						byte[] temp2 = new byte[bytes2Read];
-						randIS.seek(tileOffsets[i]);
-						randIS.readFully(temp);
-						decoder.setInput(temp);
+						setDecoderInput(decoder, tileOffsets[i], tileByteCounts[i]);
 						decoder.decode(temp2, 0, bytes2Read);
 						if(bitsPerSample == 16) {
 							raster.setDataElements(xoff, yoff, tileWidth, tileLength, ArrayUtils.toShortArray(temp2, endian == IOUtils.BIG_ENDIAN));
@@ -1317,6 +1370,462 @@ public class TIFFReader extends ImageReader {
 		return null;
 	}
 	 
+	/**
+	 * Decodes a region of interest from a TIFF page.
+	 * <p>
+	 * Only the strips or tiles which intersect the region are read and decompressed. Rows
+	 * and columns are skipped according to the subsampling factor: the returned image holds
+	 * every subsampling-th pixel of the region starting from its upper left corner. Strips
+	 * and tiles which don't contain any of the sampled rows or columns are never touched.
+	 * <p>
+	 * Supports bi-level, gray-scale, palette, RGB and CMYK images with 1, 2, 4, 8 or 16 bits
+	 * per sample, uncompressed or compressed with PackBits, LZW or Deflate, in both chunky
+	 * and planar configurations.
+	 * <p>
+	 * The stream is not closed.
+	 * 
+	 * @param is RandomAccessInputStream for the TIFF image
+	 * @param pageIndex zero based index of the page to decode
+	 * @param roi region of interest, null for the whole page
+	 * @param subsampling keep one out of every subsampling rows and columns, must be at least 1
+	 * @return BufferedImage of ((roi.width + subsampling - 1)/subsampling) by
+	 *         ((roi.height + subsampling - 1)/subsampling) pixels
+	 * @throws Exception
+	 */
+	public BufferedImage read(RandomAccessInputStream is, int pageIndex, Rectangle roi, int subsampling) throws Exception {
+		if(subsampling < 1)
+			throw new IllegalArgumentException("Invalid subsampling factor: " + subsampling);
+		
+		IFD ifd = readPageIFD(is, pageIndex);
+		codecContext = openContext();
+		try {
+			return decodeRegion(ifd, roi, subsampling);
+		} finally {
+			closeContext(codecContext);
+			codecContext = null;
+		}
+	}
+	
+	/**
+	 * Decodes a region of interest from a TIFF page read from an InputStream.
+	 * 
+	 * @see #read(RandomAccessInputStream, int, Rectangle, int)
+	 */
+	public BufferedImage read(InputStream is, int pageIndex, Rectangle roi, int subsampling) throws Exception {
+		RandomAccessInputStream rin = new FileCacheRandomAccessInputStream(is, bufLen);
+		try {
+			return read(rin, pageIndex, roi, subsampling);
+		} finally {
+			rin.shallowClose();
+		}
+	}
+	
+	/**
+	 * Decodes a TIFF page into a disk backed {@link TiledImage}, one band of strips or
+	 * tiles at a time, so the memory in use depends on the band and the tile cache
+	 * instead of the page size.
+	 * <p>
+	 * Bands are aligned with the strips or tiles of the page, which are decompressed only
+	 * once. A page compressed as a single strip therefore has to be decoded at once; very
+	 * large pages should be tiled or written with a small number of rows per strip. The
+	 * same image types as {@link #read(RandomAccessInputStream, int, Rectangle, int)} are
+	 * supported. The stream is not closed.
+	 * 
+	 * @param is RandomAccessInputStream for the TIFF image
+	 * @param pageIndex zero based index of the page to decode
+	 * @param tileSize tile size of the TiledImage
+	 * @param maxCacheBytes memory for the tiles of the TiledImage kept in memory
+	 * @return a TiledImage holding the page, to be closed by the caller
+	 * @throws Exception
+	 */
+	public TiledImage readTiled(RandomAccessInputStream is, int pageIndex, int tileSize, long maxCacheBytes) throws Exception {
+		IFD ifd = readPageIFD(is, pageIndex);
+		int imageWidth = ifd.getField(TiffTag.IMAGE_WIDTH).getDataAsLong()[0];
+		int imageHeight = ifd.getField(TiffTag.IMAGE_LENGTH).getDataAsLong()[0];
+		TiffField<?> field = ifd.getField(TiffTag.COMPRESSION);
+		boolean compressed = (field != null && field.getDataAsLong()[0] != TiffFieldEnum.Compression.NONE.getValue());
+		int chunkWidth = imageWidth;
+		int chunkHeight = imageHeight;
+		TiffField<?> f_tileWidth = ifd.getField(TiffTag.TILE_WIDTH);
+		TiffField<?> f_tileLength = ifd.getField(TiffTag.TILE_LENGTH);
+		if(f_tileWidth != null && f_tileLength != null) {
+			chunkWidth = f_tileWidth.getDataAsLong()[0];
+			chunkHeight = f_tileLength.getDataAsLong()[0];
+		} else {
+			field = ifd.getField(TiffTag.ROWS_PER_STRIP);
+			if(field != null) chunkHeight = Math.min(field.getDataAsLong()[0], imageHeight);
+		}
+		// Uncompressed strips can be read a row at a time
+		if(!compressed && chunkWidth == imageWidth) chunkHeight = 1;
+		// Round the band up to whole strips or tiles, the band width matters for tiled pages only
+		int bandHeight = ((tileSize + chunkHeight - 1)/chunkHeight)*chunkHeight;
+		int bandWidth = imageWidth;
+		if(chunkWidth < imageWidth)
+			bandWidth = (Math.max(tileSize, MIN_TILED_BAND_WIDTH) + chunkWidth - 1)/chunkWidth*chunkWidth;
+		
+		TiledImage tiledImage = new TiledImage(imageWidth, imageHeight, tileSize, maxCacheBytes, null);
+		boolean done = false;
+		codecContext = openContext();
+		try {
+			for(int y = 0; y < imageHeight; y += bandHeight) {
+				int rows = Math.min(bandHeight, imageHeight - y);
+				for(int x = 0; x < imageWidth; x += bandWidth) {
+					int cols = Math.min(bandWidth, imageWidth - x);
+					tiledImage.setRGB(x, y, decodeRegion(ifd, new Rectangle(x, y, cols, rows), 1));
+				}
+			}
+			done = true;
+		} finally {
+			// Errors as well as exceptions would leave the scratch file behind
+			if(!done) tiledImage.close();
+			closeContext(codecContext);
+			codecContext = null;
+		}
+		
+		return tiledImage;
+	}
+	
+	// Read the IFDs up to and including the requested page
+	private IFD readPageIFD(RandomAccessInputStream is, int pageIndex) throws IOException {
+		if(pageIndex < 0)
+			throw new IllegalArgumentException("Invalid page index: " + pageIndex);
+		randIS = is;
+		randIS.seek(0);
+		if(!readHeader(randIS))
+			throw new IOException("Invalid TIFF image!");
+		list.clear();
+		int offset = randIS.readInt();
+		int ifd = 0;
+		// We only need the IFDs up to the requested page
+		while(offset != 0 && ifd <= pageIndex)
+			offset = readIFD(ifd++, offset);
+		if(pageIndex >= list.size())
+			throw new IllegalArgumentException("Page index " + pageIndex + " out of range [0, " + list.size() + ")");
+		
+		return list.get(pageIndex);
+	}
+	
+	private BufferedImage decodeRegion(IFD ifd, Rectangle roi, int subsampling) throws Exception {
+		int imageWidth = ifd.getField(TiffTag.IMAGE_WIDTH).getDataAsLong()[0];
+		int imageHeight = ifd.getField(TiffTag.IMAGE_LENGTH).getDataAsLong()[0];
+		Rectangle region = new Rectangle(0, 0, imageWidth, imageHeight);
+		if(roi != null) region = region.intersection(roi);
+		if(region.isEmpty())
+			throw new IllegalArgumentException("Region of interest " + roi + " is outside of the image");
+		LOGGER.debug("Region of interest: {}, subsampling: {}", region, subsampling);
+		
+		TiffField<?> field = ifd.getField(TiffTag.COMPRESSION);
+		TiffFieldEnum.Compression compression = TiffFieldEnum.Compression.NONE;
+		if(field != null) compression = TiffFieldEnum.Compression.fromValue(field.getDataAsLong()[0]);
+		TiffFieldEnum.PhotoMetric photoMetric = TiffFieldEnum.PhotoMetric.fromValue(ifd.getField(TiffTag.PHOTOMETRIC_INTERPRETATION).getDataAsLong()[0]);
+		int bitsPerSample = 1;
+		field = ifd.getField(TiffTag.BITS_PER_SAMPLE);
+		if(field != null) bitsPerSample = field.getDataAsLong()[0];
+		int samplesPerPixel = 1;
+		field = ifd.getField(TiffTag.SAMPLES_PER_PIXEL);
+		if(field != null) samplesPerPixel = field.getDataAsLong()[0];
+		int planaryConfiguration = 1;
+		field = ifd.getField(TiffTag.PLANAR_CONFIGURATTION);
+		if(field != null) planaryConfiguration = field.getDataAsLong()[0];
+		int predictor = 1;
+		field = ifd.getField(TiffTag.PREDICTOR);
+		if(field != null) predictor = field.getDataAsLong()[0];
+		int fillOrder = 1;
+		field = ifd.getField(TiffTag.FILL_ORDER);
+		if(field != null) fillOrder = field.getDataAsLong()[0];
+		field = ifd.getField(TiffTag.SAMPLE_FORMAT);
+		if(field != null && field.getDataAsLong()[0] == 3)
+			throw new UnsupportedOperationException("Region decoding of floating point samples is not supported");
+		if(bitsPerSample != 16 && bitsPerSample > 8 || (bitsPerSample < 8 && (samplesPerPixel > 1 || 8%bitsPerSample != 0)))
+			throw new UnsupportedOperationException("Region decoding with " + bitsPerSample + " bits per sample and " + samplesPerPixel + " samples per pixel is not supported");
+		
+		int colorSamples = 0;
+		switch(photoMetric) {
+			case WHITE_IS_ZERO:
+			case BLACK_IS_ZERO:
+			case PALETTE_COLOR:
+				colorSamples = 1;
+				break;
+			case RGB:
+				colorSamples = 3;
+				break;
+			case SEPARATED:
+				colorSamples = 4;
+				break;
+			default:
+				throw new UnsupportedOperationException("Region decoding of " + photoMetric + " image is not supported");
+		}
+		// We allow for at most one extra sample (alpha) except for palette image
+		if(samplesPerPixel < colorSamples || samplesPerPixel > colorSamples + 1 || (photoMetric == TiffFieldEnum.PhotoMetric.PALETTE_COLOR && samplesPerPixel > 1))
+			throw new UnsupportedOperationException("Region decoding of " + photoMetric + " image with " + samplesPerPixel + " samples per pixel is not supported");
+		
+		ImageDecoder decoder = null;
+		switch(compression) {
+			case NONE:
+			case PACKBITS:
+				break;
+			case LZW:
+				decoder = new LZWTreeDecoder(8, true);
+				break;
+			case DEFLATE:
+			case DEFLATE_ADOBE:
+				decoder = new DeflateDecoder(codecContext.getInflater());
+				break;
+			default:
+				throw new UnsupportedOperationException("Region decoding with " + compression.getDescription() + " compression is not supported");
+		}
+		
+		// Strips are treated as tiles as wide as the image
+		int chunkWidth = imageWidth;
+		int chunkHeight = imageHeight;
+		TiffField<?> f_offsets = null;
+		TiffField<?> f_byteCounts = null;
+		TiffField<?> f_tileWidth = ifd.getField(TiffTag.TILE_WIDTH);
+		TiffField<?> f_tileLength = ifd.getField(TiffTag.TILE_LENGTH);
+		boolean tiled = (f_tileWidth != null && f_tileLength != null);
+		if(tiled) {
+			chunkWidth = f_tileWidth.getDataAsLong()[0];
+			chunkHeight = f_tileLength.getDataAsLong()[0];
+			f_offsets = ifd.getField(TiffTag.TILE_OFFSETS);
+			f_byteCounts = ifd.getField(TiffTag.TILE_BYTE_COUNTS);
+		} else {
+			field = ifd.getField(TiffTag.ROWS_PER_STRIP);
+			if(field != null) chunkHeight = Math.min(field.getDataAsLong()[0], imageHeight);
+		}
+		if(f_offsets == null) f_offsets = ifd.getField(TiffTag.STRIP_OFFSETS);
+		if(f_byteCounts == null) f_byteCounts = ifd.getField(TiffTag.STRIP_BYTE_COUNTS);
+		int[] chunkOffsets = f_offsets.getDataAsLong();
+		int[] chunkByteCounts = f_byteCounts.getDataAsLong();
+		
+		int chunksAcross = (imageWidth + chunkWidth - 1)/chunkWidth;
+		int chunksDown = (imageHeight + chunkHeight - 1)/chunkHeight;
+		int chunksPerPlane = chunksAcross*chunksDown;
+		int planes = (planaryConfiguration == 2)? samplesPerPixel : 1;
+		int chunkSamples = (planaryConfiguration == 2)? 1 : samplesPerPixel;
+		int chunkRowBytes = (chunkWidth*chunkSamples*bitsPerSample + 7)/8;
+		int bytesPerSample = (bitsPerSample + 7)/8;
+		
+		int outWidth = (region.width + subsampling - 1)/subsampling;
+		int outHeight = (region.height + subsampling - 1)/subsampling;
+		int lastX = region.x + (outWidth - 1)*subsampling;
+		int lastY = region.y + (outHeight - 1)*subsampling;
+		int outRowBytes = (outWidth*bitsPerSample + 7)/8; // Only used for less than 8 bits per sample
+		
+		byte[] bytes = null;
+		short[] shorts = null;
+		if(bitsPerSample < 8)
+			bytes = new byte[outRowBytes*outHeight];
+		else if(bitsPerSample == 8)
+			bytes = new byte[outWidth*outHeight*samplesPerPixel];
+		else
+			shorts = new short[outWidth*outHeight*samplesPerPixel];
+		
+		byte[] chunk = new byte[chunkRowBytes*chunkHeight];
+		byte[] compressed = new byte[0];
+		boolean bigEndian = (endian == IOUtils.BIG_ENDIAN);
+		int chunkPixelBytes = chunkSamples*bytesPerSample;
+		
+		CodecControl.Unit chunkUnit = tiled? CodecControl.Unit.TILES : CodecControl.Unit.STRIPS;
+		int chunksInRegion = planes*(lastY/chunkHeight - region.y/chunkHeight + 1)*(lastX/chunkWidth - region.x/chunkWidth + 1);
+		int chunksDone = 0;
+		
+		for(int plane = 0; plane < planes; plane++) {
+			for(int cy = region.y/chunkHeight; cy <= lastY/chunkHeight; cy++) {
+				int chunkTop = cy*chunkHeight;
+				int chunkBottom = Math.min(chunkTop + chunkHeight, imageHeight);
+				// First sampled row inside this chunk row
+				int oy0 = Math.max(0, (chunkTop - region.y + subsampling - 1)/subsampling);
+				int y0 = region.y + oy0*subsampling;
+				if(y0 >= chunkBottom) continue;
+				int rows = tiled? chunkHeight : (chunkBottom - chunkTop);
+				for(int cx = region.x/chunkWidth; cx <= lastX/chunkWidth; cx++) {
+					CodecControl.checkpoint(chunkUnit, chunksDone++, chunksInRegion);
+					int chunkLeft = cx*chunkWidth;
+					int chunkRight = Math.min(chunkLeft + chunkWidth, imageWidth);
+					int ox0 = Math.max(0, (chunkLeft - region.x + subsampling - 1)/subsampling);
+					int x0 = region.x + ox0*subsampling;
+					if(x0 >= chunkRight) continue;
+					// Last sampled column inside this chunk
+					int ox1 = Math.min(outWidth - 1, (chunkRight - 1 - region.x)/subsampling);
+					int x1 = region.x + ox1*subsampling;
+					int index = plane*chunksPerPlane + cy*chunksAcross + cx;
+					long chunkOffset = chunkOffsets[index]&0xffffffffL;
+					int byteCount = chunkByteCounts[index];
+					if(compression == TiffFieldEnum.Compression.NONE) {
+						// Read only the sampled rows, and only the sampled span of each row unless the predictor needs the whole row
+						int start = (predictor == 2)? 0 : ((x0 - chunkLeft)*chunkSamples*bitsPerSample)/8;
+						int end = ((x1 - chunkLeft + 1)*chunkSamples*bitsPerSample + 7)/8;
+						for(int y = y0; y < chunkBottom; y += subsampling) {
+							int rowOffset = (y - chunkTop)*chunkRowBytes;
+							int len = Math.min(end - start, byteCount - rowOffset - start);
+							if(len <= 0) break;
+							randIS.seek(chunkOffset + rowOffset + start);
+							randIS.readFully(chunk, rowOffset + start, len);
+						}
+					} else {
+						if(compressed.length < byteCount) compressed = new byte[byteCount];
+						randIS.seek(chunkOffset);
+						randIS.readFully(compressed, 0, byteCount);
+						int len = rows*chunkRowBytes;
+						if(decoder == null) { // PackBits
+							if(len != chunk.length) chunk = new byte[len];
+							long start = CodecTrace.start();
+							Packbits.unpackbitsLimit(compressed, byteCount, chunk);
+							CodecTrace.stop(CodecTrace.Stage.DECOMPRESS, start);
+						} else {
+							decoder.setInput(compressed, 0, byteCount);
+							decoder.decode(chunk, 0, len);
+						}
+					}
+					// Copy the sampled pixels over
+					for(int y = y0, oy = oy0; y < chunkBottom && oy < outHeight; y += subsampling, oy++) {
+						int rowOffset = (y - chunkTop)*chunkRowBytes;
+						// Deals with LSB2MSB fill order (rare and erroneous)
+						if(fillOrder == 2) ArrayUtils.reverseBits(chunk, rowOffset, chunkRowBytes);
+						if(predictor == 2 && bitsPerSample >= 8)
+							undoPredictor(chunk, rowOffset, chunkWidth, chunkSamples, bitsPerSample, bigEndian);
+						if(bitsPerSample < 8) {
+							int mask = (1<<bitsPerSample) - 1;
+							int outRowOffset = oy*outRowBytes;
+							for(int x = x0, ox = ox0; x <= x1; x += subsampling, ox++) {
+								int bitOffset = (x - chunkLeft)*bitsPerSample;
+								int value = (chunk[rowOffset + (bitOffset>>3)]>>(8 - bitsPerSample - (bitOffset&7)))&mask;
+								int outBitOffset = ox*bitsPerSample;
+								bytes[outRowOffset + (outBitOffset>>3)] |= value<<(8 - bitsPerSample - (outBitOffset&7));
+							}
+						} else {
+							for(int x = x0, ox = ox0; x <= x1; x += subsampling, ox++) {
+								int src = rowOffset + (x - chunkLeft)*chunkPixelBytes;
+								int dest = (oy*outWidth + ox)*samplesPerPixel + plane;
+								for(int k = 0; k < chunkSamples; k++, dest++, src += bytesPerSample) {
+									if(bytes != null)
+										bytes[dest] = chunk[src];
+									else if(bigEndian)
+										shorts[dest] = (short)(((chunk[src]&0xff)<<8)|(chunk[src + 1]&0xff));
+									else
+										shorts[dest] = (short)(((chunk[src + 1]&0xff)<<8)|(chunk[src]&0xff));
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		
+		return createRegionImage(ifd, photoMetric, outWidth, outHeight, bitsPerSample, samplesPerPixel, bytes, shorts);
+	}
+	
+	private BufferedImage createRegionImage(IFD ifd, TiffFieldEnum.PhotoMetric photoMetric, int width, int height, int bitsPerSample, int samplesPerPixel, byte[] bytes, short[] shorts) {
+		int dataType = (shorts != null)? DataBuffer.TYPE_USHORT : DataBuffer.TYPE_BYTE;
+		DataBuffer db = (shorts != null)? new DataBufferUShort(shorts, shorts.length) : new DataBufferByte(bytes, bytes.length);
+		int maxValue = (1<<bitsPerSample) - 1;
+		
+		if(photoMetric == TiffFieldEnum.PhotoMetric.WHITE_IS_ZERO) { // Invert to BLACK_IS_ZERO
+			// Only the gray sample, an extra alpha sample stays as it is. Below 8 bits there is no extra sample.
+			if(shorts != null) {
+				for(int i = 0; i < shorts.length; i += samplesPerPixel) shorts[i] = (short)(maxValue - (shorts[i]&0xffff));
+			} else if(bitsPerSample < 8) {
+				for(int i = 0; i < bytes.length; i++) bytes[i] = (byte)~bytes[i];
+			} else {
+				for(int i = 0; i < bytes.length; i += samplesPerPixel) bytes[i] = (byte)~bytes[i];
+			}
+			photoMetric = TiffFieldEnum.PhotoMetric.BLACK_IS_ZERO;
+		}
+		
+		if(bitsPerSample < 8 || photoMetric == TiffFieldEnum.PhotoMetric.PALETTE_COLOR) {
+			int[] palette = new int[1<<bitsPerSample];
+			if(photoMetric == TiffFieldEnum.PhotoMetric.PALETTE_COLOR) {
+				short[] colorMap = (short[])ifd.getField(TiffTag.COLORMAP).getData();
+				int numOfColors = palette.length;
+				int numOfColors2 = (numOfColors<<1);
+				for(int i = 0; i < numOfColors; i++) {
+					palette[i] = 0xff000000|((colorMap[i]&0xff00)<<8)|((colorMap[i+numOfColors]&0xff00))|((colorMap[i+numOfColors2]&0xff00)>>8);
+				}
+			} else { // Gray ramp
+				for(int i = 0; i < palette.length; i++) {
+					int gray = i*255/maxValue;
+					palette[i] = 0xff000000|(gray<<16)|(gray<<8)|gray;
+				}
+			}
+			rgbColorPalette = palette;
+			ColorModel cm = new IndexColorModel(bitsPerSample, palette.length, palette, 0, false, -1, dataType);
+			WritableRaster raster = null;
+			if(bitsPerSample < 8)
+				raster = Raster.createPackedRaster(db, width, height, bitsPerSample, null);
+			else
+				raster = Raster.createInterleavedRaster(db, width, height, width, 1, new int[] {0}, null);
+			return new BufferedImage(cm, raster, false, null);
+		}
+		
+		int[] bandoff = new int[samplesPerPixel];
+		int[] nBits = new int[samplesPerPixel];
+		for(int i = 0; i < samplesPerPixel; i++) bandoff[i] = i;
+		Arrays.fill(nBits, bitsPerSample);
+		boolean transparent = false;
+		boolean isAssociatedAlpha = false;
+		int trans = Transparency.OPAQUE;
+		
+		ColorSpace colorSpace = ColorSpace.getInstance(ColorSpace.CS_sRGB);
+		ICC_Profile profile = null;
+		switch(photoMetric) {
+			case BLACK_IS_ZERO:
+				colorSpace = ColorSpace.getInstance(ColorSpace.CS_GRAY);
+				transparent = (samplesPerPixel > 1);
+				break;
+			case RGB:
+				transparent = (samplesPerPixel > 3);
+				break;
+			case SEPARATED:
+				TiffField<?> f_colorProfile = ifd.getField(TiffTag.ICC_PROFILE);
+				colorSpace = CMYKColorSpace.getInstance();
+				if(f_colorProfile != null) {
+					ICC_ColorSpace iccColorSpace = ICCProfileCache.getInstance().getColorSpace((byte[])f_colorProfile.getData());
+					profile = iccColorSpace.getProfile();
+					colorSpace = iccColorSpace;
+				}
+				transparent = (samplesPerPixel > 4);
+				break;
+			default:
+		}
+		if(transparent) {
+			trans = Transparency.TRANSLUCENT;
+			TiffField<?> f_extraSamples = ifd.getField(TiffTag.EXTRA_SAMPLES);
+			if(f_extraSamples != null) isAssociatedAlpha = (f_extraSamples.getDataAsLong()[0] == 1);
+		}
+		
+		ColorModel cm = new ComponentColorModel(colorSpace, nBits, transparent, isAssociatedAlpha, trans, dataType);
+		WritableRaster raster = Raster.createInterleavedRaster(db, width, height, width*samplesPerPixel, samplesPerPixel, bandoff, null);
+		if(profile != null) {
+			raster = IMGUtils.iccp2rgbRaster(raster, cm);
+			cm = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_sRGB), nBits, transparent, isAssociatedAlpha, trans, raster.getTransferType());
+		}
+		
+		return new BufferedImage(cm, raster, false, null);
+	}
+	
+	// Undo horizontal differencing for one row of 8 or 16 bits samples
+	private static void undoPredictor(byte[] row, int offset, int width, int samplesPerPixel, int bitsPerSample, boolean bigEndian) {
+		if(bitsPerSample == 8) {
+			for(int i = offset + samplesPerPixel, end = offset + width*samplesPerPixel; i < end; i++)
+				row[i] += row[i - samplesPerPixel];
+		} else {
+			int stride = samplesPerPixel*2;
+			for(int i = offset + stride, end = offset + width*stride; i < end; i += 2) {
+				int prev = i - stride;
+				int value = 0;
+				if(bigEndian) {
+					value = ((row[prev]&0xff)<<8|(row[prev + 1]&0xff)) + ((row[i]&0xff)<<8|(row[i + 1]&0xff));
+					row[i] = (byte)(value>>8);
+					row[i + 1] = (byte)value;
+				} else {
+					value = ((row[prev + 1]&0xff)<<8|(row[prev]&0xff)) + ((row[i + 1]&0xff)<<8|(row[i]&0xff));
+					row[i + 1] = (byte)(value>>8);
+					row[i] = (byte)value;
+				}
+			}
+		}
+	}
+	
 	public int getFrameCount() {
     	return frames.size();
     }
@@ -1331,10 +1840,10 @@ public class TIFFReader extends ImageReader {
 		
 		if(endian == IOUtils.BIG_ENDIAN)
 		{
-			LOGGER.info("Byte order: Motorola BIG_ENDIAN");
+			LOGGER.debug("Byte order: Motorola BIG_ENDIAN");
 			this.randIS.setReadStrategy(ReadStrategyMM.getInstance());
 		} else if(endian == IOUtils.LITTLE_ENDIAN) {
-			LOGGER.info("Byte order: Intel LITTLE_ENDIAN");
+			LOGGER.debug("Byte order: Intel LITTLE_ENDIAN");
 			this.randIS.setReadStrategy(ReadStrategyII.getInstance());
 		} else {
 			LOGGER.info("Warning: invalid TIFF byte order!");
@@ -1354,30 +1863,30 @@ public class TIFFReader extends ImageReader {
 	 
 	private int readIFD(int id, int offset) throws IOException {
 		IFD tiffIFD = new IFD();
-		LOGGER.info("IFD {} offset: byte {}", id, offset);
+		LOGGER.debug("IFD {} offset: byte {}", id, offset);
 		randIS.seek(offset);
 		int no_of_fields = randIS.readShort();
-		LOGGER.info("Total number of fields for IFD {}: {}", id, no_of_fields);
+		LOGGER.debug("Total number of fields for IFD {}: {}", id, no_of_fields);
 		offset += 2;
 		
 		for (int i = 0;i < no_of_fields; i++) {
-			LOGGER.info("TiffField {} =>", i);
+			LOGGER.debug("TiffField {} =>", i);
 			randIS.seek(offset);
 			short tag = randIS.readShort();
 			Tag ftag = TiffTag.fromShort(tag);
 			if (ftag == TiffTag.UNKNOWN)
-				LOGGER.info("TiffTag: {} [Value: 0x{}] (Unknown)", ftag, Integer.toHexString(tag&0xffff));
+				LOGGER.debug("TiffTag: {} [Value: 0x{}] (Unknown)", ftag, Integer.toHexString(tag&0xffff));
 			else
-				LOGGER.info("TiffTag: {}", ftag);
+				LOGGER.debug("TiffTag: {}", ftag);
 			offset += 2;
 			randIS.seek(offset);
 			short type = randIS.readShort();
 			FieldType ftype = FieldType.fromShort(type);
-			LOGGER.info("Data type: {}", ftype);
+			LOGGER.debug("Data type: {}", ftype);
 			offset += 2;
 			randIS.seek(offset);
 			int field_length = randIS.readInt();
-			LOGGER.info("TiffField length: {}", field_length);
+			LOGGER.debug("TiffField length: {}", field_length);
 			offset += 4;
 			////// Try to read actual data.
 			switch (ftype) {
@@ -1392,7 +1901,7 @@ public class TIFFReader extends ImageReader {
 						randIS.seek(randIS.readInt());
 						randIS.readFully(data, 0, field_length);
 					}
-					LOGGER.info("TiffField value: {}", StringUtils.byteArrayToHexString(data, 0, 10));
+					if(LOGGER.isDebugEnabled()) LOGGER.debug("TiffField value: {}", StringUtils.byteArrayToHexString(data, 0, 10));
 					offset += 4;					
 					tiffIFD.addField((ftype == FieldType.BYTE)?new ByteField(tag, data):
 						new UndefinedField(tag, data));
@@ -1408,7 +1917,7 @@ public class TIFFReader extends ImageReader {
 						randIS.readFully(data, 0, field_length);
 					}
 					if(data.length>0)
-					  LOGGER.info("TiffField value: {}", new String(data, 0, data.length-1).trim());
+					  if(LOGGER.isDebugEnabled()) LOGGER.debug("TiffField value: {}", new String(data, 0, data.length-1).trim());
 					offset += 4;	
 					tiffIFD.addField(new ASCIIField(tag, new String(data, 0, data.length)));
 			        break;
@@ -1436,7 +1945,7 @@ public class TIFFReader extends ImageReader {
 						}
 					}	
 					tiffIFD.addField(new ShortField(tag, sdata));
-					LOGGER.info("TiffField value: {}", StringUtils.shortArrayToString(sdata, 0, 10, true));
+					if(LOGGER.isDebugEnabled()) LOGGER.debug("TiffField value: {}", StringUtils.shortArrayToString(sdata, 0, 10, true));
 					break;
 				case LONG:
 					int[] ldata = new int[field_length];
@@ -1454,7 +1963,7 @@ public class TIFFReader extends ImageReader {
 							toOffset += 4;
 						}
 					}	
-					LOGGER.info("TiffField value: {}", StringUtils.longArrayToString(ldata, 0, 10, true));
+					if(LOGGER.isDebugEnabled()) LOGGER.debug("TiffField value: {}", StringUtils.longArrayToString(ldata, 0, 10, true));
 					tiffIFD.addField(new LongField(tag, ldata));
 					break;
 				case RATIONAL:
@@ -1472,7 +1981,7 @@ public class TIFFReader extends ImageReader {
 						toOffset += 4;
 					}	
 					tiffIFD.addField(new RationalField(tag, ldata));
-					LOGGER.info("TiffField value: {}", StringUtils.rationalArrayToString(ldata, true));
+					if(LOGGER.isDebugEnabled()) LOGGER.debug("TiffField value: {}", StringUtils.rationalArrayToString(ldata, true));
 					break;
 				case FLOAT:
 					float[] fdata = new float[field_length];
@@ -1491,7 +2000,7 @@ public class TIFFReader extends ImageReader {
 						}
 					}
 					tiffIFD.addField(new FloatField(tag, fdata));
-					LOGGER.info("TiffField value: {}", Arrays.toString(fdata));			
+					if(LOGGER.isDebugEnabled()) LOGGER.debug("TiffField value: {}", Arrays.toString(fdata));			
 					break;
 				case DOUBLE:
 					double[] ddata = new double[field_length];
@@ -1504,7 +2013,7 @@ public class TIFFReader extends ImageReader {
 						toOffset += 8;
 					}
 					tiffIFD.addField(new DoubleField(tag, ddata));
-					LOGGER.info("Field value: {}", Arrays.toString(ddata));						
+					if(LOGGER.isDebugEnabled()) LOGGER.debug("Field value: {}", Arrays.toString(ddata));						
 					break;
 				default:
 					offset += 4;
@@ -1512,12 +2021,20 @@ public class TIFFReader extends ImageReader {
 			  }	
 		}
 		list.add(tiffIFD);
-		LOGGER.info("********************************");
+		LOGGER.debug("********************************");
 		randIS.seek(offset);
 		return randIS.readInt();
 	}
 	
 	// De-predictor for PLANARY_CONFIGURATION value 1
+	// Read the compressed strip or tile into the scratch buffer of the context and feed it to the decoder
+	private void setDecoderInput(ImageDecoder decoder, int offset, int byteCount) throws IOException {
+		byte[] compressed = codecContext.getBuffer(byteCount);
+		randIS.seek(offset);
+		randIS.readFully(compressed, 0, byteCount);
+		decoder.setInput(compressed, 0, byteCount);
+	}
+	
 	private static byte[] applyDePredictor(int numOfSamples, byte[] input, int imageWidth, int imageHeight) {
 		for(int i = 0, inc = numOfSamples*imageWidth, maxVal = inc - numOfSamples, minVal = numOfSamples; i <= imageHeight - 1; maxVal += inc, minVal += inc, i++) {
 			for (int j = minVal; j <= maxVal; j+=numOfSamples) {
@@ -1545,7 +2062,9 @@ public class TIFFReader extends ImageReader {
 		randIS.seek(stripOffset);
 		randIS.readFully(temp);
 		byte[] temp2 = new byte[bytes2Read];
+		long start = CodecTrace.start();
 		Packbits.unpackbits(temp, temp2);
+		CodecTrace.stop(CodecTrace.Stage.DECOMPRESS, start);
 		System.arraycopy(temp2, 0, pixels, offset, bytes2Read);			
 	}
 }
\ No newline at end of file
@@ -125,6 +125,33 @@ public enum FieldType {
 		return name;
 	}
 	
+	/**
+	 * @return size in bytes of one value of this field type or 0 if not a real TIFF field type
+	 */
+	public int getSize() {
+		switch(this) {
+			case BYTE:
+			case ASCII:
+			case SBYTE:
+			case UNDEFINED:
+				return 1;
+			case SHORT:
+			case SSHORT:
+				return 2;
+			case LONG:
+			case SLONG:
+			case FLOAT:
+			case IFD:
+				return 4;
+			case RATIONAL:
+			case SRATIONAL:
+			case DOUBLE:
+				return 8;
+			default:
+				return 0;
+		}
+	}
+	
 	public short getValue() {
 		return value;
 	}
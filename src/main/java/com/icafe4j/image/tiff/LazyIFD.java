@@ -0,0 +1,319 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image.tiff;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.icafe4j.image.meta.exif.ExifTag;
+
+/**
+ * Read-only view of an Image File Directory over an in-memory TIFF structure.
+ * <p>
+ * Unlike {@link TIFFTweaker#readIFDs(List, com.icafe4j.io.RandomAccessInputStream)}, which
+ * decodes every field of every IFD and sub IFD up front, only the tags of the directory
+ * entries are read when the view is created. The value of a field is decoded the first time
+ * it is asked for and sub IFDs are only looked at through {@link #getChild(Tag)}. Field data,
+ * like a JPEG thumbnail, can be obtained as a slice of the underlying buffer without copying.
+ * <p>
+ * The view keeps a reference to the buffer, so the buffer content must not be changed while
+ * the view is in use.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public final class LazyIFD {
+	// Size of an IFD entry: tag, type, count and value or value offset
+	private static final int ENTRY_SIZE = 12;
+
+	private ByteBuffer buffer;
+	private int offset;
+	private short[] tags;
+	// Decoded fields and sub IFDs, created on demand
+	private Map<Short, TiffField<?>> fields;
+	private Map<Short, LazyIFD> children;
+
+	// Obtain a logger instance
+	private static final Logger LOGGER = LoggerFactory.getLogger(LazyIFD.class);
+
+	private LazyIFD(ByteBuffer buffer, int offset) throws IOException {
+		if(offset < 0 || offset > buffer.limit() - 2)
+			throw new IOException("IFD offset out of bounds: " + offset);
+		int numOfFields = buffer.getShort(offset)&0xffff;
+		if(offset + 2 + numOfFields * ENTRY_SIZE + 4 > buffer.limit())
+			throw new IOException("IFD at offset " + offset + " is truncated");
+		this.buffer = buffer;
+		this.offset = offset;
+		this.tags = new short[numOfFields];
+		for(int i = 0; i < numOfFields; i++)
+			tags[i] = buffer.getShort(offset + 2 + i * ENTRY_SIZE);
+	}
+
+	/**
+	 * Index the IFD chain of the TIFF structure held by the buffer. The TIFF structure
+	 * starts at the current position of the buffer and ends at its limit.
+	 *
+	 * @param buffer ByteBuffer for the TIFF structure, a TIFF file or the content of an EXIF segment
+	 * @return a list of LazyIFD, one for each IFD of the chain
+	 * @throws IOException if the TIFF header or one of the IFDs is not valid
+	 */
+	public static List<LazyIFD> readIFDs(ByteBuffer buffer) throws IOException {
+		buffer = buffer.slice();
+		if(buffer.limit() < 8)
+			throw new IOException("Invalid TIFF header: not enough data");
+		short endian = buffer.getShort(0);
+		if(endian == 0x4949)
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+		else if(endian == 0x4d4d)
+			buffer.order(ByteOrder.BIG_ENDIAN);
+		else
+			throw new IOException("Invalid TIFF byte order");
+		if(buffer.getShort(2) != 0x2a)
+			throw new IOException("Invalid TIFF identifier");
+		List<LazyIFD> list = new ArrayList<LazyIFD>();
+		List<Integer> visited = new ArrayList<Integer>();
+		int offset = buffer.getInt(4);
+		// Stop at the end of the chain or if an IFD is linked twice
+		while(offset != 0 && !visited.contains(offset)) {
+			visited.add(offset);
+			LazyIFD ifd = new LazyIFD(buffer, offset);
+			list.add(ifd);
+			offset = ifd.getNextIFDOffset();
+		}
+
+		return list;
+	}
+
+	public boolean containsField(Tag tag) {
+		return indexOf(tag.getValue()) >= 0;
+	}
+
+	private TiffField<?> decode(int index) throws IOException {
+		int entry = offset + 2 + index * ENTRY_SIZE;
+		short tag = buffer.getShort(entry);
+		FieldType type = FieldType.fromShort(buffer.getShort(entry + 2));
+		int count = buffer.getInt(entry + 4);
+		long size = (long)type.getSize() * count;
+		if(type.getSize() == 0) // Unknown field type
+			return null;
+		int pos = (size <= 4) ? entry + 8 : buffer.getInt(entry + 8);
+		if(count < 0 || pos < 0 || pos + size > buffer.limit())
+			throw new IOException("Data of field " + (tag&0xffff) + " out of bounds");
+		ByteBuffer data = buffer.duplicate();
+		data.order(buffer.order());
+		data.position(pos);
+
+		switch(type) {
+			case BYTE:
+			case SBYTE:
+			case UNDEFINED:
+				byte[] bdata = new byte[count];
+				data.get(bdata);
+				if(type == FieldType.BYTE)
+					return new ByteField(tag, bdata);
+				if(type == FieldType.SBYTE)
+					return new SByteField(tag, bdata);
+				return new UndefinedField(tag, bdata);
+			case ASCII:
+				bdata = new byte[count];
+				data.get(bdata);
+				return new ASCIIField(tag, new String(bdata, "UTF-8"));
+			case SHORT:
+			case SSHORT:
+				short[] sdata = new short[count];
+				data.asShortBuffer().get(sdata);
+				if(type == FieldType.SHORT)
+					return new ShortField(tag, sdata);
+				return new SShortField(tag, sdata);
+			case LONG:
+			case SLONG:
+			case IFD:
+				int[] ldata = new int[count];
+				data.asIntBuffer().get(ldata);
+				if(type == FieldType.LONG)
+					return new LongField(tag, ldata);
+				if(type == FieldType.SLONG)
+					return new SLongField(tag, ldata);
+				return new IFDField(tag, ldata);
+			case RATIONAL:
+			case SRATIONAL:
+				ldata = new int[2 * count];
+				data.asIntBuffer().get(ldata);
+				if(type == FieldType.RATIONAL)
+					return new RationalField(tag, ldata);
+				return new SRationalField(tag, ldata);
+			case FLOAT:
+				float[] fdata = new float[count];
+				data.asFloatBuffer().get(fdata);
+				return new FloatField(tag, fdata);
+			case DOUBLE:
+				double[] ddata = new double[count];
+				data.asDoubleBuffer().get(ddata);
+				return new DoubleField(tag, ddata);
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Return a sub IFD pointed to by a field of this IFD, like the EXIF or GPS sub IFD.
+	 *
+	 * @param tag Tag for the field holding the sub IFD offset
+	 * @return the sub IFD or null if there is no such field or the sub IFD is not valid
+	 */
+	public LazyIFD getChild(Tag tag) {
+		if(children == null)
+			children = new HashMap<Short, LazyIFD>();
+		LazyIFD child = children.get(tag.getValue());
+		if(child == null) {
+			TiffField<?> field = getField(tag);
+			if(field == null || (field.getType() != FieldType.LONG && field.getType() != FieldType.IFD))
+				return null;
+			int childOffset = field.getDataAsLong()[0];
+			if(childOffset == 0) return null;
+			try {
+				child = new LazyIFD(buffer, childOffset);
+			} catch (IOException e) {
+				LOGGER.warn("Invalid sub IFD for tag {}: {}", tag, e.getMessage());
+				return null;
+			}
+			children.put(tag.getValue(), child);
+		}
+
+		return child;
+	}
+
+	/**
+	 * Return the field associated with the tag, decoding it if it is asked for the first time.
+	 *
+	 * @param tag Tag for the field
+	 * @return the field or null if there is no such field or the field data is not valid
+	 */
+	public TiffField<?> getField(Tag tag) {
+		return getField(tag.getValue());
+	}
+
+	/**
+	 * Return the raw data of the field as a slice of the underlying buffer without decoding it.
+	 *
+	 * @param tag Tag for the field
+	 * @return a read-only ByteBuffer for the field data or null if there is no such field
+	 * @throws IOException if the field data is out of bounds
+	 */
+	public ByteBuffer getFieldData(Tag tag) throws IOException {
+		int index = indexOf(tag.getValue());
+		if(index < 0) return null;
+		int entry = offset + 2 + index * ENTRY_SIZE;
+		FieldType type = FieldType.fromShort(buffer.getShort(entry + 2));
+		long size = (long)type.getSize() * buffer.getInt(entry + 4);
+		if(size < 0 || size > Integer.MAX_VALUE)
+			throw new IOException("Invalid data size for field " + tag);
+		int pos = (size <= 4) ? entry + 8 : buffer.getInt(entry + 8);
+
+		return slice(pos, (int)size);
+	}
+
+	private TiffField<?> getField(short tag) {
+		if(fields != null && fields.containsKey(tag))
+			return fields.get(tag);
+		int index = indexOf(tag);
+		if(index < 0) return null;
+		TiffField<?> field = null;
+		try {
+			field = decode(index);
+		} catch (IOException e) {
+			LOGGER.warn("Invalid field {}: {}", tag&0xffff, e.getMessage());
+		}
+		if(fields == null)
+			fields = new HashMap<Short, TiffField<?>>();
+		fields.put(tag, field);
+
+		return field;
+	}
+
+	public int getNextIFDOffset() {
+		return buffer.getInt(offset + 2 + tags.length * ENTRY_SIZE);
+	}
+
+	public int getSize() {
+		return tags.length;
+	}
+
+	public int getStartOffset() {
+		return offset;
+	}
+
+	/** Tags of all the fields in the order they appear in the IFD */
+	public List<Short> getTags() {
+		List<Short> list = new ArrayList<Short>(tags.length);
+		for(short tag : tags)
+			list.add(tag);
+
+		return Collections.unmodifiableList(list);
+	}
+
+	private int indexOf(short tag) {
+		for(int i = 0; i < tags.length; i++)
+			if(tags[i] == tag) return i;
+
+		return -1;
+	}
+
+	/**
+	 * Return a read-only slice of the underlying TIFF structure without copying.
+	 *
+	 * @param offset offset from the start of the TIFF structure
+	 * @param length number of bytes
+	 * @return a read-only ByteBuffer for the requested data
+	 * @throws IOException if the requested data is out of bounds
+	 */
+	public ByteBuffer slice(int offset, int length) throws IOException {
+		if(offset < 0 || length < 0 || (long)offset + length > buffer.limit())
+			throw new IOException("Requested data out of bounds: offset " + offset + ", length " + length);
+		ByteBuffer slice = buffer.asReadOnlyBuffer();
+		slice.position(offset);
+		slice.limit(offset + length);
+
+		return slice.slice();
+	}
+
+	/**
+	 * Decode all the fields, together with the EXIF, GPS and Interoperability sub IFDs,
+	 * into an IFD in the same way as TIFFTweaker.readIFDs() does.
+	 *
+	 * @return a new IFD holding all the fields of this view
+	 */
+	public IFD toIFD() {
+		IFD ifd = new IFD();
+		for(short tag : tags) {
+			TiffField<?> field = getField(tag);
+			if(field != null)
+				ifd.addField(field);
+		}
+		Tag[] childTags = {TiffTag.EXIF_SUB_IFD, TiffTag.GPS_SUB_IFD, ExifTag.EXIF_INTEROPERABILITY_OFFSET};
+		for(Tag childTag : childTags) {
+			LazyIFD child = getChild(childTag);
+			if(child != null)
+				ifd.addChild(childTag, child.toIFD());
+		}
+
+		return ifd;
+	}
+}
@@ -0,0 +1,306 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image.tiff;
+
+import static com.icafe4j.image.writer.TIFFWriter.OFFSET_TO_WRITE_FIRST_IFD_OFFSET;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.icafe4j.image.meta.MetadataEditPlan;
+import com.icafe4j.image.meta.adobe._8BIM;
+import com.icafe4j.image.meta.exif.Exif;
+import com.icafe4j.image.meta.iptc.IPTCDataSet;
+import com.icafe4j.io.ByteArrayRandomAccessInputStream;
+import com.icafe4j.io.ByteArrayRandomAccessOutputStream;
+import com.icafe4j.io.IOUtils;
+import com.icafe4j.io.RandomAccessInputStream;
+import com.icafe4j.io.RandomAccessOutputStream;
+import com.icafe4j.io.WriteStrategyII;
+import com.icafe4j.io.WriteStrategyMM;
+
+/**
+ * Append-only TIFF metadata update.
+ * <p>
+ * Instead of copying every page like the insertXXX methods of TIFFTweaker, the changed IFD,
+ * together with its field data and sub-IFDs, is appended to the end of the file and only the
+ * link to it, either in the TIFF header or in the previous IFD, is patched. Strips and tiles
+ * are left where they are and the fields which are not changed keep pointing to their data
+ * in the original IFD, so the cost of an update only depends on the size of the new data.
+ * <p>
+ * The original IFD is not removed, it becomes unreferenced data. The new IFD is written and
+ * forced to disk before the link is patched, so an interrupted update leaves the original
+ * image intact.
+ * <p>
+ * Like the rest of the TIFF code, offsets are signed integers, so the file must be smaller than 2GB.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public class TIFFAppendEditor {
+
+	// Change to the working page
+	private interface PageEdit {
+		public void apply(IFD page, short endian) throws IOException;
+	}
+
+	// Field which keeps pointing to its data in the original file
+	private static class ReferenceField extends TiffField<Integer> {
+		public ReferenceField(short tag, FieldType fieldType, int length, int valueOffset) {
+			super(tag, fieldType, length);
+			this.data = valueOffset;
+			this.dataOffset = valueOffset;
+		}
+
+		public String getDataAsString() {
+			return "Data at offset " + data;
+		}
+
+		protected int writeData(RandomAccessOutputStream os, int toOffset) throws IOException {
+			os.writeInt(data);
+			return toOffset;
+		}
+	}
+
+	/*
+	 * Writes to a memory buffer which stands for the stream positions from the
+	 * base offset on, so IFD.write() can use the actual file offsets.
+	 */
+	private static class AppendOutputStream extends RandomAccessOutputStream {
+		private ByteArrayRandomAccessOutputStream buf = new ByteArrayRandomAccessOutputStream();
+		private long base;
+
+		public AppendOutputStream(long base) {
+			super(null);
+			this.base = base;
+		}
+
+		public void close() throws IOException {
+			closed = true;
+		}
+
+		public void disposeBefore(long pos) throws IOException {
+			throw new UnsupportedOperationException("This method is not implemented");
+		}
+
+		public long getFlushPos() {
+			return base;
+		}
+
+		public long getLength() {
+			return base + buf.getLength();
+		}
+
+		public long getStreamPointer() {
+			return base + buf.getStreamPointer();
+		}
+
+		public void reset() {
+			buf.reset();
+		}
+
+		public void seek(long pos) throws IOException {
+			if(pos < base)
+				throw new IOException("Can't write before the end of the original file");
+			buf.seek(pos - base);
+		}
+
+		public void shallowClose() throws IOException {
+			closed = true;
+		}
+
+		public ByteBuffer toByteBuffer() {
+			return buf.toByteBuffer();
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			buf.write(b, off, len);
+		}
+
+		public void write(int value) throws IOException {
+			buf.write(value);
+		}
+
+		public void writeToStream(long len) throws IOException {
+			// Nothing to do, the data is taken from toByteBuffer()
+		}
+	}
+
+	/**
+	 * Apply all the edits of a MetadataEditPlan with one append. The page number of the plan is ignored.
+	 */
+	public static void editMetadata(File file, int pageNumber, final MetadataEditPlan plan) throws IOException {
+		update(file, pageNumber, new PageEdit() {
+			public void apply(IFD page, short endian) throws IOException {
+				TIFFTweaker.editPage(page, plan, endian);
+			}
+		});
+	}
+
+	public static void insertComments(File file, int pageNumber, final List<String> comments) throws IOException {
+		update(file, pageNumber, new PageEdit() {
+			public void apply(IFD page, short endian) {
+				TIFFTweaker.addComments(page, comments);
+			}
+		});
+	}
+
+	public static void insertExif(File file, int pageNumber, final Exif exif, final boolean update) throws IOException {
+		update(file, pageNumber, new PageEdit() {
+			public void apply(IFD page, short endian) {
+				TIFFTweaker.mergeExif(page, exif, update);
+			}
+		});
+	}
+
+	public static void insertICCProfile(File file, int pageNumber, final byte[] icc_profile) throws IOException {
+		update(file, pageNumber, new PageEdit() {
+			public void apply(IFD page, short endian) {
+				page.addField(new UndefinedField(TiffTag.ICC_PROFILE.getValue(), icc_profile));
+			}
+		});
+	}
+
+	public static void insertIPTC(File file, int pageNumber, final Collection<IPTCDataSet> iptcs, final boolean update) throws IOException {
+		update(file, pageNumber, new PageEdit() {
+			public void apply(IFD page, short endian) throws IOException {
+				TIFFTweaker.mergeIPTC(page, iptcs, update, endian);
+			}
+		});
+	}
+
+	public static void insertIRB(File file, int pageNumber, final Collection<_8BIM> bims, final boolean update) throws IOException {
+		update(file, pageNumber, new PageEdit() {
+			public void apply(IFD page, short endian) throws IOException {
+				TIFFTweaker.mergeIRB(page, bims, update);
+			}
+		});
+	}
+
+	public static void insertXMP(File file, int pageNumber, final byte[] xmp) throws IOException {
+		update(file, pageNumber, new PageEdit() {
+			public void apply(IFD page, short endian) {
+				page.addField(new UndefinedField(TiffTag.XMP.getValue(), xmp));
+			}
+		});
+	}
+
+	private static boolean isChild(IFD ifd, short tag) {
+		for(Tag child : ifd.getChildren().keySet())
+			if(child.getValue() == tag) return true;
+		
+		return false;
+	}
+
+	// Read the raw entries of the IFD for the fields with data outside the IFD
+	private static Map<Short, ReferenceField> readReferences(RandomAccessInputStream rin, int offset) throws IOException {
+		Map<Short, ReferenceField> references = new HashMap<Short, ReferenceField>();
+		rin.seek(offset);
+		int numOfFields = rin.readUnsignedShort();
+		for(int i = 0; i < numOfFields; i++) {
+			rin.seek(offset + 2 + i * 12);
+			short tag = rin.readShort();
+			FieldType type = FieldType.fromShort(rin.readShort());
+			int count = rin.readInt();
+			int valueOffset = rin.readInt();
+			if((long)type.getSize() * count > 4)
+				references.put(tag, new ReferenceField(tag, type, count, valueOffset));
+		}
+		
+		return references;
+	}
+
+	private static void update(File file, int pageNumber, PageEdit edit) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			long length = channel.size();
+			if(length > Integer.MAX_VALUE)
+				throw new IOException("TIFF file larger than 2GB is not supported");
+			// Only the pages holding the IFDs are actually read
+			RandomAccessInputStream rin = new ByteArrayRandomAccessInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, length));
+			List<IFD> ifds = new ArrayList<IFD>();
+			TIFFTweaker.readIFDs(ifds, rin);
+
+			if(pageNumber < 0 || pageNumber >= ifds.size())
+				throw new IllegalArgumentException("pageNumber " + pageNumber + " out of bounds: 0 - " + (ifds.size() - 1));
+
+			// Find where the page is linked from and which IFD follows it
+			int linkOffset = OFFSET_TO_WRITE_FIRST_IFD_OFFSET;
+			rin.seek(linkOffset);
+			int offset = rin.readInt();
+			for(int i = 0; i < pageNumber; i++) {
+				rin.seek(offset);
+				linkOffset = offset + 2 + rin.readUnsignedShort() * 12;
+				rin.seek(linkOffset);
+				offset = rin.readInt();
+			}
+			Map<Short, ReferenceField> references = readReferences(rin, offset);
+			rin.seek(offset);
+			rin.seek(offset + 2 + rin.readUnsignedShort() * 12);
+			int nextOffset = rin.readInt();
+			short endian = rin.getEndian();
+			rin.shallowClose();
+
+			IFD workingPage = ifds.get(pageNumber);
+			Map<Short, TiffField<?>> original = new HashMap<Short, TiffField<?>>();
+			for(TiffField<?> field : workingPage.getFields())
+				original.put(field.getTag(), field);
+			edit.apply(workingPage, endian);
+			// Fields left alone by the edit keep their original data
+			for(TiffField<?> field : new ArrayList<TiffField<?>>(workingPage.getFields())) {
+				ReferenceField reference = references.get(field.getTag());
+				if(reference != null && original.get(field.getTag()) == field && !isChild(workingPage, field.getTag()))
+					workingPage.addField(reference);
+			}
+
+			// IFD must begin on a word boundary
+			int writeOffset = (int)((length + 1) & ~1L);
+			AppendOutputStream rout = new AppendOutputStream(writeOffset);
+			if(endian == IOUtils.BIG_ENDIAN)
+				rout.setWriteStrategy(WriteStrategyMM.getInstance());
+			else
+				rout.setWriteStrategy(WriteStrategyII.getInstance());
+			workingPage.write(rout, writeOffset);
+			workingPage.setNextIFDOffset(rout, nextOffset);
+			if(writeOffset > length)
+				write(channel, ByteBuffer.wrap(new byte[writeOffset - (int)length]), length);
+			write(channel, rout.toByteBuffer(), writeOffset);
+			rout.close();
+			// Make sure the new IFD is in place before it is linked in
+			channel.force(false);
+			ByteBuffer link = ByteBuffer.allocate(4);
+			link.order(endian == IOUtils.BIG_ENDIAN ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+			link.putInt(writeOffset);
+			link.flip();
+			write(channel, link, linkOffset);
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining())
+			position += channel.write(buffer, position);
+	}
+
+	// Prevent from instantiation
+	private TIFFAppendEditor() {}
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image.tiff;
+
+import static com.icafe4j.image.writer.TIFFWriter.OFFSET_TO_WRITE_FIRST_IFD_OFFSET;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+
+import com.icafe4j.image.BufferedImageRowSource;
+import com.icafe4j.image.ImageFrame;
+import com.icafe4j.image.ImageParam;
+import com.icafe4j.image.RowSource;
+import com.icafe4j.image.writer.TIFFWriter;
+import com.icafe4j.io.RandomAccessOutputStream;
+
+/**
+ * Streaming multiple page TIFF writer.
+ * <p>
+ * Pages are pushed one at a time. Each page is compressed and written as soon as it
+ * arrives and the link from the previous IFD to the new one is patched in place. Everything
+ * before the still pending next IFD offset is flushed to the underlying stream and, where the
+ * RandomAccessOutputStream supports it, disposed from the cache. Only the current page and the
+ * offset of the last IFD link are kept, so memory doesn't grow with the number of pages.
+ * <p>
+ * Since the total page count is not known in advance, the second value of the PAGE_NUMBER field
+ * is set to 0 which means "unknown" according to the TIFF specification.
+ * <p>
+ * Like RandomAccessOutputStream, this class doesn't close the underlying stream.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public class TIFFPageSink implements Closeable {
+	private RandomAccessOutputStream rout;
+	private TIFFWriter writer;
+	// Stream offset to write the next page
+	private int writeOffset;
+	// Stream offset to write the offset of the next IFD
+	private int linkOffset = OFFSET_TO_WRITE_FIRST_IFD_OFFSET;
+	private int pageCount;
+	private boolean closed;
+
+	public TIFFPageSink(RandomAccessOutputStream rout) throws IOException {
+		this.rout = rout;
+		this.writer = new TIFFWriter();
+		this.writeOffset = TIFFTweaker.prepareForWrite(rout);
+	}
+
+	public void addPage(BufferedImage page) throws IOException {
+		addPage(page, ImageParam.DEFAULT_IMAGE_PARAM);
+	}
+
+	public void addPage(ImageFrame page) throws IOException {
+		addPage(page.getFrame(), page.getFrameParam());
+	}
+
+	/**
+	 * Compress and write a new page and link it to the previous one.
+	 *
+	 * @param page BufferedImage for the new page
+	 * @param param ImageParam for the new page
+	 * @throws IOException
+	 */
+	public void addPage(BufferedImage page, ImageParam param) throws IOException {
+		addPage(new BufferedImageRowSource(page), param);
+	}
+	
+	/**
+	 * Compress and write a new page pulled from the RowSource and link it to the
+	 * previous one. True color pages are written strip by strip.
+	 *
+	 * @param page RowSource for the new page
+	 * @param param ImageParam for the new page
+	 * @throws IOException
+	 */
+	public void addPage(RowSource page, ImageParam param) throws IOException {
+		ensureOpen();
+		writer.setImageParam(param);
+		int nextOffset = 0;
+		try {
+			nextOffset = writer.writePage(page, pageCount, 0, rout, writeOffset);
+		} catch (Exception e) {
+			throw new IOException("Writing page " + pageCount + " failed!", e);
+		}
+		IFD ifd = writer.getIFD();
+		// Link the previous IFD (or the TIFF header) to this one
+		rout.seek(linkOffset);
+		rout.writeInt(ifd.getStartOffset());
+		linkOffset = ifd.getEndOffset() - 4;
+		writeOffset = nextOffset;
+		pageCount++;
+		// Everything before the pending link is final now
+		flush(linkOffset);
+	}
+
+	/**
+	 * Flush the remaining data to the underlying stream. The underlying
+	 * stream itself is not closed.
+	 */
+	public void close() throws IOException {
+		if(closed) return;
+		if(pageCount == 0)
+			throw new IOException("No page has been written!");
+		flush(rout.getLength());
+		closed = true;
+	}
+
+	private void ensureOpen() throws IOException {
+		if(closed)
+			throw new IOException("TIFFPageSink closed");
+	}
+
+	private void flush(long pos) throws IOException {
+		long flushPos = rout.getFlushPos();
+		if(pos <= flushPos) return;
+		rout.seek(flushPos);
+		rout.writeToStream(pos - flushPos);
+		try {
+			rout.disposeBefore(pos);
+		} catch(UnsupportedOperationException ex) {
+			// The cache can't be shrunk, we are done
+		}
+	}
+
+	public int getPageCount() {
+		return pageCount;
+	}
+}
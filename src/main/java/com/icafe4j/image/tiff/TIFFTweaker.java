@@ -13,6 +13,9 @@
  *
  * Who   Date       Description
  * ====  =========  ===================================================================
+ * AG    18Oct2026  Added editMetadata() to apply a MetadataEditPlan in one pass
+ * AG    18Oct2026  Moved the page changes of insertXXX() into helpers shared with TIFFAppendEditor
+ * AG    18Oct2026  insertXMP(String) no longer builds the DOM to add the packet wrapper
  * WY    04Mar2017  Added insertMetadata() to insert multiple Metadata at one time
  * WY    11Dec2016  Added byte order to writeMultipageTIFF
  * WY    19Aug2015  Added code to write multipage TIFF page by page
@@ -97,7 +100,6 @@ import java.util.Set;
 import com.icafe4j.io.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.Document;
 
 import com.icafe4j.image.ImageFrame;
 import com.icafe4j.image.ImageIO;
@@ -112,6 +114,7 @@ import com.icafe4j.image.compression.lzw.LZWTreeEncoder;
 import com.icafe4j.image.compression.packbits.Packbits;
 import com.icafe4j.image.jpeg.Marker;
 import com.icafe4j.image.meta.Metadata;
+import com.icafe4j.image.meta.MetadataEditPlan;
 import com.icafe4j.image.meta.MetadataType;
 import com.icafe4j.image.meta.adobe.DDB;
 import com.icafe4j.image.meta.adobe.IRB;
@@ -133,7 +136,6 @@ import com.icafe4j.image.meta.xmp.XMP;
 import com.icafe4j.image.writer.ImageWriter;
 import com.icafe4j.image.writer.TIFFWriter;
 import com.icafe4j.string.StringUtils;
-import com.icafe4j.string.XMLUtils;
 import com.icafe4j.util.ArrayUtils;
 
 import static com.icafe4j.image.writer.TIFFWriter.*;
@@ -148,6 +150,19 @@ public class TIFFTweaker {
 	// Obtain a logger instance
 	private static final Logger LOGGER = LoggerFactory.getLogger(TIFFTweaker.class);
 	
+	// Add comments as the IMAGE_DESCRIPTION field of the page
+	static void addComments(IFD workingPage, List<String> comments) {
+		StringBuilder commentsBuilder = new StringBuilder();
+		
+		// ASCII field allows for multiple strings
+		for(String comment : comments) {
+			commentsBuilder.append(comment);
+			commentsBuilder.append('\0');
+		}
+		
+		workingPage.addField(new ASCIIField(TiffTag.IMAGE_DESCRIPTION.getValue(), commentsBuilder.toString()));
+	}
+	
 	public static void append(RandomAccessInputStream rin, RandomAccessOutputStream rout, BufferedImage ... images) throws IOException {
 		append(rin, rout, null, images);
 	}
@@ -533,6 +548,51 @@ public class TIFFTweaker {
 		return writeOffset;
 	}
 	
+	/**
+	 * Apply all the edits of a MetadataEditPlan to a TIFF page. The page IFD is changed
+	 * once and the pages are copied once.
+	 * 
+	 * @param rin RandomAccessInputStream for the input image
+	 * @param rout RandomAccessOutputStream for the output image
+	 * @param pageNumber page offset to edit (zero based)
+	 * @param plan the metadata edits
+	 * @throws IOException
+	 */
+	public static void editMetadata(RandomAccessInputStream rin, RandomAccessOutputStream rout, int pageNumber, MetadataEditPlan plan) throws IOException {
+		int offset = copyHeader(rin, rout);
+		// Read the IFDs into a list first
+		List<IFD> ifds = new ArrayList<IFD>();
+		readIFDs(null, null, TiffTag.class, ifds, offset, rin);
+		
+		if(pageNumber < 0 || pageNumber >= ifds.size())
+			throw new IllegalArgumentException("pageNumber " + pageNumber + " out of bounds: 0 - " + (ifds.size() - 1));
+		
+		editPage(ifds.get(pageNumber), plan, rin.getEndian());
+		
+		offset = copyPages(ifds, offset, rin, rout);
+		int firstIFDOffset = ifds.get(0).getStartOffset();	
+
+		writeToStream(rout, firstIFDOffset);
+	}
+	
+	// Apply the edits of the plan to the page, shared by editMetadata() and TIFFAppendEditor
+	static void editPage(IFD workingPage, MetadataEditPlan plan, short endian) throws IOException {
+		removeMetadata(workingPage, plan.getRemovals());
+		if(plan.getExif() != null)
+			mergeExif(workingPage, plan.getExif(), plan.isExifUpdate());
+		if(plan.getICCProfile() != null)
+			workingPage.addField(new UndefinedField(TiffTag.ICC_PROFILE.getValue(), plan.getICCProfile()));
+		if(plan.getXMP() != null)
+			workingPage.addField(new UndefinedField(TiffTag.XMP.getValue(), plan.getXMP().getData()));
+		// IRB before IPTC, so a new IRB doesn't drop the new IPTC
+		if(plan.getIRB() != null)
+			mergeIRB(workingPage, plan.getIRB(), plan.isIRBUpdate());
+		if(plan.getIPTC() != null)
+			mergeIPTC(workingPage, plan.getIPTC(), plan.isIPTCUpdate(), endian);
+		if(plan.getComments().size() > 0)
+			addComments(workingPage, plan.getComments());
+	}
+	
 	/**
 	 * Extracts ICC_Profile from certain page of TIFF if any
 	 * 
@@ -964,15 +1024,7 @@ public class TIFFTweaker {
 		
 		IFD workingPage = ifds.get(pageNumber);
 		
-		StringBuilder commentsBuilder = new StringBuilder();
-		
-		// ASCII field allows for multiple strings
-		for(String comment : comments) {
-			commentsBuilder.append(comment);
-			commentsBuilder.append('\0');
-		}
-		
-		workingPage.addField(new ASCIIField(TiffTag.IMAGE_DESCRIPTION.getValue(), commentsBuilder.toString()));
+		addComments(workingPage, comments);
 		
 		offset = copyPages(ifds, offset, rin, rout);
 		int firstIFDOffset = ifds.get(0).getStartOffset();	
@@ -1004,41 +1056,7 @@ public class TIFFTweaker {
 			throw new IllegalArgumentException("pageNumber " + pageNumber + " out of bounds: 0 - " + (ifds.size() - 1));
 		
 		IFD imageIFD = ifds.get(pageNumber);
-		IFD exifSubIFD = imageIFD.getChild(TiffTag.EXIF_SUB_IFD);
-		IFD gpsSubIFD = imageIFD.getChild(TiffTag.GPS_SUB_IFD);
-		IFD newImageIFD = exif.getImageIFD();
-		IFD newExifSubIFD = exif.getExifIFD();
-		IFD newGpsSubIFD = exif.getGPSIFD();
-		
-		if(newImageIFD != null) {
-			Collection<TiffField<?>> fields = newImageIFD.getFields();
-			for(TiffField<?> field : fields) {
-				Tag tag = TiffTag.fromShort(field.getTag());
-				if(imageIFD.getField(tag) != null && tag.isCritical())
-					throw new RuntimeException("Duplicate Tag: " + tag);
-				imageIFD.addField(field);
-			}
-		}
-		
-		if(update && exifSubIFD != null && newExifSubIFD != null) {
-			exifSubIFD.addFields(newExifSubIFD.getFields());
-			newExifSubIFD = exifSubIFD;
-		}
-		
-		if(newExifSubIFD != null) {
-			imageIFD.addField(new LongField(TiffTag.EXIF_SUB_IFD.getValue(), new int[]{0})); // Place holder
-			imageIFD.addChild(TiffTag.EXIF_SUB_IFD, newExifSubIFD);		
-		}
-		
-		if(update && gpsSubIFD != null && newGpsSubIFD != null) {
-			gpsSubIFD.addFields(newGpsSubIFD.getFields());
-			newGpsSubIFD = gpsSubIFD;
-		}
-		
-		if(newGpsSubIFD != null) {
-			imageIFD.addField(new LongField(TiffTag.GPS_SUB_IFD.getValue(), new int[]{0})); // Place holder
-			imageIFD.addChild(TiffTag.GPS_SUB_IFD, newGpsSubIFD);		
-		}
+		mergeExif(imageIFD, exif, update);
 		
 		int writeOffset = FIRST_WRITE_OFFSET;
 		// Copy pages
@@ -1129,57 +1147,7 @@ public class TIFFTweaker {
 		
 		IFD workingPage = ifds.get(pageNumber);
 	
-		ByteArrayOutputStream bout = new ByteArrayOutputStream();
-		
-		// See if we also have regular IPTC tag field
-		TiffField<?> f_iptc = workingPage.removeField(TiffTag.IPTC);		
-		TiffField<?> f_photoshop = workingPage.getField(TiffTag.PHOTOSHOP);
-		if(f_photoshop != null) { // Read 8BIMs
-			IRB irb = new IRB((byte[])f_photoshop.getData());
-			// Shallow copy the map.
-			Map<Short, _8BIM> bims = new HashMap<Short, _8BIM>(irb.get8BIM());
-			_8BIM photoshop_iptc = bims.remove(ImageResourceID.IPTC_NAA.getValue());
-			if(photoshop_iptc != null) { // If we have IPTC
-				if(update) { // If we need to keep the old data, copy it
-					if(f_iptc != null) {// We are going to synchronize the two IPTC data
-						byte[] data = null;
-						if(f_iptc.getType() == FieldType.LONG)
-							data = ArrayUtils.toByteArray(f_iptc.getDataAsLong(), rin.getEndian() == IOUtils.BIG_ENDIAN);
-						else
-							data = (byte[])f_iptc.getData();
-						copyIPTCDataSet(iptcs, data);
-					}
-					// Now copy the Photoshop IPTC data
-					copyIPTCDataSet(iptcs, photoshop_iptc.getData());
-					// Remove duplicates
-					iptcs = new ArrayList<IPTCDataSet>(new HashSet<IPTCDataSet>(iptcs));
-				}
-			}
-			// Create IPTC 8BIM
-			for(IPTCDataSet dataset : iptcs) {
-				dataset.write(bout);
-			}
-			_8BIM iptc_bim = new _8BIM(ImageResourceID.IPTC_NAA, "iptc", bout.toByteArray());
-			bout.reset();
-			iptc_bim.write(bout); // Write the IPTC 8BIM first
-			for(_8BIM bim : bims.values()) // Copy the other 8BIMs if any
-				bim.write(bout);
-			// Add a new Photoshop tag field to TIFF
-			workingPage.addField(new UndefinedField(TiffTag.PHOTOSHOP.getValue(), bout.toByteArray()));
-		} else { // We don't have photoshop, add IPTC to regular IPTC tag field
-			if(f_iptc != null && update) {
-				byte[] data = null;
-				if(f_iptc.getType() == FieldType.LONG)
-					data = ArrayUtils.toByteArray(f_iptc.getDataAsLong(), rin.getEndian() == IOUtils.BIG_ENDIAN);
-				else
-					data = (byte[])f_iptc.getData();
-				copyIPTCDataSet(iptcs, data);
-			}
-			for(IPTCDataSet dataset : iptcs) {
-				dataset.write(bout);
-			}
-			workingPage.addField(new UndefinedField(TiffTag.IPTC.getValue(), bout.toByteArray()));
-		}		
+		mergeIPTC(workingPage, iptcs, update, rin.getEndian());
 		
 		offset = copyPages(ifds, offset, rin, rout);
 		int firstIFDOffset = ifds.get(0).getStartOffset();	
@@ -1202,28 +1170,7 @@ public class TIFFTweaker {
 		
 		IFD workingPage = ifds.get(pageNumber);
 		
-		ByteArrayOutputStream bout = new ByteArrayOutputStream();
-		
-		if(update) {
-			TiffField<?> f_irb = workingPage.getField(TiffTag.PHOTOSHOP);
-			if(f_irb != null) {
-				IRB irb = new IRB((byte[])f_irb.getData());
-				// Shallow copy the map.
-	    		Map<Short, _8BIM> bimMap = new HashMap<Short, _8BIM>(irb.get8BIM());
-				for(_8BIM bim : bims) // Replace the original data
-					bimMap.put(bim.getID(), bim);
-				// In case we have two ThumbnailResource IRB, remove the Photoshop4.0 one
-				if(bimMap.containsKey(ImageResourceID.THUMBNAIL_RESOURCE_PS4.getValue()) 
-						&& bimMap.containsKey(ImageResourceID.THUMBNAIL_RESOURCE_PS5.getValue()))
-					bimMap.remove(ImageResourceID.THUMBNAIL_RESOURCE_PS4.getValue());
-				bims = bimMap.values();			
-			}
-		}
-		
-		for(_8BIM bim : bims)
-			bim.write(bout);
-		
-		workingPage.addField(new UndefinedField(TiffTag.PHOTOSHOP.getValue(), bout.toByteArray()));
+		mergeIRB(workingPage, bims, update);
 		
 		offset = copyPages(ifds, offset, rin, rout);
 		int firstIFDOffset = ifds.get(0).getStartOffset();	
@@ -1913,11 +1860,127 @@ public class TIFFTweaker {
 	}
 	
 	public static void insertXMP(String xmp, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
-		Document doc = XMLUtils.createXML(xmp);
-		XMLUtils.insertLeadingPI(doc, "xpacket", "begin='' id='W5M0MpCehiHzreSzNTczkc9d'");
-		XMLUtils.insertTrailingPI(doc, "xpacket", "end='r'");
-		byte[] xmpBytes = XMLUtils.serializeToByteArray(doc);
-		insertXMP(xmpBytes, rin, rout);
+		insertXMP(XMP.wrapPacket(xmp).getBytes("UTF-8"), rin, rout);
+	}
+	
+	// Merge the EXIF data into the image IFD, shared by insertExif() and TIFFAppendEditor
+	static void mergeExif(IFD imageIFD, Exif exif, boolean update) {
+		IFD exifSubIFD = imageIFD.getChild(TiffTag.EXIF_SUB_IFD);
+		IFD gpsSubIFD = imageIFD.getChild(TiffTag.GPS_SUB_IFD);
+		IFD newImageIFD = exif.getImageIFD();
+		IFD newExifSubIFD = exif.getExifIFD();
+		IFD newGpsSubIFD = exif.getGPSIFD();
+		
+		if(newImageIFD != null) {
+			Collection<TiffField<?>> fields = newImageIFD.getFields();
+			for(TiffField<?> field : fields) {
+				Tag tag = TiffTag.fromShort(field.getTag());
+				if(imageIFD.getField(tag) != null && tag.isCritical())
+					throw new RuntimeException("Duplicate Tag: " + tag);
+				imageIFD.addField(field);
+			}
+		}
+		
+		if(update && exifSubIFD != null && newExifSubIFD != null) {
+			exifSubIFD.addFields(newExifSubIFD.getFields());
+			newExifSubIFD = exifSubIFD;
+		}
+		
+		if(newExifSubIFD != null) {
+			imageIFD.addField(new LongField(TiffTag.EXIF_SUB_IFD.getValue(), new int[]{0})); // Place holder
+			imageIFD.addChild(TiffTag.EXIF_SUB_IFD, newExifSubIFD);		
+		}
+		
+		if(update && gpsSubIFD != null && newGpsSubIFD != null) {
+			gpsSubIFD.addFields(newGpsSubIFD.getFields());
+			newGpsSubIFD = gpsSubIFD;
+		}
+		
+		if(newGpsSubIFD != null) {
+			imageIFD.addField(new LongField(TiffTag.GPS_SUB_IFD.getValue(), new int[]{0})); // Place holder
+			imageIFD.addChild(TiffTag.GPS_SUB_IFD, newGpsSubIFD);		
+		}
+	}
+	
+	// Merge the IPTC data into the page, shared by insertIPTC() and TIFFAppendEditor
+	static void mergeIPTC(IFD workingPage, Collection<IPTCDataSet> iptcs, boolean update, short endian) throws IOException {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		
+		// See if we also have regular IPTC tag field
+		TiffField<?> f_iptc = workingPage.removeField(TiffTag.IPTC);		
+		TiffField<?> f_photoshop = workingPage.getField(TiffTag.PHOTOSHOP);
+		if(f_photoshop != null) { // Read 8BIMs
+			IRB irb = new IRB((byte[])f_photoshop.getData());
+			// Shallow copy the map.
+			Map<Short, _8BIM> bims = new HashMap<Short, _8BIM>(irb.get8BIM());
+			_8BIM photoshop_iptc = bims.remove(ImageResourceID.IPTC_NAA.getValue());
+			if(photoshop_iptc != null) { // If we have IPTC
+				if(update) { // If we need to keep the old data, copy it
+					if(f_iptc != null) {// We are going to synchronize the two IPTC data
+						byte[] data = null;
+						if(f_iptc.getType() == FieldType.LONG)
+							data = ArrayUtils.toByteArray(f_iptc.getDataAsLong(), endian == IOUtils.BIG_ENDIAN);
+						else
+							data = (byte[])f_iptc.getData();
+						copyIPTCDataSet(iptcs, data);
+					}
+					// Now copy the Photoshop IPTC data
+					copyIPTCDataSet(iptcs, photoshop_iptc.getData());
+					// Remove duplicates
+					iptcs = new ArrayList<IPTCDataSet>(new HashSet<IPTCDataSet>(iptcs));
+				}
+			}
+			// Create IPTC 8BIM
+			for(IPTCDataSet dataset : iptcs) {
+				dataset.write(bout);
+			}
+			_8BIM iptc_bim = new _8BIM(ImageResourceID.IPTC_NAA, "iptc", bout.toByteArray());
+			bout.reset();
+			iptc_bim.write(bout); // Write the IPTC 8BIM first
+			for(_8BIM bim : bims.values()) // Copy the other 8BIMs if any
+				bim.write(bout);
+			// Add a new Photoshop tag field to TIFF
+			workingPage.addField(new UndefinedField(TiffTag.PHOTOSHOP.getValue(), bout.toByteArray()));
+		} else { // We don't have photoshop, add IPTC to regular IPTC tag field
+			if(f_iptc != null && update) {
+				byte[] data = null;
+				if(f_iptc.getType() == FieldType.LONG)
+					data = ArrayUtils.toByteArray(f_iptc.getDataAsLong(), endian == IOUtils.BIG_ENDIAN);
+				else
+					data = (byte[])f_iptc.getData();
+				copyIPTCDataSet(iptcs, data);
+			}
+			for(IPTCDataSet dataset : iptcs) {
+				dataset.write(bout);
+			}
+			workingPage.addField(new UndefinedField(TiffTag.IPTC.getValue(), bout.toByteArray()));
+		}
+	}
+	
+	// Merge the 8BIMs into the Photoshop field of the page, shared by insertIRB() and TIFFAppendEditor
+	static void mergeIRB(IFD workingPage, Collection<_8BIM> bims, boolean update) throws IOException {
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		
+		if(update) {
+			TiffField<?> f_irb = workingPage.getField(TiffTag.PHOTOSHOP);
+			if(f_irb != null) {
+				IRB irb = new IRB((byte[])f_irb.getData());
+				// Shallow copy the map.
+	    		Map<Short, _8BIM> bimMap = new HashMap<Short, _8BIM>(irb.get8BIM());
+				for(_8BIM bim : bims) // Replace the original data
+					bimMap.put(bim.getID(), bim);
+				// In case we have two ThumbnailResource IRB, remove the Photoshop4.0 one
+				if(bimMap.containsKey(ImageResourceID.THUMBNAIL_RESOURCE_PS4.getValue()) 
+						&& bimMap.containsKey(ImageResourceID.THUMBNAIL_RESOURCE_PS5.getValue()))
+					bimMap.remove(ImageResourceID.THUMBNAIL_RESOURCE_PS4.getValue());
+				bims = bimMap.values();			
+			}
+		}
+		
+		for(_8BIM bim : bims)
+			bim.write(bout);
+		
+		workingPage.addField(new UndefinedField(TiffTag.PHOTOSHOP.getValue(), bout.toByteArray()));
 	}
 	
 	/**
@@ -2756,8 +2819,16 @@ public class TIFFTweaker {
 		if(pageNumber < 0 || pageNumber >= ifds.size())
 			throw new IllegalArgumentException("pageNumber " + pageNumber + " out of bounds: 0 - " + (ifds.size() - 1));
 		
-		IFD workingPage = ifds.get(pageNumber);
+		removeMetadata(ifds.get(pageNumber), metadataTypes);
 		
+		offset = copyPages(ifds, offset, rin, rout);
+		int firstIFDOffset = ifds.get(0).getStartOffset();	
+
+		writeToStream(rout, firstIFDOffset);		
+	}
+	
+	// Remove the metadata from the page, shared by removeMetadata() and editPage()
+	private static void removeMetadata(IFD workingPage, Set<MetadataType> metadataTypes) throws IOException {
 		TiffField<?> metadata = null;
 		
 		for(MetadataType metaType : metadataTypes) {
@@ -2805,11 +2876,6 @@ public class TIFFTweaker {
 				default:
 			}
 		}
-		
-		offset = copyPages(ifds, offset, rin, rout);
-		int firstIFDOffset = ifds.get(0).getStartOffset();	
-
-		writeToStream(rout, firstIFDOffset);		
 	}
 	
 	public static void removeMetadata(Set<MetadataType> metadataTypes, RandomAccessInputStream rin, RandomAccessOutputStream rout) throws IOException {
@@ -3020,8 +3086,7 @@ public class TIFFTweaker {
         for (int i = 0; i < list.size(); i++)
         {
             //To read image into byte array
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            RandomAccessOutputStream rout = new MemoryCacheRandomAccessOutputStream(baos);
+            ByteArrayRandomAccessOutputStream rout = new ByteArrayRandomAccessOutputStream();
             rout.setWriteStrategy(writeStrategy);
             // Write TIFF header
             int writeOffset = writeHeader(rout);
@@ -3037,7 +3102,7 @@ public class TIFFTweaker {
             writeToStream(rout, firstIFDOffset);
             rout.close();
             //Convert to byte array
-            byte[] byteData = baos.toByteArray();
+            byte[] byteData = rout.toByteArray();
             System.out.println("File " + i + " has byte size: " + byteData.length / 1024 + " kb");
             outputFilesByte.add(byteData);
         }
@@ -13,6 +13,8 @@
  *
  * Who   Date       Description
  * ====  =========  ==============================================================
+ * AG    18Oct2026  Converted to and from CMYK through LUTColorTransform
+ * AG    18Oct2026  Cached ICC color spaces loaded from absolute resource paths
  * WY    07Feb2016  Renamed methods related to popularity quantization
  * WY    31Jan2016  Removed ditherThreshold related method arguments
  * WY    31Dec2015  Removed error limit from dither_FloydSteinberg
@@ -51,8 +53,8 @@ import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferInt;
 import java.awt.image.DataBufferByte;
 import java.awt.image.DataBufferUShort;
-import java.awt.image.DirectColorModel;
 import java.awt.image.IndexColorModel;
+import java.awt.image.PixelInterleavedSampleModel;
 import java.awt.image.Raster;
 import java.awt.image.WritableRaster;
 import java.io.ByteArrayOutputStream;
@@ -65,6 +67,8 @@ import org.slf4j.LoggerFactory;
 
 import com.icafe4j.image.ImageIO;
 import com.icafe4j.image.ImageType;
+import com.icafe4j.image.color.ICCProfileCache;
+import com.icafe4j.image.color.LUTColorTransform;
 import com.icafe4j.image.meta.adobe.ImageResourceID;
 import com.icafe4j.image.meta.adobe._8BIM;
 import com.icafe4j.image.quant.NeuQuant;
@@ -75,6 +79,7 @@ import com.icafe4j.image.writer.JPEGWriter;
 import com.icafe4j.io.IOUtils;
 import com.icafe4j.io.PeekHeadInputStream;
 import com.icafe4j.io.RandomAccessInputStream;
+import com.icafe4j.jfr.CodecTrace;
 import com.icafe4j.util.IntHashtable;
 
 /** 
@@ -179,7 +184,18 @@ public class IMGUtils {
 		 
 		 return gammaTable;
     }
-	
+
+	// Short type image data gamma correction table
+	public static short[] createUShortGammaTable(float gamma, float displayExponent) {
+		 int size =  1 << 16;
+		 short[] gammaTable = new short[size];
+		 double decodingExponent = 1d / ((double)gamma * (double)displayExponent);
+		 for (int i = 0; i < size; i++)
+			 gammaTable[i] = (short)(Math.pow((double)i / (size - 1), decodingExponent) * (size - 1));
+
+		 return gammaTable;
+    }
+
 	// Gamma correction for palette based image data
 	public static void correctGamma(int[] rgbColorPalette, byte[] gammaTable) {
 		for(int i = 0; i < rgbColorPalette.length; i++) {
@@ -593,6 +609,9 @@ public class IMGUtils {
 	}
 	
 	public static ICC_ColorSpace getICCColorSpace(String pathToICCProfile) throws IOException {
+		// Absolute resource paths resolve the same everywhere, so the profile can be shared
+		if(pathToICCProfile.startsWith("/"))
+			return ICCProfileCache.getInstance().getColorSpace(pathToICCProfile);
 		return new ICC_ColorSpace(ICC_Profile.getInstance(IMGUtils.class.getResourceAsStream(pathToICCProfile)));
 	}
 	
@@ -738,6 +757,99 @@ public class IMGUtils {
 		}
 	}
 	
+	/**
+	 * Retrieves RGB values for a band of rows from Raster. Unlike {@link #getRGB(BufferedImage)},
+	 * only the requested rows are converted, so the caller can walk through a large image
+	 * with a small working buffer.
+	 * 
+	 * @param image input BufferedImage
+	 * @param startRow first row to retrieve
+	 * @param numOfRows number of rows to retrieve
+	 * @param rgbs output array to hold at least numOfRows*imageWidth pixels
+	 * @param offset offset into the output array
+	 * @return the output array in default RGB color space representation
+	 */
+	public static int[] getRGB(BufferedImage image, int startRow, int numOfRows, int[] rgbs, int offset) {
+		int type = image.getType();
+		Raster raster = image.getRaster();
+		int imageWidth = image.getWidth();
+		int bandSize = imageWidth*numOfRows;
+		
+		switch(type) {
+			case BufferedImage.TYPE_INT_RGB:
+			case BufferedImage.TYPE_INT_ARGB:
+			case BufferedImage.TYPE_INT_BGR: {
+				int[] ipixels = (int[])raster.getDataElements(0, startRow, imageWidth, numOfRows, null);
+				if(type == BufferedImage.TYPE_INT_ARGB) {
+					System.arraycopy(ipixels, 0, rgbs, offset, bandSize);
+				} else if(type == BufferedImage.TYPE_INT_RGB) {
+					for(int i = 0; i < bandSize; i++)
+						rgbs[offset++] = 0xff000000|ipixels[i];
+				} else { // Convert BGR to RGB
+					for(int i = 0; i < bandSize; i++) {
+						int blue = (ipixels[i]>>16)&0xff;
+						int green = (ipixels[i]>>8) & 0xff;
+						int red = ipixels[i]&0xff;
+						rgbs[offset++] = 0xff000000|(red << 16)|(green << 8)|blue;
+					}
+				}
+				return rgbs;
+			}
+			case BufferedImage.TYPE_3BYTE_BGR:
+			case BufferedImage.TYPE_4BYTE_ABGR:
+			case BufferedImage.TYPE_BYTE_GRAY:
+			case BufferedImage.TYPE_BYTE_INDEXED: {
+				byte[] bpixels = (byte[])raster.getDataElements(0, startRow, imageWidth, numOfRows, null);
+				if(type == BufferedImage.TYPE_3BYTE_BGR) {
+					for(int i = 0, index = 0; i < bandSize; i++)
+						rgbs[offset++] = ((0xff000000)|((bpixels[index++]&0xff)<<16)|((bpixels[index++]&0xff)<<8)|(bpixels[index++]&0xff));
+				} else if(type == BufferedImage.TYPE_4BYTE_ABGR) {
+					for(int i = 0, index = 0; i < bandSize; i++)
+						rgbs[offset++] = (((bpixels[index++]&0xff)<<16)|((bpixels[index++]&0xff)<<8)|(bpixels[index++]&0xff)|((bpixels[index++]&0xff)<<24));
+				} else if(type == BufferedImage.TYPE_BYTE_GRAY) {
+					for(int i = 0; i < bandSize; i++)
+						rgbs[offset++] = (0xff000000)|((bpixels[i]&0xff)<<16)|((bpixels[i]&0xff)<<8)|(bpixels[i]&0xff);
+				} else {
+					IndexColorModel indexModel = (IndexColorModel)image.getColorModel();
+					int[] palette = new int[indexModel.getMapSize()];
+					indexModel.getRGBs(palette);
+					for(int i = 0; i < bandSize; i++)
+						rgbs[offset++] = palette[bpixels[i]&0xff];
+				}
+				return rgbs;
+			}
+			case BufferedImage.TYPE_USHORT_GRAY:
+			case BufferedImage.TYPE_USHORT_565_RGB:
+			case BufferedImage.TYPE_USHORT_555_RGB: {
+				short[] spixels = (short[])raster.getDataElements(0, startRow, imageWidth, numOfRows, null);
+				if(type == BufferedImage.TYPE_USHORT_GRAY) {
+					for(int i = 0; i < bandSize; i++) {
+						int gray = ((spixels[i]>>8)&0xff);
+						rgbs[offset++] = (0xff000000)|(gray<<16)|(gray<<8)|gray;
+					}
+				} else if(type == BufferedImage.TYPE_USHORT_565_RGB) {
+					for(int i = 0; i < bandSize; i++) {
+						int red = ((spixels[i]>>11)&0x1f);
+						int green = ((spixels[i]>>5)&0x3f);
+						int blue = (spixels[i]&0x1f);
+						rgbs[offset++] = (0xff000000)|(red<<19)|(green<<10)|(blue<<3);
+					}
+				} else {
+					for(int i = 0; i < bandSize; i++) {
+						int red = ((spixels[i]>>>10)&0x1f);
+						int green = ((spixels[i]>>>5)&0x1f);
+						int blue = (spixels[i]&0x1f);
+						rgbs[offset++] = (0xff000000)|(red<<19)|(green<<11)|(blue<<3);
+					}
+				}
+				return rgbs;
+			}
+			default:
+				// Premultiplied, packed binary and custom types are left to the ColorModel
+				return image.getRGB(0, startRow, imageWidth, numOfRows, rgbs, offset, imageWidth);
+		}
+	}
+	
 	/**
 	 * Retrieves RGB values from DataBuffer. This one is slower than getRGB()
 	 * 
@@ -1047,6 +1159,21 @@ public class IMGUtils {
 	 */
 	public static WritableRaster iccp2rgbRaster(WritableRaster raster, ColorModel cm) {
 		ColorSpace sRGB = ColorSpace.getInstance(ColorSpace.CS_sRGB);
+		// 8 bit pixel interleaved CMYK goes through a lookup table shared by all the images
+		if(cm.getColorSpace().getType() == ColorSpace.TYPE_CMYK && raster.getTransferType() == DataBuffer.TYPE_BYTE
+				&& raster.getSampleModel() instanceof PixelInterleavedSampleModel && raster.getDataBuffer().getNumBanks() == 1
+				&& !cm.isAlphaPremultiplied()) {
+			PixelInterleavedSampleModel sm = (PixelInterleavedSampleModel)raster.getSampleModel();
+			int numOfBands = sm.getNumBands();
+			int[] bandOffsets = sm.getBandOffsets();
+			boolean inOrder = (numOfBands == 4 || (numOfBands == 5 && cm.hasAlpha())) && sm.getPixelStride() == numOfBands
+					&& sm.getScanlineStride() == raster.getWidth()*numOfBands && raster.getSampleModelTranslateX() == 0
+					&& raster.getSampleModelTranslateY() == 0;
+			for(int i = 0; inOrder && i < numOfBands; i++)
+				inOrder = (bandOffsets[i] == i);
+			if(inOrder)
+				return cmyk2rgbRaster(raster, cm);
+		}
 		ColorConvertOp cco = new ColorConvertOp(cm.getColorSpace(), sRGB, null);
 		WritableRaster rgbRaster = null;		
 		BufferedImage iccpImage = new BufferedImage(cm, raster, false, null);
@@ -1056,6 +1183,28 @@ public class IMGUtils {
 		return rgbRaster;
 	}
 	
+	// Convert 8 bit pixel interleaved CMYK or CMYKA raster to RGB or RGBA raster
+	private static WritableRaster cmyk2rgbRaster(WritableRaster raster, ColorModel cm) {
+		LUTColorTransform transform = LUTColorTransform.getInstance(cm.getColorSpace(), ColorSpace.getInstance(ColorSpace.CS_sRGB));
+		int width = raster.getWidth();
+		int height = raster.getHeight();
+		int numOfPixels = width*height;
+		int inStride = raster.getNumBands();
+		int outStride = inStride - 1;
+		DataBufferByte db = (DataBufferByte)raster.getDataBuffer();
+		byte[] cmyk = db.getData();
+		int offset = db.getOffset();
+		byte[] rgb = new byte[numOfPixels*outStride];
+		transform.transform(cmyk, offset, inStride, rgb, 0, outStride, numOfPixels);
+		if(outStride == 4) { // Copy alpha
+			for(int i = 0, src = offset + 4, dst = 3; i < numOfPixels; i++, src += inStride, dst += outStride)
+				rgb[dst] = cmyk[src];
+		}
+		
+		return Raster.createInterleavedRaster(new DataBufferByte(rgb, rgb.length), width, height, width*outStride, outStride,
+				outStride == 4 ? new int[] {0, 1, 2, 3} : new int[] {0, 1, 2}, null);
+	}
+	
 	// Change the bit color sex of a byte array
 	public static void invertBits(byte[] input) {
 		for(int i = input.length - 1; i >= 0; i--) {
@@ -1206,12 +1355,14 @@ public class IMGUtils {
 	// Color quantization
 	public static int[] reduceColors(QuantMethod quantMethod, int[] rgbTriplets, int colorDepth, byte[] newPixels, final int[] colorPalette)	{
 		int[] colorInfo = new int[2];
+		long start = CodecTrace.start();
 		if(quantMethod == QuantMethod.WU_QUANT)
 			new WuQuant(rgbTriplets, 1<<colorDepth).quantize(newPixels, colorPalette, colorInfo);
 		else if(quantMethod == QuantMethod.NEU_QUANT)
 			new NeuQuant(rgbTriplets).quantize(newPixels, colorPalette, colorInfo);
 		else
 			colorInfo = reduceColorsPopularity(rgbTriplets, colorDepth, newPixels, colorPalette);
+		CodecTrace.stop(CodecTrace.Stage.QUANTIZE, start);
 		
 		return colorInfo;
 	}
@@ -1236,6 +1387,7 @@ public class IMGUtils {
 		if(colorDepth > 8 || colorDepth < 1) 
 			throw new IllegalArgumentException("Invalid color depth " + colorDepth);
 		int[] colorInfo = new int[2];
+		long start = CodecTrace.start();
 		int colors = 0;
 		if(quantMethod == QuantMethod.WU_QUANT)
 			colors = new WuQuant(rgbTriplets, 1<<colorDepth).quantize(colorPalette, colorInfo);
@@ -1245,6 +1397,7 @@ public class IMGUtils {
 			colors = reduceColors(rgbTriplets, colorDepth, colorPalette, colorInfo);
 		// Call Floyd-Steinberg dither
 		dither_FloydSteinberg(rgbTriplets, width, height, newPixels, colors, colorPalette, colorInfo[1]);
+		CodecTrace.stop(CodecTrace.Stage.QUANTIZE, start);
 		// Return the actual bits per pixel and the transparent color index if any
 
 		return colorInfo;
@@ -1266,6 +1419,7 @@ public class IMGUtils {
 		if(colorDepth > 8 || colorDepth < 1) 
 			throw new IllegalArgumentException("Invalid color depth " + colorDepth);
 		int[] colorInfo = new int[2];
+		long start = CodecTrace.start();
 		int colors = 0;
 		if(quantMethod == QuantMethod.WU_QUANT)
 			colors = new WuQuant(rgbTriplets, 1<<colorDepth).quantize(colorPalette, colorInfo);
@@ -1274,6 +1428,7 @@ public class IMGUtils {
 		else
 			colors = reduceColors(rgbTriplets, colorDepth, colorPalette, colorInfo);
 		dither_Bayer(rgbTriplets, width, height, newPixels, colors, colorPalette, colorInfo[1], threshold);
+		CodecTrace.stop(CodecTrace.Stage.QUANTIZE, start);
 		// Return the actual bits per pixel and the transparent color index if any
 
 		return colorInfo;
@@ -1447,17 +1602,7 @@ public class IMGUtils {
 	
 	// Convert RGB to CMYK with level shift (minus 128)
 	public static void RGB2CMYK(ICC_ColorSpace cmykColorSpace, int[] rgb, float[][] C, float[][] M, float[][] Y, float[][] K, int imageWidth, int imageHeight) {
-		DataBuffer db = new DataBufferInt(rgb, rgb.length);
-		WritableRaster raster = Raster.createPackedRaster(db, imageWidth, imageHeight, imageWidth,  new int[] {0x00ff0000, 0x0000ff00, 0x000000ff}, null);
-		ColorSpace sRGB = ColorSpace.getInstance(ColorSpace.CS_sRGB);
-
-		ColorConvertOp cco = new ColorConvertOp(sRGB, cmykColorSpace, null);
-		
-		BufferedImage rgbImage = new BufferedImage(new DirectColorModel(24, 0x00ff0000, 0x0000ff00, 0x000000ff), raster, false, null);
-		BufferedImage cmykImage = cco.filter(rgbImage, null);
-		WritableRaster cmykRaster = cmykImage.getRaster();
-		
-		byte[] cmyk = (byte[])cmykRaster.getDataElements(0, 0, imageWidth, imageHeight, null);
+		byte[] cmyk = RGB2CMYK(cmykColorSpace, rgb, imageWidth, imageHeight, false);
 		
 		for(int i = 0, index = 0; i < imageHeight; i++) {
 			for(int j = 0; j < imageWidth; j++) {
@@ -1471,38 +1616,18 @@ public class IMGUtils {
 	
 	// Convert RGB to CMYK w/o alpha
 	public static byte[] RGB2CMYK(ICC_ColorSpace cmykColorSpace, int[] rgb, int imageWidth, int imageHeight, boolean hasAlpha) {
-		DataBuffer db = new DataBufferInt(rgb, rgb.length);
-		int[] bandMasks = new int[]{0x00ff0000, 0x0000ff00, 0x000000ff};
-		ColorSpace sRGB = ColorSpace.getInstance(ColorSpace.CS_sRGB);
-		ColorConvertOp cco = new ColorConvertOp(sRGB, cmykColorSpace, null);
-		ColorModel cm = null;
-		WritableRaster cmykRaster = null;		
-		if(hasAlpha) {
-			cm = ColorModel.getRGBdefault();
-			bandMasks = new int[]{0x00ff0000, 0x0000ff00, 0x000000ff, 0xff000000};	
-		} else 
-			cm = new DirectColorModel(24, 0x00ff0000, 0x0000ff00, 0x000000ff);
-		WritableRaster raster = Raster.createPackedRaster(db, imageWidth, imageHeight, imageWidth, bandMasks, null);
-		BufferedImage rgbImage = new BufferedImage(cm, raster, false, null);
-		BufferedImage cmykImage = cco.filter(rgbImage, null);
-		cmykRaster = cmykImage.getRaster();
-
-		return (byte[])cmykRaster.getDataElements(0, 0, imageWidth, imageHeight, null);
+		// The ICC transform is sampled once into a lookup table shared by all the images
+		LUTColorTransform transform = LUTColorTransform.getInstance(ColorSpace.getInstance(ColorSpace.CS_sRGB), cmykColorSpace);
+		int numOfPixels = imageWidth*imageHeight;
+		byte[] cmyk = new byte[numOfPixels*(hasAlpha ? 5 : 4)];
+		transform.transformRGB(rgb, 0, cmyk, 0, numOfPixels, hasAlpha);
+		
+		return cmyk;
 	}
 	
 	// Convert RGB to inverted CMYK with level shift (128 minus)
 	public static void RGB2CMYK_Inverted(ICC_ColorSpace cmykColorSpace, int[] rgb, float[][] C, float[][] M, float[][] Y, float[][] K, int imageWidth, int imageHeight) {
-		DataBuffer db = new DataBufferInt(rgb, rgb.length);
-		WritableRaster raster = Raster.createPackedRaster(db, imageWidth, imageHeight, imageWidth,  new int[] {0x00ff0000, 0x0000ff00, 0x000000ff}, null);
-		ColorSpace sRGB = ColorSpace.getInstance(ColorSpace.CS_sRGB);
-
-		ColorConvertOp cco = new ColorConvertOp(sRGB, cmykColorSpace, null);
-		
-		BufferedImage rgbImage = new BufferedImage(new DirectColorModel(24, 0x00ff0000, 0x0000ff00, 0x000000ff), raster, false, null);
-		BufferedImage cmykImage = cco.filter(rgbImage, null);
-		WritableRaster cmykRaster = cmykImage.getRaster();
-		
-		byte[] cmyk = (byte[])cmykRaster.getDataElements(0, 0, imageWidth, imageHeight, null);		
+		byte[] cmyk = RGB2CMYK(cmykColorSpace, rgb, imageWidth, imageHeight, false);
 		
 		for(int i = 0, index = 0; i < imageHeight; i++) {
 			for(int j = 0; j < imageWidth; j++) {
@@ -1618,17 +1743,7 @@ public class IMGUtils {
 	
 	// Convert RGB to inverted YCCK with level shift (128 minus)
 	public static void RGB2YCCK_Inverted(ICC_ColorSpace cmykColorSpace, int[] rgb, float[][] Y, float[][] Cb, float[][] Cr, float[][] K, int imageWidth, int imageHeight) {
-		DataBuffer db = new DataBufferInt(rgb, rgb.length);
-		WritableRaster raster = Raster.createPackedRaster(db, imageWidth, imageHeight, imageWidth,  new int[] {0x00ff0000, 0x0000ff00, 0x000000ff}, null);
-		ColorSpace sRGB = ColorSpace.getInstance(ColorSpace.CS_sRGB);
-
-		ColorConvertOp cco = new ColorConvertOp(sRGB, cmykColorSpace, null);
-		
-		BufferedImage rgbImage = new BufferedImage(new DirectColorModel(24, 0x00ff0000, 0x0000ff00, 0x000000ff), raster, false, null);
-		BufferedImage cmykImage = cco.filter(rgbImage, null);
-		WritableRaster cmykRaster = cmykImage.getRaster();
-		
-		byte[] cmyk = (byte[])cmykRaster.getDataElements(0, 0, imageWidth, imageHeight, null);		
+		byte[] cmyk = RGB2CMYK(cmykColorSpace, rgb, imageWidth, imageHeight, false);
 		float c, m, y;
 		for(int i = 0, index = 0; i < imageHeight; i++) {
 			for(int j = 0; j < imageWidth; j++) {
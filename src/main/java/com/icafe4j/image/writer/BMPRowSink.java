@@ -0,0 +1,359 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.image.writer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.icafe4j.image.bmp.BmpCompression;
+import com.icafe4j.io.IOUtils;
+import com.icafe4j.io.RandomAccessOutputStream;
+
+/**
+ * Streaming BMP writer.
+ * <p>
+ * Scan lines are pushed bottom-up, the last image row first, which is the order they are
+ * stored in a BMP file, and each row is written out as soon as it arrives. 24 bit and 8 bit
+ * uncompressed bitmaps have their sizes known up front. For RLE8 and RLE4 compressed bitmaps
+ * the data size is only known at the end: if the output is a RandomAccessOutputStream, the
+ * header is written with the sizes left empty and patched in place when the sink is closed,
+ * otherwise the compressed rows are kept in memory until then.
+ * <p>
+ * Like TIFFPageSink, this class doesn't close the underlying stream.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public class BMPRowSink implements Closeable {
+	// RLE escape codes
+	private static final int END_OF_LINE = 0;
+	private static final int END_OF_BITMAP = 1;
+	// Maximum number of pixels for an RLE run or absolute block
+	private static final int MAX_RUN = 0xff;
+
+	private OutputStream os;
+	// Non-null if the header can be patched in place
+	private RandomAccessOutputStream rout;
+	private long startPos;
+	private BMPWriter.BitmapHeader header;
+	private BmpCompression compression;
+	private int[] colorPalette;
+	private int width;
+	private int height;
+	private int bytePerScanLine;
+	private byte[] line;
+	// Compressed rows waiting for the header if the output is not seekable
+	private ByteArrayOutputStream pending;
+	private int dataSize;
+	private int rowCount;
+	private boolean closed;
+
+	/**
+	 * Create a sink for a 24 bit uncompressed bitmap
+	 */
+	public BMPRowSink(OutputStream os, int width, int height) throws IOException {
+		this(os, width, height, null, BmpCompression.BI_RGB);
+	}
+
+	/**
+	 * Create a sink for an indexed color bitmap. BI_RLE4 writes 4 bits per pixel and
+	 * takes up to 16 colors, BI_RGB and BI_RLE8 write 8 bits per pixel with up to 256 colors.
+	 *
+	 * @param os OutputStream to write the bitmap
+	 * @param width image width
+	 * @param height image height
+	 * @param colorPalette RGB color palette, null for 24 bit true color
+	 * @param compression BI_RGB, BI_RLE8 or BI_RLE4
+	 * @throws IOException
+	 */
+	public BMPRowSink(OutputStream os, int width, int height, int[] colorPalette, BmpCompression compression) throws IOException {
+		if(width <= 0 || height <= 0)
+			throw new IllegalArgumentException("Invalid image size: " + width + "x" + height);
+		if(colorPalette == null && compression != BmpCompression.BI_RGB)
+			throw new IllegalArgumentException(compression + " requires a color palette");
+		if(compression != BmpCompression.BI_RGB && compression != BmpCompression.BI_RLE8 && compression != BmpCompression.BI_RLE4)
+			throw new IllegalArgumentException("Unsupported compression: " + compression);
+		int maxColors = (compression == BmpCompression.BI_RLE4) ? 16 : 256;
+		if(colorPalette != null && (colorPalette.length == 0 || colorPalette.length > maxColors))
+			throw new IllegalArgumentException("Palette of " + colorPalette.length + " colors for " + compression);
+
+		this.os = os;
+		this.width = width;
+		this.height = height;
+		this.colorPalette = colorPalette;
+		this.compression = compression;
+
+		header = new BMPWriter.BitmapHeader();
+		header.imageWidth = width;
+		header.imageHeight = height;
+		header.compression = compression.getValue();
+
+		if(colorPalette == null) {
+			header.bitCount = 0x18; // 24 bits
+			bytePerScanLine = (width*3 + 3)&~3;
+			line = new byte[bytePerScanLine];
+		} else {
+			header.bitCount = (short)((compression == BmpCompression.BI_RLE4) ? 4 : 8);
+			header.dataOffSet += colorPalette.length*4;
+			header.colorsUsed = colorPalette.length;
+			header.colorsImportant = colorPalette.length;
+			if(compression == BmpCompression.BI_RGB) {
+				bytePerScanLine = (width + 3)&~3;
+				line = new byte[bytePerScanLine];
+			} else {
+				// Worst case is one 2-byte run per pixel
+				line = new byte[width*2];
+			}
+		}
+
+		if(compression == BmpCompression.BI_RGB) {
+			header.imageSize = bytePerScanLine*height;
+			header.fileSize = header.dataOffSet + header.imageSize;
+			writeHeader(os);
+		} else if(os instanceof RandomAccessOutputStream) {
+			rout = (RandomAccessOutputStream)os;
+			startPos = rout.getStreamPointer();
+			header.fileSize = header.dataOffSet;
+			writeHeader(os);
+		} else {
+			pending = new ByteArrayOutputStream();
+		}
+	}
+
+	/**
+	 * Write the end of bitmap code and, for compressed bitmaps, the final sizes.
+	 * The underlying stream itself is not closed.
+	 */
+	public void close() throws IOException {
+		if(closed) return;
+		if(rowCount != height)
+			throw new IOException("Expected " + height + " rows, got " + rowCount);
+		closed = true;
+		if(compression == BmpCompression.BI_RGB) return;
+		byte[] eob = {0, END_OF_BITMAP};
+		writeData(eob, 2);
+		header.imageSize = dataSize;
+		header.fileSize = header.dataOffSet + dataSize;
+		if(rout != null) {
+			long endPos = rout.getStreamPointer();
+			rout.seek(startPos + 2);
+			IOUtils.writeInt(rout, header.fileSize);
+			rout.seek(startPos + 34);
+			IOUtils.writeInt(rout, header.imageSize);
+			rout.seek(endPos);
+		} else {
+			writeHeader(os);
+			pending.writeTo(os);
+			pending = null;
+		}
+	}
+
+	/**
+	 * Encode a row of 4 bit color indexes, one index per byte, in RLE4 mode.
+	 * A run holds up to 255 pixels alternating between two indexes.
+	 *
+	 * @param indexes color indexes
+	 * @param offset offset of the first pixel
+	 * @param width number of pixels
+	 * @param out output buffer, at least 2*width bytes long
+	 * @return number of bytes written to the output buffer
+	 */
+	public static int encodeRLE4(byte[] indexes, int offset, int width, byte[] out) {
+		int end = offset + width;
+		int i = offset, n = 0;
+
+		while(i < end) {
+			int run = runLength4(indexes, i, end);
+			if(run >= 4) {
+				n = encodedRun4(indexes, i, run, out, n);
+				i += run;
+				continue;
+			}
+			// Collect pixels until the next run worth encoding
+			int j = i;
+			while(j < end && j - i < MAX_RUN && runLength4(indexes, j, end) < 4) j++;
+			int count = j - i;
+			if(count < 3) { // Absolute mode needs at least 3 pixels
+				n = encodedRun4(indexes, i, count, out, n);
+			} else {
+				out[n++] = 0;
+				out[n++] = (byte)count;
+				int bytes = (count + 1)>>1;
+				for(int k = 0; k < count; k += 2) {
+					int hi = indexes[i + k]&0x0f;
+					int lo = (k + 1 < count) ? indexes[i + k + 1]&0x0f : 0;
+					out[n++] = (byte)((hi<<4)|lo);
+				}
+				if((bytes&1) != 0) out[n++] = 0; // Align on a word boundary
+			}
+			i = j;
+		}
+
+		return n;
+	}
+
+	/**
+	 * Encode a row of 8 bit color indexes in RLE8 mode.
+	 *
+	 * @param indexes color indexes
+	 * @param offset offset of the first pixel
+	 * @param width number of pixels
+	 * @param out output buffer, at least 2*width bytes long
+	 * @return number of bytes written to the output buffer
+	 */
+	public static int encodeRLE8(byte[] indexes, int offset, int width, byte[] out) {
+		int end = offset + width;
+		int i = offset, n = 0;
+
+		while(i < end) {
+			int run = runLength8(indexes, i, end);
+			if(run >= 3) {
+				out[n++] = (byte)run;
+				out[n++] = indexes[i];
+				i += run;
+				continue;
+			}
+			// Collect pixels until the next run worth encoding
+			int j = i;
+			while(j < end && j - i < MAX_RUN && runLength8(indexes, j, end) < 3) j++;
+			int count = j - i;
+			if(count < 3) { // Absolute mode needs at least 3 pixels
+				for(int k = i; k < j; k += run) {
+					run = runLength8(indexes, k, j);
+					out[n++] = (byte)run;
+					out[n++] = indexes[k];
+				}
+			} else {
+				out[n++] = 0;
+				out[n++] = (byte)count;
+				System.arraycopy(indexes, i, out, n, count);
+				n += count;
+				if((count&1) != 0) out[n++] = 0; // Align on a word boundary
+			}
+			i = j;
+		}
+
+		return n;
+	}
+
+	private static int encodedRun4(byte[] indexes, int start, int run, byte[] out, int n) {
+		int hi = indexes[start]&0x0f;
+		int lo = (run > 1) ? indexes[start + 1]&0x0f : 0;
+		out[n++] = (byte)run;
+		out[n++] = (byte)((hi<<4)|lo);
+
+		return n;
+	}
+
+	private void ensureOpen() throws IOException {
+		if(closed)
+			throw new IOException("BMPRowSink closed");
+		if(rowCount >= height)
+			throw new IOException("All " + height + " rows have been written");
+	}
+
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	// Number of pixels alternating between the first two, up to MAX_RUN
+	private static int runLength4(byte[] indexes, int start, int end) {
+		int max = Math.min(end, start + MAX_RUN);
+		int i = start + 2;
+		if(i > max) return max - start;
+		while(i < max && indexes[i] == indexes[i - 2]) i++;
+
+		return i - start;
+	}
+
+	// Number of identical pixels, up to MAX_RUN
+	private static int runLength8(byte[] indexes, int start, int end) {
+		int max = Math.min(end, start + MAX_RUN);
+		int i = start + 1;
+		while(i < max && indexes[i] == indexes[start]) i++;
+
+		return i - start;
+	}
+
+	private void writeData(byte[] data, int len) throws IOException {
+		if(pending != null)
+			pending.write(data, 0, len);
+		else
+			os.write(data, 0, len);
+		dataSize += len;
+	}
+
+	private void writeHeader(OutputStream os) throws IOException {
+		header.writeHeader(os);
+		if(colorPalette != null) {
+			byte[] brgb = new byte[colorPalette.length*4];
+			for(int i = 0, nindex = 0; i < colorPalette.length; i++) {
+				brgb[nindex++] = (byte)(colorPalette[i]&0xff);
+				brgb[nindex++] = (byte)((colorPalette[i]>>8)&0xff);
+				brgb[nindex++] = (byte)((colorPalette[i]>>16)&0xff);
+				brgb[nindex++] = (byte)0xff;
+			}
+			os.write(brgb);
+		}
+	}
+
+	/**
+	 * Write the next row of an indexed color bitmap, one color index per byte.
+	 *
+	 * @param indexes color indexes
+	 * @param offset offset of the first pixel of the row
+	 * @throws IOException
+	 */
+	public void writeRow(byte[] indexes, int offset) throws IOException {
+		ensureOpen();
+		if(colorPalette == null)
+			throw new IllegalStateException("Color indexes written to a true color bitmap");
+		int len = 0;
+		if(compression == BmpCompression.BI_RGB) {
+			System.arraycopy(indexes, offset, line, 0, width);
+			len = bytePerScanLine;
+		} else {
+			if(rowCount > 0) { // End the previous row
+				byte[] eol = {0, END_OF_LINE};
+				writeData(eol, 2);
+			}
+			if(compression == BmpCompression.BI_RLE8)
+				len = encodeRLE8(indexes, offset, width, line);
+			else
+				len = encodeRLE4(indexes, offset, width, line);
+		}
+		writeData(line, len);
+		rowCount++;
+	}
+
+	/**
+	 * Write the next row of a 24 bit true color bitmap.
+	 *
+	 * @param rgbs pixels in ARGB format
+	 * @param offset offset of the first pixel of the row
+	 * @throws IOException
+	 */
+	public void writeRow(int[] rgbs, int offset) throws IOException {
+		ensureOpen();
+		if(colorPalette != null)
+			throw new IllegalStateException("ARGB pixels written to an indexed color bitmap");
+		for(int j = 0, nindex = 0; j < width; j++) {
+			int pixel = rgbs[offset + j];
+			line[nindex++] = (byte)(pixel&0xff);
+			line[nindex++] = (byte)((pixel>>8)&0xff);
+			line[nindex++] = (byte)((pixel>>16)&0xff);
+		}
+		writeData(line, bytePerScanLine);
+		rowCount++;
+	}
+}
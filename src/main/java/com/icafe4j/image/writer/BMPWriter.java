@@ -11,6 +11,7 @@
 package com.icafe4j.image.writer;
 
 import java.io.*; 
+import java.util.Arrays;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,6 +19,10 @@ import org.slf4j.LoggerFactory;
 import com.icafe4j.image.ImageColorType;
 import com.icafe4j.image.ImageParam;
 import com.icafe4j.image.ImageType;
+import com.icafe4j.image.RowSource;
+import com.icafe4j.image.bmp.BmpCompression;
+import com.icafe4j.image.options.BMPOptions;
+import com.icafe4j.image.options.ImageOptions;
 import com.icafe4j.image.quant.DitherMethod;
 import com.icafe4j.image.util.IMGUtils;
 
@@ -31,8 +36,8 @@ public class BMPWriter extends ImageWriter {
 	// Obtain a logger instance
 	private static final Logger LOGGER = LoggerFactory.getLogger(BMPWriter.class);
 	
-	// Image header
-	private static class BitmapHeader
+	// Image header, shared with BMPRowSink
+	static class BitmapHeader
 	{
 		// Bitmap file header, 14 bytes
 		final byte signature[] = {'B','M'};// always "BM", decimal 19778, hex 0x4d42
@@ -86,7 +91,7 @@ public class BMPWriter extends ImageWriter {
 		int   colorsUsed; // To be set    
 		int   colorsImportant; // Number of important colors (0 = all), to be set
 
-		void writeHeader(OutputStream os) throws Exception
+		void writeHeader(OutputStream os) throws IOException
 		{
 			byte bhdr[]=new byte[54];
 			// Bitmap file header
@@ -166,20 +171,6 @@ public class BMPWriter extends ImageWriter {
 		}
 	}
 
-	// Define type of compression 
-	/**
-	 * 0 = BI_RGB: No compression
-	 * 1 = BI_RLE8: 8 bit RLE Compression (8 bit only)
-	 * 2 = BI_RLE4: 4 bit RLE Compression (4 bit only)
-	 * 3 = BI_BITFIELDS: No compression (16 & 32 bit only)
-	*/
-	//private static int BI_RGB       = 0;
-	//private static int BI_RLE8      = 1;
-	//private static int BI_RLE4      = 2;
-	//private static int BI_BITFIELDS = 3;
-  
-	private BitmapHeader bitmapHeader;
-	
 	public BMPWriter() {}
 	
 	public BMPWriter(ImageParam param) {
@@ -191,129 +182,117 @@ public class BMPWriter extends ImageWriter {
 		return ImageType.BMP;
 	}
 
+	/**
+	 * True color bitmaps are written straight from the RowSource, bottom-up, one band
+	 * of rows at a time. Indexed bitmaps still need the whole image for color reduction.
+	 */
+	@Override
+	public void write(RowSource source, OutputStream os) throws Exception {
+		if(isIndexed()) {
+			super.write(source, os);
+			return;
+		}
+		
+		int imageWidth = source.getWidth();
+		int imageHeight = source.getHeight();
+		
+		LOGGER.info("Saving as 24 bits bitmap color image!");
+		
+		BMPRowSink sink = new BMPRowSink(os, imageWidth, imageHeight);
+		int rowsPerBand = Math.max(1, BAND_SIZE/imageWidth);
+		int[] band = new int[rowsPerBand*imageWidth];
+		
+		for(int end = imageHeight; end > 0; end -= rowsPerBand) {
+			int start = Math.max(0, end - rowsPerBand);
+			getRows(source, start, end - start, band, 0);
+			// Last row of the band goes first
+			for(int index = (end - start - 1)*imageWidth; index >= 0; index -= imageWidth)
+				sink.writeRow(band, index);
+		}
+		
+		sink.close();
+		os.close();
+	}
+	
+	private BmpCompression getCompression() {
+		ImageOptions options = getImageParam().getImageOptions();
+		if(options instanceof BMPOptions)
+			return ((BMPOptions)options).getBmpComression();
+		return BmpCompression.BI_RGB;
+	}
+	
+	// RLE compression is only defined for indexed color bitmaps
+	private boolean isIndexed() {
+		BmpCompression compression = getCompression();
+		return getImageParam().getColorType() == ImageColorType.INDEXED
+				|| compression == BmpCompression.BI_RLE8 || compression == BmpCompression.BI_RLE4;
+	}
+	
 	protected void write (int[] pixels, int imageWidth, int imageHeight, 
 			OutputStream os) throws Exception {   
 		// The entry point for all the image writers		
-		if(getImageParam().getColorType() == ImageColorType.INDEXED) write256ColorBitmap(pixels, imageWidth, imageHeight, os);
+		if(isIndexed()) writeIndexedColorBitmap(pixels, imageWidth, imageHeight, os);
 		else writeTrueColorBitmap(pixels, imageWidth, imageHeight, os);
 	}
 
-	private void write256ColorBitmap(int[] pixels, int imageWidth, 
+	/**
+	 * Write an 8 bit bitmap, or a 4 bit one for BI_RLE4 compression. Rows are
+	 * RLE compressed if BMPOptions asks for BI_RLE8 or BI_RLE4.
+	 */
+	private void writeIndexedColorBitmap(int[] pixels, int imageWidth, 
 	             int imageHeight, OutputStream os) throws Exception {
 		ImageParam param = getImageParam();
-		int nindex = 0;
-		int index = 0;
-		int npad = 0;
-		// Calculate padding per scan line
-		npad = 4 - (imageWidth%4);
-	  
-		if (npad == 4) 
-			npad = 0;
-      
-		int bytePerScanLine = imageWidth + npad;
-
-		byte brgb[]=new byte[256*4];
-      
-		LOGGER.info("Saving as 256 bits bitmap color image!");
-
-		bitmapHeader = new BitmapHeader();
-		// Set header parameters
-		bitmapHeader.imageWidth = imageWidth;
-		bitmapHeader.imageHeight = imageHeight;
-		bitmapHeader.bitCount = 0x08;// 8 bits
-		bitmapHeader.compression = 0x00; // No compression
-		bitmapHeader.imageSize = bytePerScanLine*imageHeight;
-		bitmapHeader.fileSize += bitmapHeader.imageSize;
-		bitmapHeader.dataOffSet += 1024;
-		bitmapHeader.colorsUsed = 0xff+1;     
-		bitmapHeader.colorsImportant = 0xff+1;
-		// Write bitmap image header
-		bitmapHeader.writeHeader(os);
-		// Reduce colors to 256
+		BmpCompression compression = getCompression();
+		
+		if(compression != BmpCompression.BI_RLE8 && compression != BmpCompression.BI_RLE4)
+			compression = BmpCompression.BI_RGB;
+		
+		int bitsPerPixel = (compression == BmpCompression.BI_RLE4) ? 4 : 8;
+		
+		LOGGER.info("Saving as {} color bitmap image, compression: {}", 1<<bitsPerPixel, compression);
+		// Reduce colors
 		byte[] newPixels = new byte[imageWidth*imageHeight];
 		int[] colorPalette = new int[256];
 		
 		if(param.isApplyDither()) {
     		if(param.getDitherMethod() == DitherMethod.FLOYD_STEINBERG)
-        		IMGUtils.reduceColorsDiffusionDither(param.getQuantMethod(), pixels, imageWidth, imageHeight, 8, newPixels, colorPalette);	        		
+        		IMGUtils.reduceColorsDiffusionDither(param.getQuantMethod(), pixels, imageWidth, imageHeight, bitsPerPixel, newPixels, colorPalette);	        		
     		else
-        		IMGUtils.reduceColorsOrderedDither(param.getQuantMethod(), pixels, imageWidth, imageHeight, 8, newPixels, colorPalette, param.getDitherMatrix());
+        		IMGUtils.reduceColorsOrderedDither(param.getQuantMethod(), pixels, imageWidth, imageHeight, bitsPerPixel, newPixels, colorPalette, param.getDitherMatrix());
     	} else
-    		IMGUtils.reduceColors(param.getQuantMethod(), pixels, 8, newPixels, colorPalette);
+    		IMGUtils.reduceColors(param.getQuantMethod(), pixels, bitsPerPixel, newPixels, colorPalette);
 		
-		// Write out the color palette
-		for (int i=0; i<256; i++)
-		{
-			brgb[nindex++] = (byte)(colorPalette[i]&0xff);
-			brgb[nindex++] = (byte)(((colorPalette[i]>>8)&0xff));
-			brgb[nindex++] = (byte)(((colorPalette[i]>>16)&0xff));
-			brgb[nindex++] = (byte)0xff;
-		}
-	  
-		os.write(brgb,0,1024);
-		// Write out the color index of the raster data
-		brgb = new byte[bytePerScanLine];
-
-		for(int i=1; i<=imageHeight; i++)
-		{		
-			nindex = 0;
-			index = imageWidth*(imageHeight-i);
-		  
-			for(int j=0; j<imageWidth; j++)
-			{
-				brgb[nindex++] = newPixels[index++];
+		if(bitsPerPixel == 4) {
+			// Some quantizers always produce 256 colors
+			for(byte index : newPixels) {
+				if((index&0xff) > 0x0f) {
+					LOGGER.warn("More than 16 colors after color reduction, falling back to BI_RLE8");
+					compression = BmpCompression.BI_RLE8;
+					bitsPerPixel = 8;
+					break;
+				}
 			}
-		  
-			os.write(brgb,0,bytePerScanLine);		  
 		}
 		
+		BMPRowSink sink = new BMPRowSink(os, imageWidth, imageHeight, Arrays.copyOf(colorPalette, 1<<bitsPerPixel), compression);
+		// Write out the color index of the raster data bottom-up
+		for(int index = imageWidth*(imageHeight - 1); index >= 0; index -= imageWidth)
+			sink.writeRow(newPixels, index);
+		
+		sink.close();
 		os.close();
 	}
 
 	private void writeTrueColorBitmap(int[] pixels, int imageWidth, 
 	             int imageHeight, OutputStream os) throws Exception {
-		int nindex = 0;
-		int index = 0;
-		int npad = 0;
-		// Calculate padding per scan line
-		npad = 4 - ((imageWidth*3)%4);
-	  
-		if (npad == 4)
-			npad = 0;
-      
-		int bytePerScanLine = imageWidth*3 + npad;
-
-		byte brgb[]=new byte[bytePerScanLine];
-      
 		LOGGER.info("Saving as 24 bits bitmap color image!");
-
-		bitmapHeader = new BitmapHeader();
-		// Set header parameters
-		bitmapHeader.imageWidth = imageWidth;
-		bitmapHeader.imageHeight = imageHeight;
-		bitmapHeader.bitCount = 0x18;// 24 bits
-		bitmapHeader.compression = 0x00; // No compression
-		bitmapHeader.imageSize = bytePerScanLine*imageHeight;
-		bitmapHeader.fileSize += bitmapHeader.imageSize;
-		bitmapHeader.colorsUsed = 0x00;     
-		bitmapHeader.colorsImportant = 0x00;
-		// Write bitmap image header
-		bitmapHeader.writeHeader(os);
-		// Write raster data
-		for(int i=1; i<=imageHeight; i++)
-		{
-			nindex = 0;
-			index = imageWidth*(imageHeight-i);
-		  
-			for(int j=0; j<imageWidth; j++)
-			{
-				brgb[nindex++] = (byte)(pixels[index]&0xff);
-				brgb[nindex++] = (byte)((pixels[index]>>8)&0xff);
-				brgb[nindex++] = (byte)((pixels[index++]>>16)&0xff);
-			}
-			
-			os.write(brgb,0,bytePerScanLine);		  
-		}
+		
+		BMPRowSink sink = new BMPRowSink(os, imageWidth, imageHeight);
+		// Write raster data bottom-up
+		for(int index = imageWidth*(imageHeight - 1); index >= 0; index -= imageWidth)
+			sink.writeRow(pixels, index);
+		
+		sink.close();
 		os.close();
 	}
 } 
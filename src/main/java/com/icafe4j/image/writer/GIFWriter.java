@@ -13,6 +13,7 @@
  *
  * Who   Date       Description
  * ====  =======    ==========================================================
+ * AG    18Oct2026  Added writeIndexed() to write palette and indices as they are
  * WY    14Oct2015  Bug fix for transparent frame
  * WY    05Oct2015  Revised writeFrame() to crop images outside logical screen
  * WY    18Aug2015  Added support to use ImageParam to control dither
@@ -30,11 +31,14 @@ import java.io.*;
 import java.util.Arrays;
 import java.util.List;
 
+import com.icafe4j.image.CodecControl;
 import com.icafe4j.image.ImageParam;
 import com.icafe4j.image.ImageType;
+import com.icafe4j.image.IndexedPixels;
 import com.icafe4j.image.gif.GIFFrame;
 import com.icafe4j.image.quant.DitherMethod;
 import com.icafe4j.image.util.IMGUtils;
+import com.icafe4j.jfr.CodecTrace;
 
 import static com.icafe4j.image.gif.GIFTweaker.*;
 
@@ -300,6 +304,46 @@ public class GIFWriter extends ImageWriter {
 		os.close();
     }
 
+    /**
+     * Write a single frame GIF with the palette and indices as they are. A palette
+     * with more than one transparent entry, which GIF can't hold, is written the same
+     * as an ARGB image.
+     */
+    @Override
+    public void writeIndexed(IndexedPixels pixels, OutputStream os) throws Exception {
+    	int[] palette = getPalette(pixels);
+    	byte[] indices = pixels.getIndices();
+    	int transparent_color = -1;
+    	int maxIndex = 0;
+    	int numOfBits = 1;
+    	// GIF takes any number of bits from 1 to 8, not only 1, 2, 4 or 8
+    	for(int i = 0; i < indices.length; i++)
+    		if((indices[i]&0xff) > maxIndex) maxIndex = indices[i]&0xff;
+    	while((1<<numOfBits) < maxIndex + 1) numOfBits++;
+    	
+    	for(int i = 0; i < (1<<numOfBits); i++) {
+    		if((palette[i]>>>24) < 0x80) { // Transparent
+    			if(transparent_color >= 0) {
+    				super.writeIndexed(pixels, os);
+    				return;
+    			}
+    			transparent_color = i;
+    		}
+    	}
+    	
+    	writeHeader(os, true);
+		logicalScreenWidth = pixels.getWidth();
+		logicalScreenHeight = pixels.getHeight();
+		firstFrame = true;
+    	animated = false;
+    	colorPalette = palette;
+    	bitsPerPixel = numOfBits;
+    	writeFrame(indices, transparent_color, logicalScreenWidth, logicalScreenHeight, 0, 0, 0,
+    			GIFFrame.DISPOSAL_RESTORE_TO_BACKGROUND, GIFFrame.USER_INPUT_NONE, os);
+		os.write(IMAGE_TRAILER);
+		os.close();
+    }
+    
     /**
      * Writes an array of BufferedImage as an animated GIF
      * 
@@ -325,6 +369,7 @@ public class GIFWriter extends ImageWriter {
 			int imageHeight = images[i].getHeight();
 			int[] pixels = IMGUtils.getRGB(images[i]);//images[i].getRGB(0, 0, imageWidth, imageHeight, null, 0, imageWidth);
 			writeFrame(pixels, imageWidth, imageHeight, 0, 0, delays[i], os);
+			CodecControl.checkpoint(CodecControl.Unit.FRAMES, i + 1, images.length);
     	}
     	
     	os.write(IMAGE_TRAILER);
@@ -363,6 +408,7 @@ public class GIFWriter extends ImageWriter {
 			}
 			writeFrame(pixels, imageWidth, imageHeight, frames[i].getLeftPosition(), frames[i].getTopPosition(),
 					frames[i].getDelay(), frames[i].getDisposalMethod(), frames[i].getUserInputFlag(), os);
+			CodecControl.checkpoint(CodecControl.Unit.FRAMES, i + 1, frames.length);
     	}
     	
     	os.write(IMAGE_TRAILER);
@@ -456,9 +502,6 @@ public class GIFWriter extends ImageWriter {
 	private void writeFrame(int[] pixels, int imageWidth, int imageHeight, int imageLeftPosition, int imageTopPosition, int delay, int disposalMethod, int userInputFlag, OutputStream os) throws Exception {	
 		ImageParam param = getImageParam();
 		
-		// Reset empty_bits
-    	empty_bits = 0x08;
-    	
     	int transparent_color = -1;
 		int[] colorInfo; 
 		
@@ -484,6 +527,14 @@ public class GIFWriter extends ImageWriter {
 	    
 	    transparent_color = colorInfo[1];
 	    
+	    writeFrame(newPixels, transparent_color, imageWidth, imageHeight, imageLeftPosition, imageTopPosition, delay, disposalMethod, userInputFlag, os);
+	}
+	
+	// Write the frame for the indices into colorPalette with bitsPerPixel already set
+	private void writeFrame(byte[] newPixels, int transparent_color, int imageWidth, int imageHeight, int imageLeftPosition, int imageTopPosition, int delay, int disposalMethod, int userInputFlag, OutputStream os) throws Exception {
+		// Reset empty_bits
+    	empty_bits = 0x08;
+    	
 	    int num_of_color = 1<<bitsPerPixel;
 	    
 	    if(firstFrame) {
@@ -517,7 +568,9 @@ public class GIFWriter extends ImageWriter {
         	writePalette(os, num_of_color);
         }
         // LZW encode the image
+        long start = CodecTrace.start();
         encode(newPixels, os);
+        CodecTrace.stop(CodecTrace.Stage.COMPRESS, start);
 		/** Write out a zero length data sub-block */
 		os.write(0x00);
 	}
@@ -14,9 +14,15 @@ import java.io.*;
 import java.awt.*;
 import java.awt.image.*;
 
+import com.icafe4j.image.CodecContext;
+import com.icafe4j.image.CodecControl;
+import com.icafe4j.image.BufferedImageRowSource;
 import com.icafe4j.image.ImageParam;
+import com.icafe4j.image.IndexedPixels;
 import com.icafe4j.image.ImageType;
+import com.icafe4j.image.RowSource;
 import com.icafe4j.image.util.IMGUtils;
+import com.icafe4j.jfr.CodecTrace;
 
 /** 
  * The template class for other image writers
@@ -27,7 +33,12 @@ import com.icafe4j.image.util.IMGUtils;
  * @version 1.2 08/01/2013
  */
 public abstract class ImageWriter {
+	/** Number of pixels to pull from a RowSource at a time with {@link #getRows(RowSource, int, int, int[], int)} */
+	protected static final int BAND_SIZE = 0x10000;
+	
 	private ImageParam imageParam = ImageParam.DEFAULT_IMAGE_PARAM;
+	// Set by the caller to be reused from one image to the next
+	private CodecContext context;
 	
 	protected ImageWriter() {}
 	
@@ -37,6 +48,7 @@ public abstract class ImageWriter {
 	
 	private int[] getPixels(Image img, int imageWidth, int imageHeight) throws Exception {	
 		int[] pixels = null;
+		long start = CodecTrace.start();
 		
 		if(img instanceof BufferedImage) {
 			pixels = IMGUtils.getRGB((BufferedImage)img);
@@ -56,16 +68,68 @@ public abstract class ImageWriter {
 			}
 		}
 	    
-	    if(imageParam.isTransparent()) {
+	    applyTransparentColor(pixels, 0, pixels.length);
+	    CodecTrace.stop(CodecTrace.Stage.COLOR_CONVERT, start);
+	    
+	    return pixels;
+	}
+	
+	// Clear the alpha of the pixels matching the transparent color, if any
+	private void applyTransparentColor(int[] pixels, int offset, int length) {
+		if(imageParam.isTransparent()) {
 	    	int transColor = (imageParam.getTransparentColor() & 0x00ffffff);
 		
-			for(int i = pixels.length - 1; i > 0; i--) {
+			for(int i = offset + length - 1; i >= offset; i--) {
 				int pixel = (pixels[i] & 0x00ffffff);
 				if(pixel == transColor) pixels[i] = pixel; 
 			}
 	    }
-	    
-	    return pixels;
+	}
+	
+	/**
+	 * Pull a band of rows from the RowSource in ARGB format with the
+	 * transparent color, if any, already applied.
+	 * 
+	 * @param source RowSource to read from
+	 * @param startRow first row to read
+	 * @param numOfRows number of rows to read
+	 * @param rgbs buffer to hold the rows
+	 * @param offset offset into the buffer
+	 * @throws IOException
+	 */
+	protected void getRows(RowSource source, int startRow, int numOfRows, int[] rgbs, int offset) throws IOException {
+		long start = CodecTrace.start();
+		source.getRGB(startRow, numOfRows, rgbs, offset);
+		applyTransparentColor(rgbs, offset, numOfRows*source.getWidth());
+		CodecTrace.stop(CodecTrace.Stage.COLOR_CONVERT, start);
+		CodecControl.checkpoint(CodecControl.Unit.ROWS, startRow + numOfRows, source.getHeight());
+	}
+	
+	/**
+	 * Give back a context taken by {@link #openContext()}
+	 */
+	protected void closeContext(CodecContext context) {
+		if(context != this.context)
+			context.close();
+	}
+	
+	/**
+	 * @return the context set by the caller or null if there is none
+	 */
+	public CodecContext getContext() {
+		return context;
+	}
+	
+	/**
+	 * The ARGB palette of the pixels with the transparent color of the ImageParam,
+	 * if any, applied the same way as for ARGB pixels. Pixels with an alpha less
+	 * than 0x80 count as transparent everywhere.
+	 */
+	protected int[] getPalette(IndexedPixels pixels) {
+		int[] palette = pixels.getPalette().clone();
+		applyTransparentColor(palette, 0, palette.length);
+		
+		return palette;
 	}
 	
 	public ImageParam getImageParam() {
@@ -74,17 +138,113 @@ public abstract class ImageWriter {
 	
 	public abstract ImageType getImageType();
 	
+	/**
+	 * The context to write the image with: the one set by the caller or one borrowed
+	 * from the pool. Each call must be followed by a {@link #closeContext(CodecContext)}.
+	 */
+	protected CodecContext openContext() {
+		return (context != null)? context : CodecContext.acquire();
+	}
+	
+	/**
+	 * Write with the caller's context, reusing its buffers and zlib objects, instead of
+	 * one borrowed from the pool for each image. The caller keeps ownership of the context.
+	 */
+	public void setContext(CodecContext context) {
+		this.context = context;
+	}
+	
 	public void setImageParam(ImageParam imageParam) {
 		this.imageParam = imageParam;
 	}
 	
 	public void write(Image img, OutputStream os) throws Exception {
+		if(img instanceof BufferedImage) {
+			write(new BufferedImageRowSource((BufferedImage)img), os);
+			return;
+		}
+		
 		int imageWidth = img.getWidth(null);
 		int imageHeight = img.getHeight(null);
 		
 		write(getPixels(img, imageWidth, imageHeight), imageWidth, imageHeight, os);
 	}
 	
+	/**
+	 * Gray samples of the pixels, converted from the palette with the same luma
+	 * method as the ARGB pixels are, one palette entry at a time
+	 */
+	protected byte[] toGrayScale(IndexedPixels pixels) {
+		long start = CodecTrace.start();
+		byte[] grayPalette = IMGUtils.rgb2grayscale(pixels.getPalette());
+		byte[] indices = pixels.getIndices();
+		byte[] gray = new byte[pixels.getWidth()*pixels.getHeight()];
+		
+		for(int i = 0; i < gray.length; i++)
+			gray[i] = grayPalette[indices[i]&0xff];
+		CodecTrace.stop(CodecTrace.Stage.COLOR_CONVERT, start);
+		
+		return gray;
+	}
+	
+	/**
+	 * The pixels expanded to ARGB with the transparent color, if any, applied
+	 */
+	protected int[] toRGB(IndexedPixels pixels) {
+		long start = CodecTrace.start();
+		int[] palette = getPalette(pixels);
+		byte[] indices = pixels.getIndices();
+		int[] rgbs = new int[pixels.getWidth()*pixels.getHeight()];
+		
+		for(int i = 0; i < rgbs.length; i++)
+			rgbs[i] = palette[indices[i]&0xff];
+		CodecTrace.stop(CodecTrace.Stage.COLOR_CONVERT, start);
+		
+		return rgbs;
+	}
+	
+	/**
+	 * Write the image pulled from a RowSource.
+	 * <p>
+	 * This default implementation reads the whole image into an ARGB array and calls
+	 * {@link #write(int[], int, int, OutputStream)}. Writers able to encode a few rows
+	 * at a time override this method to keep the working memory down to a band of rows.
+	 * 
+	 * @param source RowSource for the image scan lines
+	 * @param os OutputStream to write the image
+	 * @throws Exception
+	 */
+	public void write(RowSource source, OutputStream os) throws Exception {
+		int imageWidth = source.getWidth();
+		int imageHeight = source.getHeight();
+		int[] pixels = new int[imageWidth*imageHeight];
+		
+		getRows(source, 0, imageHeight, pixels, 0);
+		
+		write(pixels, imageWidth, imageHeight, os);
+	}
+	
+	/**
+	 * Write an indexed image from its palette indices.
+	 * <p>
+	 * Writers for formats with indexed images (GIF, PNG and TIFF) override this method
+	 * to write the palette and indices as they are, without expanding the image to ARGB
+	 * and without counting colors or quantizing. They do so whatever the color type of
+	 * the ImageParam, except GRAY_SCALE without alpha for which gray samples are written
+	 * from the palette. BILEVEL and whatever else the format can't store from the palette
+	 * as it is are written the same as an ARGB image.
+	 * <p>
+	 * This default implementation expands the indices to ARGB and calls
+	 * {@link #write(int[], int, int, OutputStream)}.
+	 * 
+	 * @param pixels indices and palette of the image
+	 * @param os OutputStream to write the image
+	 * @throws Exception
+	 */
+	public void writeIndexed(IndexedPixels pixels, OutputStream os) throws Exception {
+		write(toRGB(pixels), pixels.getWidth(), pixels.getHeight(), os);
+	}
+	
 	/**
 	 * The actual image writing method to be implemented by any specific ImageWriter subclass
 	 * 
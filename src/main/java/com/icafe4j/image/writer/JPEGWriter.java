@@ -36,6 +36,7 @@ import java.util.Date;
 import com.icafe4j.image.ImageColorType;
 import com.icafe4j.image.ImageParam;
 import com.icafe4j.image.ImageType;
+import com.icafe4j.image.RowSource;
 import com.icafe4j.image.compression.huffman.HuffmanEncoder;
 import com.icafe4j.image.jpeg.HTable;
 import com.icafe4j.image.jpeg.JPEGConsts;
@@ -199,7 +200,54 @@ public class JPEGWriter extends ImageWriter {
 		huffman_values[1][1] = JPEGConsts.getACChrominanceValues();	
 	}
 	
+	/**
+	 * Encode the image from the RowSource one band of MCU rows at a time.
+	 * Only the current band is kept in memory.
+	 */
+	@Override
+	public void write(RowSource source, OutputStream os) throws Exception {
+		int imageWidth = source.getWidth();
+		int imageHeight = source.getHeight();
+		
+		writeHeaders(os, imageWidth, imageHeight);
+		
+		// Band height must be a multiple of 8 which is the MCU height
+		int rowsPerBand = Math.max(8, (BAND_SIZE/imageWidth)&~7);
+		int[] band = new int[rowsPerBand*imageWidth];
+		
+		HuffmanEncoder encoder = new HuffmanEncoder(os, 4096);
+		encoder.initialize();
+		
+		for(int i = 0; i < imageHeight; i += rowsPerBand) {
+			int rows = Math.min(rowsPerBand, imageHeight - i);
+			int[] pixels = band;
+			getRows(source, i, rows, pixels, 0);
+			if(rows < rowsPerBand) // Last band
+				pixels = Arrays.copyOf(band, rows*imageWidth);
+			if(grayScale)
+				encodeGrayScale(IMGUtils.rgb2grayscale(pixels, imageWidth, rows), imageWidth, rows, encoder);
+			else
+				encodeFullColor(pixels, imageWidth, rows, encoder);
+		}
+		
+		encoder.finish();
+		// Write EOI marker
+		writeEOI(os);
+	}
+	
 	protected void write(int[] pixels, int imageWidth, int imageHeight, OutputStream os) throws Exception {	
+		writeHeaders(os, imageWidth, imageHeight);
+        // Write actual image stream
+       	if(grayScale)		
+			writeGrayScale(IMGUtils.rgb2grayscale(pixels, imageWidth, imageHeight), os, imageWidth, imageHeight);
+		else
+			writeFullColor(pixels, os, imageWidth, imageHeight);   
+       	// Write EOI marker
+        writeEOI(os);        
+    }
+	
+	// Write everything before the actual image stream
+	private void writeHeaders(OutputStream os, int imageWidth, int imageHeight) throws Exception {
 		// Read ImageParam and set parameters
 		processImageMeta();	
 		// Start of image marker
@@ -227,14 +275,7 @@ public class JPEGWriter extends ImageWriter {
         writeSOF0(os, imageWidth, imageHeight);	
         // Write SOS
         writeSOS(os);
-        // Write actual image stream
-       	if(grayScale)		
-			writeGrayScale(IMGUtils.rgb2grayscale(pixels, imageWidth, imageHeight), os, imageWidth, imageHeight);
-		else
-			writeFullColor(pixels, os, imageWidth, imageHeight);   
-       	// Write EOI marker
-        writeEOI(os);        
-    }
+	}
 	
 	private void writeAdobeApp14(OutputStream os) throws Exception {
 		int len = 14; // Expected length of this segment is 14.
@@ -356,15 +397,21 @@ public class JPEGWriter extends ImageWriter {
 	}
 	
 	private void writeGrayScale(float[][] pixels, OutputStream os, int imageWidth, int imageHeight) throws Exception {
-		// Expand image if needed
-		pixels = expandArray(pixels, imageWidth, imageHeight);
-		
 		// DCT transform and Huffman encoding
 		HuffmanEncoder encoder = new HuffmanEncoder(os, 4096);
 		// If we are going to use custom encoder tables, call encoder.setEncodingTables() here before
 		// calling encoder.initialize() which will skip the default encoding tables generation
 		encoder.initialize();
 		
+		encodeGrayScale(pixels, imageWidth, imageHeight, encoder);
+		
+		encoder.finish();
+	}
+	
+	private void encodeGrayScale(float[][] pixels, int imageWidth, int imageHeight, HuffmanEncoder encoder) throws Exception {
+		// Expand image if needed
+		pixels = expandArray(pixels, imageWidth, imageHeight);
+		
 		for(int i = 0; i < newHeight; i+=8) {
 			for(int j = 0; j < newWidth; j+=8) {
 			    float[][] block = getDCTBlock(pixels, i, j);
@@ -379,8 +426,6 @@ public class JPEGWriter extends ImageWriter {
 				encoder.encode(unzigzagBlock, 0);								
 			}
 		}
-		
-		encoder.finish();
 	}
 	
 	private void writeICCProfile(OutputStream os) throws Exception {
@@ -414,6 +459,18 @@ public class JPEGWriter extends ImageWriter {
 	
 	// Write actual image data
 	private void writeFullColor(int[] pixels, OutputStream os, int imageWidth, int imageHeight) throws Exception {
+		// DCT transform and Huffman encoding
+		HuffmanEncoder encoder = new HuffmanEncoder(os, 4096);
+		// If we are going to use custom encoder tables, call encoder.setEncodingTables() here before
+		// calling encoder.prepare() which will skip the default encoding tables generation
+		encoder.initialize();
+		
+		encodeFullColor(pixels, imageWidth, imageHeight, encoder);
+		
+		encoder.finish();
+	}
+	
+	private void encodeFullColor(int[] pixels, int imageWidth, int imageHeight, HuffmanEncoder encoder) throws Exception {
 		// Create arrays according to number of color components
 		float[][][] c = new float[numOfComponents][imageHeight][imageWidth];		
 		// Determine the color space to use
@@ -439,11 +496,6 @@ public class JPEGWriter extends ImageWriter {
 		// Expand image if needed
 		for(int i = 0; i < numOfComponents; i++)
 			c[i] = expandArray(c[i], imageWidth, imageHeight);
-		// DCT transform and Huffman encoding
-		HuffmanEncoder encoder = new HuffmanEncoder(os, 4096);
-		// If we are going to use custom encoder tables, call encoder.setEncodingTables() here before
-		// calling encoder.prepare() which will skip the default encoding tables generation
-		encoder.initialize();
 		
 		for(int i = 0; i < newHeight; i+=8) {
 			for(int j = 0; j < newWidth; j+=8) {
@@ -462,8 +514,6 @@ public class JPEGWriter extends ImageWriter {
 			   }		
 			}
 		}
-		
-		encoder.finish();
 	}
 	
 	private void writeJFIF(OutputStream os) throws Exception
@@ -13,6 +13,8 @@
  *
  * Who   Date       Description
  * ====  =======    =================================================
+ * AG    18Oct2026  Added writeIndexed() to write palette and indices as they are
+ * AG    18Oct2026  Reuse the Deflater of a CodecContext, no new scan line buffer for each row
  * WY    21Jun2015  Removed copyright notice from generated PNG images
  * WY    01Mar2014  Added apply_adamptive_filter method
  */
@@ -26,9 +28,12 @@ import java.util.Calendar;
 import java.util.List;
 import java.util.TimeZone;
 
+import com.icafe4j.image.CodecContext;
 import com.icafe4j.image.ImageColorType;
 import com.icafe4j.image.ImageParam;
 import com.icafe4j.image.ImageType;
+import com.icafe4j.image.IndexedPixels;
+import com.icafe4j.image.RowSource;
 import com.icafe4j.image.options.ImageOptions;
 import com.icafe4j.image.options.PNGOptions;
 import com.icafe4j.image.png.Chunk;
@@ -62,9 +67,13 @@ public class PNGWriter extends ImageWriter {
 	ImageParam imageParam;
 	// A collection of chunks representing the PNG image.
 	private List<Chunk> chunks = new ArrayList<Chunk>(10);
+	// Context of the image being written
+	private CodecContext codecContext;
 	
 	/** PNG signature constant */
     private static final long SIGNATURE = 0x89504E470D0A1A0AL;
+    // How many raw bytes to buffer before creating an IDAT chunk when writing from a RowSource
+    private static final int IDAT_BUFFER_LEN = 0x10000;
     
     public PNGWriter() {}
     
@@ -210,8 +219,8 @@ public class PNGWriter extends ImageWriter {
 		compressionLevel = 4;	
 	}
 	
-	protected void write(int[] pixels, int imageWidth, int imageHeight, OutputStream os) throws Exception 
-    {	
+	// Write signature and set up the writer parameters
+	private void prepare(OutputStream os) throws Exception {
 		IOUtils.writeLongMM(os, SIGNATURE);
 		
 		reset(); // Reset writer in case we are going to write multiple images
@@ -228,19 +237,58 @@ public class PNGWriter extends ImageWriter {
 			filterType = pngOptions.getFilterType();
 			compressionLevel = pngOptions.getCompressionLevel();
 		}
+	}
+	
+	/**
+	 * Write the image band by band from the RowSource. Gray-scale and true color
+	 * images only keep a band of rows in memory. Indexed images still need the
+	 * whole image to build the palette.
+	 */
+	@Override
+	public void write(RowSource source, OutputStream os) throws Exception {
+		if(getImageParam().getColorType() == ImageColorType.INDEXED) {
+			super.write(source, os);
+			return;
+		}
+		
+		prepare(os);
+		
+		codecContext = openContext();
+		try {
+			if(imageParam.getColorType() == ImageColorType.GRAY_SCALE)
+				writeGrayScale(source, imageParam.hasAlpha(), os);
+			else
+				writeRGB(source, os);
+		} finally {
+			closeContext(codecContext);
+			codecContext = null;
+		}
+		
+		new IENDBuilder().build().write(os);
+	}
+	
+	protected void write(int[] pixels, int imageWidth, int imageHeight, OutputStream os) throws Exception 
+    {	
+		prepare(os);
 		
 		boolean noAlpha = !imageParam.hasAlpha();
-		// Determine type of image to write
-		if(imageParam.getColorType() == ImageColorType.INDEXED) {
-			writeIndexed(pixels, imageWidth, imageHeight, os);
-		} else if(imageParam.getColorType() == ImageColorType.GRAY_SCALE) {
-			if(noAlpha) {
-				writeGrayScale(IMGUtils.rgb2grayscale(pixels), imageWidth, imageHeight, false, os);
-			} else
-				writeGrayScale(IMGUtils.rgb2grayscaleA(pixels), imageWidth, imageHeight, true, os);
-		} else {
-			writeRGB(pixels, imageWidth, imageHeight, os);
-		}		
+		codecContext = openContext();
+		try {
+			// Determine type of image to write
+			if(imageParam.getColorType() == ImageColorType.INDEXED) {
+				writeIndexed(pixels, imageWidth, imageHeight, os);
+			} else if(imageParam.getColorType() == ImageColorType.GRAY_SCALE) {
+				if(noAlpha) {
+					writeGrayScale(IMGUtils.rgb2grayscale(pixels), imageWidth, imageHeight, false, os);
+				} else
+					writeGrayScale(IMGUtils.rgb2grayscaleA(pixels), imageWidth, imageHeight, true, os);
+			} else {
+				writeRGB(pixels, imageWidth, imageHeight, os);
+			}
+		} finally {
+			closeContext(codecContext);
+			codecContext = null;
+		}
 		/*
 		 * We could have put all the chunks including IDAT and IEND into the chunks list and serialize them in the
 		 * end. But this is memory consuming. To save memory, we don't put IDAT chunks into chunks list but write 
@@ -249,6 +297,55 @@ public class PNGWriter extends ImageWriter {
 		new IENDBuilder().build().write(os);
     }
 	
+	/**
+	 * Write an indexed PNG with the palette and indices as they are, keeping the
+	 * alpha of every palette entry. Gray-scale images without alpha are written
+	 * from the gray levels of the palette.
+	 */
+	@Override
+	public void writeIndexed(IndexedPixels pixels, OutputStream os) throws Exception {
+		ImageParam param = getImageParam();
+		boolean grayScale = (param.getColorType() == ImageColorType.GRAY_SCALE);
+		
+		if(grayScale && param.hasAlpha()) {
+			super.writeIndexed(pixels, os);
+			return;
+		}
+		
+		prepare(os);
+		
+		int imageWidth = pixels.getWidth();
+		int imageHeight = pixels.getHeight();
+		codecContext = openContext();
+		try {
+			if(grayScale) {
+				writeGrayScale(toGrayScale(pixels), imageWidth, imageHeight, false, os);
+			} else {
+				int bitsPerPixel = pixels.getBitsPerPixel();
+				int[] colorPalette = getPalette(pixels);
+				byte[] alpha = null;
+				for(int i = 0; i < (1<<bitsPerPixel); i++) {
+					if((colorPalette[i]>>>24) != 0xff) {
+						alpha = new byte[1<<bitsPerPixel];
+						for(int j = 0; j < alpha.length; j++)
+							alpha[j] = (byte)(colorPalette[j]>>>24);
+						break;
+					}
+				}
+				byte[] bytePixels = pixels.getIndices();
+				// Filters work in place, leave the caller's indices alone
+				if(bitsPerPixel == 8 && (isApplyAdaptiveFilter || filterType != Filter.NONE))
+					bytePixels = bytePixels.clone();
+				writeIndexed(bytePixels, colorPalette, alpha, bitsPerPixel, imageWidth, imageHeight, os);
+			}
+		} finally {
+			closeContext(codecContext);
+			codecContext = null;
+		}
+		
+		new IENDBuilder().build().write(os);
+	}
+	
 	private void writeGrayScale(byte[] pixels, int imageWidth, int imageHeight, boolean hasAlpha, OutputStream os) throws Exception {
 		// The rule of thumb is don't use any filter for gray-scale image but in some cases, PEATH or adaptive filter does much better
 		// Add IHDR chunk
@@ -317,14 +414,13 @@ public class PNGWriter extends ImageWriter {
 		
 		byte[] buffer = new byte[bytesPerScanLine + 1];
 		
-		IDATBuilder builder = new IDATBuilder(compressionLevel);
+		IDATBuilder builder = new IDATBuilder(codecContext.getDeflater(compressionLevel));
 		
 		// How many bytes to buffer before creating an IDAT chunk
 		int bufferLen = bytesPerPixel * imageWidth * imageHeight / 5; // We are expecting 5 IDAT chunks
 		int counter = 0;
 		
 		for (int i = 0, j = 0; i < imageHeight; i++, j += bytesPerScanLine) {
-			buffer = new byte[bytesPerScanLine + 1];
 			buffer[0] = (byte)filter_type[i];
 			System.arraycopy(pixels, j, buffer, 1, bytesPerScanLine);
 			builder.data(buffer);
@@ -351,10 +447,7 @@ public class PNGWriter extends ImageWriter {
 	
 	private void writeIndexed(int[] pixels, int imageWidth, int imageHeight, OutputStream os) throws Exception {
 		ImageParam param = getImageParam();
-		// The rule of thumb is never apply any filter to index color image
-		int[] filter_type = new int[imageHeight];
-		int bytesPerScanLine = imageWidth * 1;
-		byte[] bytePixels = new byte[imageHeight * bytesPerScanLine];
+		byte[] bytePixels = new byte[imageHeight * imageWidth];
 
 		int[] colorPalette = new int[256];
 		int[] colorInfo = IMGUtils.checkColorDepth(pixels, bytePixels, colorPalette);
@@ -383,7 +476,22 @@ public class PNGWriter extends ImageWriter {
 			default:
 		}
 		
-		bytesPerScanLine = getBytesPerScanLine(bitsPerPixel, imageWidth, false);
+		byte[] alpha = null;
+		
+		if (colorInfo[1] >= 0) { // There is a transparent color
+			alpha = new byte[1<<bitsPerPixel];
+			Arrays.fill(alpha, (byte)255);
+			alpha[colorInfo[1]] = (byte)0;
+		}
+		
+		writeIndexed(bytePixels, colorPalette, alpha, bitsPerPixel, imageWidth, imageHeight, os);
+	}
+	
+	// Write IHDR, PLTE, tRNS if alpha is not null and IDAT for the unpacked indices
+	private void writeIndexed(byte[] bytePixels, int[] colorPalette, byte[] alpha, int bitsPerPixel, int imageWidth, int imageHeight, OutputStream os) throws Exception {
+		// The rule of thumb is never apply any filter to index color image
+		int[] filter_type = new int[imageHeight];
+		int bytesPerScanLine = getBytesPerScanLine(bitsPerPixel, imageWidth, false);
 
 		// Add IHDR chunk
 		chunks.add(new IHDRBuilder().width(imageWidth).height(imageHeight).bitDepth(bitsPerPixel)
@@ -406,15 +514,12 @@ public class PNGWriter extends ImageWriter {
 		
 		chunks.add(pBuilder.build());
 		
-		if (colorInfo[1] >= 0) { // There is a transparent color
+		if (alpha != null) { // There is a transparent color
 			/* For color type 3,the tRNS chunk must not contain more
 			 * alpha values than there are palette entries, but tRNS
 			 * can contain fewer values than there are palette entries.
 			 */
 			TRNSBuilder tBuilder = new TRNSBuilder(3);			
-			byte[] alpha = new byte[numOfColors];
-			Arrays.fill(alpha, (byte)255);
-			alpha[colorInfo[1]] = (byte)0;
 			
 			chunks.add(tBuilder.alpha(alpha).build());
 		}
@@ -433,7 +538,7 @@ public class PNGWriter extends ImageWriter {
 		
 		byte[] buffer = new byte[bytesPerScanLine + 1];
 		
-		IDATBuilder builder = new IDATBuilder(compressionLevel);
+		IDATBuilder builder = new IDATBuilder(codecContext.getDeflater(compressionLevel));
 		
 		// How many bytes to buffer before creating an IDAT chunk
 		int bufferLen = imageWidth * imageHeight / 5; // We are expecting 5 IDAT chunks
@@ -444,7 +549,6 @@ public class PNGWriter extends ImageWriter {
 			bytePixels = ArrayUtils.packByteArray(bytePixels, imageWidth, 0, bitsPerPixel, imageWidth*imageHeight);
 		
 		for (int i = 0, j = 0; i < imageHeight; i++, j += bytesPerScanLine) {
-			buffer = new byte[bytesPerScanLine + 1];
 			buffer[0] = (byte)filter_type[i];
 			System.arraycopy(bytePixels, j, buffer, 1, bytesPerScanLine);
 			builder.data(buffer);
@@ -528,14 +632,13 @@ public class PNGWriter extends ImageWriter {
 		byte[] buffer = new byte[bytesPerScanLine + 1];
 		
 		// Now build the data
-		IDATBuilder builder = new IDATBuilder(compressionLevel);
+		IDATBuilder builder = new IDATBuilder(codecContext.getDeflater(compressionLevel));
 		
 		// How many bytes to buffer before creating an IDAT chunk
 		int bufferLen = bytesPerPixel * imageWidth * imageHeight / 5; // We are expecting 5 IDAT chunks
 		int counter = 0;
 		
 		for (int i = 0, j = 0; i < imageHeight; i++, j += bytesPerScanLine) {
-			buffer = new byte[bytesPerScanLine + 1];
 			buffer[0] = (byte)filter_type[i];
 			System.arraycopy(bytePixels, j, buffer, 1, bytesPerScanLine);
 			builder.data(buffer);
@@ -560,4 +663,198 @@ public class PNGWriter extends ImageWriter {
 			chunk.write(os);
 		// End of IDAT builder
 	}
+	
+	private void writeGrayScale(RowSource source, boolean hasAlpha, OutputStream os) throws Exception {
+		int imageWidth = source.getWidth();
+		int imageHeight = source.getHeight();
+		int rowsPerBand = Math.max(1, BAND_SIZE/imageWidth);
+		int[] band = new int[rowsPerBand*imageWidth];
+		
+		IHDRBuilder hdrBuilder = new IHDRBuilder().width(imageWidth).height(imageHeight).compressionMethod(0).
+				filterMethod(0).interlaceMethod(0);
+		
+		if(hasAlpha) hdrBuilder.colorType(ColorType.GRAY_SCALE_WITH_ALPHA);
+		else hdrBuilder.colorType(ColorType.GRAY_SCALE);
+		
+		int bitsPerPixel = 8;
+		
+		if(!hasAlpha) {
+			// First pass to figure out the actual bits needed to represent this gray-scale image
+			boolean[] used = new boolean[256];
+			int numOfColor = 0;
+			for(int i = 0; i < imageHeight && numOfColor < 256; i += rowsPerBand) {
+				int rows = Math.min(rowsPerBand, imageHeight - i);
+				getRows(source, i, rows, band, 0);
+				for(int j = rows*imageWidth - 1; j >= 0; j--) {
+					int gray = toGray(band[j]);
+					if(!used[gray]) {
+						used[gray] = true;
+						numOfColor++;
+					}
+				}
+			}
+			bitsPerPixel = 1;
+			while((1<<bitsPerPixel) < numOfColor) bitsPerPixel++;
+			switch(bitsPerPixel) {
+				case 3:
+					bitsPerPixel = 4;
+					break;
+				case 5:
+				case 6:
+				case 7:
+					bitsPerPixel = 8;
+					break;
+				default:
+			}
+		}
+		
+		chunks.add(hdrBuilder.bitDepth(bitsPerPixel).build());
+		
+		if(!hasAlpha && imageParam.isTransparent()) {
+			TRNSBuilder tBuilder = new TRNSBuilder(0);
+			int transparentColor = imageParam.getTransparentColor();		
+			byte trans_color = (byte)(((transparentColor>>16)&0xff)*0.2126 + ((transparentColor>>8)&0xff)*0.7152 + (transparentColor&0xff)*0.0722);
+			byte[] alpha = new byte[] {0, (byte)((trans_color<<bitsPerPixel)>>8)};
+			
+			chunks.add(tBuilder.alpha(alpha).build());
+		}
+		
+		PNGTweaker.serializeChunks(chunks, os);
+		
+		writeIDAT(source, hasAlpha?ColorType.GRAY_SCALE_WITH_ALPHA:ColorType.GRAY_SCALE, bitsPerPixel, os);
+	}
+	
+	// Filter, compress and write the image data band by band
+	private void writeIDAT(RowSource source, ColorType colorType, int bitsPerPixel, OutputStream os) throws Exception {
+		int imageWidth = source.getWidth();
+		int imageHeight = source.getHeight();
+		int rowsPerBand = Math.max(1, BAND_SIZE/imageWidth);
+		int[] band = new int[rowsPerBand*imageWidth];
+		
+		int bytesPerPixel = 1;
+		
+		switch(colorType) {
+			case TRUE_COLOR:
+				bytesPerPixel = 3;
+				break;
+			case TRUE_COLOR_WITH_ALPHA:
+				bytesPerPixel = 4;
+				break;
+			case GRAY_SCALE_WITH_ALPHA:
+				bytesPerPixel = 2;
+				break;
+			default:
+		}
+		
+		int bytesPerScanLine = (bitsPerPixel == 8)?imageWidth*bytesPerPixel:getBytesPerScanLine(bitsPerPixel, imageWidth, false);
+		boolean applyFilter = (bitsPerPixel == 8) && (isApplyAdaptiveFilter || filterType != Filter.NONE);
+		// Previous unfiltered row followed by the current row, the filters look back at the previous row
+		byte[] rows = new byte[bytesPerScanLine<<1];
+		byte[] rawRow = new byte[bytesPerScanLine];
+		byte[] grayRow = (bitsPerPixel == 8)?null:new byte[imageWidth];
+		int[] filter_type = new int[] {applyFilter?filterType:Filter.NONE};
+		
+		IDATBuilder builder = new IDATBuilder(codecContext.getDeflater(compressionLevel));
+		byte[] buffer = new byte[bytesPerScanLine + 1];
+		int counter = 0;
+		
+		for(int i = 0; i < imageHeight; i += rowsPerBand) {
+			int numOfRows = Math.min(rowsPerBand, imageHeight - i);
+			getRows(source, i, numOfRows, band, 0);
+			for(int j = 0, index = 0; j < numOfRows; j++) {
+				if(grayRow != null) {
+					for(int k = 0; k < imageWidth; k++)
+						grayRow[k] = (byte)((((byte)toGray(band[index++]))<<bitsPerPixel)>>8);
+					byte[] packed = ArrayUtils.packByteArray(grayRow, 0, bitsPerPixel, imageWidth);
+					System.arraycopy(packed, 0, rawRow, 0, bytesPerScanLine);
+				} else {
+					for(int k = 0, l = 0; k < imageWidth; k++, index++) {
+						int pixel = band[index];
+						switch(colorType) {
+							case GRAY_SCALE:
+								rawRow[l++] = (byte)toGray(pixel);
+								break;
+							case GRAY_SCALE_WITH_ALPHA:
+								rawRow[l++] = (byte)toGray(pixel);
+								rawRow[l++] = (byte)(pixel>>24);
+								break;
+							case TRUE_COLOR_WITH_ALPHA:
+								rawRow[l++] = (byte)(pixel>>16);
+								rawRow[l++] = (byte)(pixel>>8);
+								rawRow[l++] = (byte)pixel;
+								rawRow[l++] = (byte)(pixel>>24);
+								break;
+							default:
+								rawRow[l++] = (byte)(pixel>>16);
+								rawRow[l++] = (byte)(pixel>>8);
+								rawRow[l++] = (byte)pixel;
+						}
+					}
+				}
+				System.arraycopy(rawRow, 0, rows, bytesPerScanLine, bytesPerScanLine);
+				if(applyFilter) {
+					if(isApplyAdaptiveFilter)
+						apply_adaptive_filter(filter_type, rows, 1, bytesPerPixel, bytesPerScanLine);
+					else
+						apply_filter(filter_type, rows, 1, bytesPerPixel, bytesPerScanLine);
+				}
+				buffer[0] = (byte)filter_type[0];
+				System.arraycopy(rows, bytesPerScanLine, buffer, 1, bytesPerScanLine);
+				builder.data(buffer);
+				// Keep the unfiltered row for the next one
+				System.arraycopy(rawRow, 0, rows, 0, bytesPerScanLine);
+				
+				counter += bytesPerScanLine;
+				
+				if(counter > IDAT_BUFFER_LEN) {
+					Chunk chunk = builder.build();
+					if(chunk.getData().length > 0) {
+						chunk.write(os);
+					}
+					counter = 0;
+				}
+			}
+		}
+		
+		// This should be called for the last chunk to make sure we get all the input data compressed
+		builder.setFinish(true);
+		
+		Chunk chunk = builder.build();
+		
+		if(chunk.getData().length > 0) 
+			chunk.write(os);
+	}
+	
+	private void writeRGB(RowSource source, OutputStream os) throws Exception {
+		boolean noAlpha = !imageParam.hasAlpha();
+		// Add IHDR chunk
+		IHDRBuilder hdrBuilder = new IHDRBuilder().width(source.getWidth()).height(source.getHeight()).bitDepth(8).
+				compressionMethod(0).filterMethod(0).interlaceMethod(0);
+		
+		if(noAlpha) hdrBuilder.colorType(ColorType.TRUE_COLOR);
+		else hdrBuilder.colorType(ColorType.TRUE_COLOR_WITH_ALPHA);
+				
+		chunks.add(hdrBuilder.build());
+		
+		if(filterType == Filter.NONE) filterType = Filter.PAETH;
+		
+		if(noAlpha && imageParam.isTransparent()) {
+			// Add Transparent chunk
+			TRNSBuilder tBuilder = new TRNSBuilder(2);
+			int transparentColor = imageParam.getTransparentColor();		
+			
+			byte[] alpha = new byte[] {0, (byte)(transparentColor>>>16), 0, (byte)(transparentColor>>>8), 0, (byte)(transparentColor>>>0)};
+			
+			chunks.add(tBuilder.alpha(alpha).build());
+		}
+		
+		PNGTweaker.serializeChunks(chunks, os);
+		
+		writeIDAT(source, noAlpha?ColorType.TRUE_COLOR:ColorType.TRUE_COLOR_WITH_ALPHA, 8, os);
+	}
+	
+	// Same conversion as IMGUtils.rgb2grayscale()
+	private static int toGray(int rgb) {
+		return ((byte)(((rgb>>16)&0xff)*0.2126 + ((rgb>>8)&0xff)*0.7152 + (rgb&0xff)*0.0722))&0xff;
+	}
 }
\ No newline at end of file
@@ -13,6 +13,8 @@
  *
  * Who   Date       Description
  * ====  =======    =================================================
+ * AG    18Oct2026  Added writeIndexed() to write palette and indices as they are
+ * AG    18Oct2026  Reuse the Deflater of a CodecContext
  * WY    11Dec2016  Added byte order support to TiffOptions
  * WY    16Jun2016  Added code to set resolution
  * WY    05Dec2015  Changed writePage() signature
@@ -43,9 +45,13 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.icafe4j.image.BufferedImageRowSource;
+import com.icafe4j.image.CodecContext;
 import com.icafe4j.image.ImageColorType;
 import com.icafe4j.image.ImageParam;
 import com.icafe4j.image.ImageType;
+import com.icafe4j.image.IndexedPixels;
+import com.icafe4j.image.RowSource;
 import com.icafe4j.image.compression.ImageEncoder;
 import com.icafe4j.image.compression.ccitt.G31DEncoder;
 import com.icafe4j.image.compression.ccitt.G32DEncoder;
@@ -73,6 +79,7 @@ import com.icafe4j.io.IOUtils;
 import com.icafe4j.io.RandomAccessOutputStream;
 import com.icafe4j.io.WriteStrategyII;
 import com.icafe4j.io.WriteStrategyMM;
+import com.icafe4j.jfr.CodecTrace;
 import com.icafe4j.util.ArrayUtils;
 import com.icafe4j.util.CollectionUtils;
 import com.icafe4j.util.Updatable;
@@ -96,10 +103,17 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 	private List<Integer> stripOffsets = new ArrayList<Integer>();	
 	private List<Integer> stripByteCounts = new ArrayList<Integer>();	
 	private RandomAccessOutputStream randomOS;
+	// Context of the page being written
+	private CodecContext codecContext;
 	
 	// Obtain a logger instance
 	private static final Logger LOGGER = LoggerFactory.getLogger(TIFFWriter.class);
 	
+	// Uncompressed strip size in bytes when writing from a RowSource
+	private static final int STRIP_SIZE = 0x2000;
+	// Number of pixels in a JPEG compressed strip when writing from a RowSource
+	private static final int JPEG_STRIP_SIZE = 0x40000;
+	
 	public TIFFWriter() {}
 	
 	public TIFFWriter(ImageParam param) {
@@ -132,6 +146,45 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 		return input;
 	}
 	
+	// Add the fields common to all the pages after the image data has been written
+	private void addPageFields() {
+		// We have done with the strips, now add a new STRIP_OFFSETS field.
+		TiffField<?> tiffField = new LongField(TiffTag.STRIP_OFFSETS.getValue(), CollectionUtils.integerListToIntArray(stripOffsets));
+		ifd.addField(tiffField);
+		// and a new STRIP_BYTE_COUNTS field as well
+		tiffField = new LongField(TiffTag.STRIP_BYTE_COUNTS.getValue(), CollectionUtils.integerListToIntArray(stripByteCounts));
+		ifd.addField(tiffField);
+		// Add software field
+		String softWare = "ICAFE - https://github.com/dragon66/icafe\0";
+		tiffField = new ASCIIField(TiffTag.SOFTWARE.getValue(), softWare);
+		ifd.addField(tiffField);
+		DateFormat formatter = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss z");
+		tiffField = new ASCIIField(TiffTag.DATETIME.getValue(), formatter.format(new Date()) + '\0');
+		ifd.addField(tiffField);
+		int xResolution = 72;
+		int yResolution = 72;
+		int resolutionUnit = ResolutionUnit.RESUNIT_INCH.getValue();
+		if(tiffOptions != null) {
+			xResolution = tiffOptions.getXResolution();
+			yResolution = tiffOptions.getYResolution();
+			resolutionUnit = tiffOptions.getResolutionUnit().getValue();
+		}
+		ifd.addField(new RationalField(TiffTag.X_RESOLUTION.getValue(), new int[]{xResolution, 1}));
+		ifd.addField(new RationalField(TiffTag.Y_RESOLUTION.getValue(), new int[]{yResolution, 1}));
+		ifd.addField(new ShortField(TiffTag.RESOLUTION_UNIT.getValue(), new short[]{(short)resolutionUnit}));
+	}
+	
+	// Whether or not we can write the image strip by strip from a RowSource
+	private static boolean canStream(ImageParam param) {
+		ImageColorType colorType = param.getColorType();
+		if(colorType == ImageColorType.INDEXED || colorType == ImageColorType.BILEVEL)
+			return false;
+		ImageOptions options = param.getImageOptions();
+		Compression compression = (options instanceof TIFFOptions)?((TIFFOptions)options).getTiffCompression():Compression.PACKBITS;
+		// Gray-scale image needs the whole image to determine bit depth unless JPEG compressed
+		return colorType != ImageColorType.GRAY_SCALE || compression == Compression.JPG;
+	}
+	
 	private void ccittCompress(byte[] input, int imageWidth, int imageHeight, ImageEncoder encoder) throws Exception {
 		encoder.initialize();
 		encoder.encode(input, 0, imageWidth*imageHeight);
@@ -160,7 +213,7 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 				if(tiffOptions != null) {
 					compressionLevel = tiffOptions.getDeflateCompressionLevel();
 				}		
-				ImageEncoder deflateEncoder = new DeflateEncoder(randomOS, bufferSize, compressionLevel, this);
+				ImageEncoder deflateEncoder = new DeflateEncoder(randomOS, bufferSize, codecContext.getDeflater(compressionLevel), this);
 				deflateEncoder.initialize();
 				deflateEncoder.encode(samples, 0, samples.length);
 				// This will call update
@@ -174,7 +227,9 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 				int offset = 0;
 				byte[] buffer = new byte[imageWidth + (imageWidth + 127)/128];
 				for(int i = 0; i < imageHeight; i++) {
+					long start = CodecTrace.start();
 					int tempBytes = Packbits.packbits(ArrayUtils.subArray(samples, offset, imageWidth), buffer);
+					CodecTrace.stop(CodecTrace.Stage.COMPRESS, start);
 					offset += imageWidth;			
 					randomOS.write(buffer, 0, tempBytes);
 					update(tempBytes);
@@ -196,7 +251,7 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 	
 	private void deflateCompress(int compressionLevel, byte[] inflated, int bitsPerPixel, int imageWidth, int imageHeight, byte[] buffer) throws Exception {
 		// Starts first strip
-		DeflateEncoder deflateEncoder = new DeflateEncoder(randomOS, buffer.length, compressionLevel, this);
+		DeflateEncoder deflateEncoder = new DeflateEncoder(randomOS, buffer.length, codecContext.getDeflater(compressionLevel), this);
 		
 		deflateEncoder.initialize();
 		
@@ -247,7 +302,17 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 		
 	private void jpegCompress(int[] pixels, int imageWidth, int imageHeight, boolean grayscale) throws Exception {
 		// This will make the compression more flexible by allowing different ROWS_PER_STRIP for different compression methods
-		int rowsPerStrip = imageHeight/2 + 1; // Two strips
+		jpegCompress(new ArrayRowSource(pixels, imageWidth, imageHeight), imageHeight/2 + 1, grayscale); // Two strips
+	}
+	
+	private void jpegCompress(RowSource source, boolean grayscale) throws Exception {
+		// Each strip is a self-contained JPEG stream, keep the strip height a multiple of the MCU height
+		int rowsPerStrip = Math.max(8, (JPEG_STRIP_SIZE/source.getWidth())&~7);
+		jpegCompress(source, Math.min(rowsPerStrip, source.getHeight()), grayscale);
+	}
+	
+	private void jpegCompress(RowSource source, int rowsPerStrip, boolean grayscale) throws Exception {
+		int imageHeight = source.getHeight();
 		int jpegQuality = 90;
 		boolean writeICCProfile = false;
 		PhotoMetric photoMetric = PhotoMetric.YCbCr;
@@ -309,21 +374,13 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 		
 		// This is amazing. We can actually keep track of how many bytes have been
 		// written to the underlying stream by JPEGWriter
-		long startOffset = randomOS.getStreamPointer();
-		jpgWriter.write(Arrays.copyOfRange(pixels, 0, imageWidth*(imageHeight/2 + 1)), imageWidth, imageHeight/2 + 1, randomOS);
-		long finishOffset = randomOS.getStreamPointer();
-		
-		int totalOut = (int)(finishOffset - startOffset);
-		// Update STRIP_OFFSETS and STRIP_BYTE_COUNTS
-		update(totalOut);
-		
-		// Another strip
-		startOffset = finishOffset;
-		jpgWriter.write(Arrays.copyOfRange(pixels, imageWidth*(imageHeight/2 + 1), pixels.length), imageWidth, imageHeight - imageHeight/2 - 1, randomOS);
-		finishOffset = randomOS.getStreamPointer();
-		totalOut = (int)(finishOffset - startOffset);
-		// Update STRIP_OFFSETS and STRIP_BYTE_COUNTS
-		update(totalOut);		
+		for(int i = 0; i < imageHeight; i += rowsPerStrip) {
+			long startOffset = randomOS.getStreamPointer();
+			jpgWriter.write(new StripRowSource(source, i, Math.min(rowsPerStrip, imageHeight - i)), randomOS);
+			long finishOffset = randomOS.getStreamPointer();
+			// Update STRIP_OFFSETS and STRIP_BYTE_COUNTS
+			update((int)(finishOffset - startOffset));
+		}
 		
 		if(photoMetric == PhotoMetric.SEPARATED && writeICCProfile) {
 			// Add ICC_Profile field
@@ -384,7 +441,9 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 		
 		for(int i = 0; i < imageHeight; i++) {			
 			byte[] temp = ArrayUtils.packByteArray(input, imageWidth, offset, bitsPerPixel, imageWidth);
+			long start = CodecTrace.start();
 			int tempBytes = Packbits.packbits(temp, buffer);
+			CodecTrace.stop(CodecTrace.Stage.COMPRESS, start);
 			offset += imageWidth;		
 		
 			randomOS.write(buffer, 0, tempBytes);
@@ -426,6 +485,29 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 	@Override
 	protected void write(int[] pixels, int imageWidth, int imageHeight,
 			OutputStream os) throws Exception {
+		writeImage(pixels, null, null, imageWidth, imageHeight, os);
+	}
+	
+	/**
+	 * Write a self-contained single page TIFF image from the RowSource.
+	 * <p>
+	 * True color images and JPEG compressed images are written strip by strip
+	 * with only one strip of rows in memory. Indexed, bi-level and other gray-scale
+	 * images need the whole image to figure out the palette or bit depth.
+	 */
+	@Override
+	public void write(RowSource source, OutputStream os) throws Exception {
+		if(!canStream(getImageParam())) {
+			super.write(source, os);
+			return;
+		}
+		
+		writeImage(null, source, null, source.getWidth(), source.getHeight(), os);
+	}
+	
+	// Only one of pixels, source and indexed is not null
+	private void writeImage(int[] pixels, RowSource source, IndexedPixels indexed, int imageWidth, int imageHeight,
+			OutputStream os) throws Exception {
 		// Set image parameters
 		ImageParam param = getImageParam();
 		ImageOptions options = param.getImageOptions();
@@ -435,7 +517,16 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 		}
 		// Wrap OutputStream with a RandomAccessOutputStream	
 		randomOS = new FileCacheRandomAccessOutputStream(os);
-		
+		try {
+			writeSinglePage(param, pixels, source, indexed, imageWidth, imageHeight);
+		} catch(Exception e) {
+			// Drop the cache file, nothing has been written to the actual stream yet
+			randomOS.shallowClose();
+			throw e;
+		}
+	}
+	
+	private void writeSinglePage(ImageParam param, int[] pixels, RowSource source, IndexedPixels indexed, int imageWidth, int imageHeight) throws Exception {
 		ByteOrder byteOrder = ByteOrder.BIG_ENDIAN;
 		
 		if(tiffOptions != null) {
@@ -465,33 +556,20 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 		
 		randomOS.seek(stripOffset);
 		// Write image data
-		writePageData(param, pixels, imageWidth, imageHeight);		
-		
-		// We have done with the strips, now add a new STRIP_OFFSETS field.
-		tiffField = new LongField(TiffTag.STRIP_OFFSETS.getValue(), CollectionUtils.integerListToIntArray(stripOffsets));
-		ifd.addField(tiffField);
-		// and a new STRIP_BYTE_COUNTS field as well
-		tiffField = new LongField(TiffTag.STRIP_BYTE_COUNTS.getValue(), CollectionUtils.integerListToIntArray(stripByteCounts));
-		ifd.addField(tiffField);
-		// Add software field
-		String softWare = "ICAFE - https://github.com/dragon66/icafe\0";
-		tiffField = new ASCIIField(TiffTag.SOFTWARE.getValue(), softWare);
-		ifd.addField(tiffField);
-		DateFormat formatter = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss z");
-		tiffField = new ASCIIField(TiffTag.DATETIME.getValue(), formatter.format(new Date()) + '\0');
-		ifd.addField(tiffField);
-	
-		int xResolution = 72;
-		int yResolution = 72;
-		int resolutionUnit = ResolutionUnit.RESUNIT_INCH.getValue();
-		if(tiffOptions != null) {
-			xResolution = tiffOptions.getXResolution();
-			yResolution = tiffOptions.getYResolution();
-			resolutionUnit = tiffOptions.getResolutionUnit().getValue();
+		codecContext = openContext();
+		try {
+			if(indexed != null)
+				writePageData(param, indexed);
+			else if(source != null)
+				writePageData(param, source);
+			else
+				writePageData(param, pixels, imageWidth, imageHeight);
+		} finally {
+			closeContext(codecContext);
+			codecContext = null;
 		}
-		ifd.addField(new RationalField(TiffTag.X_RESOLUTION.getValue(), new int[]{xResolution, 1}));
-		ifd.addField(new RationalField(TiffTag.Y_RESOLUTION.getValue(), new int[]{yResolution, 1}));
-		ifd.addField(new ShortField(TiffTag.RESOLUTION_UNIT.getValue(), new short[]{(short)resolutionUnit}));		
+		
+		addPageFields();
 				
 		randomOS.seek(OFFSET_TO_WRITE_FIRST_IFD_OFFSET);
 		// Write IFD offset
@@ -676,6 +754,40 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 		}
 	}
 	
+	private void writePageData(ImageParam param, RowSource source) throws Exception {
+		Compression compression = Compression.PACKBITS;
+		
+		if(tiffOptions != null) {
+			compression = tiffOptions.getTiffCompression();
+		}
+		
+		if(compression == Compression.JPG) {
+			if(param.hasAlpha())
+				LOGGER.warn("#Warning: JPEG compression does not support transparency (all transparency information will be lost!)");
+			jpegCompress(source, param.getColorType() == ImageColorType.GRAY_SCALE);
+		} else {
+			writeTrueColor(source, compression);
+		}
+	}
+	
+	private void writePageData(ImageParam param, IndexedPixels pixels) throws Exception {
+		Compression compression = Compression.PACKBITS;
+		
+		if(tiffOptions != null) {
+			compression = tiffOptions.getTiffCompression();
+		}
+		
+		if(param.getColorType() == ImageColorType.GRAY_SCALE) {
+			writeGrayScale(toGrayScale(pixels), pixels.getWidth(), pixels.getHeight(), compression, false);
+		} else {
+			byte[] newPixels = pixels.getIndices();
+			// Black and white images may be inverted in place, leave the caller's indices alone
+			if(pixels.getBitsPerPixel() == 1)
+				newPixels = newPixels.clone();
+			writeIndexed(newPixels, getPalette(pixels), pixels.getBitsPerPixel(), pixels.getWidth(), pixels.getHeight(), compression);
+		}
+	}
+	
 	private void writeIndexed(int[] pixels, int imageWidth, int imageHeight, Compression compression) throws Exception {		
 		// Create data for the strip
 		byte[] newPixels = new byte[imageWidth*imageHeight];
@@ -706,6 +818,11 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 			default:
 		}
 		
+		writeIndexed(newPixels, colorPalette, bitsPerPixel, imageWidth, imageHeight, compression);
+	}
+	
+	// Write the color map and the strips for the unpacked indices
+	private void writeIndexed(byte[] newPixels, int[] colorPalette, int bitsPerPixel, int imageWidth, int imageHeight, Compression compression) throws Exception {
 		// See if we are dealing with BW image
 		if(bitsPerPixel == 1) {
 			
@@ -764,6 +881,27 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 		ifd.addField(tiffField);		
 	}
 	
+	/**
+	 * Write a self-contained single page palette color TIFF with the palette and
+	 * indices as they are. Gray-scale images without alpha are written from the
+	 * gray levels of the palette. JPEG compression takes the ARGB path.
+	 */
+	@Override
+	public void writeIndexed(IndexedPixels pixels, OutputStream os) throws Exception {
+		ImageParam param = getImageParam();
+		ImageOptions options = param.getImageOptions();
+		Compression compression = (options instanceof TIFFOptions)?((TIFFOptions)options).getTiffCompression():Compression.PACKBITS;
+		ImageColorType colorType = param.getColorType();
+		
+		if(compression == Compression.JPG || colorType == ImageColorType.BILEVEL
+				|| (colorType == ImageColorType.GRAY_SCALE && param.hasAlpha())) {
+			super.writeIndexed(pixels, os);
+			return;
+		}
+		
+		writeImage(null, null, pixels, pixels.getWidth(), pixels.getHeight(), os);
+	}
+	
 	/**
 	 * Write a single page to TIFF stream.
 	 * <p>
@@ -779,10 +917,18 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 	 */
 	public int writePage(BufferedImage frame, int pageNumber, int maxNumber,
 			RandomAccessOutputStream randomOutStream, int offset) throws Exception {
-		// Grab image pixels in ARGB format
-		int imageWidth = frame.getWidth();
-		int imageHeight = frame.getHeight();
-		int[] pixels = IMGUtils.getRGB(frame);//image.getRGB(0, 0, imageWidth, imageHeight, null, 0, imageWidth);
+		return writePage(new BufferedImageRowSource(frame), pageNumber, maxNumber, randomOutStream, offset);
+	}
+	
+	/**
+	 * Write a single page from the RowSource to TIFF stream.
+	 * 
+	 * @see #writePage(BufferedImage, int, int, RandomAccessOutputStream, int)
+	 */
+	public int writePage(RowSource source, int pageNumber, int maxNumber,
+			RandomAccessOutputStream randomOutStream, int offset) throws Exception {
+		int imageWidth = source.getWidth();
+		int imageHeight = source.getHeight();
 		// One page of a multiple page TIFF
 		ifd = new IFD();
 		TiffField<?> tiffField = new LongField(TiffTag.NEW_SUBFILE_TYPE.getValue(), new int[]{2});
@@ -808,32 +954,21 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 		}
 		//
 		// Write image data
-		writePageData(param, pixels, imageWidth, imageHeight);
-		 
-		// We have done with the strips, now add a new STRIP_OFFSETS field.
-		tiffField = new LongField(TiffTag.STRIP_OFFSETS.getValue(), CollectionUtils.integerListToIntArray(stripOffsets));
-		ifd.addField(tiffField);
-		// and a new STRIP_BYTE_COUNTS field as well
-		tiffField = new LongField(TiffTag.STRIP_BYTE_COUNTS.getValue(), CollectionUtils.integerListToIntArray(stripByteCounts));
-		ifd.addField(tiffField);
-		// Add software field
-		String softWare = "ICAFE - https://github.com/dragon66/icafe\0";
-		tiffField = new ASCIIField(TiffTag.SOFTWARE.getValue(), softWare);
-		ifd.addField(tiffField);
-		DateFormat formatter = new SimpleDateFormat("yyyy:MM:dd HH:mm:ss z");
-		tiffField = new ASCIIField(TiffTag.DATETIME.getValue(), formatter.format(new Date()) + '\0');
-		ifd.addField(tiffField);
-		int xResolution = 72;
-		int yResolution = 72;
-		int resolutionUnit = ResolutionUnit.RESUNIT_INCH.getValue();
-		if(tiffOptions != null) {
-			xResolution = tiffOptions.getXResolution();
-			yResolution = tiffOptions.getYResolution();
-			resolutionUnit = tiffOptions.getResolutionUnit().getValue();
+		codecContext = openContext();
+		try {
+			if(canStream(param)) {
+				writePageData(param, source);
+			} else { // Grab image pixels in ARGB format
+				int[] pixels = new int[imageWidth*imageHeight];
+				getRows(source, 0, imageHeight, pixels, 0);
+				writePageData(param, pixels, imageWidth, imageHeight);
+			}
+		} finally {
+			closeContext(codecContext);
+			codecContext = null;
 		}
-		ifd.addField(new RationalField(TiffTag.X_RESOLUTION.getValue(), new int[]{xResolution, 1}));
-		ifd.addField(new RationalField(TiffTag.Y_RESOLUTION.getValue(), new int[]{yResolution, 1}));
-		ifd.addField(new ShortField(TiffTag.RESOLUTION_UNIT.getValue(), new short[]{(short)resolutionUnit}));
+		 
+		addPageFields();
 		
 		// Write IFD
 		return ifd.write(randomOS, stripOffset);
@@ -943,6 +1078,180 @@ public class TIFFWriter extends ImageWriter implements Updatable<Integer> {
 		*/
 	}
 	
+	// Write true color image strip by strip with only one strip of rows in memory
+	private void writeTrueColor(RowSource source, Compression compression) throws Exception {
+		int imageWidth = source.getWidth();
+		int imageHeight = source.getHeight();
+		boolean applyPredictor = true;
+		PhotoMetric photoMetric = PhotoMetric.RGB;
+		boolean writeICCProfile = false;
+		int numOfSamples = 3;
+		
+		if(tiffOptions != null) {
+			applyPredictor = tiffOptions.isApplyPredictor();
+			if(tiffOptions.getPhotoMetric() != PhotoMetric.UNKNOWN)
+				photoMetric = tiffOptions.getPhotoMetric();
+			if(photoMetric == PhotoMetric.SEPARATED) {
+				numOfSamples = 4;
+				writeICCProfile = tiffOptions.writeICCProfile();
+			}
+		}
+		
+		switch(compression) {
+			case LZW:
+			case DEFLATE:
+			case DEFLATE_ADOBE:
+				break;
+			case PACKBITS:
+			default:
+				// See writeTrueColor(int[], int, int, Compression)
+				compression = Compression.PACKBITS;
+				applyPredictor = false;
+				break;		
+		}
+		
+		if(photoMetric != PhotoMetric.RGB && photoMetric != PhotoMetric.SEPARATED)
+			throw new UnsupportedOperationException("Unsupported TiffPhotoMetric: " + photoMetric);
+
+		boolean hasAlpha = getImageParam().hasAlpha();
+		int samplesPerPixel = (hasAlpha?(numOfSamples+1):numOfSamples);
+		ifd.addField(new ShortField(TiffTag.SAMPLES_PER_PIXEL.getValue(), new short[]{(short)samplesPerPixel}));
+		short[] bitsPerSample = new short[samplesPerPixel];
+		Arrays.fill(bitsPerSample, (short)8);
+		ifd.addField(new ShortField(TiffTag.BITS_PER_SAMPLE.getValue(), bitsPerSample));
+		
+		if(hasAlpha)
+			ifd.addField(new ShortField(TiffTag.EXTRA_SAMPLES.getValue(), new short[]{2}));
+		
+		if(photoMetric == PhotoMetric.SEPARATED) {
+			if(cmykColorSpace == null)
+				cmykColorSpace = IMGUtils.getICCColorSpace(pathToCMYKProfile);
+			if(writeICCProfile) {
+				// Add ICC_Profile field
+				byte[] icc_profile = cmykColorSpace.getProfile().getData();
+				if(icc_profile != null) {
+					ifd.addField(new UndefinedField(TiffTag.ICC_PROFILE.getValue(), icc_profile));
+				}
+			}
+		}
+		
+		int bytesPerRow = samplesPerPixel*imageWidth;
+		int rowsPerStrip = Math.min(imageHeight, Math.max(1, STRIP_SIZE/bytesPerRow));
+		int[] pixels = new int[rowsPerStrip*imageWidth];
+		byte[] samples = new byte[rowsPerStrip*bytesPerRow];
+		
+		ImageEncoder encoder = null;
+		
+		if(compression == Compression.LZW) {
+			encoder = new LZWTreeEncoder(randomOS, 8, 1024, this);
+		} else if(compression != Compression.PACKBITS) {
+			int compressionLevel = 4;
+			if(tiffOptions != null) {
+				compressionLevel = tiffOptions.getDeflateCompressionLevel();
+			}
+			encoder = new DeflateEncoder(randomOS, 1024, codecContext.getDeflater(compressionLevel), this);
+		}
+		
+		byte[] buffer = new byte[bytesPerRow + (bytesPerRow + 127)/128];
+		
+		for(int i = 0; i < imageHeight; i += rowsPerStrip) {
+			int rows = Math.min(rowsPerStrip, imageHeight - i);
+			int numOfPixels = rows*imageWidth;
+			int numOfBytes = rows*bytesPerRow;
+			getRows(source, i, rows, pixels, 0);
+			
+			if(photoMetric == PhotoMetric.RGB) {
+				for(int index = 0, j = 0; j < numOfPixels; j++) {
+					samples[index++] = (byte)((pixels[j]>>16)&0xff);
+					samples[index++] = (byte)((pixels[j]>>8)&0xff);
+					samples[index++] = (byte)(pixels[j]&0xff);
+					if(hasAlpha)
+						samples[index++] = (byte)((pixels[j]>>24)&0xff);
+				}
+			} else {
+				int[] stripPixels = (rows == rowsPerStrip)?pixels:Arrays.copyOf(pixels, numOfPixels);
+				System.arraycopy(IMGUtils.RGB2CMYK(cmykColorSpace, stripPixels, imageWidth, rows, hasAlpha), 0, samples, 0, numOfBytes);
+			}
+			
+			if(applyPredictor)
+				applyPredictor(samplesPerPixel, samples, imageWidth, rows);
+			
+			if(encoder != null) {
+				encoder.initialize();
+				encoder.encode(samples, 0, numOfBytes);
+				// This will call update
+				encoder.finish();
+			} else {
+				int bytesOut = 0;
+				for(int offset = 0; offset < numOfBytes; offset += bytesPerRow) {
+					long start = CodecTrace.start();
+					int tempBytes = Packbits.packbits(ArrayUtils.subArray(samples, offset, bytesPerRow), buffer);
+					CodecTrace.stop(CodecTrace.Stage.COMPRESS, start);
+					randomOS.write(buffer, 0, tempBytes);
+					bytesOut += tempBytes;
+				}
+				update(bytesOut);
+			}
+		}
+		
+		if(applyPredictor)
+			ifd.addField(new ShortField(TiffTag.PREDICTOR.getValue(), new short[]{2}));
+		ifd.addField(new ShortField(TiffTag.ROWS_PER_STRIP.getValue(), new short[]{(short)rowsPerStrip}));
+		ifd.addField(new ShortField(TiffTag.COMPRESSION.getValue(), new short[]{(short)compression.getValue()}));
+		ifd.addField(new ShortField(TiffTag.PLANAR_CONFIGURATTION.getValue(), new short[]{(short)PlanarConfiguration.CONTIGUOUS.getValue()}));
+		ifd.addField(new ShortField(TiffTag.PHOTOMETRIC_INTERPRETATION.getValue(), new short[]{(short)photoMetric.getValue()}));
+	}
+	
+	// RowSource over an ARGB pixel array
+	private static class ArrayRowSource implements RowSource {
+		private int[] pixels;
+		private int width;
+		private int height;
+		
+		ArrayRowSource(int[] pixels, int width, int height) {
+			this.pixels = pixels;
+			this.width = width;
+			this.height = height;
+		}
+		
+		public int getWidth() {
+			return width;
+		}
+		
+		public int getHeight() {
+			return height;
+		}
+		
+		public void getRGB(int startRow, int numOfRows, int[] rgbs, int offset) {
+			System.arraycopy(pixels, startRow*width, rgbs, offset, numOfRows*width);
+		}
+	}
+	
+	// A strip view of the RowSource
+	private class StripRowSource implements RowSource {
+		private RowSource source;
+		private int startRow;
+		private int numOfRows;
+		
+		StripRowSource(RowSource source, int startRow, int numOfRows) {
+			this.source = source;
+			this.startRow = startRow;
+			this.numOfRows = numOfRows;
+		}
+		
+		public int getWidth() {
+			return source.getWidth();
+		}
+		
+		public int getHeight() {
+			return numOfRows;
+		}
+		
+		public void getRGB(int startRow, int numOfRows, int[] rgbs, int offset) throws IOException {
+			getRows(source, this.startRow + startRow, numOfRows, rgbs, offset);
+		}
+	}
+	
 	// Offset where to write the value of the first IFD offset
 	public static final int OFFSET_TO_WRITE_FIRST_IFD_OFFSET = 0x04;
 	public static final int FIRST_WRITE_OFFSET = 0x08;
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Implements a random access input stream over data which is already in memory,
+ * either as a byte array or a ByteBuffer.
+ * <p>
+ * The data is read in place: nothing is copied or cached and there is no underlying
+ * stream. Use this instead of wrapping a ByteArrayInputStream with one of the cached
+ * random access streams.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public class ByteArrayRandomAccessInputStream extends RandomAccessInputStream {
+	private ByteBuffer buffer;
+	private long pointer;
+	
+	public ByteArrayRandomAccessInputStream(byte[] data) {
+		this(data, 0, data.length);
+	}
+	
+	public ByteArrayRandomAccessInputStream(byte[] data, int offset, int length) {
+		this(ByteBuffer.wrap(data, offset, length));
+	}
+	
+	/**
+	 * The stream covers the remaining bytes of the buffer, from its current position to its limit.
+	 * Stream position 0 maps to the buffer's current position. The position and limit of the buffer
+	 * itself are left alone.
+	 * 
+	 * @param buffer ByteBuffer holding the data
+	 */
+	public ByteArrayRandomAccessInputStream(ByteBuffer buffer) {
+		super(null);
+		this.buffer = buffer.slice();
+	}
+	
+	@Override
+	public int available() throws IOException {
+		ensureOpen();
+		return (int)Math.max(0L, buffer.limit() - pointer);
+	}
+	
+	public void close() throws IOException {
+		shallowClose();
+	}
+	
+	/**
+	 * @return the length of the data in bytes
+	 */
+	public int getLength() {
+		return buffer.limit();
+	}
+	
+	public long getStreamPointer() {
+		return pointer;
+	}
+	
+	public int read() throws IOException {
+		ensureOpen();
+		if(pointer >= buffer.limit())
+			return -1;
+		
+		return buffer.get((int)pointer++)&0xff;
+	}
+	
+	public int read(byte[] bytes, int off, int len) throws IOException {
+		ensureOpen();
+		if(bytes == null)
+			throw new NullPointerException();
+		if(off < 0 || len < 0 || off + len > bytes.length)
+			throw new IndexOutOfBoundsException();
+		if(len == 0)
+			return 0;
+		if(pointer >= buffer.limit())
+			return -1;
+		
+		int nbytes = (int)Math.min(len, buffer.limit() - pointer);
+		buffer.position((int)pointer);
+		buffer.get(bytes, off, nbytes);
+		pointer += nbytes;
+		
+		return nbytes;
+	}
+	
+	public void seek(long loc) throws IOException {
+		ensureOpen();
+		if(loc < 0L)
+			throw new IOException("Negative seek position.");
+		
+		pointer = loc;
+	}
+	
+	public void shallowClose() throws IOException {
+		if(closed) return;
+		buffer = null;
+		closed = true;
+	}
+	
+	@Override
+	public long skip(long n) throws IOException {
+		ensureOpen();
+		if(n <= 0)
+			return 0;
+		long skipped = Math.min(n, Math.max(0L, buffer.limit() - pointer));
+		pointer += skipped;
+		
+		return skipped;
+	}
+}
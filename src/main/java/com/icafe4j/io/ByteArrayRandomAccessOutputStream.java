@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ * 
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Implements a random access output stream which writes to a growing byte array.
+ * <p>
+ * The data written can be retrieved with toByteArray() or, without copying, with
+ * toByteBuffer(), even after the stream is closed. If there is a destination stream,
+ * the data is also flushed to it like any other RandomAccessOutputStream.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public class ByteArrayRandomAccessOutputStream extends RandomAccessOutputStream {
+	private static final int DEFAULT_CAPACITY = 4096;
+	
+	private byte[] buf;
+	private int pointer;
+	// The largest position ever written to the buffer
+	private int length;
+	private long flushPos;
+	
+	public ByteArrayRandomAccessOutputStream() {
+		this(null, DEFAULT_CAPACITY);
+	}
+	
+	public ByteArrayRandomAccessOutputStream(int initialCapacity) {
+		this(null, initialCapacity);
+	}
+	
+	/**
+	 * @param dist destination stream to flush the data to, could be null
+	 */
+	public ByteArrayRandomAccessOutputStream(OutputStream dist) {
+		this(dist, DEFAULT_CAPACITY);
+	}
+	
+	public ByteArrayRandomAccessOutputStream(OutputStream dist, int initialCapacity) {
+		super(dist);
+		if(initialCapacity < 0)
+			throw new IllegalArgumentException("Negative initial capacity: " + initialCapacity);
+		buf = new byte[initialCapacity];
+	}
+	
+	public void close() throws IOException {
+		if(closed) return;
+		super.close();
+		if(dist != null) dist.close();
+		dist = null;
+		closed = true;
+	}
+	
+	/**
+	 * The whole data is always kept in memory, nothing can be disposed.
+	 */
+	public void disposeBefore(long pos) throws IOException {
+		throw new UnsupportedOperationException("This method is not implemented");
+	}
+	
+	private void ensureCapacity(long minCapacity) throws IOException {
+		if(minCapacity > Integer.MAX_VALUE - 8)
+			throw new IOException("Byte array addressing limit exceeded!");
+		if(minCapacity > buf.length)
+			buf = Arrays.copyOf(buf, (int)Math.min(Integer.MAX_VALUE - 8, Math.max(minCapacity, buf.length*2L)));
+	}
+	
+	public long getFlushPos() {
+		return flushPos;
+	}
+	
+	public long getLength() {
+		return length;
+	}
+	
+	public long getStreamPointer() {
+		return pointer;
+	}
+	
+	@Override
+	public void reset() {
+		pointer = 0;
+		length = 0;
+		flushPos = 0L;
+	}
+	
+	public void seek(long pos) throws IOException {
+		ensureOpen();
+		if(pos < 0L)
+			throw new IOException("Negative seek position.");
+		if(pos > Integer.MAX_VALUE)
+			throw new IOException("Byte array addressing limit exceeded!");
+		
+		pointer = (int)pos;
+	}
+	
+	public void shallowClose() throws IOException {
+		if(closed) return;
+		super.close();
+		dist = null;
+		closed = true;
+	}
+	
+	/**
+	 * @return a copy of the data written
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(buf, length);
+	}
+	
+	/**
+	 * @return a ByteBuffer which shares the internal byte array, valid until
+	 *         the next write to this stream
+	 */
+	public ByteBuffer toByteBuffer() {
+		return ByteBuffer.wrap(buf, 0, length).slice();
+	}
+	
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		if(b == null)
+			throw new NullPointerException("b == null!");
+		if((off < 0) || (len < 0) || (off + len > b.length) || (off + len < 0))
+			throw new IndexOutOfBoundsException();
+		
+		ensureCapacity((long)pointer + len);
+		System.arraycopy(b, off, buf, pointer, len);
+		pointer += len;
+		if(pointer > length) length = pointer;
+	}
+	
+	@Override
+	public void write(int value) throws IOException {
+		ensureOpen();
+		ensureCapacity(pointer + 1L);
+		buf[pointer++] = (byte)value;
+		if(pointer > length) length = pointer;
+	}
+	
+	/**
+	 * Writes len bytes from the current position to the destination stream if any.
+	 */
+	public void writeToStream(long len) throws IOException {
+		ensureOpen();
+		if(len == 0)
+			return;
+		if(len < 0 || pointer + len > length)
+			throw new IndexOutOfBoundsException("Argument out of cache");
+		
+		if(dist != null) dist.write(buf, pointer, (int)len);
+		flushPos += len;
+	}
+}
@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Keeps count of the bytes read from the underlying InputStream
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public class CountingInputStream extends FilterInputStream {
+	private long count;
+	private long mark;
+
+	public CountingInputStream(InputStream in) {
+		super(in);
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	@Override
+	public void mark(int readlimit) {
+		in.mark(readlimit);
+		mark = count;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = in.read();
+		if(b != -1) count++;
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = in.read(b, off, len);
+		if(n > 0) count += n;
+		return n;
+	}
+
+	@Override
+	public void reset() throws IOException {
+		in.reset();
+		count = mark;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = in.skip(n);
+		count += skipped;
+		return skipped;
+	}
+}
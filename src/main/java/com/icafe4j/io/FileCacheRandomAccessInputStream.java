@@ -15,6 +15,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
 
+import com.icafe4j.jfr.FlightRecorder;
+
 /**
  * Implements a file cached random access input stream to ease the 
  * decoding of some types of images such as TIFF which may need random
@@ -64,7 +66,7 @@ public class FileCacheRandomAccessInputStream extends RandomAccessInputStream {
     	super(src);
         this.bufLen = bufLen;
         buf = new byte[bufLen];
-    	this.cacheFile = File.createTempFile("cafe-FCRAIS-", ".tmp");
+    	this.cacheFile = FlightRecorder.createTempFile("cafe-FCRAIS-", ".tmp", null, getClass());
         cacheFile.deleteOnExit();
         this.cache = new RandomAccessFile(cacheFile, "rw");
     }
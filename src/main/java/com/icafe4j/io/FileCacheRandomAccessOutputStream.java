@@ -24,6 +24,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
 
+import com.icafe4j.jfr.FlightRecorder;
+
 public class FileCacheRandomAccessOutputStream extends RandomAccessOutputStream {
 
 	/** The cache File. */
@@ -45,7 +47,7 @@ public class FileCacheRandomAccessOutputStream extends RandomAccessOutputStream
     
     public FileCacheRandomAccessOutputStream(OutputStream dist) throws IOException {
     	super(dist);
-        this.cacheFile = File.createTempFile("cafe-FCRAOS-", ".tmp");
+        this.cacheFile = FlightRecorder.createTempFile("cafe-FCRAOS-", ".tmp", null, getClass());
         cacheFile.deleteOnExit();
         this.cache = new RandomAccessFile(cacheFile, "rw");
     }
@@ -53,7 +55,7 @@ public class FileCacheRandomAccessOutputStream extends RandomAccessOutputStream
     public FileCacheRandomAccessOutputStream(OutputStream dist, int bufLen) throws IOException {
     	super(dist);
     	this.bufLen = bufLen;
-        this.cacheFile = File.createTempFile("cafe-FCRAOS-", ".tmp");
+        this.cacheFile = FlightRecorder.createTempFile("cafe-FCRAOS-", ".tmp", null, getClass());
         cacheFile.deleteOnExit();
         this.cache = new RandomAccessFile(cacheFile, "rw");
     }
@@ -168,9 +170,10 @@ public class FileCacheRandomAccessOutputStream extends RandomAccessOutputStream
         
         cache.seek(pointer);
 
+        byte[] buf = new byte[bufLen];
+        
         while (len > 0) {
-    	   byte[] buf = new byte[bufLen];
-           int nbytes = cache.read(buf);
+           int nbytes = cache.read(buf, 0, (int)Math.min(len, bufLen));
            dist.write(buf, 0, nbytes);
            len -= nbytes;
            flushPos += nbytes;
@@ -9,6 +9,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
 
+import com.icafe4j.jfr.FlightRecorder;
+
 /**
  * A subclass of <code>SeekableStream</code> that may be used to wrap
  * a regular <code>InputStream</code>.  Seeking backwards is supported
@@ -62,7 +64,7 @@ public final class FileCacheSeekableStream extends SeekableStream {
     public FileCacheSeekableStream(InputStream stream)
         throws IOException {
         this.stream = stream;
-        this.cacheFile = File.createTempFile("jai-FCSS-", ".tmp");
+        this.cacheFile = FlightRecorder.createTempFile("jai-FCSS-", ".tmp", null, getClass());
         cacheFile.deleteOnExit();
         this.cache = new RandomAccessFile(cacheFile, "rw");
     }
@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ *
+ * Change History - most recent changes go on top of previous changes
+ *
+ * UnsyncBufferedInputStream.java
+ *
+ * Who   Date       Description
+ * ====  =========  ==============================================================
+ * AG    18Oct2026  Initial creation
+ */
+
+package com.icafe4j.io;
+
+import java.io.*;
+
+/**
+ * Buffered InputStream without synchronization or mark support.
+ * <p>
+ * Decoders reading RLE packets a byte at a time pay for the lock taken by every
+ * BufferedInputStream.read(). This class reads the source through a fixed buffer
+ * and is meant to be used by a single thread.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public class UnsyncBufferedInputStream extends InputStream {
+	private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private InputStream src;
+	private byte[] buffer;
+	private int position;
+	private int count;
+
+	public UnsyncBufferedInputStream(InputStream src) {
+		this(src, DEFAULT_BUFFER_SIZE);
+	}
+
+	public UnsyncBufferedInputStream(InputStream src, int bufferSize) {
+		if(bufferSize <= 0)
+			throw new IllegalArgumentException("Buffer size <= 0");
+		this.src = src;
+		this.buffer = new byte[bufferSize];
+	}
+
+	@Override
+	public int available() throws IOException {
+		return (count - position) + src.available();
+	}
+
+	@Override
+	public void close() throws IOException {
+		src.close();
+	}
+
+	private boolean fill() throws IOException {
+		int n = src.read(buffer, 0, buffer.length);
+		if(n <= 0) return false;
+		position = 0;
+		count = n;
+
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if(position >= count && !fill())
+			return -1;
+
+		return buffer[position++]&0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if(len == 0) return 0;
+		int avail = count - position;
+		if(avail <= 0) {
+			// Large reads go straight to the source
+			if(len >= buffer.length)
+				return src.read(b, off, len);
+			if(!fill()) return -1;
+			avail = count;
+		}
+		int n = Math.min(avail, len);
+		System.arraycopy(buffer, position, b, off, n);
+		position += n;
+
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		if(n <= 0) return 0;
+		int avail = count - position;
+		if(avail > 0) {
+			int skipped = (int)Math.min(avail, n);
+			position += skipped;
+			return skipped;
+		}
+
+		return src.skip(n);
+	}
+}
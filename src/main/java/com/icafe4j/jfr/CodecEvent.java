@@ -0,0 +1,39 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.jfr;
+
+/**
+ * A flight recorder event as seen by the codecs, without a link to jdk.jfr.
+ * <p>
+ * Instances come from {@link FlightRecorder} and only exist while the event is
+ * enabled in a recording. The fields are copied over to the real event on
+ * {@link #commit(CodecTrace)}; the ones an event has no use for are ignored.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public abstract class CodecEvent {
+	public String format;
+	public int width;
+	public int height;
+	// Bytes read or written
+	public long bytes;
+	public String metadataTypes;
+
+	public abstract void begin();
+
+	/**
+	 * End the event and commit it if the recording wants it
+	 *
+	 * @param trace stage times to record or null
+	 */
+	public abstract void commit(CodecTrace trace);
+}
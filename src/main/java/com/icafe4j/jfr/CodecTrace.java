@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.jfr;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects the time spent in each stage of an image read or write on the current thread
+ * for the flight recorder events.
+ * <p>
+ * A trace is only started by {@link #begin()} when the event it feeds is enabled. The
+ * codecs call {@link #start()} and {@link #stop(Stage, long)} around their stages; with no
+ * trace in progress anywhere these come down to a read of a volatile counter. Stages run
+ * on other threads, such as pipelined decoding, are not counted.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public final class CodecTrace {
+	public enum Stage {
+		PARSE,
+		DECOMPRESS,
+		DEFILTER, // PNG defiltering or JPEG IDCT
+		COLOR_CONVERT,
+		QUANTIZE,
+		COMPRESS
+	}
+
+	// Number of traces in progress on all the threads
+	private static final AtomicInteger active = new AtomicInteger();
+	private static final ThreadLocal<CodecTrace> current = new ThreadLocal<CodecTrace>();
+
+	private final long[] times = new long[Stage.values().length];
+	private final CodecTrace previous;
+	private long total;
+
+	private CodecTrace(CodecTrace previous) {
+		this.previous = previous;
+	}
+
+	/**
+	 * Start a trace on the current thread. A trace started inside another one hides
+	 * the outer trace until {@link #end()}.
+	 */
+	public static CodecTrace begin() {
+		CodecTrace trace = new CodecTrace(current.get());
+		current.set(trace);
+		active.incrementAndGet();
+
+		return trace;
+	}
+
+	/**
+	 * @return the trace in progress on the current thread or null
+	 */
+	public static CodecTrace current() {
+		if(active.get() == 0) return null;
+
+		return current.get();
+	}
+
+	/**
+	 * @return the start time of a stage or 0 if there is no trace in progress on the current thread
+	 */
+	public static long start() {
+		if(current() == null) return 0L;
+
+		return System.nanoTime();
+	}
+
+	/**
+	 * Add the time since start to the stage of the current trace
+	 *
+	 * @param stage stage to add the time to
+	 * @param start value returned by {@link #start()}
+	 */
+	public static void stop(Stage stage, long start) {
+		if(start == 0L) return;
+		CodecTrace trace = current();
+		if(trace != null) trace.add(stage, System.nanoTime() - start);
+	}
+
+	public void add(Stage stage, long nanos) {
+		times[stage.ordinal()] += nanos;
+		total += nanos;
+	}
+
+	public void end() {
+		if(previous == null)
+			current.remove();
+		else
+			current.set(previous);
+		active.decrementAndGet();
+	}
+
+	public long getTime(Stage stage) {
+		return times[stage.ordinal()];
+	}
+
+	/**
+	 * Sum of the time of all the stages, used to take the nested stages
+	 * out of the time of an enclosing one
+	 */
+	public long getTotalTime() {
+		return total;
+	}
+}
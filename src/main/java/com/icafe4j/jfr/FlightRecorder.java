@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.jfr;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Entry point of the codecs and streams to the flight recorder events.
+ * <p>
+ * The event classes extend jdk.jfr.Event and are only loaded once jdk.jfr
+ * is found on the running JVM. Without it no event is recorded and the
+ * library works as before.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+public final class FlightRecorder {
+	private static final boolean AVAILABLE = isAvailable();
+
+	private FlightRecorder() {}
+
+	private static boolean isAvailable() {
+		try {
+			Class.forName("jdk.jfr.Event", false, FlightRecorder.class.getClassLoader());
+			return true;
+		} catch(ClassNotFoundException e) {
+			return false;
+		} catch(LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Create a temporary file like File.createTempFile() and record the event
+	 *
+	 * @param owner class of the stream the file is created for
+	 */
+	public static File createTempFile(String prefix, String suffix, File directory, Class<?> owner) throws IOException {
+		if(!AVAILABLE)
+			return File.createTempFile(prefix, suffix, directory);
+
+		return JfrEvents.createTempFile(prefix, suffix, directory, owner);
+	}
+
+	/**
+	 * @return a new image read event or null if it is not recorded
+	 */
+	public static CodecEvent imageRead() {
+		if(!AVAILABLE) return null;
+
+		return JfrEvents.imageRead();
+	}
+
+	/**
+	 * @return a new image write event or null if it is not recorded
+	 */
+	public static CodecEvent imageWrite() {
+		if(!AVAILABLE) return null;
+
+		return JfrEvents.imageWrite();
+	}
+
+	/**
+	 * @return a new metadata read event or null if it is not recorded
+	 */
+	public static CodecEvent metadataRead() {
+		if(!AVAILABLE) return null;
+
+		return JfrEvents.metadataRead();
+	}
+}
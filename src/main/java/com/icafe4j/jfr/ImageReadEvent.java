@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event for an image read through {@link com.icafe4j.image.ImageIO}
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+@Name("com.icafe4j.ImageRead")
+@Label("Image Read")
+@Category({"iCafe", "Image"})
+@Description("Decoding of an image")
+public class ImageReadEvent extends jdk.jfr.Event {
+	@Label("Format")
+	public String format;
+
+	@Label("Width")
+	public int width;
+
+	@Label("Height")
+	public int height;
+
+	@Label("Bytes In")
+	@DataAmount
+	public long bytesIn;
+
+	@Label("Parse Time")
+	@Timespan
+	public long parseTime;
+
+	@Label("Decompress Time")
+	@Timespan
+	public long decompressTime;
+
+	@Label("Defilter/IDCT Time")
+	@Timespan
+	public long defilterTime;
+
+	@Label("Color Convert Time")
+	@Timespan
+	public long colorConvertTime;
+
+	/**
+	 * Copy the stage times over from the trace
+	 */
+	public void setStageTimes(CodecTrace trace) {
+		parseTime = trace.getTime(CodecTrace.Stage.PARSE);
+		decompressTime = trace.getTime(CodecTrace.Stage.DECOMPRESS);
+		defilterTime = trace.getTime(CodecTrace.Stage.DEFILTER);
+		colorConvertTime = trace.getTime(CodecTrace.Stage.COLOR_CONVERT);
+	}
+}
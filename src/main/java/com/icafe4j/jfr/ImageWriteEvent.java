@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight recorder event for an image written through {@link com.icafe4j.image.ImageIO}
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+@Name("com.icafe4j.ImageWrite")
+@Label("Image Write")
+@Category({"iCafe", "Image"})
+@Description("Encoding of an image")
+public class ImageWriteEvent extends jdk.jfr.Event {
+	@Label("Format")
+	public String format;
+
+	@Label("Width")
+	public int width;
+
+	@Label("Height")
+	public int height;
+
+	@Label("Bytes Out")
+	@DataAmount
+	public long bytesOut;
+
+	@Label("Color Convert Time")
+	@Timespan
+	public long colorConvertTime;
+
+	@Label("Quantize Time")
+	@Timespan
+	public long quantizeTime;
+
+	@Label("Compress Time")
+	@Timespan
+	public long compressTime;
+
+	/**
+	 * Copy the stage times over from the trace
+	 */
+	public void setStageTimes(CodecTrace trace) {
+		colorConvertTime = trace.getTime(CodecTrace.Stage.COLOR_CONVERT);
+		quantizeTime = trace.getTime(CodecTrace.Stage.QUANTIZE);
+		compressTime = trace.getTime(CodecTrace.Stage.COMPRESS);
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.jfr;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The side of {@link FlightRecorder} which links to jdk.jfr, only loaded
+ * once jdk.jfr is known to be there.
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+final class JfrEvents {
+	private JfrEvents() {}
+
+	static File createTempFile(String prefix, String suffix, File directory, Class<?> owner) throws IOException {
+		TempFileEvent event = new TempFileEvent();
+		event.begin();
+		File file = File.createTempFile(prefix, suffix, directory);
+		event.end();
+		if(event.shouldCommit()) {
+			event.path = file.getPath();
+			event.streamClass = owner;
+			event.commit();
+		}
+
+		return file;
+	}
+
+	static CodecEvent imageRead() {
+		final ImageReadEvent event = new ImageReadEvent();
+		if(!event.isEnabled()) return null;
+
+		return new CodecEvent() {
+			public void begin() {
+				event.begin();
+			}
+
+			public void commit(CodecTrace trace) {
+				event.end();
+				if(!event.shouldCommit()) return;
+				if(trace != null) event.setStageTimes(trace);
+				event.format = format;
+				event.width = width;
+				event.height = height;
+				event.bytesIn = bytes;
+				event.commit();
+			}
+		};
+	}
+
+	static CodecEvent imageWrite() {
+		final ImageWriteEvent event = new ImageWriteEvent();
+		if(!event.isEnabled()) return null;
+
+		return new CodecEvent() {
+			public void begin() {
+				event.begin();
+			}
+
+			public void commit(CodecTrace trace) {
+				event.end();
+				if(!event.shouldCommit()) return;
+				if(trace != null) event.setStageTimes(trace);
+				event.format = format;
+				event.width = width;
+				event.height = height;
+				event.bytesOut = bytes;
+				event.commit();
+			}
+		};
+	}
+
+	static CodecEvent metadataRead() {
+		final MetadataReadEvent event = new MetadataReadEvent();
+		if(!event.isEnabled()) return null;
+
+		return new CodecEvent() {
+			public void begin() {
+				event.begin();
+			}
+
+			public void commit(CodecTrace trace) {
+				event.end();
+				if(!event.shouldCommit()) return;
+				event.format = format;
+				event.metadataTypes = metadataTypes;
+				event.commit();
+			}
+		};
+	}
+}
@@ -0,0 +1,34 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for metadata read through {@link com.icafe4j.image.meta.Metadata#readMetadata(java.io.InputStream)}
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+@Name("com.icafe4j.MetadataRead")
+@Label("Metadata Read")
+@Category({"iCafe", "Metadata"})
+@Description("Reading of the metadata of an image")
+public class MetadataReadEvent extends jdk.jfr.Event {
+	@Label("Format")
+	public String format;
+
+	@Label("Metadata Types")
+	public String metadataTypes;
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright (c) 2026 by agent.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.icafe4j.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for the creation of a cache file by the file cache streams,
+ * recorded through {@link FlightRecorder#createTempFile(String, String, java.io.File, Class)}
+ *
+ * @author agent, agent@local
+ * @version 1.0 10/18/2026
+ */
+@Name("com.icafe4j.TempFile")
+@Label("Temp File Creation")
+@Category({"iCafe", "I/O"})
+@Description("Creation of a temporary cache file")
+public class TempFileEvent extends jdk.jfr.Event {
+	@Label("Path")
+	public String path;
+
+	@Label("Stream Class")
+	public Class<?> streamClass;
+}
@@ -13,6 +13,8 @@
  *
  * Who   Date       Description
  * ====  =========  =====================================================
+ * AG    18Oct2026  Cache DocumentBuilder, Transformer and XMLInputFactory per thread
+ * AG    18Oct2026  Added createXMLStreamReader()
  * WY    29Apr2015  Renamed findAttribute() to getAttribute()
  * WY    09Apr2015  Added null check to findAttribute()
  * WY    03Mar2015  Added serializeToString() and serializeToByteArray()
@@ -25,6 +27,7 @@ package com.icafe4j.string;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.Iterator;
@@ -32,6 +35,9 @@ import java.util.Iterator;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Result;
 import javax.xml.transform.Transformer;
@@ -63,6 +69,39 @@ import org.w3c.dom.ls.LSSerializer;
 public class XMLUtils {
 	// Obtain a logger instance
 	private static final Logger LOGGER = LoggerFactory.getLogger(XMLUtils.class);
+	
+	// Factory lookup is expensive and neither builders nor transformers are thread safe,
+	// so we keep one instance of each per thread and reset it before reuse
+	private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = new ThreadLocal<DocumentBuilder>() {
+		protected DocumentBuilder initialValue() {
+			try {
+				return DocumentBuilderFactory.newInstance().newDocumentBuilder();
+			} catch (ParserConfigurationException e) {
+				throw new IllegalStateException("Unable to create DocumentBuilder", e);
+			}
+		}
+	};
+	
+	private static final ThreadLocal<Transformer> TRANSFORMER = new ThreadLocal<Transformer>() {
+		protected Transformer initialValue() {
+			try {
+				return TransformerFactory.newInstance().newTransformer();
+			} catch (TransformerConfigurationException e) {
+				LOGGER.error("Unable to create Transformer", e);
+				return null;
+			}
+		}
+	};
+	
+	private static final ThreadLocal<XMLInputFactory> STREAM_FACTORY = new ThreadLocal<XMLInputFactory>() {
+		protected XMLInputFactory initialValue() {
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+			factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+			
+			return factory;
+		}
+	};
 		
 	public static void addChild(Node parent, Node child) {
 		parent.appendChild(child);
@@ -74,16 +113,7 @@ public class XMLUtils {
 	
 	// Create an empty Document node
 	public static Document createDocumentNode() {
-		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-	    DocumentBuilder builder = null;
-	    
-		try {
-			builder = factory.newDocumentBuilder();
-		} catch (ParserConfigurationException e) {
-			e.printStackTrace();
-		}
-		
-		return builder.newDocument();
+		return getDocumentBuilder().newDocument();
 	}
 	
 	public static Element createElement(Document doc, String tagName) {
@@ -91,20 +121,11 @@ public class XMLUtils {
 	}
 	
 	public static Document createXML(byte[] xml) {
-		//Get the DOM Builder Factory
-		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-		//Get the DOM Builder
-		DocumentBuilder builder = null;
-		try {
-			builder = factory.newDocumentBuilder();
-		} catch (ParserConfigurationException e) {
-			e.printStackTrace();
-		}
 		//Load and Parse the XML document
 		//document contains the complete XML as a Tree.
 		Document document = null;
 		try {
-			document = builder.parse(new ByteArrayInputStream(xml));			
+			document = getDocumentBuilder().parse(new ByteArrayInputStream(xml));			
 		} catch (SAXException e) {
 			e.printStackTrace();
 		} catch (IOException e) {
@@ -115,21 +136,12 @@ public class XMLUtils {
 	}
 	
 	public static Document createXML(String xml) {
-		//Get the DOM Builder Factory
-		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-		//Get the DOM Builder
-		DocumentBuilder builder = null;
-		try {
-			builder = factory.newDocumentBuilder();
-		} catch (ParserConfigurationException e) {
-			e.printStackTrace();
-		}
 		//Load and Parse the XML document
 		//document contains the complete XML as a Tree.
 		Document document = null;
 		InputSource source = new InputSource(new StringReader(xml));
 		try {
-			document = builder.parse(source);
+			document = getDocumentBuilder().parse(source);
 		} catch (SAXException e) {
 			e.printStackTrace();
 		} catch (IOException e) {
@@ -139,6 +151,24 @@ public class XMLUtils {
 		return document;		 
 	}
 	
+	/**
+	 * Create a StAX stream reader to pull the XML without building a DOM
+	 * <p>
+	 * DTD processing is disabled and adjacent text is coalesced. The caller
+	 * is responsible for closing the reader.
+	 * 
+	 * @param xml InputStream for the XML
+	 * @return XMLStreamReader for the XML
+	 * @throws IOException if the reader can't be created
+	 */
+	public static XMLStreamReader createXMLStreamReader(InputStream xml) throws IOException {
+		try {
+			return STREAM_FACTORY.get().createXMLStreamReader(xml);
+		} catch (XMLStreamException e) {
+			throw new IOException("Unable to create XML stream reader", e);
+		}
+	}
+	
 	public static String escapeXML(String input) {
 		Iterator<Character> itr = StringUtils.stringIterator(input);
 		StringBuilder result = new StringBuilder();		
@@ -188,6 +218,27 @@ public class XMLUtils {
 		return "";
 	}
 	
+	// Returns the DocumentBuilder cached for the current thread, reset for reuse
+	private static DocumentBuilder getDocumentBuilder() {
+		DocumentBuilder builder = DOCUMENT_BUILDER.get();
+		builder.reset();
+		
+		return builder;
+	}
+	
+	// Returns the Transformer cached for the current thread with the output properties we use
+	private static Transformer getTransformer(String encoding) throws IOException {
+		Transformer transformer = TRANSFORMER.get();
+		if(transformer == null)
+			throw new IOException("Unable to serialize XML document");
+		transformer.reset();
+		transformer.setOutputProperty(OutputKeys.INDENT, "no");
+		transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+		transformer.setOutputProperty(OutputKeys.ENCODING, encoding);
+		
+		return transformer;
+	}
+	
 	public static void insertLeadingPI(Document doc, String target, String data) {
 		Element element = doc.getDocumentElement();
 	    ProcessingInstruction pi = doc.createProcessingInstruction(target, data);
@@ -300,18 +351,9 @@ public class XMLUtils {
 	}
 	
 	public static byte[] serializeToByteArray(Document doc) throws IOException {
-		TransformerFactory tFactory = TransformerFactory.newInstance();
-		Transformer transformer = null;
-		try {
-			transformer = tFactory.newTransformer();
-		} catch (TransformerConfigurationException e) {
-			throw new IOException("Unable to serialize XML document");
-		}
-		transformer.setOutputProperty(OutputKeys.INDENT, "no");
-		transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
 		String encoding = doc.getInputEncoding();
 		if(encoding == null) encoding = "UTF-8";
-		transformer.setOutputProperty(OutputKeys.ENCODING, encoding);
+		Transformer transformer = getTransformer(encoding);
 		DOMSource source = new DOMSource(doc);
 		ByteArrayOutputStream out = new ByteArrayOutputStream();
 		Result result = new StreamResult(out);
@@ -391,16 +433,7 @@ public class XMLUtils {
 	 * @throws IOException
 	 */
 	public static String serializeToString(Node node, String encoding) throws IOException {
-		TransformerFactory tFactory = TransformerFactory.newInstance();
-		Transformer transformer = null;
-		try {
-			transformer = tFactory.newTransformer();
-		} catch (TransformerConfigurationException e) {
-			throw new IOException("Unable to serialize XML document");
-		}
-		transformer.setOutputProperty(OutputKeys.INDENT, "no");
-		transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
-		transformer.setOutputProperty(OutputKeys.ENCODING, encoding);
+		Transformer transformer = getTransformer(encoding);
 		DOMSource source = new DOMSource(node);
 		StringWriter writer = new StringWriter();
         Result result = new StreamResult(writer);
@@ -822,6 +822,12 @@ public class ArrayUtils
 			input[i] = BIT_REVERSE_TABLE[input[i]&0xff];
 	}
 	
+	// Reverse the bit order (bit sex) of part of a byte array
+	public static void reverseBits(byte[] input, int offset, int len) {
+		for(int i = offset + len - 1; i >= offset; i--)
+			input[i] = BIT_REVERSE_TABLE[input[i]&0xff];
+	}
+	
 	public static byte[] reverse(byte[] array) {
 		if (array == null)
 			throw new IllegalArgumentException("Input array is null");
@@ -0,0 +1,42 @@
+package com.icafe4j.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import com.icafe4j.image.AsyncImageIO;
+import com.icafe4j.image.ImageParam;
+import com.icafe4j.image.ImageType;
+
+public class TestAsyncImageIO extends TestBase {
+
+	public static void main(String[] args) throws Exception {
+		new TestAsyncImageIO().test(args);
+	}
+
+	// Arguments: image file names, each is probed and transcoded to PNG, two TIFFs at a time at most
+	public void test(String ... args) throws Exception {
+		ExecutorService executor = AsyncImageIO.newVirtualThreadExecutor();
+		AsyncImageIO io = new AsyncImageIO(executor);
+		io.setConcurrencyLimit(ImageType.TIFF, 2);
+		List<CompletableFuture<?>> results = new ArrayList<CompletableFuture<?>>();
+		List<InputStream> inputs = new ArrayList<InputStream>();
+		long t1 = System.currentTimeMillis();
+		for(String fileName : args) {
+			logger.info("{}: {}", fileName, io.probeAsync(new File(fileName)).get());
+			InputStream is = new FileInputStream(fileName);
+			inputs.add(is);
+			results.add(io.transcodeAsync(is, new ByteArrayOutputStream(), ImageType.PNG, ImageParam.DEFAULT_IMAGE_PARAM));
+		}
+		CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).get();
+		for(InputStream is : inputs)
+			is.close();
+		executor.shutdown();
+		logger.info("{} transcodes on {}: {}ms", results.size(), executor.getClass().getSimpleName(), (System.currentTimeMillis()-t1));
+	}
+}
@@ -0,0 +1,41 @@
+package com.icafe4j.test;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.icafe4j.image.meta.BatchMetadataProcessor;
+import com.icafe4j.image.meta.Metadata;
+import com.icafe4j.image.meta.MetadataType;
+
+public class TestBatchMetadataProcessor extends TestBase {
+
+	public static void main(String[] args) throws Exception {
+		new TestBatchMetadataProcessor().test(args);
+	}
+
+	// Arguments: image directory, optional output directory to strip XMP and comments into
+	public void test(String ... args) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		BatchMetadataProcessor processor = new BatchMetadataProcessor(executor, 16, 32L*1024*1024);
+		long t1 = System.currentTimeMillis();
+		BatchMetadataProcessor.Summary summary = processor.process(new File(args[0]), true, BatchMetadataProcessor.readMetadata(),
+			new BatchMetadataProcessor.ResultHandler<Map<MetadataType, Metadata>>() {
+				public void handle(BatchMetadataProcessor.Result<Map<MetadataType, Metadata>> result) {
+					if(result.isSuccess())
+						logger.info("{}: {}", result.getFile().getName(), result.getValue().keySet());
+					else
+						logger.info("{}", result);
+				}
+		});
+		long t2 = System.currentTimeMillis();
+		logger.info("Read metadata of {} in {}ms", summary, (t2-t1));
+		if(args.length > 1) {
+			summary = processor.process(new File(args[0]), true,
+				BatchMetadataProcessor.removeMetadata(new File(args[0]), new File(args[1]), MetadataType.XMP, MetadataType.COMMENT), null);
+			logger.info("Stripped metadata of {} in {}ms", summary, (System.currentTimeMillis()-t2));
+		}
+		executor.shutdown();
+	}
+}
@@ -0,0 +1,44 @@
+package com.icafe4j.test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+
+import com.icafe4j.image.CodecContext;
+import com.icafe4j.image.ImageIO;
+import com.icafe4j.image.reader.PNGReader;
+import com.icafe4j.image.writer.PNGWriter;
+
+public class TestCodecContext extends TestBase {
+
+	public static void main(String[] args) throws Exception {
+		new TestCodecContext().test(args);
+	}
+
+	// Arguments: image file names, each is written to PNG and read back with one shared context
+	public void test(String ... args) throws Exception {
+		CodecContext context = new CodecContext();
+		try {
+			for(String fileName : args) {
+				FileInputStream fin = new FileInputStream(fileName);
+				BufferedImage image = ImageIO.read(fin);
+				fin.close();
+				long t1 = System.currentTimeMillis();
+				for(int i = 0; i < 10; i++) {
+					ByteArrayOutputStream bout = new ByteArrayOutputStream();
+					PNGWriter writer = new PNGWriter();
+					writer.setContext(context);
+					writer.write(image, bout);
+					PNGReader reader = new PNGReader();
+					reader.setContext(context);
+					reader.read(new ByteArrayInputStream(bout.toByteArray()));
+				}
+				logger.info("{}: 10 PNG round trips in {}ms", fileName, (System.currentTimeMillis()-t1));
+			}
+		} finally {
+			context.close();
+		}
+		logger.info("Contexts in the pool: {}", CodecContext.getPoolSize());
+	}
+}
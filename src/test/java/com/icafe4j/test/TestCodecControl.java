@@ -0,0 +1,39 @@
+package com.icafe4j.test;
+
+import java.awt.image.BufferedImage;
+import java.io.FileInputStream;
+import java.util.concurrent.TimeUnit;
+
+import com.icafe4j.image.CodecCancelledException;
+import com.icafe4j.image.CodecControl;
+import com.icafe4j.image.ImageIO;
+
+public class TestCodecControl extends TestBase {
+
+	public static void main(String[] args) throws Exception {
+		new TestCodecControl().test(args);
+	}
+
+	// Arguments: image file name [timeout in milliseconds]
+	public void test(String ... args) throws Exception {
+		CodecControl control = new CodecControl();
+		control.setProgressListener(new CodecControl.ProgressListener() {
+			public void progress(CodecControl.Unit unit, int done, int total) {
+				if(total > 0 && done == total)
+					logger.info("{} {}/{}", unit, done, total);
+			}
+		});
+		if(args.length > 1)
+			control.setTimeout(Long.parseLong(args[1]), TimeUnit.MILLISECONDS);
+		FileInputStream fin = new FileInputStream(args[0]);
+		long t1 = System.currentTimeMillis();
+		try {
+			BufferedImage image = ImageIO.read(fin, control);
+			logger.info("Read {}x{} image in {}ms", image.getWidth(), image.getHeight(), (System.currentTimeMillis()-t1));
+		} catch(CodecCancelledException e) {
+			logger.info("{} after {}ms, deadline exceeded: {}", e.getMessage(), (System.currentTimeMillis()-t1), e.isDeadlineExceeded());
+		} finally {
+			fin.close();
+		}
+	}
+}
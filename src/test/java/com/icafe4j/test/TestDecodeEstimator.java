@@ -0,0 +1,36 @@
+package com.icafe4j.test;
+
+import java.io.File;
+
+import com.icafe4j.image.DecodeAdmission;
+import com.icafe4j.image.DecodeEstimate;
+import com.icafe4j.image.DecodeEstimator;
+import com.icafe4j.image.DecodeRejectedException;
+import com.icafe4j.image.ImageIO;
+
+public class TestDecodeEstimator extends TestBase {
+
+	public static void main(String[] args) throws Exception {
+		new TestDecodeEstimator().test(args);
+	}
+
+	// Arguments: image file names, each is estimated and then read under a 64M budget
+	public void test(String ... args) throws Exception {
+		DecodeAdmission admission = new DecodeAdmission(64L*1024*1024, DecodeAdmission.Policy.REJECT);
+		DecodeAdmission.setGlobal(admission);
+		try {
+			for(String fileName : args) {
+				DecodeEstimate estimate = DecodeEstimator.estimate(new File(fileName));
+				logger.info("{}: {}", fileName, estimate);
+				try {
+					ImageIO.read(fileName);
+				} catch(DecodeRejectedException e) {
+					logger.info("{}: {}", fileName, e.getMessage());
+				}
+			}
+		} finally {
+			DecodeAdmission.setGlobal(null);
+		}
+		logger.info("{}", admission);
+	}
+}
@@ -0,0 +1,31 @@
+package com.icafe4j.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+
+import com.icafe4j.image.ImageIO;
+import com.icafe4j.image.ImageType;
+import com.icafe4j.image.meta.EmbeddedPreview;
+
+public class TestEmbeddedPreview extends TestBase {
+
+	public static void main(String[] args) throws Exception {
+		new TestEmbeddedPreview().test(args);
+	}
+
+	// Arguments: JPEG or TIFF file name
+	public void test(String ... args) throws Exception {
+		long t1 = System.currentTimeMillis();
+		List<EmbeddedPreview> previews = EmbeddedPreview.readAll(new File(args[0]));
+		long t2 = System.currentTimeMillis();
+		logger.info("Found {} preview(s) in {}ms", previews.size(), (t2-t1));
+		int i = 0;
+		for(EmbeddedPreview preview : previews) {
+			logger.info("{}", preview);
+			FileOutputStream fout = new FileOutputStream("preview-" + (i++) + "-" + preview.getSource() + ".png");
+			ImageIO.write(preview.getImage(), fout, ImageType.PNG);
+			fout.close();
+		}
+	}
+}
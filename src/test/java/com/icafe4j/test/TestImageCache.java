@@ -0,0 +1,68 @@
+package com.icafe4j.test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.icafe4j.image.ImageCache;
+import com.icafe4j.image.ImageIO;
+
+public class TestImageCache extends TestBase {
+
+	public static void main(String[] args) throws Exception {
+		new TestImageCache().test(args);
+	}
+
+	// Arguments: image file names, each is requested several times from several threads
+	public void test(String ... args) throws Exception {
+		final ImageCache cache = new ImageCache(64L*1024*1024);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<BufferedImage>> results = new ArrayList<Future<BufferedImage>>();
+		long t1 = System.currentTimeMillis();
+		for(int i = 0; i < 4; i++) {
+			for(final String fileName : args) {
+				results.add(executor.submit(new Callable<BufferedImage>() {
+					public BufferedImage call() throws Exception {
+						final File file = new File(fileName);
+						return cache.get(ImageCache.Key.forFile(file, null), new Callable<BufferedImage>() {
+							public BufferedImage call() throws Exception {
+								return ImageIO.read(file);
+							}
+						});
+					}
+				}));
+			}
+		}
+		for(Future<BufferedImage> result : results)
+			result.get();
+		logger.info("{} requests: {}ms {}", results.size(), (System.currentTimeMillis()-t1), cache);
+		
+		// An image removed while it is being loaded must not come back when the load completes
+		final ImageCache.Key key = new ImageCache.Key("removed", null);
+		final CountDownLatch loading = new CountDownLatch(1);
+		final CountDownLatch removed = new CountDownLatch(1);
+		Future<BufferedImage> load = executor.submit(new Callable<BufferedImage>() {
+			public BufferedImage call() throws Exception {
+				return cache.get(key, new Callable<BufferedImage>() {
+					public BufferedImage call() throws Exception {
+						loading.countDown();
+						removed.await();
+						return new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+					}
+				});
+			}
+		});
+		loading.await();
+		cache.remove(key);
+		removed.countDown();
+		load.get();
+		executor.shutdown();
+		logger.info("Image removed while loading is cached: {}", (cache.get(key) != null));
+	}
+}
@@ -0,0 +1,45 @@
+package com.icafe4j.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+
+import com.icafe4j.image.jpeg.JPEGInPlaceEditor;
+import com.icafe4j.image.meta.jpeg.JpegXMP;
+import com.icafe4j.io.IOUtils;
+
+public class TestJPEGInPlaceEditor extends TestBase {
+
+	public static void main(String[] args) throws Exception {
+		new TestJPEGInPlaceEditor().test(args);
+	}
+
+	// Arguments: JPEG file name [padding reserve]
+	public void test(String ... args) throws Exception {
+		int reserve = args.length > 1 ? Integer.parseInt(args[1]) : 8192;
+		// Work on a copy, the editor changes the file directly
+		File file = new File("in-place-edited.jpg");
+		FileInputStream fin = new FileInputStream(args[0]);
+		FileOutputStream fout = new FileOutputStream(file);
+		IOUtils.write(fout, IOUtils.inputStreamToByteArray(fin));
+		fin.close();
+		fout.close();
+		JPEGInPlaceEditor editor = new JPEGInPlaceEditor(reserve);
+		long t1 = System.currentTimeMillis();
+		boolean inPlace = editor.insertComments(file, Arrays.asList("First comment"));
+		long t2 = System.currentTimeMillis();
+		logger.info("First edit in place: {}, {}ms, file length {}", inPlace, (t2-t1), file.length());
+		inPlace = editor.insertXMP(file, new JpegXMP("<x:xmpmeta xmlns:x='adobe:ns:meta/'><rdf:RDF xmlns:rdf='http://www.w3.org/1999/02/22-rdf-syntax-ns#'>"
+				+ "<rdf:Description xmlns:xmp='http://ns.adobe.com/xap/1.0/' xmp:CreatorTool='ICAFE'/></rdf:RDF></x:xmpmeta>"));
+		long t3 = System.currentTimeMillis();
+		logger.info("Second edit in place: {}, {}ms, file length {}", inPlace, (t3-t2), file.length());
+		// Too large for the reserve, move the image data inside the file instead of rewriting it
+		editor.setShiftInPlace(true);
+		char[] comment = new char[reserve + 1024];
+		Arrays.fill(comment, 'c');
+		inPlace = editor.insertComments(file, Arrays.asList(new String(comment)));
+		long t4 = System.currentTimeMillis();
+		logger.info("Third edit in place: {}, {}ms, file length {}", inPlace, (t4-t3), file.length());
+	}
+}
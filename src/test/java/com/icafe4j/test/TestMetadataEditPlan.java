@@ -0,0 +1,39 @@
+package com.icafe4j.test;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+
+import com.icafe4j.image.meta.Metadata;
+import com.icafe4j.image.meta.MetadataEditPlan;
+import com.icafe4j.image.meta.MetadataType;
+import com.icafe4j.image.meta.iptc.IPTCApplicationTag;
+import com.icafe4j.image.meta.iptc.IPTCDataSet;
+
+public class TestMetadataEditPlan extends TestBase {
+
+	public static void main(String[] args) throws Exception {
+		new TestMetadataEditPlan().test(args);
+	}
+
+	// Arguments: input image file name, output image file name
+	public void test(String ... args) throws Exception {
+		MetadataEditPlan plan = new MetadataEditPlan()
+			.removeMetadata(MetadataType.COMMENT)
+			.insertComments(Arrays.asList("Edited with MetadataEditPlan"))
+			.insertIPTC(Arrays.asList(new IPTCDataSet(IPTCApplicationTag.KEY_WORDS, "Welcome 'icafe' user!"),
+					new IPTCDataSet(IPTCApplicationTag.CATEGORY, "ICAFE")), true);
+		FileInputStream fin = new FileInputStream(args[0]);
+		FileOutputStream fout = new FileOutputStream(args[1]);
+		long t1 = System.currentTimeMillis();
+		plan.apply(fin, fout);
+		long t2 = System.currentTimeMillis();
+		fin.close();
+		fout.close();
+		logger.info("Applied metadata edit plan in {}ms", (t2-t1));
+		fin = new FileInputStream(args[1]);
+		for(Metadata meta : Metadata.readMetadata(fin).values())
+			logger.info("{}", meta.getType());
+		fin.close();
+	}
+}
@@ -0,0 +1,40 @@
+package com.icafe4j.test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+
+import com.icafe4j.image.meta.xmp.XMP;
+import com.icafe4j.image.tiff.TIFFAppendEditor;
+import com.icafe4j.io.IOUtils;
+
+public class TestTIFFAppendEditor extends TestBase {
+
+	public static void main(String[] args) throws Exception {
+		new TestTIFFAppendEditor().test(args);
+	}
+
+	// Arguments: TIFF file name [page number]
+	public void test(String ... args) throws Exception {
+		int pageNumber = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+		// Work on a copy, the editor changes the file directly
+		File file = new File("append-edited.tif");
+		FileInputStream fin = new FileInputStream(args[0]);
+		FileOutputStream fout = new FileOutputStream(file);
+		IOUtils.write(fout, IOUtils.inputStreamToByteArray(fin));
+		fin.close();
+		fout.close();
+		long length = file.length();
+		long t1 = System.currentTimeMillis();
+		TIFFAppendEditor.insertComments(file, pageNumber, Arrays.asList("Appended comment"));
+		long t2 = System.currentTimeMillis();
+		logger.info("Comments appended in {}ms, file grew {} bytes", (t2-t1), file.length() - length);
+		length = file.length();
+		String xmp = XMP.wrapPacket("<x:xmpmeta xmlns:x='adobe:ns:meta/'><rdf:RDF xmlns:rdf='http://www.w3.org/1999/02/22-rdf-syntax-ns#'>"
+				+ "<rdf:Description xmlns:xmp='http://ns.adobe.com/xap/1.0/' xmp:CreatorTool='ICAFE'/></rdf:RDF></x:xmpmeta>");
+		TIFFAppendEditor.insertXMP(file, pageNumber, xmp.getBytes("UTF-8"));
+		long t3 = System.currentTimeMillis();
+		logger.info("XMP appended in {}ms, file grew {} bytes", (t3-t2), file.length() - length);
+	}
+}
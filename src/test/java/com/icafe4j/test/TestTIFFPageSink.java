@@ -0,0 +1,48 @@
+package com.icafe4j.test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+
+import com.icafe4j.image.reader.TIFFReader;
+import com.icafe4j.image.tiff.TIFFPageSink;
+import com.icafe4j.io.MemoryCacheRandomAccessOutputStream;
+import com.icafe4j.io.RandomAccessOutputStream;
+
+public class TestTIFFPageSink extends TestBase {
+
+	public static void main(String[] args) throws Exception {
+		new TestTIFFPageSink().test(args);
+	}
+
+	public void test(String ... args) throws Exception {
+		String fileName = args.length > 0 ? args[0] : "pagesink.tif";
+		int pages = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		long t1 = System.currentTimeMillis();
+		FileOutputStream out = new FileOutputStream(fileName);
+		RandomAccessOutputStream rout = new MemoryCacheRandomAccessOutputStream(out);
+		TIFFPageSink sink = new TIFFPageSink(rout);
+		for(int i = 0; i < pages; i++) {
+			BufferedImage page = new BufferedImage(320, 240, BufferedImage.TYPE_INT_RGB);
+			Graphics2D g = page.createGraphics();
+			g.setColor(Color.WHITE);
+			g.fillRect(0, 0, 320, 240);
+			g.setColor(Color.BLUE);
+			g.drawString("Page " + i, 100, 120);
+			g.dispose();
+			sink.addPage(page);
+		}
+		sink.close();
+		rout.close();
+		long t2 = System.currentTimeMillis();
+		logger.info("Writing {} pages: {}ms", pages, (t2-t1));
+		// Read it back
+		FileInputStream fin = new FileInputStream(fileName);
+		TIFFReader reader = new TIFFReader();
+		reader.read(fin);
+		fin.close();
+		logger.info("Total pages read back: {}", reader.getFrameCount());
+	}
+}
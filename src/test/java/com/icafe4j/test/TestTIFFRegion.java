@@ -0,0 +1,108 @@
+package com.icafe4j.test;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import com.icafe4j.image.ImageIO;
+import com.icafe4j.image.ImageType;
+import com.icafe4j.image.reader.TIFFReader;
+import com.icafe4j.io.FileCacheRandomAccessInputStream;
+import com.icafe4j.io.RandomAccessInputStream;
+
+public class TestTIFFRegion extends TestBase {
+
+	public static void main(String[] args) throws Exception {
+		new TestTIFFRegion().test(args);
+	}
+
+	// Arguments: [TIFF file name [x y width height [subsampling [page index]]]]
+	public void test(String ... args) throws Exception {
+		testWhiteIsZeroAlpha();
+		if(args.length == 0) return;
+		Rectangle roi = null;
+		if(args.length >= 5)
+			roi = new Rectangle(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+		int subsampling = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+		int pageIndex = args.length > 6 ? Integer.parseInt(args[6]) : 0;
+		long t1 = System.currentTimeMillis();
+		FileInputStream fin = new FileInputStream(args[0]);
+		RandomAccessInputStream rin = new FileCacheRandomAccessInputStream(fin);
+		TIFFReader reader = new TIFFReader();
+		BufferedImage region = reader.read(rin, pageIndex, roi, subsampling);
+		rin.close();
+		long t2 = System.currentTimeMillis();
+		logger.info("Decoding region {} with subsampling {}: {}ms", roi, subsampling, (t2-t1));
+		logger.info("Region size: {}x{}", region.getWidth(), region.getHeight());
+		FileOutputStream fout = new FileOutputStream("region.png");
+		ImageIO.write(region, fout, ImageType.PNG);
+		fout.close();
+	}
+	
+	// Gray plus alpha WHITE_IS_ZERO: only the gray sample is inverted
+	private void testWhiteIsZeroAlpha() throws Exception {
+		int width = 4, height = 3;
+		byte[] samples = new byte[width*height*2];
+		for(int i = 0; i < samples.length; i += 2) {
+			samples[i] = (byte)(i*20);
+			samples[i + 1] = (byte)(255 - i*10);
+		}
+		RandomAccessInputStream rin = new FileCacheRandomAccessInputStream(new ByteArrayInputStream(createGrayAlphaTIFF(width, height, samples)));
+		BufferedImage region = new TIFFReader().read(rin, 0, new Rectangle(1, 1, 2, 2), 1);
+		rin.close();
+		Raster raster = region.getRaster();
+		int errors = 0;
+		for(int y = 0; y < 2; y++) {
+			for(int x = 0; x < 2; x++) {
+				int index = ((y + 1)*width + x + 1)*2;
+				int gray = raster.getSample(x, y, 0);
+				int alpha = raster.getSample(x, y, 1);
+				if(gray != 255 - (samples[index]&0xff) || alpha != (samples[index + 1]&0xff)) {
+					logger.error("WHITE_IS_ZERO gray+alpha pixel ({}, {}): got gray {} alpha {}", x, y, gray, alpha);
+					errors++;
+				}
+			}
+		}
+		logger.info("WHITE_IS_ZERO gray+alpha region: {} wrong pixels", errors);
+	}
+	
+	// Uncompressed single strip big endian TIFF with 8 bit gray and unassociated alpha samples
+	private static byte[] createGrayAlphaTIFF(int width, int height, byte[] samples) throws IOException {
+		int numOfEntries = 10;
+		int dataOffset = 8 + 2 + numOfEntries*12 + 4;
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bout);
+		out.writeShort(0x4d4d); // MM
+		out.writeShort(42);
+		out.writeInt(8);
+		out.writeShort(numOfEntries);
+		writeEntry(out, 256, 3, 1, width<<16); // ImageWidth
+		writeEntry(out, 257, 3, 1, height<<16); // ImageLength
+		writeEntry(out, 258, 3, 2, (8<<16)|8); // BitsPerSample
+		writeEntry(out, 259, 3, 1, 1<<16); // Compression none
+		writeEntry(out, 262, 3, 1, 0); // PhotometricInterpretation WHITE_IS_ZERO
+		writeEntry(out, 273, 4, 1, dataOffset); // StripOffsets
+		writeEntry(out, 277, 3, 1, 2<<16); // SamplesPerPixel
+		writeEntry(out, 278, 3, 1, height<<16); // RowsPerStrip
+		writeEntry(out, 279, 4, 1, samples.length); // StripByteCounts
+		writeEntry(out, 338, 3, 1, 2<<16); // ExtraSamples unassociated alpha
+		out.writeInt(0); // No more IFD
+		out.write(samples);
+		out.close();
+		
+		return bout.toByteArray();
+	}
+	
+	private static void writeEntry(DataOutputStream out, int tag, int type, int count, int value) throws IOException {
+		out.writeShort(tag);
+		out.writeShort(type);
+		out.writeInt(count);
+		out.writeInt(value);
+	}
+}
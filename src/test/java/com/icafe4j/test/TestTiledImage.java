@@ -0,0 +1,53 @@
+package com.icafe4j.test;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+
+import com.icafe4j.image.ImageIO;
+import com.icafe4j.image.ImageType;
+import com.icafe4j.image.TiledImage;
+import com.icafe4j.image.processing.Scalr;
+import com.icafe4j.image.reader.PNGReader;
+import com.icafe4j.image.reader.TIFFReader;
+import com.icafe4j.image.writer.TIFFWriter;
+import com.icafe4j.io.FileCacheRandomAccessInputStream;
+import com.icafe4j.io.RandomAccessInputStream;
+
+public class TestTiledImage extends TestBase {
+
+	public static void main(String[] args) throws Exception {
+		new TestTiledImage().test(args);
+	}
+
+	// Arguments: PNG or TIFF file name [tile cache size in MB]
+	public void test(String ... args) throws Exception {
+		long cacheSize = (args.length > 1 ? Long.parseLong(args[1]) : 16L)*1024*1024;
+		long t1 = System.currentTimeMillis();
+		TiledImage image = null;
+		if(args[0].toLowerCase().endsWith(".png")) {
+			image = new PNGReader().readTiled(new FileInputStream(args[0]), TiledImage.DEFAULT_TILE_SIZE, cacheSize);
+		} else {
+			RandomAccessInputStream rin = new FileCacheRandomAccessInputStream(new FileInputStream(args[0]));
+			image = new TIFFReader().readTiled(rin, 0, TiledImage.DEFAULT_TILE_SIZE, cacheSize);
+			rin.close();
+		}
+		long t2 = System.currentTimeMillis();
+		logger.info("Decoded {}x{} image into tiles: {}ms", image.getWidth(), image.getHeight(), (t2-t1));
+		try {
+			FileOutputStream fout = new FileOutputStream("tiled-crop.png");
+			ImageIO.write(Scalr.crop(image, image.getWidth()/4, image.getHeight()/4, image.getWidth()/2, image.getHeight()/2), fout, ImageType.PNG);
+			fout.close();
+			fout = new FileOutputStream("tiled-thumbnail.png");
+			ImageIO.write(Scalr.resize(image, Scalr.Method.QUALITY, Scalr.Mode.AUTOMATIC, 512, 512), fout, ImageType.PNG);
+			fout.close();
+			long t3 = System.currentTimeMillis();
+			logger.info("Cropped and resized: {}ms", (t3-t2));
+			fout = new FileOutputStream("tiled.tif");
+			new TIFFWriter().write(image, fout);
+			fout.close();
+			logger.info("Written back as TIFF: {}ms", (System.currentTimeMillis()-t3));
+		} finally {
+			image.close();
+		}
+	}
+}
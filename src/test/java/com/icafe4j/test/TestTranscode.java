@@ -0,0 +1,51 @@
+package com.icafe4j.test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+
+import com.icafe4j.image.ImageColorType;
+import com.icafe4j.image.ImageIO;
+import com.icafe4j.image.ImageParam;
+import com.icafe4j.image.ImageType;
+
+public class TestTranscode extends TestBase {
+
+	public static void main(String[] args) throws Exception {
+		new TestTranscode().test(args);
+	}
+
+	// Arguments: image file names, each is converted to PNG, TIFF and GIF with transcode and
+	// with read and write, and the pixels read back are compared
+	public void test(String ... args) throws Exception {
+		ImageParam param = ImageParam.getBuilder().colorType(ImageColorType.INDEXED).build();
+		for(String fileName : args) {
+			for(ImageType imageType : new ImageType[] {ImageType.PNG, ImageType.TIFF, ImageType.GIF}) {
+				long t1 = System.currentTimeMillis();
+				ByteArrayOutputStream written = new ByteArrayOutputStream();
+				FileInputStream fin = new FileInputStream(fileName);
+				ImageIO.write(ImageIO.read(fin), written, imageType, param);
+				fin.close();
+				long t2 = System.currentTimeMillis();
+				ByteArrayOutputStream transcoded = new ByteArrayOutputStream();
+				fin = new FileInputStream(fileName);
+				ImageIO.transcode(fin, transcoded, imageType, param);
+				fin.close();
+				long t3 = System.currentTimeMillis();
+				BufferedImage expected = ImageIO.read(new ByteArrayInputStream(written.toByteArray()));
+				BufferedImage actual = ImageIO.read(new ByteArrayInputStream(transcoded.toByteArray()));
+				int diff = 0;
+				for(int y = 0; y < expected.getHeight(); y++) {
+					for(int x = 0; x < expected.getWidth(); x++) {
+						int expectedRGB = expected.getRGB(x, y);
+						// Nothing to compare under a transparent pixel
+						if((expectedRGB>>>24) != 0 && expectedRGB != actual.getRGB(x, y)) diff++;
+					}
+				}
+				logger.info("{} to {}: read and write {}ms {} bytes, transcode {}ms {} bytes, {} pixels differ", fileName, imageType,
+						(t2-t1), written.size(), (t3-t2), transcoded.size(), diff);
+			}
+		}
+	}
+}